@@ -0,0 +1,150 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import duberchat.client.ChatClient;
+import duberchat.net.FrameCodec;
+import duberchat.net.Handshake;
+import duberchat.net.WireCodec;
+
+/**
+ * This class checks that an idle client uses next to no CPU.
+ * <p>
+ * It starts a client's workers, without any windows, and measures how much CPU
+ * its threads use while it can't reach the server (so it is backing off between
+ * attempts), and then once it has connected and has nothing to do. The server
+ * is stood in for by a socket that only answers the handshake. Each phase must
+ * stay under {@value #MAX_IDLE_PERCENT}% of a core; the check exits with status
+ * 1 if either does not. Pass {@code seconds=<n>} to measure each phase for
+ * longer.
+ */
+public class ClientIdleCheck {
+    /** How long each phase is measured for by default, in seconds. */
+    public static final int DEFAULT_SECONDS = 5;
+    /** The most CPU an idle client may use, as a percentage of one core. */
+    public static final double MAX_IDLE_PERCENT = 1.0;
+
+    /**
+     * Main
+     *
+     * @param args parameters from command line
+     * @throws IOException          if the stand-in server could not be started.
+     * @throws InterruptedException if interrupted while measuring.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int seconds = DEFAULT_SECONDS;
+        for (String arg : args) {
+            if (arg.toLowerCase().startsWith("seconds=")) {
+                try {
+                    seconds = Integer.parseInt(arg.substring("seconds=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; it must be a number.");
+                }
+            } else {
+                System.out.println("Ignoring " + arg + "; it is not a setting.");
+            }
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadCpuTimeSupported()) {
+            System.out.println("This runtime can't measure the CPU time of threads.");
+            System.exit(1);
+        }
+        threads.setThreadCpuTimeEnabled(true);
+
+        // a port nothing is listening on
+        ServerSocket unused = new ServerSocket(0);
+        int closedPort = unused.getLocalPort();
+        unused.close();
+
+        ChatClient client = new ChatClient();
+        client.startWorkers();
+        client.setIp("127.0.0.1");
+        client.setPort(closedPort);
+        Thread.sleep(1000); // let the first attempts fail
+        boolean passed = ClientIdleCheck.measure("Can't reach the server", seconds);
+
+        final ServerSocket server = new ServerSocket(0);
+        final CountDownLatch handshakeDone = new CountDownLatch(1);
+        Thread serverThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    DataInputStream input = new DataInputStream(socket.getInputStream());
+                    DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                    byte[] hello = FrameCodec.readFrame(input);
+                    WireCodec chosen = Handshake.choose(hello, new WireCodec[] { Handshake.BINARY });
+                    FrameCodec.writeFrame(output, Handshake.reply(chosen));
+                    handshakeDone.countDown();
+                    // hold the connection open, without sending anything
+                    while (input.read() != -1) {
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+        client.setPort(server.getLocalPort());
+        if (!handshakeDone.await(30, TimeUnit.SECONDS)) {
+            System.out.println("The client did not connect to the stand-in server.");
+            System.exit(1);
+        }
+        Thread.sleep(1000); // let the client settle after connecting
+        passed &= ClientIdleCheck.measure("Connected with nothing to do", seconds);
+
+        System.out.println(passed ? "Passed." : "Failed: the client is busy while idle.");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Measures how much CPU this process's threads use over some time.
+     *
+     * @param phase   what the client is doing, for the report.
+     * @param seconds how long to measure for, in seconds.
+     * @return true if the threads stayed under {@link #MAX_IDLE_PERCENT}.
+     * @throws InterruptedException if interrupted while measuring.
+     */
+    private static boolean measure(String phase, int seconds) throws InterruptedException {
+        HashMap<Long, Long> before = ClientIdleCheck.findThreadCpuTimes();
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        HashMap<Long, Long> after = ClientIdleCheck.findThreadCpuTimes();
+        long elapsed = System.nanoTime() - start;
+
+        long cpuNanos = 0;
+        for (Long threadId : after.keySet()) {
+            Long threadBefore = before.get(threadId);
+            cpuNanos += after.get(threadId) - ((threadBefore == null) ? 0 : threadBefore);
+        }
+        double percent = 100.0 * cpuNanos / elapsed;
+        boolean passed = percent < MAX_IDLE_PERCENT;
+        System.out.printf("%s: %.2f%% of a core over %d s (%s)%n", phase, percent, seconds,
+                passed ? "ok" : "too busy");
+        return passed;
+    }
+
+    /**
+     * Retrieves the CPU time each live thread has used so far.
+     *
+     * @return the CPU time of each thread in nanoseconds, by thread id.
+     */
+    private static HashMap<Long, Long> findThreadCpuTimes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        HashMap<Long, Long> cpuTimes = new HashMap<>();
+        for (long threadId : threads.getAllThreadIds()) {
+            long cpuTime = threads.getThreadCpuTime(threadId);
+            if (cpuTime >= 0) {
+                cpuTimes.put(threadId, cpuTime);
+            }
+        }
+        return cpuTimes;
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+import duberchat.chatutil.User;
+import duberchat.events.AuthSucceedEvent;
+import duberchat.events.ClientRequestMessageEvent;
+import duberchat.events.ClientStatusUpdateEvent;
+import duberchat.events.HeartbeatEvent;
+import duberchat.events.MessageSentEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.net.BinaryCodec;
+import duberchat.net.JavaSerializationCodec;
+import duberchat.net.WireCodec;
+
+/**
+ * This class benchmarks the codecs events are sent over the wire with.
+ * <p>
+ * It round-trips a few typical events through the binary codec and through
+ * Java serialization: a sent message, a status update, a heartbeat, a
+ * 30-message scroll-back cluster and a login reply holding five channels. For
+ * each event and codec, it prints how many bytes the event encodes to and how
+ * many times a second it can be encoded and decoded. Pass {@code millis=<n>} to
+ * change how long each is timed for.
+ */
+public class CodecBenchmark {
+    /** How long each event is encoded and decoded for by default, in milliseconds. */
+    public static final int DEFAULT_MILLIS = 500;
+    /** The number of rounds, the first few to warm up. */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Main
+     *
+     * @param args parameters from command line
+     * @throws IOException            if an event could not be encoded or decoded.
+     * @throws ClassNotFoundException if a decoded event's class can't be found.
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        int millis = DEFAULT_MILLIS;
+        for (String arg : args) {
+            if (arg.toLowerCase().startsWith("millis=")) {
+                try {
+                    millis = Integer.parseInt(arg.substring("millis=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; it must be a number.");
+                }
+            } else {
+                System.out.println("Ignoring " + arg + "; it is not a setting.");
+            }
+        }
+
+        WireCodec[] codecs = { new BinaryCodec(), new JavaSerializationCodec() };
+        String[] names = { "message sent", "status update", "heartbeat", "30-message cluster",
+                "login with 5 channels" };
+        SerializableEvent[] events = CodecBenchmark.createEvents();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ((round < ROUNDS) ? " (warming up)" : "") + ":");
+            for (int i = 0; i < events.length; i++) {
+                for (WireCodec codec : codecs) {
+                    byte[] payload = codec.encode(events[i]);
+                    if (codec.decode(payload).getClass() != events[i].getClass()) {
+                        System.out.println("  " + codec.getName() + " decoded " + names[i] + " as another event.");
+                    }
+                    double encodesPerSecond = CodecBenchmark.timeEncode(codec, events[i], millis);
+                    double decodesPerSecond = CodecBenchmark.timeDecode(codec, payload, millis);
+                    System.out.printf("  %-22s %-18s %7d bytes, %,12.0f encodes/s, %,12.0f decodes/s%n",
+                            names[i] + ":", codec.getName(), payload.length, encodesPerSecond, decodesPerSecond);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the events to benchmark, as the server and clients would send them.
+     *
+     * @return the events.
+     */
+    private static SerializableEvent[] createEvents() {
+        ArrayList<Message> cluster = new ArrayList<>(Channel.MESSAGE_CLUSTER_AMT);
+        for (int id = 0; id < Channel.MESSAGE_CLUSTER_AMT; id++) {
+            cluster.add(new Message("message number " + id + " with some text", "user" + (id % 10), id,
+                    "2026-10-18 12:00", 7));
+        }
+
+        User user = new User("user0", 12345L);
+        HashMap<Integer, Channel> channels = new HashMap<>();
+        for (int channelId = 0; channelId < 5; channelId++) {
+            LinkedHashMap<String, User> members = new LinkedHashMap<>();
+            for (int i = 0; i < 10; i++) {
+                User member = new User("user" + i, i);
+                members.put(member.getUsername(), member);
+                member.getChannels().add(channelId);
+            }
+            HashSet<User> admins = new HashSet<>();
+            admins.add(members.get("user0"));
+            Channel channel = new Channel("channel " + channelId, channelId, members, admins,
+                    Channel.MESSAGE_CLUSTER_AMT);
+            for (Message message : cluster) {
+                channel.putMessage(new Message(message.getMessage(), message.getSenderUsername(),
+                        message.getMessageId(), message.getTimestamp(), channelId));
+            }
+            channels.put(channelId, channel);
+        }
+        HashMap<String, User> friends = new HashMap<>();
+        friends.put("user1", new User("user1", 1L));
+
+        return new SerializableEvent[] {
+                new MessageSentEvent("user0",
+                        new Message("hey, are we still on for tonight?", "user0", 1234, "2026-10-18 12:00", 7),
+                        987654321L),
+                new ClientStatusUpdateEvent("user0", User.ONLINE),
+                new HeartbeatEvent(null),
+                new ClientRequestMessageEvent("user0", 0, 7, cluster),
+                new AuthSucceedEvent(null, user, channels, friends) };
+    }
+
+    /**
+     * Encodes an event over and over for some time.
+     *
+     * @param codec  the codec.
+     * @param event  the event.
+     * @param millis how long to keep encoding, in milliseconds.
+     * @return the number of encodes per second.
+     * @throws IOException if the event could not be encoded.
+     */
+    private static double timeEncode(WireCodec codec, SerializableEvent event, int millis) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1000000L;
+        long numEncodes = 0;
+        long now;
+        do {
+            for (int i = 0; i < 100; i++) {
+                codec.encode(event);
+            }
+            numEncodes += 100;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return numEncodes * 1e9 / (now - start);
+    }
+
+    /**
+     * Decodes an event over and over for some time.
+     *
+     * @param codec   the codec.
+     * @param payload the encoded event.
+     * @param millis  how long to keep decoding, in milliseconds.
+     * @return the number of decodes per second.
+     * @throws IOException            if the event could not be decoded.
+     * @throws ClassNotFoundException if the event's class can't be found.
+     */
+    private static double timeDecode(WireCodec codec, byte[] payload, int millis)
+            throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1000000L;
+        long numDecodes = 0;
+        long now;
+        do {
+            for (int i = 0; i < 100; i++) {
+                codec.decode(payload);
+            }
+            numDecodes += 100;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return numDecodes * 1e9 / (now - start);
+    }
+}
@@ -0,0 +1,158 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+import duberchat.chatutil.User;
+import duberchat.server.LatencyHistogram;
+import duberchat.server.MessageHistory;
+
+/**
+ * This class benchmarks fetching a cluster of old messages from a channel, as
+ * the server does when a client scrolls back.
+ * <p>
+ * It fills a channel with 1,000,000 messages and pages all but the hot tail out
+ * to memory mapped history pages. It then times fetching the
+ * {@value duberchat.chatutil.Channel#MESSAGE_CLUSTER_AMT} messages before
+ * randomly chosen ids from those pages, against the scan the server used to do:
+ * searching an in-memory {@code ArrayList} of every message from the newest
+ * back for the id, then copying the messages before it. Pass
+ * {@code messages=<n>} to change the size of the channel, and
+ * {@code fetches=<n>} to change how many clusters are fetched each way.
+ * <p>
+ * The pages are written to a new temporary folder, which is deleted afterwards.
+ */
+public class HistoryBenchmark {
+    /** The number of messages in the channel by default. */
+    public static final int DEFAULT_MESSAGES = 1000000;
+    /** The number of clusters fetched each way by default. */
+    public static final int DEFAULT_FETCHES = 20000;
+    /** The number of times each way is run, the first few to warm up. */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Main
+     *
+     * @param args parameters from command line
+     * @throws IOException if the history pages could not be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int numMessages = DEFAULT_MESSAGES;
+        int numFetches = DEFAULT_FETCHES;
+        for (String arg : args) {
+            try {
+                if (arg.toLowerCase().startsWith("messages=")) {
+                    numMessages = Integer.parseInt(arg.substring("messages=".length()));
+                } else if (arg.toLowerCase().startsWith("fetches=")) {
+                    numFetches = Integer.parseInt(arg.substring("fetches=".length()));
+                } else {
+                    System.out.println("Ignoring " + arg + "; it is not a setting.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring " + arg + "; it must be a number.");
+            }
+        }
+        numMessages = Math.max(numMessages, Channel.MESSAGE_CLUSTER_AMT + 1);
+
+        // the old way keeps every message in one list, oldest first
+        ArrayList<Message> allMessages = new ArrayList<>(numMessages);
+        Channel channel = new Channel("benchmark", 0, new LinkedHashMap<String, User>(), new HashSet<User>(), 0);
+        for (int id = 0; id < numMessages; id++) {
+            Message message = new Message("message number " + id + " with some text", "user" + (id % 10), id,
+                    "2026-10-18 12:00", 0);
+            allMessages.add(message);
+            channel.putMessage(message);
+        }
+        channel.setTotalMessages(numMessages);
+
+        File directory = Files.createTempDirectory("duberchat-history").toFile();
+        try {
+            MessageHistory history = new MessageHistory(directory.getPath());
+            int pages;
+            long start = System.nanoTime();
+            synchronized (channel) {
+                history.load(channel);
+                pages = history.trim(channel);
+            }
+            System.out.printf("Paged %d of %d messages out to %d pages in %.0f ms.%n",
+                    numMessages - channel.getNumMessages(), numMessages, pages, (System.nanoTime() - start) / 1e6);
+
+            // only ids on disk are fetched, and each needs a whole cluster before it
+            int firstHotId = history.getFirstHotId(channel.getChannelId());
+            if (firstHotId <= Channel.MESSAGE_CLUSTER_AMT) {
+                System.out.println("Too few messages were paged out to fetch from; pass more messages.");
+                return;
+            }
+            Random random = new Random(1);
+            int[] ids = new int[numFetches];
+            for (int i = 0; i < numFetches; i++) {
+                ids[i] = Channel.MESSAGE_CLUSTER_AMT + random.nextInt(firstHotId - Channel.MESSAGE_CLUSTER_AMT);
+            }
+
+            for (int round = 1; round <= ROUNDS; round++) {
+                LatencyHistogram scanned = new LatencyHistogram();
+                LatencyHistogram mapped = new LatencyHistogram();
+                long numFetched = 0;
+                for (int id : ids) {
+                    start = System.nanoTime();
+                    numFetched += HistoryBenchmark.scanCluster(allMessages, id).size();
+                    scanned.record(System.nanoTime() - start);
+                }
+                for (int id : ids) {
+                    start = System.nanoTime();
+                    synchronized (channel) {
+                        numFetched += history.getMessagesBefore(channel, id, Channel.MESSAGE_CLUSTER_AMT).size();
+                    }
+                    mapped.record(System.nanoTime() - start);
+                }
+                System.out.println("Round " + round + ((round < ROUNDS) ? " (warming up)" : "") + ", "
+                        + numFetched + " messages fetched:");
+                System.out.println("  ArrayList scan: " + scanned.describe());
+                System.out.println("  mapped pages:   " + mapped.describe());
+            }
+        } finally {
+            HistoryBenchmark.delete(directory);
+        }
+    }
+
+    /**
+     * Fetches the cluster of messages before a message the way the server used
+     * to, by scanning every message from the newest back.
+     *
+     * @param messages  every message of the channel, oldest first.
+     * @param messageId the id of the message to fetch before.
+     * @return the messages before it, oldest first.
+     */
+    private static ArrayList<Message> scanCluster(ArrayList<Message> messages, int messageId) {
+        ArrayList<Message> messageBlock = new ArrayList<>();
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getMessageId() == messageId) {
+                for (int j = i - 1; j >= Math.max(i - Channel.MESSAGE_CLUSTER_AMT, 0); j--) {
+                    messageBlock.add(0, messages.get(j));
+                }
+                break;
+            }
+        }
+        return messageBlock;
+    }
+
+    /**
+     * Deletes a file, or a folder and everything in it.
+     *
+     * @param file the file or folder.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                HistoryBenchmark.delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -1,10 +1,18 @@
+import duberchat.chatutil.WorkerThreads;
 import duberchat.client.ChatClient;
 
 /**
  * This class is the main class and launches the main client.
+ * <p>
+ * Pass {@code virtual} to run the client's workers on virtual threads.
  */
 public class MainClient {
     public static void main(String[] args) {
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("virtual") && !WorkerThreads.enableVirtualThreads()) {
+                System.out.println("SYSTEM: Virtual threads need Java 21 or later; using platform threads.");
+            }
+        }
         ChatClient chatClient = new ChatClient();
         chatClient.start();
     }
@@ -1,13 +1,110 @@
+import java.util.ArrayList;
+
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.SerializableEvent;
 import duberchat.server.ChatServer;
+import duberchat.server.ConnectionLifecycle;
+import duberchat.server.EventIngress;
+import duberchat.server.MessageHistory;
+import duberchat.server.OutboundQueue;
 
 public class MainServer {
     /**
      * Main
+     * <p>
+     * Pass {@code nio} to serve clients with the non-blocking transport instead of
+     * a thread per client, or {@code virtual} to keep a thread per client but run
+     * those threads (and the file workers) as virtual threads. Pass
+     * {@code drop-presence}, {@code disconnect}, or {@code coalesce} to choose what
+     * happens when a slow client's outbound queue fills up. Pass
+     * {@code hot-tail=<n>} to keep only the newest {@code n} messages of each
+     * channel in memory, and {@code ingress=<n>} to let at most {@code n} events
+     * from clients wait to be handled. Pass
+     * {@code rate-limit=<event>:<per second>:<burst>} (eg.
+     * {@code rate-limit=MessageSentEvent:5:10}) to limit how often each user can
+     * send an event. Pass {@code heartbeat=<seconds>} to check on clients that
+     * have been quiet that long, and {@code idle-timeout=<seconds>} to disconnect
+     * clients that stay quiet that long. Pass {@code session-grace=<seconds>} to
+     * keep the sessions of clients that lost their connection that long, for
+     * them to resume.
      * 
      * @param args parameters from command line
      */
     public static void main(String[] args) {
-        ChatServer chatServer = new ChatServer();
+        boolean useNio = false;
+        int backPressurePolicy = OutboundQueue.COALESCE;
+        boolean binaryCodec = true;
+        int hotTailSize = MessageHistory.DEFAULT_HOT_TAIL;
+        int ingressCapacity = EventIngress.DEFAULT_CAPACITY;
+        ArrayList<String> rateLimits = new ArrayList<>();
+        long heartbeatMillis = ConnectionLifecycle.DEFAULT_HEARTBEAT_MS;
+        long idleTimeoutMillis = ConnectionLifecycle.DEFAULT_IDLE_TIMEOUT_MS;
+        long sessionGraceMillis = ConnectionLifecycle.DEFAULT_SESSION_GRACE_MS;
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("nio")) {
+                useNio = true;
+            } else if (arg.equalsIgnoreCase("virtual") && !WorkerThreads.enableVirtualThreads()) {
+                System.out.println("Virtual threads need Java 21 or later; using platform threads.");
+            } else if (arg.equalsIgnoreCase("drop-presence")) {
+                backPressurePolicy = OutboundQueue.DROP_OLDEST_PRESENCE;
+            } else if (arg.equalsIgnoreCase("disconnect")) {
+                backPressurePolicy = OutboundQueue.DISCONNECT;
+            } else if (arg.equalsIgnoreCase("coalesce")) {
+                backPressurePolicy = OutboundQueue.COALESCE;
+            } else if (arg.equalsIgnoreCase("java-serialization")) {
+                binaryCodec = false;
+            } else if (arg.toLowerCase().startsWith("hot-tail=")) {
+                try {
+                    hotTailSize = Integer.parseInt(arg.substring("hot-tail=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; the hot tail must be a number of messages.");
+                }
+            } else if (arg.toLowerCase().startsWith("ingress=")) {
+                try {
+                    ingressCapacity = Integer.parseInt(arg.substring("ingress=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; the ingress must be a number of events.");
+                }
+            } else if (arg.toLowerCase().startsWith("rate-limit=")) {
+                rateLimits.add(arg.substring("rate-limit=".length()));
+            } else if (arg.toLowerCase().startsWith("heartbeat=")) {
+                try {
+                    heartbeatMillis = Math.round(Double.parseDouble(arg.substring("heartbeat=".length())) * 1000);
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; the heartbeat must be a number of seconds.");
+                }
+            } else if (arg.toLowerCase().startsWith("idle-timeout=")) {
+                try {
+                    idleTimeoutMillis = Math.round(Double.parseDouble(arg.substring("idle-timeout=".length())) * 1000);
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; the idle timeout must be a number of seconds.");
+                }
+            } else if (arg.toLowerCase().startsWith("session-grace=")) {
+                try {
+                    sessionGraceMillis = Math.round(Double.parseDouble(arg.substring("session-grace=".length())) * 1000);
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; the session grace must be a number of seconds.");
+                }
+            }
+        }
+        ChatServer chatServer = new ChatServer(useNio);
+        chatServer.setBackPressurePolicy(backPressurePolicy);
+        chatServer.setBinaryCodecEnabled(binaryCodec);
+        chatServer.setHotTailSize(hotTailSize);
+        chatServer.setIngressCapacity(ingressCapacity);
+        chatServer.setHeartbeat(heartbeatMillis, idleTimeoutMillis);
+        chatServer.setSessionGrace(sessionGraceMillis);
+        for (String rateLimit : rateLimits) {
+            String[] parts = rateLimit.split(":");
+            try {
+                Class<? extends SerializableEvent> eventClass = Class.forName("duberchat.events." + parts[0])
+                        .asSubclass(SerializableEvent.class);
+                chatServer.setRateLimit(eventClass, Double.parseDouble(parts[1]), Integer.parseInt(parts[2]));
+            } catch (ClassNotFoundException | RuntimeException e) {
+                System.out.println("Ignoring rate-limit=" + rateLimit
+                        + "; it must be an event, a number per second, and a burst size.");
+            }
+        }
         chatServer.go();
     }
 }
@@ -0,0 +1,486 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import duberchat.chatutil.Message;
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.AuthSucceedEvent;
+import duberchat.events.ChannelCreateEvent;
+import duberchat.events.ClientLoginEvent;
+import duberchat.events.MessageSentEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.net.FrameCodec;
+import duberchat.net.Handshake;
+import duberchat.net.WireCodec;
+import duberchat.server.ChatServer;
+import duberchat.server.LatencyHistogram;
+
+/**
+ * This class is a stress test of the server's connection modes.
+ * <p>
+ * For each mode ({@code platform} threads, {@code virtual} threads and
+ * {@code nio}), it starts a server, opens 10,000 simulated clients against it,
+ * and has some of them send messages. It then prints how much memory the server
+ * used per connection, how many threads it needed, and how long the messages
+ * took to come back, so the modes can be compared side by side. Pass one or
+ * more modes to test only those, and {@code clients=<n>},
+ * {@code senders=<n>} or {@code messages=<n>} to change how many clients
+ * connect, how many of them send messages, and how many messages each sends.
+ * <p>
+ * Each server runs in a process of its own, in a new temporary folder, so its
+ * memory is measured apart from the clients' and its data is thrown away
+ * afterwards. Run it from the folder the server is normally run from, so the
+ * default profile picture can be copied over. Both processes hold a socket per client, so the limit on open
+ * files (eg. {@code ulimit -n}) may need raising first.
+ */
+public class StressTest {
+    /** The number of clients opened by default. */
+    public static final int DEFAULT_CLIENTS = 10000;
+    /** The number of clients that send messages by default. */
+    public static final int DEFAULT_SENDERS = 100;
+    /** The number of messages each sender sends by default. */
+    public static final int DEFAULT_MESSAGES = 50;
+    /** The prefix of each line the server process reports back on. */
+    private static final String REPORT = "STRESS ";
+    /** How long to wait for the server process to answer, in seconds. */
+    private static final long REPORT_TIMEOUT_SECONDS = 120;
+
+    /**
+     * Main
+     *
+     * @param args parameters from command line
+     * @throws IOException if run as the server process and its commands could not
+     *                     be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("server")) {
+            StressTest.runServer(args[1]);
+            return;
+        }
+
+        int numClients = DEFAULT_CLIENTS;
+        int numSenders = DEFAULT_SENDERS;
+        int numMessages = DEFAULT_MESSAGES;
+        ArrayList<String> modes = new ArrayList<>();
+        for (String arg : args) {
+            try {
+                if (arg.toLowerCase().startsWith("clients=")) {
+                    numClients = Integer.parseInt(arg.substring("clients=".length()));
+                } else if (arg.toLowerCase().startsWith("senders=")) {
+                    numSenders = Integer.parseInt(arg.substring("senders=".length()));
+                } else if (arg.toLowerCase().startsWith("messages=")) {
+                    numMessages = Integer.parseInt(arg.substring("messages=".length()));
+                } else if (arg.equalsIgnoreCase("platform") || arg.equalsIgnoreCase("virtual")
+                        || arg.equalsIgnoreCase("nio")) {
+                    modes.add(arg.toLowerCase());
+                } else {
+                    System.out.println("Ignoring " + arg + "; it is not a mode or a setting.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring " + arg + "; it must be a number.");
+            }
+        }
+        if (modes.isEmpty()) {
+            modes.add("platform");
+            modes.add("virtual");
+            modes.add("nio");
+        }
+        numSenders = Math.min(numSenders, numClients);
+
+        ArrayList<String> results = new ArrayList<>();
+        for (String mode : modes) {
+            System.out.println("Testing " + mode + " mode with " + numClients + " clients...");
+            String result;
+            try {
+                result = StressTest.runMode(mode, numClients, numSenders, numMessages);
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+                result = "failed: " + e.getMessage();
+            }
+            System.out.println(mode + ": " + result);
+            results.add(String.format("%-9s %s", mode, result));
+        }
+
+        System.out.println();
+        System.out.println(numClients + " clients, " + numSenders + " senders sending " + numMessages
+                + " messages each:");
+        for (String result : results) {
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * Starts a server in a process of its own, connects the clients to it, has
+     * the senders send their messages, and reports on how it went.
+     *
+     * @param mode        the server's mode.
+     * @param numClients  the number of clients to open.
+     * @param numSenders  the number of those clients that send messages.
+     * @param numMessages the number of messages each sender sends.
+     * @return a one-line summary.
+     * @throws IOException          if the server could not be started.
+     * @throws InterruptedException if interrupted while waiting on the server.
+     */
+    private static String runMode(String mode, int numClients, int numSenders, int numMessages)
+            throws IOException, InterruptedException {
+        Path dataFolder = Files.createTempDirectory("duberchat-stress");
+        Files.createDirectories(dataFolder.resolve("data/channels"));
+        Files.createDirectories(dataFolder.resolve("data/users"));
+        Files.createDirectories(dataFolder.resolve("data/images"));
+        File defaultPfp = new File("data/images/default.png");
+        if (defaultPfp.exists()) {
+            Files.copy(defaultPfp.toPath(), dataFolder.resolve("data/images/default.png"));
+        }
+
+        // the server runs from its own folder, so the class path must not be relative
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(new File(entry).getAbsolutePath());
+        }
+        ProcessBuilder builder = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", classPath.toString(), "StressTest", "server", mode);
+        builder.directory(dataFolder.toFile());
+        builder.redirectErrorStream(true);
+        Process server = builder.start();
+
+        final LinkedBlockingQueue<String> reports = new LinkedBlockingQueue<>();
+        final BufferedReader serverOutput = new BufferedReader(new InputStreamReader(server.getInputStream()));
+        Thread outputReader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    String line;
+                    while ((line = serverOutput.readLine()) != null) {
+                        // the server's own log is not needed
+                        if (line.startsWith(REPORT)) {
+                            reports.add(line.substring(REPORT.length()));
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                reports.add("exited");
+            }
+        });
+        outputReader.setDaemon(true);
+        outputReader.start();
+        PrintStream serverInput = new PrintStream(server.getOutputStream(), true);
+
+        ArrayList<SimulatedClient> clients = new ArrayList<>();
+        try {
+            String ready = reports.poll(REPORT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!"ready".equals(ready)) {
+                return "server did not start (" + ready + ")";
+            }
+            if (!StressTest.awaitListening()) {
+                return "server did not start listening";
+            }
+            long[] before = StressTest.measure(reports, serverInput);
+
+            long connectStart = System.nanoTime();
+            String connectFailure = null;
+            try {
+                for (int i = 0; i < numClients; i++) {
+                    clients.add(new SimulatedClient("stress" + i));
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                connectFailure = e.toString();
+            }
+            long connectMillis = (System.nanoTime() - connectStart) / 1000000;
+            long[] after = StressTest.measure(reports, serverInput);
+            if (clients.isEmpty()) {
+                return "no clients could connect (" + connectFailure + ")";
+            }
+
+            LatencyHistogram latencies = StressTest.sendMessages(clients, Math.min(numSenders, clients.size()),
+                    numMessages);
+
+            long numConnections = Math.max(after[3], 1);
+            String result = String.format(
+                    "%d connected in %d ms, %.1f KB heap and %.1f KB resident per connection, %d threads"
+                            + " | message round trip %s",
+                    after[3], connectMillis, (after[0] - before[0]) / 1024.0 / numConnections,
+                    (after[1] - before[1]) / (double) numConnections, after[2], latencies.describe());
+            if (connectFailure != null) {
+                result += " | stopped connecting: " + connectFailure;
+            }
+            return result;
+        } finally {
+            for (SimulatedClient client : clients) {
+                client.close();
+            }
+            serverInput.println("quit");
+            if (!server.waitFor(REPORT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                server.destroyForcibly();
+            }
+            StressTest.delete(dataFolder.toFile());
+        }
+    }
+
+    /**
+     * Waits for the server to start accepting connections.
+     *
+     * @return true if it did, false if it took too long.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private static boolean awaitListening() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(REPORT_TIMEOUT_SECONDS);
+        while (System.nanoTime() < deadline) {
+            try {
+                new Socket("127.0.0.1", ChatServer.PORT).close();
+                return true;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Asks the server process how much memory and how many threads it is using.
+     *
+     * @param reports     the server's reports.
+     * @param serverInput the stream to the server process.
+     * @return the heap in use in bytes, the resident memory in kilobytes, the
+     *         number of live platform threads, and the number of connected users.
+     * @throws IOException          if the server did not answer.
+     * @throws InterruptedException if interrupted while waiting on the server.
+     */
+    private static long[] measure(LinkedBlockingQueue<String> reports, PrintStream serverInput)
+            throws IOException, InterruptedException {
+        serverInput.println("measure");
+        String report = reports.poll(REPORT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (report == null || !report.startsWith("measured ")) {
+            throw new IOException("The server did not report its memory: " + report);
+        }
+        String[] parts = report.substring("measured ".length()).split(" ");
+        long[] measured = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            measured[i] = Long.parseLong(parts[i]);
+        }
+        return measured;
+    }
+
+    /**
+     * Has the first few clients each make a channel of their own and send
+     * messages to it one at a time, all at once, and times how long each message
+     * takes to come back from the server.
+     *
+     * @param clients     the connected clients.
+     * @param numSenders  the number of clients that send messages.
+     * @param numMessages the number of messages each sender sends.
+     * @return the round trip times.
+     * @throws InterruptedException if interrupted while waiting on the senders.
+     */
+    private static LatencyHistogram sendMessages(ArrayList<SimulatedClient> clients, int numSenders,
+            final int numMessages) throws InterruptedException {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        ArrayList<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < numSenders; i++) {
+            final SimulatedClient client = clients.get(i);
+            Thread sender = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        client.send(new ChannelCreateEvent(client.username, -1, client.username,
+                                new HashSet<String>(), null));
+                        int channelId = ((ChannelCreateEvent) client.await(ChannelCreateEvent.class, 0))
+                                .getChannelId();
+                        for (int nonce = 1; nonce <= numMessages; nonce++) {
+                            long start = System.nanoTime();
+                            client.send(new MessageSentEvent(client.username,
+                                    new Message("stress " + nonce, client.username, -1, "now", channelId), nonce));
+                            client.await(MessageSentEvent.class, nonce);
+                            latencies.record(System.nanoTime() - start);
+                        }
+                    } catch (IOException | ClassNotFoundException e) {
+                        System.out.println(client.username + " stopped sending: " + e);
+                    }
+                }
+            });
+            sender.start();
+            senders.add(sender);
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        return latencies;
+    }
+
+    /**
+     * Runs a server in this process, for {@link #runMode} to measure. It reports
+     * on itself each time it reads {@code measure}, and stops when it reads
+     * {@code quit}.
+     *
+     * @param mode the server's mode.
+     * @throws IOException if the commands could not be read.
+     */
+    private static void runServer(String mode) throws IOException {
+        if (mode.equals("virtual") && !WorkerThreads.enableVirtualThreads()) {
+            System.out.println(REPORT + "virtual threads need Java 21 or later");
+            System.exit(1);
+        }
+        final ChatServer chatServer = new ChatServer(mode.equals("nio"));
+        // the simulated clients never answer heartbeats, and send faster than people
+        chatServer.setHeartbeat(TimeUnit.HOURS.toMillis(1), TimeUnit.HOURS.toMillis(2));
+        chatServer.setRateLimit(MessageSentEvent.class, 1000000, 1000000);
+        chatServer.setRateLimit(ChannelCreateEvent.class, 1000000, 1000000);
+        Thread serverThread = new Thread(new Runnable() {
+            public void run() {
+                chatServer.go();
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+        System.out.println(REPORT + "ready");
+
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in));
+        String command;
+        while ((command = commands.readLine()) != null && !command.equals("quit")) {
+            if (command.equals("measure")) {
+                Runtime runtime = Runtime.getRuntime();
+                for (int i = 0; i < 3; i++) {
+                    System.gc();
+                }
+                System.out.println(REPORT + "measured " + (runtime.totalMemory() - runtime.freeMemory()) + " "
+                        + StressTest.findResidentKilobytes() + " "
+                        + ManagementFactory.getThreadMXBean().getThreadCount() + " "
+                        + chatServer.getCurUsers().size());
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Deletes a file, or a folder and everything in it.
+     *
+     * @param file the file or folder.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                StressTest.delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Retrieves how much memory this process has resident, where the system
+     * reports it.
+     *
+     * @return the resident memory in kilobytes, or 0 if it is not known.
+     */
+    private static long findResidentKilobytes() {
+        File status = new File("/proc/self/status");
+        if (!status.exists()) {
+            return 0;
+        }
+        try {
+            for (String line : Files.readAllLines(status.toPath())) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * A client that logs in and then only does what the test tells it to.
+     */
+    private static class SimulatedClient {
+        /** The client's username. */
+        private String username;
+        /** The connection to the server. */
+        private Socket socket;
+        /** The stream from the server. */
+        private DataInputStream input;
+        /** The stream to the server. */
+        private DataOutputStream output;
+        /** The codec the server chose. */
+        private WireCodec codec;
+
+        /**
+         * Constructs a new {@code SimulatedClient}, connects it and logs it in as
+         * a new user.
+         *
+         * @param username the client's username.
+         * @throws IOException            if the client could not connect or log in.
+         * @throws ClassNotFoundException if the server sent an unknown event.
+         */
+        SimulatedClient(String username) throws IOException, ClassNotFoundException {
+            this.username = username;
+            this.socket = new Socket("127.0.0.1", ChatServer.PORT);
+            this.socket.setTcpNoDelay(true);
+            // small buffers, since there are thousands of these
+            this.input = new DataInputStream(new BufferedInputStream(this.socket.getInputStream(), 512));
+            this.output = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream(), 512));
+            this.codec = Handshake.negotiate(this.input, this.output, new WireCodec[] { Handshake.BINARY });
+            this.send(new ClientLoginEvent(username, true, username, "stress"));
+            this.await(AuthSucceedEvent.class, 0);
+        }
+
+        /**
+         * Sends an event to the server.
+         *
+         * @param event the event.
+         * @throws IOException if the event could not be sent.
+         */
+        void send(SerializableEvent event) throws IOException {
+            FrameCodec.writeEvent(this.output, event, this.codec);
+            this.output.flush();
+        }
+
+        /**
+         * Reads events from the server until one of the given class arrives.
+         *
+         * @param eventClass the class of event to wait for.
+         * @param nonce      the nonce a {@code MessageSentEvent} must have.
+         * @return the event.
+         * @throws IOException            if the connection failed.
+         * @throws ClassNotFoundException if the server sent an unknown event.
+         */
+        SerializableEvent await(Class<? extends SerializableEvent> eventClass, long nonce)
+                throws IOException, ClassNotFoundException {
+            while (true) {
+                SerializableEvent event = FrameCodec.readEvent(this.input, this.codec);
+                if (eventClass.isInstance(event)
+                        && (!(event instanceof MessageSentEvent) || ((MessageSentEvent) event).getNonce() == nonce)) {
+                    return event;
+                }
+            }
+        }
+
+        /**
+         * Disconnects the client.
+         */
+        void close() {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
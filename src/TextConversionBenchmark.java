@@ -0,0 +1,106 @@
+import java.util.HashMap;
+import java.util.Random;
+
+import duberchat.server.TextConverter;
+
+/**
+ * This class benchmarks converting emoticons and other text conversions in
+ * messages, as the server does with every message sent.
+ * <p>
+ * It times the server's {@code TextConverter} against the conversion the server
+ * used to do, which split each message on spaces, looked every word up in the
+ * conversion table, and joined the words back together by concatenating
+ * strings. Each is run on a short chatty message with emoticons, a plain
+ * message with nothing to convert, and a long message, using the server's
+ * default conversions. Pass {@code iterations=<n>} to change how many times each
+ * message is converted per round.
+ */
+public class TextConversionBenchmark {
+    /** The number of times each message is converted per round by default. */
+    public static final int DEFAULT_ITERATIONS = 200000;
+    /** The number of rounds, the first few to warm up. */
+    private static final int ROUNDS = 5;
+
+    /** What the old conversion does its lookups in. */
+    private static HashMap<String, String> conversions;
+
+    /**
+     * Main
+     *
+     * @param args parameters from command line
+     */
+    public static void main(String[] args) {
+        int iterations = DEFAULT_ITERATIONS;
+        for (String arg : args) {
+            if (arg.toLowerCase().startsWith("iterations=")) {
+                try {
+                    iterations = Integer.parseInt(arg.substring("iterations=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring " + arg + "; it must be a number.");
+                }
+            } else {
+                System.out.println("Ignoring " + arg + "; it is not a setting.");
+            }
+        }
+
+        conversions = TextConverter.getDefaultConversions();
+        TextConverter converter = new TextConverter(conversions);
+
+        String[] words = { "hello", "there", ":)", "what's", "up", "<3", "lol", "ok", "the", "a", ":D" };
+        Random random = new Random(1);
+        StringBuilder chatty = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            chatty.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        StringBuilder longMessage = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longMessage.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        String[] names = { "40 words with emoticons", "80 characters, nothing to convert", "1000 words" };
+        String[] messages = { chatty.toString().trim(),
+                "just a normal message with nothing to convert in it at all, about eighty chars",
+                longMessage.toString().trim() };
+        // the long message takes far longer, so it is converted less often
+        int[] numConversions = { iterations, iterations, Math.max(iterations / 100, 1) };
+
+        long numChars = 0;
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ((round < ROUNDS) ? " (warming up)" : "") + ":");
+            for (int i = 0; i < messages.length; i++) {
+                long start = System.nanoTime();
+                for (int j = 0; j < numConversions[i]; j++) {
+                    numChars += TextConversionBenchmark.convertByWords(messages[i]).length();
+                }
+                double wordsNanos = (System.nanoTime() - start) / (double) numConversions[i];
+
+                start = System.nanoTime();
+                for (int j = 0; j < numConversions[i]; j++) {
+                    numChars += converter.convert(messages[i]).length();
+                }
+                double trieNanos = (System.nanoTime() - start) / (double) numConversions[i];
+                System.out.printf("  %-34s split and concatenate %9.0f ns, trie %9.0f ns%n", names[i] + ":",
+                        wordsNanos, trieNanos);
+            }
+        }
+        // printed so that the conversions can't be optimized away
+        System.out.println(numChars + " characters converted.");
+    }
+
+    /**
+     * Converts a message the way the server used to.
+     *
+     * @param message the message to convert.
+     * @return the converted message.
+     */
+    private static String convertByWords(String message) {
+        String[] words = message.split(" ");
+        String processedMsg = "";
+        for (String word : words) {
+            if (conversions.containsKey(word)) {
+                word = conversions.get(word);
+            }
+            processedMsg += word + " ";
+        }
+        return processedMsg; // the old trim() never took effect
+    }
+}
@@ -1,5 +1,9 @@
 package duberchat.chatutil;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -10,6 +14,15 @@ import java.util.LinkedHashMap;
  * A {@code Channel} represents a single chat channel, with all related information.
  * <p>
  * Each client is associated with as many channels as their user belongs to.
+ * <p>
+ * A channel's messages are kept in a {@link MessageStore}, indexed by message
+ * id, so looking up, editing or deleting a message by id never scans the
+ * channel's history. Channels are still serialized with their messages as a
+ * plain list, oldest first, as they always have been.
+ * <p>
+ * A channel also remembers the {@link duberchat.events.SequencedEvent sequence
+ * number} of the last event applied to it, so a client can tell when it has
+ * missed some of the channel's events.
  * 
  * <p>
  * Since <b>2020-12-04</b>.
@@ -26,11 +39,23 @@ public class Channel implements Serializable {
     /** THe amount of messages that can be locally saved, by default. */
     public static final int LOCAL_SAVE_AMT = MESSAGE_CLUSTER_AMT;
 
+    /** The fields written when a channel is serialized. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("messageClusters", int.class),
+        new ObjectStreamField("messages", ArrayList.class),
+        new ObjectStreamField("users", LinkedHashMap.class),
+        new ObjectStreamField("adminUsers", HashSet.class),
+        new ObjectStreamField("channelName", String.class),
+        new ObjectStreamField("channelId", int.class),
+        new ObjectStreamField("totalMessages", int.class),
+        new ObjectStreamField("sequence", long.class)
+    };
+
     /** A count of all the message clusters this local channel has loaded. */
     private int messageClusters;
 
-    /** A collection of messages with newest messages being at the top. */
-    private ArrayList<Message> messages;
+    /** This channel's messages, by id. */
+    private transient MessageStore messages;
     /** A username-user object map of users in this channel. */
     private LinkedHashMap<String, User> users;
     /** A list of users that have admin permissions in this channel. */
@@ -41,6 +66,8 @@ public class Channel implements Serializable {
     private int channelId;
     /** The total number of messags sent to this channel. */
     private int totalMessages;
+    /** The sequence number of the last event applied to this channel. */
+    private long sequence;
 
     /**
      * Constructs a new Channel object.
@@ -55,7 +82,7 @@ public class Channel implements Serializable {
      */
     public Channel(String channelName, int channelId, LinkedHashMap<String, User> users,
                    HashSet<User> adminUsers, int totalMessages) {
-        this.messages = new ArrayList<>(LOCAL_SAVE_AMT);
+        this.messages = new MessageStore();
         this.users = users;
         this.adminUsers = adminUsers;
 
@@ -74,9 +101,9 @@ public class Channel implements Serializable {
      * @param channel the channel to copy.
      */
     public Channel(Channel channel) {
-        this.messages = new ArrayList<>(LOCAL_SAVE_AMT);
+        this.messages = new MessageStore();
         for (Message m : channel.getMessages()) {
-            this.messages.add(new Message(m));
+            this.messages.put(new Message(m));
         }
 
         this.users = new LinkedHashMap<>();
@@ -96,6 +123,7 @@ public class Channel implements Serializable {
 
         this.totalMessages = channel.getTotalMessages();
         this.messageClusters = channel.getMessageClusters();
+        this.sequence = channel.getSequence();
     }
 
     /**
@@ -113,8 +141,9 @@ public class Channel implements Serializable {
     public boolean loadMessageCluster(ArrayList<Message> messageCluster) {
         if (messageCluster.size() <= MESSAGE_CLUSTER_AMT) {
             this.messageClusters++;
-            messageCluster.addAll(this.messages);
-            this.messages = messageCluster;
+            for (Message message : messageCluster) {
+                this.messages.put(message);
+            }
             return true;
         }
 
@@ -123,11 +152,14 @@ public class Channel implements Serializable {
 
     /**
      * Retrieves all this channel's messages.
+     * <p>
+     * The list is a copy; changes to it do not change this channel. Use the
+     * methods that take a message id to change messages.
      * 
-     * @return an {@code ArrayList} with this channel's messages.
+     * @return an {@code ArrayList} with this channel's messages, oldest first.
      */
     public ArrayList<Message> getMessages() {
-        return this.messages;
+        return this.messages.getAll();
     }
 
     /**
@@ -136,7 +168,96 @@ public class Channel implements Serializable {
      * @param messages the new list of messages.
      */
     public void setMessages(ArrayList<Message> messages) {
-        this.messages = messages;
+        this.messages.clear();
+        for (Message message : messages) {
+            this.messages.put(message);
+        }
+    }
+
+    /**
+     * Retrieves a message by id.
+     * 
+     * @param messageId the id of the message.
+     * @return the message, or {@code null} if this channel has no message with
+     *         that id.
+     */
+    public Message getMessage(int messageId) {
+        return this.messages.get(messageId);
+    }
+
+    /**
+     * Puts a message in this channel at its id, replacing the message with the
+     * same id if there is one. Unlike {@link #addMessage(Message)}, no older
+     * messages are dropped.
+     * 
+     * @param message the message to put.
+     * @return the message that was replaced, or {@code null} if there was none.
+     */
+    public Message putMessage(Message message) {
+        return this.messages.put(message);
+    }
+
+    /**
+     * Removes a message by id.
+     * 
+     * @param messageId the id of the message.
+     * @return the removed message, or {@code null} if this channel has no message
+     *         with that id.
+     */
+    public Message removeMessage(int messageId) {
+        return this.messages.remove(messageId);
+    }
+
+    /**
+     * Removes every message sent by a user.
+     * 
+     * @param username the username of the user.
+     */
+    public void removeMessagesFrom(String username) {
+        for (Message message : this.messages.getAll()) {
+            if (message.getSenderUsername().equals(username)) {
+                this.messages.remove(message.getMessageId());
+            }
+        }
+    }
+
+    /**
+     * Retrieves up to a number of the messages sent before some message.
+     * 
+     * @param messageId the id of the message to start before.
+     * @param count     the most messages to retrieve.
+     * @return the messages, oldest first.
+     */
+    public ArrayList<Message> getMessagesBefore(int messageId, int count) {
+        return this.messages.getBefore(messageId, count);
+    }
+
+    /**
+     * Retrieves up to a number of this channel's newest messages.
+     * 
+     * @param count the most messages to retrieve.
+     * @return the messages, oldest first.
+     */
+    public ArrayList<Message> getNewestMessages(int count) {
+        return this.messages.getNewest(count);
+    }
+
+    /**
+     * Retrieves this channel's oldest message.
+     * 
+     * @return the oldest message, or {@code null} if there are none.
+     */
+    public Message getOldestMessage() {
+        return this.messages.getOldest();
+    }
+
+    /**
+     * Retrieves the number of messages this channel holds.
+     * 
+     * @return the number of messages.
+     */
+    public int getNumMessages() {
+        return this.messages.size();
     }
 
     /**
@@ -147,18 +268,25 @@ public class Channel implements Serializable {
      * any additional message clusters that have been loaded), the most recent
      * message will be deleted.
      * <p>
-     * The most recent message will be added to the tail of the arraylist.
+     * The most recent message will be added to the tail of the arraylist. A
+     * message this channel already has (sent again after a reconnect, say) just
+     * replaces its copy, without pushing any other message out.
      * 
      * @param message a {@code Message} object to add.
      */
     public void addMessage(Message message) {
+        if (this.messages.get(message.getMessageId()) != null) {
+            this.messages.put(message);
+            return;
+        }
+
         // no matter what end we adjust, we'll still have to adjust indexes
         // adding to the top allows us to use addAll
         if (this.messages.size() >= LOCAL_SAVE_AMT + (messageClusters * MESSAGE_CLUSTER_AMT)) {
-            this.messages.remove(0);
+            this.messages.removeOldest();
         }
 
-        this.messages.add(message);
+        this.messages.put(message);
     }
 
     /**
@@ -299,6 +427,24 @@ public class Channel implements Serializable {
         this.totalMessages = newTotal;
     }
 
+    /**
+     * Gets the sequence number of the last event applied to this channel.
+     * 
+     * @return the sequence number, or 0 if no event has been.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Sets the sequence number of the last event applied to this channel.
+     * 
+     * @param sequence the new sequence number.
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
     /**
      * Gets the total # of message clusters in this channel.
      * 
@@ -317,6 +463,52 @@ public class Channel implements Serializable {
         this.messageClusters = newNum;
     }
 
+    /**
+     * Custom writeObject method, which writes the messages as a list, oldest
+     * first, so that channels are written the same way they always have been.
+     * 
+     * @param out The output stream writing out this channel.
+     * @throws IOException
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("messageClusters", this.messageClusters);
+        fields.put("messages", this.messages.getAll());
+        fields.put("users", this.users);
+        fields.put("adminUsers", this.adminUsers);
+        fields.put("channelName", this.channelName);
+        fields.put("channelId", this.channelId);
+        fields.put("totalMessages", this.totalMessages);
+        fields.put("sequence", this.sequence);
+        out.writeFields();
+    }
+
+    /**
+     * Custom readObject method, which indexes the list of messages that was
+     * written by id.
+     * 
+     * @param in The input stream reading in this channel.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.messageClusters = fields.get("messageClusters", 0);
+        this.users = (LinkedHashMap<String, User>) fields.get("users", null);
+        this.adminUsers = (HashSet<User>) fields.get("adminUsers", null);
+        this.channelName = (String) fields.get("channelName", null);
+        this.channelId = fields.get("channelId", 0);
+        this.totalMessages = fields.get("totalMessages", 0);
+        this.sequence = fields.get("sequence", 0L);
+
+        this.messages = new MessageStore();
+        ArrayList<Message> messageList = (ArrayList<Message>) fields.get("messages", null);
+        if (messageList != null) {
+            this.setMessages(messageList);
+        }
+    }
+
     /**
      * Custom equals method because we need to know if the values are equal, not the references.
      * 
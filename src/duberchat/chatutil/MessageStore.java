@@ -0,0 +1,277 @@
+package duberchat.chatutil;
+
+import java.util.ArrayList;
+
+/**
+ * A {@code MessageStore} holds a channel's messages, indexed by message id.
+ * <p>
+ * Message ids are handed out one after another in each channel, so the store
+ * keeps one slot per id, in a ring that can grow at either end: new messages
+ * are added at the newest end, and older message clusters loaded by clients at
+ * the oldest end. Finding, editing or deleting a message by id is therefore a
+ * single array lookup. A deleted message leaves a tombstone (an empty slot)
+ * behind rather than shifting everything after it; tombstones at either end of
+ * the ring are dropped straight away.
+ * <p>
+ * Like the rest of a {@link Channel}, a store is not thread safe; the server
+ * only touches a channel's store while holding the channel's lock.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ */
+public class MessageStore {
+    /** The number of slots a new store starts with. */
+    private static final int INITIAL_CAPACITY = 32;
+
+    /** The slots, one per id, with {@code null} for ids with no message. */
+    private Message[] slots;
+    /** The index in {@code slots} of the oldest id's slot. */
+    private int head;
+    /** The oldest id with a slot. */
+    private int firstId;
+    /** The number of slots in use, from the oldest id to the newest. */
+    private int numSlots;
+    /** The number of messages held, ie. the slots in use without tombstones. */
+    private int numMessages;
+
+    /**
+     * Constructs a new, empty {@code MessageStore}.
+     */
+    public MessageStore() {
+        this.slots = new Message[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Retrieves a message by id.
+     *
+     * @param messageId the id of the message.
+     * @return the message, or {@code null} if there is no message with that id.
+     */
+    public Message get(int messageId) {
+        if (!this.hasSlot(messageId)) {
+            return null;
+        }
+        return this.slots[this.findSlot(messageId)];
+    }
+
+    /**
+     * Puts a message in the slot for its id, replacing any message already there.
+     *
+     * @param message the message to put.
+     * @return the message that was replaced, or {@code null} if there was none.
+     */
+    public Message put(Message message) {
+        int messageId = message.getMessageId();
+        if (this.numSlots == 0) {
+            this.head = 0;
+            this.firstId = messageId;
+            this.numSlots = 1;
+        } else if (messageId < this.firstId) {
+            int numNewSlots = this.firstId - messageId;
+            this.ensureCapacity(this.numSlots + numNewSlots);
+            this.head = Math.floorMod(this.head - numNewSlots, this.slots.length);
+            this.firstId = messageId;
+            this.numSlots += numNewSlots;
+        } else if (messageId >= this.firstId + this.numSlots) {
+            int numSlotsNeeded = messageId - this.firstId + 1;
+            this.ensureCapacity(numSlotsNeeded);
+            this.numSlots = numSlotsNeeded;
+        }
+
+        int slot = this.findSlot(messageId);
+        Message replaced = this.slots[slot];
+        this.slots[slot] = message;
+        if (replaced == null) {
+            this.numMessages++;
+        }
+        return replaced;
+    }
+
+    /**
+     * Removes a message by id, leaving a tombstone in its slot.
+     *
+     * @param messageId the id of the message.
+     * @return the removed message, or {@code null} if there was no message with
+     *         that id.
+     */
+    public Message remove(int messageId) {
+        if (!this.hasSlot(messageId)) {
+            return null;
+        }
+        int slot = this.findSlot(messageId);
+        Message removed = this.slots[slot];
+        if (removed == null) {
+            return null;
+        }
+        this.slots[slot] = null;
+        this.numMessages--;
+        this.dropEndTombstones();
+        return removed;
+    }
+
+    /**
+     * Removes the oldest message.
+     *
+     * @return the removed message, or {@code null} if the store is empty.
+     */
+    public Message removeOldest() {
+        if (this.numMessages == 0) {
+            return null;
+        }
+        // the oldest slot is never a tombstone
+        return this.remove(this.firstId);
+    }
+
+    /**
+     * Retrieves the oldest message.
+     *
+     * @return the oldest message, or {@code null} if the store is empty.
+     */
+    public Message getOldest() {
+        if (this.numMessages == 0) {
+            return null;
+        }
+        return this.slots[this.head];
+    }
+
+    /**
+     * Retrieves the newest message.
+     *
+     * @return the newest message, or {@code null} if the store is empty.
+     */
+    public Message getNewest() {
+        if (this.numMessages == 0) {
+            return null;
+        }
+        return this.get(this.firstId + this.numSlots - 1);
+    }
+
+    /**
+     * Retrieves up to a number of messages older than some id, walking back from
+     * that id and skipping tombstones.
+     *
+     * @param messageId the id to start before, which need not have a message.
+     * @param count     the most messages to retrieve.
+     * @return the messages, oldest first.
+     */
+    public ArrayList<Message> getBefore(int messageId, int count) {
+        ArrayList<Message> before = new ArrayList<>(count);
+        int id = Math.min(messageId - 1, this.firstId + this.numSlots - 1);
+        while (before.size() < count && id >= this.firstId) {
+            Message message = this.slots[this.findSlot(id)];
+            if (message != null) {
+                before.add(message);
+            }
+            id--;
+        }
+
+        // collected newest first
+        for (int i = 0, j = before.size() - 1; i < j; i++, j--) {
+            Message swap = before.get(i);
+            before.set(i, before.get(j));
+            before.set(j, swap);
+        }
+        return before;
+    }
+
+    /**
+     * Retrieves up to a number of the newest messages.
+     *
+     * @param count the most messages to retrieve.
+     * @return the messages, oldest first.
+     */
+    public ArrayList<Message> getNewest(int count) {
+        return this.getBefore(this.firstId + this.numSlots, count);
+    }
+
+    /**
+     * Retrieves every message.
+     *
+     * @return the messages, oldest first.
+     */
+    public ArrayList<Message> getAll() {
+        ArrayList<Message> all = new ArrayList<>(this.numMessages);
+        for (int i = 0; i < this.numSlots; i++) {
+            Message message = this.slots[(this.head + i) % this.slots.length];
+            if (message != null) {
+                all.add(message);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Removes every message.
+     */
+    public void clear() {
+        this.slots = new Message[INITIAL_CAPACITY];
+        this.head = 0;
+        this.numSlots = 0;
+        this.numMessages = 0;
+    }
+
+    /**
+     * Retrieves the number of messages held.
+     *
+     * @return int, the number of messages.
+     */
+    public int size() {
+        return this.numMessages;
+    }
+
+    /**
+     * Checks whether an id lies between the oldest and newest ids.
+     *
+     * @param messageId the id to check.
+     * @return true if the id has a slot.
+     */
+    private boolean hasSlot(int messageId) {
+        return messageId >= this.firstId && messageId < this.firstId + this.numSlots;
+    }
+
+    /**
+     * Finds the index in {@code slots} of an id's slot. The id must have a slot.
+     *
+     * @param messageId the id.
+     * @return the index of the id's slot.
+     */
+    private int findSlot(int messageId) {
+        return (this.head + (messageId - this.firstId)) % this.slots.length;
+    }
+
+    /**
+     * Drops tombstones at either end, so that the oldest and newest slots always
+     * hold a message.
+     */
+    private void dropEndTombstones() {
+        while (this.numSlots > 0 && this.slots[this.head] == null) {
+            this.head = (this.head + 1) % this.slots.length;
+            this.firstId++;
+            this.numSlots--;
+        }
+        while (this.numSlots > 0 && this.slots[this.findSlot(this.firstId + this.numSlots - 1)] == null) {
+            this.numSlots--;
+        }
+    }
+
+    /**
+     * Grows the ring, if needed, so it has at least some number of slots. The
+     * slots in use are moved to the start of the new ring.
+     *
+     * @param capacity the number of slots needed.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.slots.length) {
+            return;
+        }
+        Message[] grown = new Message[Math.max(capacity, this.slots.length * 2)];
+        for (int i = 0; i < this.numSlots; i++) {
+            grown[i] = this.slots[(this.head + i) % this.slots.length];
+        }
+        this.slots = grown;
+        this.head = 0;
+    }
+}
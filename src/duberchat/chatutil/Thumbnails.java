@@ -0,0 +1,89 @@
+package duberchat.chatutil;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * The {@code Thumbnails} class scales profile pictures down to the sizes the
+ * GUI draws them at.
+ * <p>
+ * The server renders every {@link #SIZES standard size} once, when a picture is
+ * stored, so clients can fetch a small thumbnail instead of the full picture
+ * and draw it without scaling it again.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ */
+public class Thumbnails {
+    /** The size of the pictures beside messages and friends. */
+    public static final int SMALL = 32;
+    /** The size of the picture on the profile button. */
+    public static final int MEDIUM = 48;
+    /** The size of the pictures on profile frames. */
+    public static final int LARGE = 128;
+    /** Every standard size, smallest first. */
+    public static final int[] SIZES = { SMALL, MEDIUM, LARGE };
+
+    private Thumbnails() {
+    }
+
+    /**
+     * Checks whether a size is one of the standard sizes.
+     *
+     * @param size the width and height, in pixels.
+     * @return true if the size is a standard size.
+     */
+    public static boolean isStandardSize(int size) {
+        for (int standardSize : SIZES) {
+            if (size == standardSize) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scales an image to a square of the given size.
+     * <p>
+     * Large images are halved repeatedly before the last step, since scaling
+     * down by more than half in one bilinear step skips over pixels and looks
+     * grainy.
+     *
+     * @param image the image to scale.
+     * @param size  the width and height of the result, in pixels.
+     * @return the scaled image.
+     */
+    public static BufferedImage scale(BufferedImage image, int size) {
+        BufferedImage scaled = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(size, width / 2);
+            height = Math.max(size, height / 2);
+            scaled = Thumbnails.draw(scaled, width, height);
+        } while (width != size || height != size);
+        return scaled;
+    }
+
+    /**
+     * Draws an image at a new size, in a single bilinear step.
+     *
+     * @param image  the image to draw.
+     * @param width  the width of the result, in pixels.
+     * @param height the height of the result, in pixels.
+     * @return the drawn image.
+     */
+    private static BufferedImage draw(BufferedImage image, int width, int height) {
+        BufferedImage drawn = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = drawn.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return drawn;
+    }
+}
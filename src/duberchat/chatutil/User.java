@@ -1,17 +1,13 @@
 package duberchat.chatutil;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
-import java.awt.image.WritableRaster;
 import java.io.Serializable;
 import java.util.HashSet;
-import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 
 import javax.imageio.ImageIO;
 
@@ -20,6 +16,11 @@ import javax.imageio.ImageIO;
  * <p>
  * Each client is associated with one user. The user is also used as an identifier and 
  * passed around as client information.
+ * <p>
+ * A user's profile picture is not stored in the user itself. Users only carry the
+ * {@link #getPfpHash() hash} of their picture, which the server keeps in its image
+ * store and clients fetch, once per hash, when they need to draw it. This keeps
+ * users small, since they are copied and sent around constantly.
  * 
  * <p>
  * Since <b>2020-12-04</b>.
@@ -48,8 +49,10 @@ public class User implements Serializable {
     private long hashedPassword;
     /** The user's status, as an int constant. */
     private int status;
-    /** The user's profile picture. */
+    /** The user's profile picture, if it has been loaded. */
     private transient BufferedImage pfp;
+    /** The hash of the user's profile picture in the image store. */
+    private String pfpHash;
     /** The format that the user's profile picture is in. */
     private String pfpFormat;
     /** The channels this user is in. */
@@ -59,7 +62,7 @@ public class User implements Serializable {
 
     /**
      * Constructor for a user when no profile picture exists, used when first making
-     * an account.
+     * an account. The server assigns the default profile picture's hash afterwards.
      * 
      * @param username The user's username.
      * @param hashedPassword The user's password, hashed.
@@ -69,19 +72,38 @@ public class User implements Serializable {
         this.hashedPassword = hashedPassword;
 
         this.status = ONLINE;
-        try {
-            this.pfp = ImageIO.read(new File("data/images/default.png"));
-            this.pfpFormat = "png";
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        this.pfpFormat = "png";
         this.channels = new HashSet<>();
         this.friends = new HashSet<>();
     }
 
+    /**
+     * Constructor for a user given every one of its fields, used when decoding a
+     * user that was received over the network.
+     *
+     * @param username The user's username.
+     * @param hashedPassword The user's password, hashed.
+     * @param status The user's status, as an int constant.
+     * @param pfpHash The hash of the user's profile picture.
+     * @param pfpFormat The format of the user's profile picture.
+     * @param channels The ids of the channels this user is in.
+     * @param friends The usernames of this user's friends.
+     */
+    public User(String username, long hashedPassword, int status, String pfpHash, String pfpFormat,
+                HashSet<Integer> channels, HashSet<String> friends) {
+        this.username = username;
+        this.hashedPassword = hashedPassword;
+        this.status = status;
+        this.pfpHash = pfpHash;
+        this.pfpFormat = pfpFormat;
+        this.channels = channels;
+        this.friends = friends;
+    }
+
     /**
      * Constructor for a user given another user. In effect, makes a deep copy of
-     * the given user.
+     * the given user. Profile pictures are never drawn on, so the copy shares the
+     * given user's loaded picture rather than copying it.
      * 
      * @param user The user to copy from.
      */
@@ -89,26 +111,13 @@ public class User implements Serializable {
         this.username = user.getUsername();
         this.hashedPassword = user.getHashedPassword();
         this.channels = new HashSet<>(user.getChannels());
-        this.pfp = copyImage(user.getPfp());
+        this.pfp = user.getPfp();
+        this.pfpHash = user.getPfpHash();
         this.pfpFormat = user.getPfpFormat();
         this.status = user.getStatus();
         this.friends = new HashSet<>(user.getFriends());
     }
 
-    /**
-     * Deep copies a {@code BufferedImage} and returns the copied image.
-     * 
-     * @param image the {@code BufferedImage} to copy.
-     * @return a copied version of the provided image.
-     * @see java.awt.image.BufferedImage
-     */
-    private static BufferedImage copyImage(BufferedImage image) {
-        ColorModel cm = image.getColorModel();
-        boolean isAlphaPremultiplied = cm.isAlphaPremultiplied();
-        WritableRaster raster = image.copyData(image.getRaster().createCompatibleWritableRaster());
-        return new BufferedImage(cm, raster, isAlphaPremultiplied, null);
-    }
-
     /**
      * Checks if this user's profile picture is the same as some other image.
      * 
@@ -166,35 +175,26 @@ public class User implements Serializable {
     }
 
     /**
-     * Custom writeObject method because Images are not serializable.
+     * Custom readObject method so users saved before the image store existed, which
+     * have no hash and carry their encoded profile picture after their fields, can
+     * still be read. Their picture is loaded into {@link #getPfp()}, for the server
+     * to move into its image store.
      * 
-     * @param out The output stream writing out this event.
-     * @throws IOException
-     */
-    private void writeObject(ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
-
-        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
-        ImageIO.write(this.pfp, this.pfpFormat, bufferStream);
-
-        byte[] bufferedBytes = bufferStream.toByteArray();
-        out.writeObject(bufferedBytes);
-        // ImageIO.write(this.pfp, this.pfpFormat, out);
-    }
- 
-    /**
-     * Custom readObject method because Images are not serializable.
-     * 
-     * @param in The input stream reading in this event.
+     * @param in The input stream reading in this user.
      * @throws IOException
      * @throws ClassNotFoundException
      */
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
 
-        byte[] bytes = (byte[]) in.readObject();
-        this.pfp = ImageIO.read(new ByteArrayInputStream(bytes));
-        // this.pfp = ImageIO.read(in);
+        if (this.pfpHash == null) {
+            try {
+                byte[] bytes = (byte[]) in.readObject();
+                this.pfp = ImageIO.read(new ByteArrayInputStream(bytes));
+            } catch (OptionalDataException e) {
+                // No picture was written after the fields.
+            }
+        }
     }
 
     /**
@@ -323,6 +323,24 @@ public class User implements Serializable {
         this.pfp = pfp;
     }
 
+    /**
+     * Retrieves the hash of this user's profile picture in the image store.
+     * 
+     * @return String, the profile picture's hash, or {@code null} if it has none.
+     */
+    public String getPfpHash() {
+        return this.pfpHash;
+    }
+
+    /**
+     * Assigns the hash of this user's profile picture in the image store.
+     * 
+     * @param pfpHash The new profile picture's hash.
+     */
+    public void setPfpHash(String pfpHash) {
+        this.pfpHash = pfpHash;
+    }
+
     /**
      * Retrieves the file format of this user's profile picture.
      * 
@@ -0,0 +1,99 @@
+package duberchat.chatutil;
+
+import java.lang.reflect.Method;
+
+/**
+ * The {@code WorkerThreads} class starts the long-lived worker threads used by
+ * both the client and the server, either as ordinary platform threads or as
+ * virtual threads.
+ * <p>
+ * Virtual threads are cheap enough to give every blocking connection its own
+ * thread even with thousands of clients, without rewriting any of the blocking
+ * stream code. They are only available on Java 21 and up, so they are looked up
+ * reflectively; on older runtimes, or until
+ * {@link #enableVirtualThreads() enabled}, platform threads are used.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ */
+public class WorkerThreads {
+    /** Whether new workers should be started on virtual threads. */
+    private static volatile boolean useVirtualThreads = false;
+    /** {@code Thread.ofVirtual()}, or {@code null} if this runtime lacks it. */
+    private static Method ofVirtual;
+    /** {@code Thread.Builder.name(String)}, or {@code null} if this runtime lacks it. */
+    private static Method builderName;
+    /** {@code Thread.Builder.unstarted(Runnable)}, or {@code null} if this runtime lacks it. */
+    private static Method builderUnstarted;
+
+    static {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class);
+            builderUnstarted = builderClass.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+    }
+
+    private WorkerThreads() {
+    }
+
+    /**
+     * Checks whether this runtime supports virtual threads.
+     *
+     * @return true if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Makes every worker started from now on run on a virtual thread, if this
+     * runtime supports them.
+     *
+     * @return true if virtual threads will be used, false if this runtime does
+     *         not support them and platform threads will be used instead.
+     */
+    public static boolean enableVirtualThreads() {
+        useVirtualThreads = WorkerThreads.isVirtualThreadSupported();
+        return useVirtualThreads;
+    }
+
+    /**
+     * Checks whether new workers are started on virtual threads.
+     *
+     * @return true if new workers are started on virtual threads.
+     */
+    public static boolean isUsingVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Creates and starts a new worker thread.
+     *
+     * @param name the name of the worker thread.
+     * @param task the task the worker runs.
+     * @return the started thread.
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread worker = null;
+        if (useVirtualThreads) {
+            try {
+                Object builder = builderName.invoke(ofVirtual.invoke(null), name);
+                worker = (Thread) builderUnstarted.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                worker = null;
+            }
+        }
+        if (worker == null) {
+            worker = new Thread(task, name);
+        }
+        worker.start();
+        return worker;
+    }
+}
@@ -0,0 +1,274 @@
+package duberchat.client;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+import duberchat.chatutil.Thumbnails;
+import duberchat.chatutil.User;
+import duberchat.events.ClientRequestPfpEvent;
+
+/**
+ * The {@code AvatarCache} class holds the profile pictures this client draws,
+ * already scaled to the size they are drawn at.
+ * <p>
+ * Users only carry the hash of their profile picture. The first time a picture
+ * is needed at some size, the cache asks the server for the thumbnail of that
+ * size, which the server rendered when the picture was uploaded, and hands back
+ * a placeholder until it arrives, at which point the main menu is reloaded.
+ * From then on the same icon is handed out every time, so redrawing a channel
+ * never scales or decodes a picture again. A hash always names the same
+ * picture, so a picture shared by many users (such as the default one) is only
+ * fetched once per size.
+ * <p>
+ * Icons are kept in least recently used order, and the least recently used
+ * ones are dropped whenever the icons held take up more than the memory budget.
+ * A dropped icon is simply fetched again the next time it is drawn. A user's
+ * old icons are dropped as soon as they change their picture.
+ * <p>
+ * The cache is used by the GUI and by the thread reading events, so all of its
+ * methods are synchronized.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public class AvatarCache {
+    /** The default memory budget, in bytes. */
+    public static final long DEFAULT_BUDGET = 8 * 1024 * 1024;
+    /** The bytes each pixel of a held icon takes up. */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /** The associated client. */
+    private ChatClient client;
+    /** The most memory the held icons may take up, in bytes. */
+    private long budget;
+    /** The memory the held icons take up, in bytes. */
+    private long usedBytes;
+    /** The icons that have arrived, by hash and size, least recently used first. */
+    private LinkedHashMap<String, ImageIcon> icons;
+    /** The hashes and sizes that have been requested but have not arrived. */
+    private HashSet<String> requested;
+    /** The picture shown while a picture is on its way. */
+    private BufferedImage placeholder;
+    /** The placeholder, scaled to each size it has been drawn at. */
+    private HashMap<Integer, ImageIcon> placeholderIcons;
+
+    /**
+     * Constructs a new {@code AvatarCache} with the default memory budget.
+     *
+     * @param client the associated client.
+     */
+    public AvatarCache(ChatClient client) {
+        this(client, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Constructs a new {@code AvatarCache}.
+     *
+     * @param client the associated client.
+     * @param budget the most memory the held icons may take up, in bytes.
+     */
+    public AvatarCache(ChatClient client, long budget) {
+        this.client = client;
+        this.budget = budget;
+        this.icons = new LinkedHashMap<>(16, 0.75f, true);
+        this.requested = new HashSet<>();
+        this.placeholderIcons = new HashMap<>();
+
+        try {
+            this.placeholder = ImageIO.read(new File("data/images/default.png"));
+        } catch (IOException e) {
+            System.out.println("SYSTEM: Could not load the placeholder profile picture.");
+        }
+        if (this.placeholder == null) {
+            this.placeholder = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        }
+    }
+
+    /**
+     * Retrieves a user's profile picture at some size, requesting it from the
+     * server if it is not held.
+     * <p>
+     * Standard sizes are fetched as they are; any other size is scaled from the
+     * next standard size up.
+     *
+     * @param user the user whose profile picture to retrieve.
+     * @param size the width and height to draw the picture at.
+     * @return the user's profile picture, or a placeholder if it has not
+     *         arrived yet.
+     */
+    public synchronized ImageIcon get(User user, int size) {
+        String pfpHash = user.getPfpHash();
+        if (pfpHash == null) {
+            return this.findPlaceholder(size);
+        }
+
+        ImageIcon icon = this.icons.get(AvatarCache.findKey(pfpHash, size));
+        if (icon != null) {
+            return icon;
+        }
+
+        int fetchSize = AvatarCache.findFetchSize(size);
+        ImageIcon fetched = this.icons.get(AvatarCache.findKey(pfpHash, fetchSize));
+        if (fetched != null) {
+            BufferedImage image = (BufferedImage) fetched.getImage();
+            return this.hold(AvatarCache.findKey(pfpHash, size), new ImageIcon(Thumbnails.scale(image, size)));
+        }
+
+        if (this.requested.add(AvatarCache.findKey(pfpHash, fetchSize))) {
+            String username = this.client.getUser().getUsername();
+            this.client.offerEvent(new ClientRequestPfpEvent(username, pfpHash, fetchSize));
+        }
+        return this.findPlaceholder(size);
+    }
+
+    /**
+     * Stores a picture that arrived from the server.
+     *
+     * @param pfpHash  the hash of the picture.
+     * @param size     the size of the picture, or {@code 0} for a full picture.
+     * @param pfpBytes the encoded picture, or {@code null} if the server has no
+     *                 such picture.
+     * @return true if the picture was stored.
+     */
+    public synchronized boolean put(String pfpHash, int size, byte[] pfpBytes) {
+        String key = AvatarCache.findKey(pfpHash, size);
+        if (pfpHash == null || pfpBytes == null || !this.requested.contains(key)) {
+            return false; // keep showing the placeholder; asking again won't help
+        }
+
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(pfpBytes));
+        } catch (IOException e) {
+            System.out.println("SYSTEM: Received an unreadable profile picture.");
+            return false;
+        }
+        if (image == null) {
+            return false;
+        }
+        this.requested.remove(key);
+        this.hold(key, new ImageIcon(image));
+        return true;
+    }
+
+    /**
+     * Drops every icon of a picture, such as a picture a user has just replaced.
+     *
+     * @param pfpHash the hash of the picture.
+     */
+    public synchronized void invalidate(String pfpHash) {
+        if (pfpHash == null) {
+            return;
+        }
+        Iterator<Map.Entry<String, ImageIcon>> iterator = this.icons.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ImageIcon> entry = iterator.next();
+            if (entry.getKey().startsWith(pfpHash)) {
+                this.usedBytes -= AvatarCache.findCost(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the memory the held icons take up.
+     *
+     * @return long, the memory the held icons take up, in bytes.
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Holds an icon, dropping the least recently used icons until the held
+     * icons fit in the budget again.
+     *
+     * @param key  the hash and size of the icon.
+     * @param icon the icon.
+     * @return the icon.
+     */
+    private ImageIcon hold(String key, ImageIcon icon) {
+        ImageIcon replaced = this.icons.put(key, icon);
+        if (replaced != null) {
+            this.usedBytes -= AvatarCache.findCost(replaced);
+        }
+        this.usedBytes += AvatarCache.findCost(icon);
+
+        Iterator<Map.Entry<String, ImageIcon>> iterator = this.icons.entrySet().iterator();
+        while (this.usedBytes > this.budget && iterator.hasNext()) {
+            Map.Entry<String, ImageIcon> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue; // never drop the icon being handed out
+            }
+            this.usedBytes -= AvatarCache.findCost(eldest.getValue());
+            iterator.remove();
+        }
+        return icon;
+    }
+
+    /**
+     * Retrieves the placeholder at some size.
+     *
+     * @param size the width and height to draw the placeholder at.
+     * @return the placeholder icon.
+     */
+    private ImageIcon findPlaceholder(int size) {
+        ImageIcon icon = this.placeholderIcons.get(size);
+        if (icon == null) {
+            icon = new ImageIcon(Thumbnails.scale(this.placeholder, size));
+            this.placeholderIcons.put(size, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * Finds the size to fetch a picture at, to draw it at some size.
+     *
+     * @param size the width and height to draw the picture at.
+     * @return the smallest standard size at least as large, or {@code 0} for the
+     *         full picture if there is none.
+     */
+    private static int findFetchSize(int size) {
+        for (int standardSize : Thumbnails.SIZES) {
+            if (standardSize >= size) {
+                return standardSize;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the key an icon is held under.
+     *
+     * @param pfpHash the hash of the picture.
+     * @param size    the size of the icon.
+     * @return the key of the icon.
+     */
+    private static String findKey(String pfpHash, int size) {
+        return pfpHash + "-" + size;
+    }
+
+    /**
+     * Finds the memory an icon takes up.
+     *
+     * @param icon the icon.
+     * @return the memory the icon takes up, in bytes.
+     */
+    private static long findCost(ImageIcon icon) {
+        return (long) icon.getIconWidth() * icon.getIconHeight() * BYTES_PER_PIXEL;
+    }
+}
@@ -0,0 +1,73 @@
+package duberchat.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@code Backoff} decides how long to wait between attempts at something
+ * that keeps failing, such as connecting to the server.
+ * <p>
+ * The longest wait doubles with each failure, from the first delay up to the
+ * maximum delay, and each wait is picked at random between half of the longest
+ * wait and all of it. The doubling keeps a client from hammering a server that
+ * is down, and the randomness keeps clients that lost the server at the same
+ * moment from all coming back at the same moment. A success resets the waits.
+ * <p>
+ * A backoff is only used by one thread at a time.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public class Backoff {
+    /** The longest wait after the first failure, in milliseconds. */
+    private long firstDelayMillis;
+    /** The longest wait after any failure, in milliseconds. */
+    private long maxDelayMillis;
+    /** The number of failures in a row. */
+    private int numFailures;
+
+    /**
+     * Constructs a new {@code Backoff}.
+     *
+     * @param firstDelayMillis The longest wait after the first failure, in
+     *                         milliseconds.
+     * @param maxDelayMillis   The longest wait after any failure, in milliseconds.
+     */
+    public Backoff(long firstDelayMillis, long maxDelayMillis) {
+        this.firstDelayMillis = Math.max(firstDelayMillis, 1);
+        this.maxDelayMillis = Math.max(maxDelayMillis, this.firstDelayMillis);
+    }
+
+    /**
+     * Counts a failure, and picks how long to wait before trying again.
+     *
+     * @return the time to wait, in milliseconds.
+     */
+    public long nextDelayMillis() {
+        long ceiling = this.maxDelayMillis;
+        // past 30 doublings every sensible delay is capped anyway
+        if (this.numFailures < 30) {
+            ceiling = Math.min(this.firstDelayMillis << this.numFailures, this.maxDelayMillis);
+        }
+        this.numFailures++;
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling - ceiling / 2 + 1);
+    }
+
+    /**
+     * Forgets every failure, after an attempt has succeeded.
+     */
+    public void reset() {
+        this.numFailures = 0;
+    }
+
+    /**
+     * Retrieves the number of failures in a row.
+     *
+     * @return int, the number of failures.
+     */
+    public int getNumFailures() {
+        return this.numFailures;
+    }
+}
@@ -1,20 +1,34 @@
 package duberchat.client;
 
 import java.io.IOException;
-import java.io.EOFException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.net.Socket;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.ArrayList;
 import java.util.HashMap;
 
+import javax.swing.ImageIcon;
+
 import duberchat.chatutil.User;
 import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.AuthFailedEvent;
 import duberchat.events.AuthSucceedEvent;
 import duberchat.events.ChannelAddMemberEvent;
 import duberchat.events.ChannelCreateEvent;
@@ -22,23 +36,36 @@ import duberchat.events.ChannelDeleteEvent;
 import duberchat.events.ChannelDemoteMemberEvent;
 import duberchat.events.ChannelPromoteMemberEvent;
 import duberchat.events.ChannelRemoveMemberEvent;
+import duberchat.events.ChannelResyncEvent;
+import duberchat.events.ClientLoginEvent;
 import duberchat.events.ClientPasswordUpdateEvent;
 import duberchat.events.ClientRequestMessageEvent;
+import duberchat.events.ClientRequestPfpEvent;
+import duberchat.events.ClientResumeEvent;
 import duberchat.events.ClientStatusUpdateEvent;
 import duberchat.events.ClientPfpUpdateEvent;
 import duberchat.events.FriendAddEvent;
 import duberchat.events.FriendRemoveEvent;
+import duberchat.events.HeartbeatEvent;
 import duberchat.events.MessageDeleteEvent;
 import duberchat.events.MessageEditEvent;
 import duberchat.events.MessageSentEvent;
 import duberchat.events.RequestFailedEvent;
 import duberchat.events.SerializableEvent;
+import duberchat.events.SessionResumedEvent;
+import duberchat.handlers.AsyncHandleable;
+import duberchat.handlers.AsyncHandlers;
 import duberchat.handlers.Handleable;
+import duberchat.net.FrameCodec;
+import duberchat.net.Handshake;
+import duberchat.net.WireCodec;
 import duberchat.handlers.client.ClientChannelAddMemberHandler;
 import duberchat.handlers.client.ClientChannelCreateHandler;
 import duberchat.handlers.client.ClientChannelDeleteHandler;
 import duberchat.handlers.client.ClientChannelRemoveMemberHandler;
+import duberchat.handlers.client.ClientChannelResyncHandler;
 import duberchat.handlers.client.ClientFriendAdjustHandler;
+import duberchat.handlers.client.ClientHeartbeatHandler;
 import duberchat.handlers.client.ClientHierarchyHandler;
 import duberchat.handlers.client.ClientMessageDeleteHandler;
 import duberchat.handlers.client.ClientMessageEditHandler;
@@ -47,6 +74,8 @@ import duberchat.handlers.client.ClientPasswordUpdateHandler;
 import duberchat.handlers.client.ClientPfpUpdateHandler;
 import duberchat.handlers.client.ClientRequestFailedHandler;
 import duberchat.handlers.client.ClientRequestMessageHandler;
+import duberchat.handlers.client.ClientRequestPfpHandler;
+import duberchat.handlers.client.ClientSessionResumedHandler;
 import duberchat.handlers.client.ClientStatusUpdateHandler;
 import duberchat.gui.frames.MainFrame;
 import duberchat.gui.frames.LoginFrame;
@@ -63,6 +92,18 @@ import duberchat.gui.frames.LoginFrame;
  * A few of the methods must be synchronized to ensure thread safety, as
  * multiple threads may call specific methods.
  * <p>
+ * If the connection to the server is lost after logging in, this client
+ * reconnects and resumes its session with the token it was given, so it only
+ * hears about what it missed. Events that could not be sent are sent again
+ * over the new connection. If the server no longer has the session, this
+ * client logs in again with the credentials it logged in with.
+ * <p>
+ * Events about a channel go through a {@link SequenceTracker}, which applies
+ * them in order and asks the server again for any this client missed.
+ * <p>
+ * Messages this client sends are shown straight away, and held as
+ * {@link PendingMessages pending} until the server sends them back.
+ * <p>
  * Created <b> 2020-12-03 </b>
  * 
  * @since 1.0.0
@@ -70,38 +111,67 @@ import duberchat.gui.frames.LoginFrame;
  * @author Joseph Wang
  */
 public class ChatClient {
+    /** The longest wait after the first failed connection attempt, in milliseconds. */
+    private static final long CONNECT_FIRST_DELAY_MS = 500;
+    /** The longest wait after any failed connection attempt, in milliseconds. */
+    private static final long CONNECT_MAX_DELAY_MS = 30000;
+    /** How long to wait for outgoing events to be sent when closing, in milliseconds. */
+    private static final long DRAIN_TIMEOUT_MS = 5000;
+    /** Marks the end of the outgoing events, once this client is closing. */
+    private static final SerializableEvent END_OF_OUTPUT = new SerializableEvent("end of output");
+
     /** The ip to connect to. */
-    private String ip = "";
+    private volatile String ip = "";
     /** The port to connect to. */
-    private int port = -1;
+    private volatile int port = -1;
+    /** Guards changes to the ip and port, and wakes the connector when they change. */
+    private final Object connectionSettings = new Object();
+    /** Opened once this client has connected and agreed on a codec; replaced whenever the connection is lost. */
+    private volatile CountDownLatch connected = new CountDownLatch(1);
+    /** Opened once every event queued before closing has been sent. */
+    private CountDownLatch outputDrained = new CountDownLatch(1);
 
     /** The socket for connection. */
-    private Socket servSocket;
+    private volatile Socket servSocket;
     /** This client's user. */
     private User user;
     /** All the channels this client has. */
     private HashMap<Integer, Channel> channels;
     /** This client's friends. */
     private HashMap<String, User> friends;
+    /** The profile pictures this client draws, already scaled. */
+    private AvatarCache avatarCache;
     /** The event handlers for this client, to easily handle events. */
     private HashMap<Class<? extends SerializableEvent>, Handleable> eventHandlers;
+    /** Runs the work of asynchronous event handlers, off the event loop. */
+    private ExecutorService handlerExecutor;
+    /** Applies each channel's events in order, and asks for missed ones. */
+    private SequenceTracker sequenceTracker;
+    /** The messages this client has sent that the server has not sent back. */
+    private PendingMessages pendingMessages;
 
     /** This client's current channel */
     private Channel currentChannel;
+    /** The token that resumes this client's session after a lost connection. */
+    private volatile String sessionToken;
+    /** The login this client last sent, to log in again with if its session can't be resumed. */
+    private ClientLoginEvent credentials;
 
     /** The input stream from the server socket. */
-    private ObjectInputStream input;
+    private DataInputStream input;
     /** The output stream from the server socket. */
-    private ObjectOutputStream output;
+    private DataOutputStream output;
+    /** The codec agreed on with the server, used for every event. */
+    private WireCodec codec;
 
     /** Whether this client is running or not. */
-    private boolean running = true;
+    private volatile boolean running = true;
     /** Whether this client is currently logging in or not. */
     private boolean currentlyLoggingIn = true;
     /** Whether this client has closed or not. */
-    private boolean hasClosed = false;
+    private volatile boolean hasClosed = false;
     /** Whether this output should accept events. */
-    private boolean acceptEvents = true;
+    private volatile boolean acceptEvents = true;
 
     /** A blocking queue for outgoing events to be sent. */
     private LinkedBlockingQueue<SerializableEvent> outgoingEvents;
@@ -119,12 +189,7 @@ public class ChatClient {
      * this input.
      */
     public void start() {
-        // call a method that connects to the server
-        this.outgoingEvents = new LinkedBlockingQueue<>();
-        this.initializeHandlers();
-        this.initializeOutgoingEventWorker();
-        this.initializeConnectionInformation();
-        this.attemptConnection();
+        this.startWorkers();
 
         this.login();
 
@@ -132,17 +197,23 @@ public class ChatClient {
         mainMenu.setVisible(true);
 
         while (this.running) {
+            Socket socket = this.servSocket;
             // a blocking call
             try {
-                SerializableEvent newEvent = (SerializableEvent) input.readObject();
-
-                this.eventHandlers.get(newEvent.getClass()).handleEvent(newEvent);
-            } catch (EOFException e) {
-                System.out.println("SYSTEM: End of input stream.");
-                this.forceLogout(0);
+                SerializableEvent newEvent = FrameCodec.readEvent(input, codec);
+                this.sequenceTracker.receive(newEvent);
             } catch (IOException e) {
+                if (!this.running) {
+                    break; // closing
+                }
                 System.out.println("SYSTEM: Failed to obtain an event from the server.");
-                this.forceLogout(1);
+                this.connectionLost(socket);
+                try {
+                    this.connected.await();
+                } catch (InterruptedException e2) {
+                    System.out.println("SYSTEM: Interrupted while waiting to reconnect.");
+                    this.forceLogout(1);
+                }
             } catch (ClassNotFoundException e) {
                 System.out.println("SYSTEM: Attempted to handle unknown event.");
             }
@@ -151,6 +222,68 @@ public class ChatClient {
         this.logout();
     }
 
+    /**
+     * Starts this client's workers and begins connecting to the server, without
+     * showing any windows. {@link #start()} does this before logging in.
+     */
+    public void startWorkers() {
+        // call a method that connects to the server
+        this.outgoingEvents = new LinkedBlockingQueue<>();
+        this.avatarCache = new AvatarCache(this);
+        this.sequenceTracker = new SequenceTracker(this);
+        this.pendingMessages = new PendingMessages(this);
+        this.handlerExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread handlerThread = new Thread(task, "async-handler");
+                handlerThread.setDaemon(true);
+                return handlerThread;
+            }
+        });
+        this.initializeHandlers();
+        this.initializeOutgoingEventWorker();
+        this.initializeConnectionInformation();
+        this.attemptConnection();
+    }
+
+    /**
+     * Hands an event from the server to its handler.
+     * <p>
+     * Events read from the server should go through the
+     * {@link SequenceTracker}, which calls this once they are in order.
+     * 
+     * @param event the event to handle.
+     */
+    public void handleEvent(SerializableEvent event) {
+        Handleable handler = this.eventHandlers.get(event.getClass());
+        if (handler == null) {
+            System.out.println("SYSTEM: No handler for a " + event.getClass().getSimpleName() + " event.");
+        } else if (handler instanceof AsyncHandleable) {
+            this.startAsync(handler, event);
+        } else {
+            handler.handleEvent(event);
+        }
+    }
+
+    /**
+     * Starts an asynchronous handler on an event, without waiting for it, and
+     * reports it if it fails or times out.
+     * 
+     * @param handler the handler.
+     * @param event   the event.
+     */
+    private void startAsync(Handleable handler, final SerializableEvent event) {
+        CompletableFuture<Void> handled = AsyncHandlers.call(handler, event);
+        AsyncHandlers.withTimeout(handled, AsyncHandlers.DEFAULT_TIMEOUT_MS);
+        handled.whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void result, Throwable error) {
+                if (error != null) {
+                    System.out.println("SYSTEM: Failed to handle a " + event.getClass().getSimpleName() + " event: "
+                            + error.getMessage());
+                }
+            }
+        });
+    }
+
     /**
      * Attempts to initialize connection information by reading said information
      * from the "data/ipconfig" file, if it exists.
@@ -185,6 +318,7 @@ public class ChatClient {
 
         this.eventHandlers.put(ChannelAddMemberEvent.class, new ClientChannelAddMemberHandler(this));
         this.eventHandlers.put(ChannelRemoveMemberEvent.class, new ClientChannelRemoveMemberHandler(this));
+        this.eventHandlers.put(ChannelResyncEvent.class, new ClientChannelResyncHandler(this));
         
         ClientFriendAdjustHandler friendHandler = new ClientFriendAdjustHandler(this);
         ClientHierarchyHandler hierarchyHandler = new ClientHierarchyHandler(this);
@@ -197,9 +331,12 @@ public class ChatClient {
         this.eventHandlers.put(ClientStatusUpdateEvent.class, new ClientStatusUpdateHandler(this));
         this.eventHandlers.put(ClientPasswordUpdateEvent.class, new ClientPasswordUpdateHandler(this));
         this.eventHandlers.put(ClientRequestMessageEvent.class, new ClientRequestMessageHandler(this));
+        this.eventHandlers.put(ClientRequestPfpEvent.class, new ClientRequestPfpHandler(this));
         this.eventHandlers.put(ChannelCreateEvent.class, new ClientChannelCreateHandler(this));
         this.eventHandlers.put(ChannelDeleteEvent.class, new ClientChannelDeleteHandler(this));
         this.eventHandlers.put(RequestFailedEvent.class, new ClientRequestFailedHandler(this));
+        this.eventHandlers.put(HeartbeatEvent.class, new ClientHeartbeatHandler(this));
+        this.eventHandlers.put(SessionResumedEvent.class, new ClientSessionResumedHandler(this));
 
         this.eventHandlers.put(MessageSentEvent.class, new ClientMessageSentHandler(this));
         this.eventHandlers.put(MessageEditEvent.class, new ClientMessageEditHandler(this));
@@ -220,29 +357,33 @@ public class ChatClient {
         loginWindow = new LoginFrame(this);
         loginWindow.setVisible(true);
 
+        // there is nothing to read until the connector gets through
+        try {
+            this.connected.await();
+        } catch (InterruptedException e) {
+            System.out.println("SYSTEM: Interrupted while waiting to connect.");
+            System.exit(1);
+        }
+
         SerializableEvent authEvent;
         while (this.currentlyLoggingIn) {
             try {
-                if (this.servSocket != null) {
-                    authEvent = (SerializableEvent) input.readObject();
-                    System.out.println("SYSTEM: Auth received.");
-
-                    if (authEvent instanceof AuthSucceedEvent) {
-                        AuthSucceedEvent authSuccess = (AuthSucceedEvent) authEvent;
-
-                        this.user = authSuccess.getUser();
-                        this.channels = authSuccess.getChannels();
-                        this.friends = authSuccess.getFriends();
-                        this.user.setStatus(User.ONLINE);
+                authEvent = FrameCodec.readEvent(input, codec);
+                // the server checks on clients that sit at the login screen too
+                if (authEvent instanceof HeartbeatEvent) {
+                    this.eventHandlers.get(HeartbeatEvent.class).handleEvent(authEvent);
+                    continue;
+                }
+                System.out.println("SYSTEM: Auth received.");
 
-                        System.out.println("SYSTEM: current channels: " + channels.size());
+                if (authEvent instanceof AuthSucceedEvent) {
+                    this.applyAuth((AuthSucceedEvent) authEvent);
 
-                        this.currentlyLoggingIn = false;
-                        System.out.println("SYSTEM: login succeeded!");
-                    } else {
-                        loginWindow.reload();
-                        System.out.println("SYSTEM: login failed.");
-                    }
+                    this.currentlyLoggingIn = false;
+                    System.out.println("SYSTEM: login succeeded!");
+                } else {
+                    loginWindow.reload();
+                    System.out.println("SYSTEM: login failed.");
                 }
             } catch (IOException e) {
                 System.out.println("SYSTEM: A connection issue occured.");
@@ -264,45 +405,136 @@ public class ChatClient {
         loginWindow.destroy();
     }
 
+    /**
+     * Sends a login request to the server, and remembers it in case this client
+     * has to log in again after losing its connection.
+     * 
+     * @param isNewUser whether to create a new user rather than log in.
+     * @param username  the username to log in with.
+     * @param password  the plaintext password to log in with.
+     */
+    public void sendLogin(boolean isNewUser, String username, String password) {
+        ClientLoginEvent loginEvent = new ClientLoginEvent(null, isNewUser, username, password);
+        // the user exists once the first login succeeds
+        this.credentials = new ClientLoginEvent(null, false, username, loginEvent.getHashedPassword());
+        this.offerEvent(loginEvent);
+    }
+
+    /**
+     * Takes in everything the server sent on a successful login.
+     * 
+     * @param authSuccess the event telling this client it logged in.
+     */
+    private void applyAuth(AuthSucceedEvent authSuccess) {
+        this.user = authSuccess.getUser();
+        this.channels = authSuccess.getChannels();
+        this.friends = authSuccess.getFriends();
+        this.sessionToken = authSuccess.getSessionToken();
+        this.user.setStatus(User.ONLINE);
+        this.sequenceTracker.reset();
+
+        System.out.println("SYSTEM: current channels: " + channels.size());
+    }
+
+    /**
+     * Handles the connection to the server failing, by starting to reconnect.
+     * <p>
+     * Both the event loop and the outgoing event worker call this when their
+     * stream fails; only the first call for a socket does anything. The
+     * {@link #connected} latch is replaced, so both wait until this client has
+     * reconnected and resumed its session.
+     * 
+     * @param dead the socket that failed.
+     */
+    private void connectionLost(Socket dead) {
+        synchronized (this.connectionSettings) {
+            if (!this.running || dead == null || this.servSocket != dead) {
+                return; // closing, or already reconnecting
+            }
+            this.servSocket = null;
+            this.connected = new CountDownLatch(1);
+        }
+        try {
+            dead.close();
+        } catch (IOException e) {
+            System.out.println("SYSTEM: Failed to close socket.");
+        }
+
+        System.out.println("SYSTEM: Lost the connection to the server. Reconnecting.");
+        this.attemptConnection();
+    }
+
     /**
      * Launches a thread worker that attempts to connect to the server. This thread
      * will continue to attempt connections until a connection happens or the
      * application is killed.
      * <p>
-     * The design of this method also allows for ip and port to be changed, and for
-     * the changes to immediately be reflected here.
+     * Failed attempts are retried after a {@link Backoff backoff}, so the waits
+     * grow from half a second up to half a minute. The design of this method also
+     * allows for ip and port to be changed, and for the changes to immediately be
+     * reflected here: new settings are tried straight away, with the waits
+     * starting over.
      */
     public void attemptConnection() {
         if (servSocket != null) {
             return;
         }
 
-        Thread connectorWorker = new Thread(new Runnable() {
-            public synchronized void run() {
-                boolean connected = false;
-                while (!connected) {
-                    if (ip.equals("")) {
-                        continue;
-                    }
-
-                    connected = connect(ip, port);
-
-                    if (!connected) {
-                        System.out.println("SYSTEM: Error connecting.");
-
-                        try {
-                            Thread.sleep(3000);
-                        } catch (InterruptedException e2) {
-                            System.out.println("SYSTEM: Error waiting.");
+        WorkerThreads.start("connector", new Runnable() {
+            public void run() {
+                Backoff backoff = new Backoff(CONNECT_FIRST_DELAY_MS, CONNECT_MAX_DELAY_MS);
+                try {
+                    while (!connect(awaitIp(), port)) {
+                        long delay = backoff.nextDelayMillis();
+                        System.out.println("SYSTEM: Error connecting. Retrying in " + delay + " ms.");
+                        if (awaitSettingsChange(delay)) {
+                            backoff.reset();
                         }
                     }
+                } catch (InterruptedException e) {
+                    System.out.println("SYSTEM: Error waiting.");
+                    return;
                 }
 
                 System.out.println("SYSTEM: Connection made.");
             }
         });
+    }
 
-        connectorWorker.start();
+    /**
+     * Waits until there is an ip to connect to.
+     * 
+     * @return the ip.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private String awaitIp() throws InterruptedException {
+        synchronized (this.connectionSettings) {
+            while (this.ip.equals("")) {
+                this.connectionSettings.wait();
+            }
+            return this.ip;
+        }
+    }
+
+    /**
+     * Waits for some time, or until the ip or port change, whichever comes first.
+     * 
+     * @param millis the most time to wait, in milliseconds.
+     * @return true if the ip or port changed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private boolean awaitSettingsChange(long millis) throws InterruptedException {
+        synchronized (this.connectionSettings) {
+            String waitingIp = this.ip;
+            int waitingPort = this.port;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            long remaining = millis;
+            while (this.ip.equals(waitingIp) && this.port == waitingPort && remaining > 0) {
+                this.connectionSettings.wait(remaining);
+                remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+            return !this.ip.equals(waitingIp) || this.port != waitingPort;
+        }
     }
 
     /**
@@ -311,36 +543,60 @@ public class ChatClient {
      * <p>
      * This ensures that all outputs are at one location, to prevent stream
      * conflicts and synchronizations.
+     * <p>
+     * The worker waits for the connection to be made before taking any events,
+     * and stops once it reaches the end of the outgoing events. An event that
+     * could not be sent is sent again once this client has reconnected.
      */
     private void initializeOutgoingEventWorker() {
-        Thread outgoingEventWorker = new Thread(new Runnable() {
-            public synchronized void run() {
-                while (running) {
-                        if (servSocket != null) {
-                            try {
-                                // A blocking call
-                                SerializableEvent event = outgoingEvents.take();
-
-                                output.writeObject(event);
-                                output.flush();
-                                output.reset();
-                            } catch (EOFException e) {
-                                System.out.println("SYSTEM: End of output stream.");
-                            } catch (InterruptedException e) {
-                                System.out.println("SYSTEM: queue was interrupted while blocking.");
-                            } catch (IOException e) {
-                                System.out.println("SYSTEM: could not send an event.");
-                            }
+        WorkerThreads.start("outgoing-events", new Runnable() {
+            public void run() {
+                try {
+                    connected.await();
+                    while (running) {
+                        // A blocking call
+                        SerializableEvent event = outgoingEvents.take();
+                        if (event == END_OF_OUTPUT) {
+                            outputDrained.countDown();
+                            return;
                         }
+
+                        sendWhenConnected(event);
+                    }
+                } catch (InterruptedException e) {
+                    System.out.println("SYSTEM: queue was interrupted while blocking.");
                 }
             }
         });
+    }
 
-        outgoingEventWorker.start();
+    /**
+     * Sends an event to the server, waiting to reconnect and trying again for as
+     * long as the connection fails.
+     * 
+     * @param event the event to send.
+     * @throws InterruptedException if interrupted while waiting to reconnect.
+     */
+    private void sendWhenConnected(SerializableEvent event) throws InterruptedException {
+        while (this.running) {
+            this.connected.await();
+            Socket socket = this.servSocket;
+            try {
+                FrameCodec.writeEvent(output, event, codec);
+                return;
+            } catch (IOException e) {
+                System.out.println("SYSTEM: could not send an event.");
+                this.connectionLost(socket);
+            }
+        }
     }
 
     /**
-     * Attempts to connect to the specified IP at the specified port.
+     * Attempts to connect to the specified IP at the specified port, and agrees
+     * with the server on a codec, preferring the binary codec.
+     * <p>
+     * If this client has logged in before, its session is resumed over the new
+     * connection before the connection is used for anything else.
      * <p>
      * Returns a boolean success value.
      * 
@@ -351,19 +607,107 @@ public class ChatClient {
     public boolean connect(String ip, int port) {
         System.out.println("SYSTEM: Attempting to connect to central servers...");
 
+        Socket socket = null;
         try {
-            this.servSocket = new Socket(ip, port);
+            socket = new Socket(ip, port);
+
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            codec = Handshake.negotiate(input, output,
+                    new WireCodec[] { Handshake.BINARY, Handshake.JAVA_SERIALIZATION });
+            System.out.println("SYSTEM: Speaking " + codec.getName() + " with the server.");
 
-            input = new ObjectInputStream(servSocket.getInputStream());
-            output = new ObjectOutputStream(servSocket.getOutputStream());
+            if (this.sessionToken != null) {
+                this.rejoin();
+            }
+
+            // only publish the socket once it is ready to carry events
+            synchronized (this.connectionSettings) {
+                this.servSocket = socket;
+                this.connected.countDown();
+            }
         } catch (IOException e) { // connection error occured
             System.out.println("SYSTEM: Connection to server failed.");
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e2) {
+                    System.out.println("SYSTEM: Failed to close socket.");
+                }
+            }
             return false;
         }
 
         return true;
     }
 
+    /**
+     * Picks this client's session back up over a new connection, before anything
+     * else uses the connection.
+     * <p>
+     * The server is sent this client's session token and the newest message it
+     * has in each channel, and answers with the messages this client missed. If
+     * the server no longer has the session, this client logs in again instead,
+     * and takes in everything the server sends on login.
+     * 
+     * @throws IOException if the connection fails, or the server does not let
+     *                     this client back in.
+     */
+    private void rejoin() throws IOException {
+        HashMap<Integer, Integer> lastMessageIds = new HashMap<>();
+        for (Channel channel : this.channels.values()) {
+            ArrayList<Message> newest = channel.getNewestMessages(1);
+            lastMessageIds.put(channel.getChannelId(), newest.isEmpty() ? -1 : newest.get(0).getMessageId());
+        }
+        String username = this.user.getUsername();
+        FrameCodec.writeEvent(output, new ClientResumeEvent(username, this.sessionToken, lastMessageIds), codec);
+
+        boolean loggingInAgain = false;
+        while (true) {
+            SerializableEvent reply;
+            try {
+                reply = FrameCodec.readEvent(input, codec);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown reply to resuming the session", e);
+            }
+
+            if (reply instanceof HeartbeatEvent) {
+                FrameCodec.writeEvent(output, new HeartbeatEvent(username), codec);
+            } else if (reply instanceof SessionResumedEvent) {
+                this.eventHandlers.get(SessionResumedEvent.class).handleEvent(reply);
+                // gap requests sent over the lost connection may never have arrived
+                this.sequenceTracker.retryRequests();
+                System.out.println("SYSTEM: Session resumed.");
+                return;
+            } else if (reply instanceof AuthFailedEvent) {
+                if (loggingInAgain || this.credentials == null) {
+                    throw new IOException("The server did not let this client back in");
+                }
+                System.out.println("SYSTEM: Session expired. Logging in again.");
+                FrameCodec.writeEvent(output, this.credentials, codec);
+                loggingInAgain = true;
+            } else if (reply instanceof AuthSucceedEvent) {
+                this.applyAuth((AuthSucceedEvent) reply);
+                if (this.currentChannel != null) {
+                    this.setCurrentChannel(this.currentChannel.getChannelId());
+                }
+                if (this.hasMainMenuFrame()) {
+                    this.mainMenu.reload();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the token that resumes this client's session after a lost connection.
+     * 
+     * @param sessionToken the new session token.
+     */
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
     /**
      * Retrieves this client's associated user.
      * 
@@ -391,6 +735,46 @@ public class ChatClient {
         return this.friends;
     }
 
+    /**
+     * Retrieves the executor that asynchronous event handlers run their work on.
+     * 
+     * @return this client's asynchronous handler executor.
+     */
+    public ExecutorService getHandlerExecutor() {
+        return this.handlerExecutor;
+    }
+
+    /**
+     * Retrieves the profile pictures this client draws.
+     * 
+     * @return this client's avatar cache.
+     */
+    public AvatarCache getAvatarCache() {
+        return this.avatarCache;
+    }
+
+    /**
+     * Retrieves the messages this client has sent that the server has not sent
+     * back.
+     * 
+     * @return this client's pending messages.
+     */
+    public PendingMessages getPendingMessages() {
+        return this.pendingMessages;
+    }
+
+    /**
+     * Retrieves a user's profile picture, scaled to some size, fetching it from
+     * the server if this client has not got it yet.
+     * 
+     * @param user the user whose profile picture to retrieve.
+     * @param size the width and height to draw the picture at.
+     * @return the user's profile picture, or a placeholder until it arrives.
+     */
+    public ImageIcon getAvatar(User user, int size) {
+        return this.avatarCache.get(user, size);
+    }
+
     /**
      * Checks whether this client has a current channel or not.
      * 
@@ -482,7 +866,10 @@ public class ChatClient {
      * @param ip this client's new connecting IP.
      */
     public void setIp(String ip) {
-        this.ip = ip;
+        synchronized (this.connectionSettings) {
+            this.ip = ip;
+            this.connectionSettings.notifyAll();
+        }
     }
 
     /**
@@ -500,7 +887,10 @@ public class ChatClient {
      * @param ip this client's new connecting port.
      */
     public void setPort(int port) {
-        this.port = port;
+        synchronized (this.connectionSettings) {
+            this.port = port;
+            this.connectionSettings.notifyAll();
+        }
     }
 
     /**
@@ -520,7 +910,7 @@ public class ChatClient {
      * These settings will be written directly to "data/".
      */
     public synchronized void saveIpSettings() {
-        Thread saveIpSettingWorker = new Thread(new Runnable() {
+        WorkerThreads.start("ip-settings", new Runnable() {
             public void run() {
                 try {
                     File ipSettings = new File("data/ipconfig");
@@ -539,31 +929,41 @@ public class ChatClient {
                 }
             }
         });
-        saveIpSettingWorker.start();
     }
 
     /**
      * Safely closes this client and its associated socket.
      * <p>
      * This method should be used whenever this client must be closed, and will
-     * ensure that any to-be-outgoing events will be served before closing.
+     * ensure that any to-be-outgoing events will be served before closing, unless
+     * they take more than a few seconds to send.
      */
-    private void closeSafely() {
-        while (!hasClosed) {
-            // Make sure all outgoing events are served
-            if (this.outgoingEvents.peek() == null) {
-                this.running = false;
-                hasClosed = true;
+    private synchronized void closeSafely() {
+        if (hasClosed) {
+            return;
+        }
 
-                try {
-                    // Close all JFrames
-                    closeEverything();
-                    System.out.println("SYSTEM: closed socket.");
-                } catch (IOException e) {
-                    System.out.println("SYSTEM: Failed to close socket.");
+        // Make sure all outgoing events are served, if there is anywhere to send them
+        if (this.connected.getCount() == 0) {
+            this.outgoingEvents.offer(END_OF_OUTPUT);
+            try {
+                if (!this.outputDrained.await(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    System.out.println("SYSTEM: Gave up on sending the last outgoing events.");
                 }
+            } catch (InterruptedException e) {
+                System.out.println("SYSTEM: Interrupted while sending the last outgoing events.");
             }
         }
+        this.running = false;
+        hasClosed = true;
+
+        try {
+            // Close all JFrames
+            closeEverything();
+            System.out.println("SYSTEM: closed socket.");
+        } catch (IOException e) {
+            System.out.println("SYSTEM: Failed to close socket.");
+        }
     }
 
     /**
@@ -575,6 +975,9 @@ public class ChatClient {
         if (this.hasMainMenuFrame()) {
             this.mainMenu.destroy();
         }
+        if (this.servSocket == null) {
+            return; // never connected
+        }
 
         input.close();
         output.close();
@@ -0,0 +1,287 @@
+package duberchat.client;
+
+import java.security.SecureRandom;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import duberchat.chatutil.Message;
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.MessageSentEvent;
+
+/**
+ * The {@code PendingMessages} class holds the messages this client has sent but
+ * the server has not yet sent back.
+ * <p>
+ * A sent message is shown straight away, after the channel's other messages,
+ * rather than after a round trip through the server. Each one is sent with a
+ * nonce that the server sends back with the stored message; when it arrives,
+ * the pending copy is dropped and the server's copy, with its real id and
+ * place in the channel, is shown instead. The server still decides the order
+ * of every channel's messages.
+ * <p>
+ * A message the server turns down, or that has not come back after
+ * {@link #CONFIRM_TIMEOUT_MS} milliseconds, is marked as failed, and can then be
+ * sent again or discarded. A failed message that comes back after all is
+ * treated like any other.
+ * <p>
+ * The pending messages are used by the GUI, the thread reading events and a
+ * thread that watches for timeouts, so all of its methods are synchronized. The
+ * main menu is only reloaded outside of this lock.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public class PendingMessages {
+    /** How long a message may go without coming back before it fails, in milliseconds. */
+    public static final long CONFIRM_TIMEOUT_MS = 15000;
+
+    /** The associated client. */
+    private ChatClient client;
+    /** The pending messages by nonce, oldest first. */
+    private LinkedHashMap<Long, PendingMessage> pending;
+    /** The nonce given to the last message sent. */
+    private long lastNonce;
+    /** Whether the thread watching for timeouts has been started. */
+    private boolean watching;
+
+    /**
+     * Constructs a new {@code PendingMessages}.
+     *
+     * @param client the associated client.
+     */
+    public PendingMessages(ChatClient client) {
+        this.client = client;
+        this.pending = new LinkedHashMap<>();
+        // a random start keeps nonces from one run apart from the last one's
+        this.lastNonce = new SecureRandom().nextLong();
+    }
+
+    /**
+     * Sends a message to the server, and holds it as pending until the server
+     * sends it back.
+     *
+     * @param message the message, with no id yet.
+     * @return the pending message.
+     */
+    public PendingMessage send(Message message) {
+        PendingMessage sent;
+        synchronized (this) {
+            this.lastNonce++;
+            if (this.lastNonce == 0) {
+                this.lastNonce++; // 0 means no nonce
+            }
+            MessageSentEvent event = new MessageSentEvent(message.getSenderUsername(), message, this.lastNonce);
+            sent = new PendingMessage(event);
+            this.pending.put(this.lastNonce, sent);
+            this.startWatching();
+            this.notifyAll();
+        }
+        this.client.offerEvent(sent.getEvent());
+        return sent;
+    }
+
+    /**
+     * Drops the pending copy of a message the server sent back.
+     *
+     * @param event the event the server sent the message back with.
+     * @return true if the message was one of this client's pending messages.
+     */
+    public synchronized boolean confirm(MessageSentEvent event) {
+        if (event.getNonce() == 0
+                || !event.getMessage().getSenderUsername().equals(this.client.getUser().getUsername())) {
+            return false;
+        }
+        return this.pending.remove(event.getNonce()) != null;
+    }
+
+    /**
+     * Marks a pending message as failed, after the server turned it down.
+     *
+     * @param nonce the message's nonce.
+     * @return true if the message was pending.
+     */
+    public synchronized boolean fail(long nonce) {
+        PendingMessage failed = this.pending.get(nonce);
+        if (failed == null) {
+            return false;
+        }
+        failed.failed = true;
+        return true;
+    }
+
+    /**
+     * Sends a failed message again, with the same nonce, so that if the first
+     * copy did reach the server after all, the server sends that one back rather
+     * than storing the message twice.
+     *
+     * @param nonce the message's nonce.
+     */
+    public void retry(long nonce) {
+        PendingMessage retried;
+        synchronized (this) {
+            retried = this.pending.remove(nonce);
+            if (retried == null) {
+                return;
+            }
+            // goes to the back, as the newest pending message
+            retried.failed = false;
+            retried.sentAt = System.currentTimeMillis();
+            this.pending.put(nonce, retried);
+            this.notifyAll();
+        }
+        this.client.offerEvent(retried.getEvent());
+    }
+
+    /**
+     * Forgets a failed message.
+     *
+     * @param nonce the message's nonce.
+     */
+    public synchronized void discard(long nonce) {
+        this.pending.remove(nonce);
+    }
+
+    /**
+     * Retrieves the pending messages of a channel, oldest first.
+     *
+     * @param channelId the id of the channel.
+     * @return the channel's pending messages.
+     */
+    public synchronized ArrayList<PendingMessage> getPending(int channelId) {
+        ArrayList<PendingMessage> channelPending = new ArrayList<>();
+        for (PendingMessage message : this.pending.values()) {
+            if (message.getMessage().getChannelId() == channelId) {
+                channelPending.add(message);
+            }
+        }
+        return channelPending;
+    }
+
+    /**
+     * Starts the thread that fails messages that take too long to come back, if
+     * it has not been started. The caller must hold this object's lock.
+     */
+    private void startWatching() {
+        if (this.watching) {
+            return;
+        }
+        this.watching = true;
+        WorkerThreads.start("pending-messages", new Runnable() {
+            public void run() {
+                while (true) {
+                    try {
+                        PendingMessage timedOut = awaitTimeout();
+                        if (client.hasMainMenuFrame()) {
+                            client.getMainMenuFrame().reload(timedOut.getEvent());
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until the oldest message still waiting takes too long to come back,
+     * and marks it as failed. While no messages are waiting, this waits without
+     * waking up.
+     *
+     * @return the message that failed.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    private synchronized PendingMessage awaitTimeout() throws InterruptedException {
+        while (true) {
+            PendingMessage oldest = null;
+            Iterator<PendingMessage> messages = this.pending.values().iterator();
+            while (oldest == null && messages.hasNext()) {
+                PendingMessage message = messages.next();
+                if (!message.isFailed()) {
+                    oldest = message;
+                }
+            }
+
+            if (oldest == null) {
+                this.wait();
+                continue;
+            }
+            long remaining = oldest.sentAt + CONFIRM_TIMEOUT_MS - System.currentTimeMillis();
+            if (remaining <= 0) {
+                oldest.failed = true;
+                System.out.println("SYSTEM: A message was not confirmed by the server in time.");
+                return oldest;
+            }
+            this.wait(remaining);
+        }
+    }
+
+    /**
+     * A message this client has sent that the server has not sent back.
+     * <p>
+     * Created <b>2026-10-18</b>
+     *
+     * @since 1.0.0
+     * @version 1.0.0
+     * @author Joseph Wang
+     */
+    public static class PendingMessage {
+        /** The event the message is sent with. */
+        private MessageSentEvent event;
+        /** When the message was last sent, in milliseconds. */
+        private long sentAt;
+        /** Whether the message was turned down or took too long to come back. */
+        private volatile boolean failed;
+
+        /**
+         * Constructs a new {@code PendingMessage}.
+         *
+         * @param event the event the message is sent with.
+         */
+        private PendingMessage(MessageSentEvent event) {
+            this.event = event;
+            this.sentAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Retrieves the event the message is sent with.
+         *
+         * @return the event.
+         */
+        public MessageSentEvent getEvent() {
+            return this.event;
+        }
+
+        /**
+         * Retrieves the message, as it was sent.
+         *
+         * @return the message.
+         */
+        public Message getMessage() {
+            return this.event.getMessage();
+        }
+
+        /**
+         * Retrieves the nonce the message is sent with.
+         *
+         * @return the nonce.
+         */
+        public long getNonce() {
+            return this.event.getNonce();
+        }
+
+        /**
+         * Checks whether the message was turned down or took too long to come
+         * back.
+         *
+         * @return true if the message failed.
+         */
+        public boolean isFailed() {
+            return this.failed;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package duberchat.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import duberchat.chatutil.Channel;
+import duberchat.events.ChannelResyncEvent;
+import duberchat.events.SequencedEvent;
+import duberchat.events.SerializableEvent;
+
+/**
+ * A {@code SequenceTracker} makes sure a client applies each channel's events
+ * in order, without missing any.
+ * <p>
+ * Every event about a channel carries the channel's next
+ * {@link SequencedEvent sequence number}, and each of the client's channels
+ * remembers the number of the last event applied to it. An event numbered one
+ * past its channel's is applied straight away, and one the channel already has
+ * is dropped. An event further ahead means some were missed: it is held back,
+ * and the server is asked for just the missing range with a
+ * {@link ChannelResyncEvent}. Held events are applied as soon as the gap before
+ * them is filled, either by the missing events or by a fresh copy of the
+ * channel.
+ * <p>
+ * Events that are not about a channel pass straight through.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public class SequenceTracker {
+    /** The client this tracker belongs to. */
+    private ChatClient client;
+    /** The events held back behind a gap, by sequence number, by channel id. */
+    private HashMap<Integer, TreeMap<Long, SerializableEvent>> held;
+    /** The last sequence number asked for, by channel id, while waiting for it. */
+    private HashMap<Integer, Long> requestedUpTo;
+
+    /**
+     * Constructs a new {@code SequenceTracker}.
+     *
+     * @param client The client this tracker belongs to.
+     */
+    public SequenceTracker(ChatClient client) {
+        this.client = client;
+        this.held = new HashMap<>();
+        this.requestedUpTo = new HashMap<>();
+    }
+
+    /**
+     * Takes an event from the server, and has the client handle it (and any
+     * events held back behind it) once it is in order.
+     *
+     * @param event The event.
+     */
+    public synchronized void receive(SerializableEvent event) {
+        if (!(event instanceof SequencedEvent) || ((SequencedEvent) event).getSequence() == 0) {
+            this.client.handleEvent(event);
+            if (event instanceof ChannelResyncEvent) {
+                // the fresh copy answers whatever was asked for
+                int channelId = ((ChannelResyncEvent) event).getChannelId();
+                this.requestedUpTo.remove(channelId);
+                this.release(channelId);
+            }
+            return;
+        }
+
+        SequencedEvent sequenced = (SequencedEvent) event;
+        int channelId = sequenced.getChannelId();
+        Channel channel = this.client.getChannels().get(channelId);
+        if (channel == null) {
+            // not a channel this client has yet, unless this event adds it
+            this.client.handleEvent(event);
+            return;
+        }
+
+        long expected = channel.getSequence() + 1;
+        if (sequenced.getSequence() < expected) {
+            return; // already applied
+        }
+        if (sequenced.getSequence() > expected) {
+            TreeMap<Long, SerializableEvent> channelHeld = this.held.get(channelId);
+            if (channelHeld == null) {
+                channelHeld = new TreeMap<>();
+                this.held.put(channelId, channelHeld);
+            }
+            channelHeld.put(sequenced.getSequence(), event);
+            this.request(channelId, expected, channelHeld.firstKey() - 1);
+            return;
+        }
+
+        this.apply(event);
+        this.release(channelId);
+    }
+
+    /**
+     * Asks again for every gap still open, after the connection was lost and
+     * earlier requests may have been lost with it.
+     */
+    public synchronized void retryRequests() {
+        this.requestedUpTo.clear();
+        for (Integer channelId : new ArrayList<>(this.held.keySet())) {
+            this.release(channelId);
+        }
+    }
+
+    /**
+     * Forgets every held event and open request, once the client's channels have
+     * been replaced by a new login.
+     */
+    public synchronized void reset() {
+        this.held.clear();
+        this.requestedUpTo.clear();
+    }
+
+    /**
+     * Has the client handle an event that is in order, and moves its channel's
+     * sequence number up to the event's.
+     *
+     * @param event The event, which must be a {@link SequencedEvent}.
+     */
+    private void apply(SerializableEvent event) {
+        SequencedEvent sequenced = (SequencedEvent) event;
+        this.client.handleEvent(event);
+        // the handler may have replaced or removed the channel
+        Channel channel = this.client.getChannels().get(sequenced.getChannelId());
+        if (channel != null && channel.getSequence() < sequenced.getSequence()) {
+            channel.setSequence(sequenced.getSequence());
+        }
+    }
+
+    /**
+     * Applies a channel's held events that are now in order, drops the ones the
+     * channel already has, and asks for whatever is still missing before the
+     * rest.
+     *
+     * @param channelId The id of the channel.
+     */
+    private void release(int channelId) {
+        TreeMap<Long, SerializableEvent> channelHeld = this.held.get(channelId);
+        if (channelHeld == null) {
+            return;
+        }
+
+        Channel channel = this.client.getChannels().get(channelId);
+        while (channel != null && !channelHeld.isEmpty()) {
+            long expected = channel.getSequence() + 1;
+            long next = channelHeld.firstKey();
+            if (next > expected) {
+                break;
+            }
+            SerializableEvent event = channelHeld.pollFirstEntry().getValue();
+            if (next == expected) {
+                this.apply(event);
+            }
+            channel = this.client.getChannels().get(channelId);
+        }
+
+        if (channel == null || channelHeld.isEmpty()) {
+            this.held.remove(channelId);
+            this.requestedUpTo.remove(channelId);
+            return;
+        }
+        this.request(channelId, channel.getSequence() + 1, channelHeld.firstKey() - 1);
+    }
+
+    /**
+     * Asks the server for a channel's missing events, unless they have already
+     * been asked for.
+     *
+     * @param channelId    The id of the channel.
+     * @param fromSequence The first missing sequence number.
+     * @param toSequence   The last missing sequence number.
+     */
+    private void request(int channelId, long fromSequence, long toSequence) {
+        Long requested = this.requestedUpTo.get(channelId);
+        if (requested != null) {
+            if (requested >= toSequence) {
+                return;
+            }
+            fromSequence = Math.max(fromSequence, requested + 1);
+        }
+        System.out.println("SYSTEM: Missed events " + fromSequence + " to " + toSequence + " in channel " + channelId
+                + ". Asking for them again.");
+        String username = this.client.getUser().getUsername();
+        this.client.offerEvent(new ChannelResyncEvent(username, channelId, fromSequence, toSequence, null));
+        this.requestedUpTo.put(channelId, toSequence);
+    }
+}
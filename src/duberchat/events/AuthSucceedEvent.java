@@ -12,6 +12,10 @@ import java.util.HashMap;
  * This event should be used solely to indicate a success in authentication,
  * where the requesting client is able to retrieve the metadata stored in this
  * event and immediately begin normal operations.
+ * <p>
+ * The event also carries a session token, which the client can present with a
+ * {@link ClientResumeEvent} to pick up where it left off if its connection
+ * drops, instead of logging in again.
  * 
  * <p>
  * Since <b>2020-12-04</b>.
@@ -29,6 +33,8 @@ public class AuthSucceedEvent extends AuthEvent {
     protected HashMap<Integer, Channel> channels;
     /** The friends of the user associatd with this event. */
     protected HashMap<String, User> friends;
+    /** The token that resumes this session, or {@code null} if it can't be resumed. */
+    protected String sessionToken;
 
     /**
      * Constructs a new {@code AuthSucceedEvent}
@@ -76,4 +82,22 @@ public class AuthSucceedEvent extends AuthEvent {
     public HashMap<String, User> getFriends() {
         return this.friends;
     }
+
+    /**
+     * Retrieves the token the client can resume this session with.
+     * 
+     * @return the session token, or {@code null} if the session can't be resumed.
+     */
+    public String getSessionToken() {
+        return this.sessionToken;
+    }
+
+    /**
+     * Sets the token the client can resume this session with.
+     * 
+     * @param sessionToken the session token.
+     */
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
 }
@@ -16,11 +16,13 @@ package duberchat.events;
  * @author Joseph Wang
  * @see duberchat.chatutil.Channel
  */
-public abstract class ChannelEvent extends SerializableEvent {
+public abstract class ChannelEvent extends SerializableEvent implements SequencedEvent {
     static final long serialVersionUID = 1L;
 
     /** The id of the associated channel. */
     protected int associatedChannel;
+    /** This event's sequence number in its channel, or 0 if it has none. */
+    protected long sequence;
 
     /**
      * Constructs a new {@code ChannelEvent}.
@@ -46,4 +48,22 @@ public abstract class ChannelEvent extends SerializableEvent {
     public int getChannelId() {
         return this.associatedChannel;
     }
+
+    /**
+     * Retrieves this event's sequence number in its channel.
+     * 
+     * @return the sequence number, or 0 if this event is not numbered.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Sets this event's sequence number in its channel.
+     * 
+     * @param sequence the sequence number.
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
 }
@@ -0,0 +1,79 @@
+package duberchat.events;
+
+import duberchat.chatutil.Channel;
+
+/**
+ * A {@code ChannelResyncEvent} is an event that is created when a client finds
+ * that it missed some of a channel's events.
+ * <p>
+ * The client sends the range of {@link SequencedEvent sequence numbers} it is
+ * missing. The server sends the missing events again, with their original
+ * sequence numbers, if it still has them. If it doesn't, the server sends this
+ * event back with a fresh copy of the channel (and its newest messages), which
+ * replaces the client's copy.
+ * <p>
+ * This event is not part of the channel's history itself, so its own sequence
+ * number is always 0.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ */
+public class ChannelResyncEvent extends ChannelEvent {
+    static final long serialVersionUID = 1L;
+
+    /** The sequence number of the first missing event. */
+    protected long fromSequence;
+    /** The sequence number of the last missing event. */
+    protected long toSequence;
+    /** A fresh copy of the channel, or {@code null} if this is a request. */
+    protected Channel newChannel;
+
+    /**
+     * Constructs a new {@code ChannelResyncEvent}.
+     *
+     * @param source       The source of this event.
+     * @param channelId    The id of the channel with missing events.
+     * @param fromSequence The sequence number of the first missing event.
+     * @param toSequence   The sequence number of the last missing event.
+     * @param newChannel   A fresh copy of the channel, or {@code null} if this is
+     *                     a request.
+     */
+    public ChannelResyncEvent(Object source, int channelId, long fromSequence, long toSequence,
+            Channel newChannel) {
+        super(source, channelId);
+
+        this.fromSequence = fromSequence;
+        this.toSequence = toSequence;
+        this.newChannel = newChannel;
+    }
+
+    /**
+     * Retrieves the sequence number of the first missing event.
+     *
+     * @return the first missing sequence number.
+     */
+    public long getFromSequence() {
+        return this.fromSequence;
+    }
+
+    /**
+     * Retrieves the sequence number of the last missing event.
+     *
+     * @return the last missing sequence number.
+     */
+    public long getToSequence() {
+        return this.toSequence;
+    }
+
+    /**
+     * Retrieves the fresh copy of the channel that the server sent.
+     *
+     * @return the channel, or {@code null} if this is a request.
+     */
+    public Channel getNewChannel() {
+        return this.newChannel;
+    }
+}
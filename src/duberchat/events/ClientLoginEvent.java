@@ -53,6 +53,24 @@ public class ClientLoginEvent extends ClientEvent {
         this.hashedPassword = password.hashCode();
     }
 
+    /**
+     * Constructs a new {@code ClientLoginEvent} with a password that has already
+     * been hashed.
+     *
+     * @param source         The source of this event.
+     * @param isNewUser      Whether the client is logging into an existing user or
+     *                       creating a new user.
+     * @param username       The username to be used.
+     * @param hashedPassword The hashed password to be used.
+     */
+    public ClientLoginEvent(Object source, boolean isNewUser, String username, long hashedPassword) {
+        super(source);
+
+        this.isNewUser = isNewUser;
+        this.username = username;
+        this.hashedPassword = hashedPassword;
+    }
+
     /**
      * Retrieves whether the client is logging into an existing user or creating a
      * new user.
@@ -13,6 +13,12 @@ import javax.imageio.ImageIO;
  * A {@code ClientPfpUpdateEvent} is an event that is created when a client
  * updates their profile picture.
  * <p>
+ * The client sends the new picture itself. The server stores it in its image
+ * store and tells everyone who can see the user only the new picture's hash;
+ * clients then fetch the picture with a
+ * {@link duberchat.events.ClientRequestPfpEvent ClientRequestPfpEvent} if they
+ * have not already got it.
+ * <p>
  * Since <b>2020-12-13</b>.
  * 
  * @since 1.0.0
@@ -25,11 +31,16 @@ public class ClientPfpUpdateEvent extends ClientProfileUpdateEvent {
     protected transient BufferedImage newPfp;
     /** The format of the profile picture associated with this event. */
     protected String pfpFormat;
+    /** The hash of the profile picture associated with this event. */
+    protected String pfpHash;
 
     /**
-     * Constructs a new {@code ClientProfileUpdateEvent}.
+     * Constructs a new {@code ClientPfpUpdateEvent} carrying a new profile
+     * picture, sent by a client to change its picture.
      * 
-     * @param source The source of this event.
+     * @param source    The source of this event.
+     * @param img       The new profile picture.
+     * @param pfpFormat The format of the new profile picture.
      */
     public ClientPfpUpdateEvent(Object source, BufferedImage img, String pfpFormat) {
         super(source);
@@ -38,6 +49,21 @@ public class ClientPfpUpdateEvent extends ClientProfileUpdateEvent {
         this.pfpFormat = pfpFormat;
     }
 
+    /**
+     * Constructs a new {@code ClientPfpUpdateEvent} carrying only the hash of the
+     * new profile picture, sent by the server once the picture is stored.
+     * 
+     * @param source    The source of this event.
+     * @param pfpHash   The hash of the new profile picture.
+     * @param pfpFormat The format of the new profile picture.
+     */
+    public ClientPfpUpdateEvent(Object source, String pfpHash, String pfpFormat) {
+        super(source);
+
+        this.pfpHash = pfpHash;
+        this.pfpFormat = pfpFormat;
+    }
+
     /**
      * Custom writeObject method because Images are not serializable.
      * 
@@ -47,6 +73,10 @@ public class ClientPfpUpdateEvent extends ClientProfileUpdateEvent {
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
 
+        if (this.newPfp == null) {
+            out.writeObject(null);
+            return;
+        }
         ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
         ImageIO.write(this.newPfp, this.pfpFormat, bufferStream);
 
@@ -66,7 +96,9 @@ public class ClientPfpUpdateEvent extends ClientProfileUpdateEvent {
         in.defaultReadObject();
 
         byte[] bytes = (byte[]) in.readObject();
-        this.newPfp = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (bytes != null) {
+            this.newPfp = ImageIO.read(new ByteArrayInputStream(bytes));
+        }
         // this.pfp = ImageIO.read(in);
     }
 
@@ -88,6 +120,16 @@ public class ClientPfpUpdateEvent extends ClientProfileUpdateEvent {
         this.newPfp = newPfp;
     }
 
+    /**
+     * Retrieves the hash of this event's new pfp.
+     * 
+     * @return the hash of this event's new pfp, or {@code null} if the event
+     *         carries the pfp itself.
+     */
+    public String getPfpHash() {
+        return this.pfpHash;
+    }
+
     /**
      * Retrieves this event's pfp format.
      * 
@@ -0,0 +1,97 @@
+package duberchat.events;
+
+/**
+ * A {@code ClientRequestPfpEvent} is an event that is created when a client
+ * needs a profile picture it has not got yet.
+ * <p>
+ * Users only carry the hash of their profile picture, so a client asks for the
+ * picture with that hash when it first needs to draw it. The server answers
+ * with the same event, filled in with the encoded picture. Since pictures are
+ * named by their hash, the answer never goes stale, and clients only need to
+ * ask for each hash once.
+ * <p>
+ * A client usually asks for one of the
+ * {@link duberchat.chatutil.Thumbnails#SIZES standard sizes}, which the server
+ * has already rendered, rather than the full picture.
+ * <p>
+ * If the server has no picture with the requested hash and size, the answer's
+ * picture is {@code null}.
+ *
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public class ClientRequestPfpEvent extends ClientEvent {
+    static final long serialVersionUID = 1L;
+
+    /** The hash of the requested profile picture. */
+    protected String pfpHash;
+    /** The size of the requested profile picture, or {@code 0} for the full picture. */
+    protected int size;
+    /** The encoded profile picture, once the server has filled it in. */
+    protected byte[] pfpBytes;
+
+    /**
+     * Constructs a new {@code ClientRequestPfpEvent}.
+     *
+     * @param source  The source of this event.
+     * @param pfpHash The hash of the requested profile picture.
+     * @param size    The size of the requested profile picture, or {@code 0} for
+     *                the full picture.
+     */
+    public ClientRequestPfpEvent(Object source, String pfpHash, int size) {
+        super(source);
+
+        this.pfpHash = pfpHash;
+        this.size = size;
+    }
+
+    /**
+     * Constructs a new {@code ClientRequestPfpEvent}.
+     *
+     * @param source   The source of this event.
+     * @param pfpHash  The hash of the requested profile picture.
+     * @param size     The size of the requested profile picture, or {@code 0} for
+     *                 the full picture.
+     * @param pfpBytes The encoded profile picture.
+     */
+    public ClientRequestPfpEvent(Object source, String pfpHash, int size, byte[] pfpBytes) {
+        super(source);
+
+        this.pfpHash = pfpHash;
+        this.size = size;
+        this.pfpBytes = pfpBytes;
+    }
+
+    /**
+     * Retrieves the hash of the requested profile picture.
+     *
+     * @return the hash of the requested profile picture.
+     */
+    public String getPfpHash() {
+        return this.pfpHash;
+    }
+
+    /**
+     * Retrieves the size of the requested profile picture.
+     *
+     * @return the size of the requested profile picture, or {@code 0} for the
+     *         full picture.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the encoded profile picture.
+     *
+     * @return the encoded profile picture, or {@code null} if the server has not
+     *         filled it in or has no such picture.
+     */
+    public byte[] getPfpBytes() {
+        return this.pfpBytes;
+    }
+}
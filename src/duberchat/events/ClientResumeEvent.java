@@ -0,0 +1,63 @@
+package duberchat.events;
+
+import java.util.HashMap;
+
+/**
+ * A {@code ClientResumeEvent} is an event that is created when a client that
+ * lost its connection reconnects, to pick up its session where it left off
+ * instead of logging in again.
+ * <p>
+ * The client presents the session token it was given when it logged in, and
+ * the id of the newest message it has in each of its channels. If the session
+ * is still being kept, the server answers with a {@link SessionResumedEvent}
+ * holding the messages the client missed, followed by every other event that
+ * was meant for the client while it was away. Otherwise, the server answers
+ * with an {@link AuthFailedEvent}, and the client logs in again.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public class ClientResumeEvent extends ClientEvent {
+    static final long serialVersionUID = 1L;
+
+    /** The token of the session to resume. */
+    protected String sessionToken;
+    /** The id of the newest message the client has in each channel, by channel id. */
+    protected HashMap<Integer, Integer> lastMessageIds;
+
+    /**
+     * Constructs a new {@code ClientResumeEvent}.
+     *
+     * @param source         The source of this event.
+     * @param sessionToken   The token of the session to resume.
+     * @param lastMessageIds The id of the newest message the client has in each
+     *                       channel, by channel id.
+     */
+    public ClientResumeEvent(Object source, String sessionToken, HashMap<Integer, Integer> lastMessageIds) {
+        super(source);
+
+        this.sessionToken = sessionToken;
+        this.lastMessageIds = lastMessageIds;
+    }
+
+    /**
+     * Retrieves the token of the session to resume.
+     *
+     * @return the session token.
+     */
+    public String getSessionToken() {
+        return this.sessionToken;
+    }
+
+    /**
+     * Retrieves the id of the newest message the client has in each channel.
+     *
+     * @return a {@code HashMap} of channel id to message id.
+     */
+    public HashMap<Integer, Integer> getLastMessageIds() {
+        return this.lastMessageIds;
+    }
+}
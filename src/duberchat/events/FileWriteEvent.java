@@ -3,7 +3,8 @@ package duberchat.events;
 /**
  * A {@code FileWriteEvent} is an event that is created when a file needs to be updated. 
  * <p>
- * This is from any change to any server-side user or channel.
+ * This is from any change to any server-side user or channel. An event with
+ * nothing to write deletes its file instead.
  * 
  * <p>
  * Since <b>2020-12-08</b>.
@@ -17,6 +18,8 @@ public class FileWriteEvent {
   private Object toWrite;
   /** The file path dictating where to write the object to. */
   private String filePath;
+  /** Runs once the file has been written, or {@code null}. */
+  private Runnable onWritten;
 
   /**
    * Constructs a new {@code FileWriteEvent}.
@@ -29,6 +32,21 @@ public class FileWriteEvent {
     this.filePath = filePath;
   }
 
+  /**
+   * Constructs a new {@code FileWriteEvent} with an action to run, on the file
+   * writing thread, once the file has been written.
+   * 
+   * @param toWrite The object that needs to be written, or {@code null} to
+   *                delete the file
+   * @param filePath The filepath dictating the file to be written to
+   * @param onWritten Runs once the file has been written
+   */
+  public FileWriteEvent(Object toWrite, String filePath, Runnable onWritten) {
+    this.toWrite = toWrite;
+    this.filePath = filePath;
+    this.onWritten = onWritten;
+  }
+
   /**
    * Retrieves the object associated with this event.
    * 
@@ -46,4 +64,13 @@ public class FileWriteEvent {
   public String getFilePath() {
     return this.filePath;
   }
+
+  /**
+   * Retrieves the action to run once the file has been written.
+   * 
+   * @return a {@code Runnable} to run after writing, or {@code null}.
+   */
+  public Runnable getOnWritten() {
+    return this.onWritten;
+  }
 }
@@ -0,0 +1,29 @@
+package duberchat.events;
+
+/**
+ * A {@code HeartbeatEvent} checks that the other end of a connection is still
+ * there.
+ * <p>
+ * The server sends one to a client it has not heard from in a while, and the
+ * client answers with one of its own. Any event from a client shows that it is
+ * alive, so heartbeats only flow over connections that are otherwise quiet.
+ * A heartbeat carries nothing and changes nothing.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public class HeartbeatEvent extends SerializableEvent {
+    static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new {@code HeartbeatEvent}.
+     *
+     * @param source The source of this event.
+     */
+    public HeartbeatEvent(Object source) {
+        super(source);
+    }
+}
@@ -18,11 +18,13 @@ import duberchat.chatutil.Message;
  * @author Joseph Wang
  * @see duberchat.chatutil.Message
  */
-public abstract class MessageEvent extends SerializableEvent {
+public abstract class MessageEvent extends SerializableEvent implements SequencedEvent {
     static final long serialVersionUID = 1L;
 
     /** The message associated with the event. */
     protected Message message;
+    /** This event's sequence number in its channel, or 0 if it has none. */
+    protected long sequence;
 
     /**
      * Constructs a new {@code MessageEvent}.
@@ -44,4 +46,31 @@ public abstract class MessageEvent extends SerializableEvent {
     public Message getMessage() {
         return this.message;
     }
+
+    /**
+     * Retrieves the id of the channel the message is in.
+     * 
+     * @return the channel id.
+     */
+    public int getChannelId() {
+        return this.message.getChannelId();
+    }
+
+    /**
+     * Retrieves this event's sequence number in its channel.
+     * 
+     * @return the sequence number, or 0 if this event is not numbered.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Sets this event's sequence number in its channel.
+     * 
+     * @param sequence the sequence number.
+     */
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
 }
@@ -8,6 +8,10 @@ import duberchat.chatutil.Message;
  * <p>
  * This is the most common event sent, and should be given optimization
  * priority. Sequential order is important for this event.
+ * <p>
+ * A client shows its own message as soon as it is sent, and tags the event with
+ * a nonce of its choosing. The server sends the nonce back with the stored
+ * message, so the client can swap its pending copy for the server's.
  * 
  * <p>
  * Since <b>2020-12-04</b>.
@@ -19,6 +23,9 @@ import duberchat.chatutil.Message;
 public class MessageSentEvent extends MessageEvent {
     static final long serialVersionUID = 1L;
 
+    /** The sending client's nonce for the message, or 0 if it has none. */
+    protected long nonce;
+
     /**
      * Constructs a new {@code MessageSentEvent}.
      * 
@@ -26,6 +33,29 @@ public class MessageSentEvent extends MessageEvent {
      * @param message The new {@code Message}.
      */
     public MessageSentEvent(Object source, Message message) {
+        this(source, message, 0);
+    }
+
+    /**
+     * Constructs a new {@code MessageSentEvent} for a message the sending client
+     * is already showing.
+     * 
+     * @param source  The source of this event.
+     * @param message The new {@code Message}.
+     * @param nonce   The sending client's nonce for the message.
+     */
+    public MessageSentEvent(Object source, Message message, long nonce) {
         super(source, message);
+
+        this.nonce = nonce;
+    }
+
+    /**
+     * Retrieves the sending client's nonce for the message.
+     * 
+     * @return the nonce, or 0 if the message has none.
+     */
+    public long getNonce() {
+        return this.nonce;
     }
 }
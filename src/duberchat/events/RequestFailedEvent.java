@@ -12,6 +12,11 @@ package duberchat.events;
  * and full-fledged specific events.
  * 
  * <p>
+ * A request that was turned down because the client sent too many of its kind
+ * too quickly carries a retry-after hint: how long until the same request would
+ * be accepted.
+ * 
+ * <p>
  * Since <b>2020-12-04</b>.
  * 
  * @since 1.0.0
@@ -21,12 +26,65 @@ package duberchat.events;
 public class RequestFailedEvent extends SerializableEvent {
     static final long serialVersionUID = 1L;
 
+    /** The time until the request would be accepted, in milliseconds, or 0. */
+    private long retryAfterMillis;
+    /** The nonce of the message that was turned down, or 0. */
+    private long messageNonce;
+
     /**
      * Constructs a new {@code RequestFailedEvent}.
      * 
      * @param source The source of this event.
      */
     public RequestFailedEvent(Object source) {
+        this(source, 0);
+    }
+
+    /**
+     * Constructs a new {@code RequestFailedEvent} for a request that was sent too
+     * quickly.
+     * 
+     * @param source           The source of this event.
+     * @param retryAfterMillis The time until the request would be accepted, in
+     *                         milliseconds.
+     */
+    public RequestFailedEvent(Object source, long retryAfterMillis) {
+        this(source, retryAfterMillis, 0);
+    }
+
+    /**
+     * Constructs a new {@code RequestFailedEvent} for a message that was turned
+     * down.
+     * 
+     * @param source           The source of this event.
+     * @param retryAfterMillis The time until the message would be accepted, in
+     *                         milliseconds, or 0.
+     * @param messageNonce     The nonce the client sent the message with.
+     */
+    public RequestFailedEvent(Object source, long retryAfterMillis, long messageNonce) {
         super(source);
+
+        this.retryAfterMillis = retryAfterMillis;
+        this.messageNonce = messageNonce;
+    }
+
+    /**
+     * Retrieves the time until the failed request would be accepted, if it failed
+     * because it was sent too quickly.
+     * 
+     * @return the time in milliseconds, or 0 if retrying would not help.
+     */
+    public long getRetryAfterMillis() {
+        return this.retryAfterMillis;
+    }
+
+    /**
+     * Retrieves the nonce of the message that was turned down, if the request was
+     * a message.
+     * 
+     * @return the nonce, or 0 if the request was not a message with a nonce.
+     */
+    public long getMessageNonce() {
+        return this.messageNonce;
     }
 }
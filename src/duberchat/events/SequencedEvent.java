@@ -0,0 +1,45 @@
+package duberchat.events;
+
+/**
+ * The {@code SequencedEvent} interface is designed to be used with events that
+ * change a channel, and are numbered in the order the server sent them.
+ * <p>
+ * Every event the server sends about a channel (new, edited and deleted
+ * messages, and membership and rank changes) is given the channel's next
+ * sequence number, starting from 1, and a {@link duberchat.chatutil.Channel
+ * Channel} remembers the sequence number of the last event applied to it. A
+ * client that gets an event numbered more than one past its channel's knows
+ * that it missed events, and asks for just those with a
+ * {@link ChannelResyncEvent}.
+ * <p>
+ * Events about a channel that are not part of its history (such as creating or
+ * deleting the channel) have the sequence number 0.
+ * <p>
+ * Created <b>2026-10-18</b>
+ * 
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ */
+public interface SequencedEvent {
+    /**
+     * Retrieves the id of the channel this event belongs to.
+     * 
+     * @return the channel id.
+     */
+    public int getChannelId();
+
+    /**
+     * Retrieves this event's sequence number in its channel.
+     * 
+     * @return the sequence number, or 0 if this event is not numbered.
+     */
+    public long getSequence();
+
+    /**
+     * Sets this event's sequence number in its channel.
+     * 
+     * @param sequence the sequence number.
+     */
+    public void setSequence(long sequence);
+}
@@ -0,0 +1,68 @@
+package duberchat.events;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import duberchat.chatutil.Message;
+
+/**
+ * A {@code SessionResumedEvent} is a specific authentication event that
+ * represents a client picking its session back up after reconnecting.
+ * <p>
+ * Rather than everything a login sends, it only holds the messages the client
+ * missed in each channel: those newer than the newest message the client had.
+ * Membership changes, status updates and anything else meant for the client
+ * while it was away follow as the usual events, so the client only hears about
+ * what changed.
+ * <p>
+ * The event also carries a new session token, which replaces the old one.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ */
+public class SessionResumedEvent extends AuthEvent {
+    static final long serialVersionUID = 1L;
+
+    /** The token that resumes the session the next time. */
+    protected String sessionToken;
+    /** The messages the client missed, oldest first, by channel id. */
+    protected HashMap<Integer, ArrayList<Message>> missedMessages;
+
+    /**
+     * Constructs a new {@code SessionResumedEvent}.
+     *
+     * @param source         The source of this event.
+     * @param sessionToken   The token that resumes the session the next time.
+     * @param missedMessages The messages the client missed, oldest first, by
+     *                       channel id.
+     */
+    public SessionResumedEvent(Object source, String sessionToken,
+            HashMap<Integer, ArrayList<Message>> missedMessages) {
+        super(source);
+
+        this.sessionToken = sessionToken;
+        this.missedMessages = missedMessages;
+    }
+
+    /**
+     * Retrieves the token that resumes the session the next time.
+     *
+     * @return the session token.
+     */
+    public String getSessionToken() {
+        return this.sessionToken;
+    }
+
+    /**
+     * Retrieves the messages the client missed.
+     *
+     * @return a {@code HashMap} of channel id to the channel's missed messages,
+     *         oldest first.
+     */
+    public HashMap<Integer, ArrayList<Message>> getMissedMessages() {
+        return this.missedMessages;
+    }
+}
@@ -19,7 +19,6 @@ import javax.swing.JButton;
 import javax.swing.JPasswordField;
 import javax.swing.JLabel;
 
-import duberchat.events.ClientLoginEvent;
 import duberchat.client.ChatClient;
 import duberchat.gui.filters.TextLengthFilter;
 import duberchat.gui.filters.LimitingRegexFilter;
@@ -257,7 +256,7 @@ public class LoginFrame extends DynamicGridbagFrame {
 
         boolean isNewUser = newUserCheckbox.isSelected();
 
-        client.offerEvent(new ClientLoginEvent(null, isNewUser, username, password));
+        client.sendLogin(isNewUser, username, password);
 
         // Add connecting... text to aid user
         mainPanel.remove(failedText); // attempt to remove failed text
@@ -41,15 +41,16 @@ import javax.swing.JLabel;
 import javax.swing.UIManager;
 
 import javax.imageio.ImageIO;
+import duberchat.chatutil.Thumbnails;
 import duberchat.events.ChannelHierarchyChangeEvent;
 import duberchat.events.ChannelAddMemberEvent;
 import duberchat.events.ChannelRemoveMemberEvent;
 import duberchat.events.ChannelDeleteEvent;
 import duberchat.events.ChannelEvent;
-import duberchat.events.MessageSentEvent;
 import duberchat.events.MessageEvent;
 import duberchat.events.ClientProfileUpdateEvent;
 import duberchat.events.ClientRequestMessageEvent;
+import duberchat.events.ClientRequestPfpEvent;
 import duberchat.events.ClientEvent;
 import duberchat.events.FriendAddEvent;
 import duberchat.events.FriendEvent;
@@ -62,6 +63,7 @@ import duberchat.gui.panels.ChannelPanel;
 import duberchat.gui.panels.MessagePanel;
 import duberchat.gui.panels.UserPanel;
 import duberchat.client.ChatClient;
+import duberchat.client.PendingMessages.PendingMessage;
 
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.Message;
@@ -114,6 +116,8 @@ public class MainFrame extends DynamicFrame {
     public static final Color SECONDARY_TEXT_COLOR = new Color(180, 180, 180);
     /** An alternative "bright text color" of this application. */
     public static final Color BRIGHT_TEXT_COLOR = new Color(220, 220, 220);
+    /** The text color of messages that failed to send. */
+    public static final Color FAILED_TEXT_COLOR = new Color(220, 90, 90);
 
     /** A heading font for the important messages in this frame. */
     public static final Font HEADING_FONT = new Font("Courier", Font.BOLD, 16);
@@ -354,7 +358,7 @@ public class MainFrame extends DynamicFrame {
         profileLabel.setFont(HEADING_FONT);
         profileButton = ComponentFactory.createButton("", TEXT_COLOR, PANEL_COLOR);
         profileButton.setBorder(null);
-        profileButton.setIcon(new ImageIcon(client.getUser().getPfp().getScaledInstance(48, 48, Image.SCALE_SMOOTH)));
+        profileButton.setIcon(client.getAvatar(client.getUser(), Thumbnails.MEDIUM));
         profileButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent evt) {
                 displayProfile();
@@ -520,6 +524,12 @@ public class MainFrame extends DynamicFrame {
             this.reloadMessages(); // to deal with message discrepancies (pfp)
             this.reloadProfile();
 
+        } else if (source instanceof ClientRequestPfpEvent) {
+            this.reloadUsers();
+            this.reloadFriends();
+            this.reloadMessages(); // a fetched pfp replaces its placeholder everywhere
+            this.reloadProfile();
+
         } else if (source instanceof ClientRequestMessageEvent) {
             this.resetRequestedMessages();
             this.reloadMessages();
@@ -581,7 +591,7 @@ public class MainFrame extends DynamicFrame {
     private synchronized void reloadProfile() {
         String profileText = this.client.getUser().getUsername() + " (" + this.client.getUser().getStringStatus() + ")";
         profileLabel.setText(profileText);
-        profileButton.setIcon(new ImageIcon(client.getUser().getPfp().getScaledInstance(48, 48, Image.SCALE_SMOOTH)));
+        profileButton.setIcon(client.getAvatar(client.getUser(), Thumbnails.MEDIUM));
     }
 
     /**
@@ -604,6 +614,16 @@ public class MainFrame extends DynamicFrame {
         LinkedHashMap<String, User> users = sourceChannel.getUsers();
         HashSet<User> adminUsers = sourceChannel.getAdminUsers();
 
+        // Pending messages go after the channel's messages, until the server places them.
+        ArrayList<PendingMessage> pending = client.getPendingMessages().getPending(sourceChannel.getChannelId());
+        int numSent = messages.size();
+        if (!pending.isEmpty()) {
+            messages = new ArrayList<>(messages);
+            for (PendingMessage pendingMsg : pending) {
+                messages.add(pendingMsg.getMessage());
+            }
+        }
+
         for (int messageIndex = 0; messageIndex < messages.size(); messageIndex++) {
             // Only display messages within the max message grids range, taking account
             // message offset.
@@ -628,7 +648,9 @@ public class MainFrame extends DynamicFrame {
                 showHeader = true;
             }
 
-            textPanel.add(new MessagePanel(client, sender, msg, showHeader, showAdmin, textPanel.getWidth()));
+            PendingMessage pendingMsg = (messageIndex >= numSent) ? pending.get(messageIndex - numSent) : null;
+            textPanel.add(new MessagePanel(client, sender, msg, showHeader, showAdmin, textPanel.getWidth(),
+                    pendingMsg));
         }
     }
 
@@ -874,9 +896,12 @@ public class MainFrame extends DynamicFrame {
 
     /**
      * Attempts to send a message to the server.
+     * <p>
+     * The message is shown as pending straight away, until the server sends it
+     * back.
      */
     private void sendMessage() {
-        if (typeField.getText() == "") {
+        if (typeField.getText().equals("")) {
             return;
         }
 
@@ -884,8 +909,10 @@ public class MainFrame extends DynamicFrame {
         String timestamp = new Date().toString();
         int channelId = client.getCurrentChannel().getChannelId();
         Message msg = new Message(typeField.getText(), clientUsername, -1, timestamp, channelId);
-        client.offerEvent(new MessageSentEvent(clientUsername, msg));
+        PendingMessage pending = client.getPendingMessages().send(msg);
         typeField.setText("");
+
+        this.reload(pending.getEvent());
     }
 
     /**
@@ -1168,17 +1195,17 @@ public class MainFrame extends DynamicFrame {
 
                 Channel curChannel = client.getCurrentChannel();
                 // if there are still messages, load them
-                if (curChannel.getMessages().size() > maxMessageGrids
-                        && curChannel.getMessages().size() - messageOffset > maxMessageGrids) {
+                int numMessages = curChannel.getNumMessages();
+                if (numMessages > maxMessageGrids && numMessages - messageOffset > maxMessageGrids) {
                     messageOffset++;
                     onlyReloadMessages();
 
                     // otherwise request more messages from the server
-                } else if (curChannel.getMessages().size() >= Channel.LOCAL_SAVE_AMT
-                        && (curChannel.getMessages().size() - messageOffset) <= maxMessageGrids && !requestedMessages) {
+                } else if (numMessages >= Channel.LOCAL_SAVE_AMT
+                        && (numMessages - messageOffset) <= maxMessageGrids && !requestedMessages) {
 
                     String clientUsername = client.getUser().getUsername();
-                    int startId = curChannel.getMessages().get(0).getMessageId();
+                    int startId = curChannel.getOldestMessage().getMessageId();
                     int channelId = curChannel.getChannelId();
 
                     client.offerEvent(new ClientRequestMessageEvent(clientUsername, startId, channelId));
@@ -15,7 +15,6 @@ import javax.swing.JLabel;
 import java.awt.Dimension;
 import java.awt.GridBagLayout;
 import java.awt.GridBagConstraints;
-import java.awt.Image;
 import java.awt.Insets;
 import java.awt.Point;
 
@@ -26,6 +25,7 @@ import duberchat.events.ChannelDemoteMemberEvent;
 import duberchat.events.FriendAddEvent;
 import duberchat.client.ChatClient;
 import duberchat.gui.util.ComponentFactory;
+import duberchat.chatutil.Thumbnails;
 import duberchat.chatutil.User;
 
 /**
@@ -160,7 +160,7 @@ public class OtherUserProfileFrame extends DynamicGridbagFrame {
         mainPanel.setLayout(layout);
 
         profilePicture = ComponentFactory
-        .createImageLabel(otherUser.getPfp().getScaledInstance(128, 128, Image.SCALE_SMOOTH));
+        .createImageLabel(client.getAvatar(otherUser, Thumbnails.LARGE));
         profilePicture.setBorder(BorderFactory.createRaisedBevelBorder());
 
         String usernameText = otherUser.getUsername() + " ("+ otherUser.getStringStatus() + ")";
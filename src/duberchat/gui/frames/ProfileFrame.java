@@ -36,6 +36,7 @@ import duberchat.events.ClientPfpUpdateEvent;
 import duberchat.events.ClientProfileUpdateEvent;
 import duberchat.events.ClientPasswordUpdateEvent;
 import duberchat.events.SerializableEvent;
+import duberchat.chatutil.Thumbnails;
 import duberchat.chatutil.User;
 
 /**
@@ -90,6 +91,8 @@ public class ProfileFrame extends DynamicGridbagFrame {
     private BufferedImage currentPfp;
     /** This user's current local profile picture's format. */
     private String currentPfpFormat;
+    /** Whether a new local profile picture has been picked since the last save. */
+    private boolean pfpChanged;
     /** The icon with this user's local current profile pictures. */
     private ImageIcon currentPfpIcon;
     /** The icon with the "add Pfp" icon. */
@@ -139,11 +142,9 @@ public class ProfileFrame extends DynamicGridbagFrame {
         mainPanel.setLayout(layout);
 
         try {
-            this.currentPfp = user.getPfp();
-            this.profilePicture = ComponentFactory
-                    .createImageLabel(currentPfp.getScaledInstance(128, 128, Image.SCALE_SMOOTH));
+            this.currentPfpIcon = client.getAvatar(user, Thumbnails.LARGE);
+            this.profilePicture = ComponentFactory.createImageLabel(currentPfpIcon);
 
-            this.currentPfpIcon = new ImageIcon(currentPfp.getScaledInstance(128, 128, Image.SCALE_SMOOTH));
             this.addPfpIcon = new ImageIcon(ImageIO.read(new File("data/system/plus sign.png")).getScaledInstance(128,
                     128,
             Image.SCALE_SMOOTH));
@@ -268,7 +269,8 @@ public class ProfileFrame extends DynamicGridbagFrame {
                 this.currentPfpFormat = fileLocation.substring(fileLocation.lastIndexOf(".") + 1);
 
                 this.currentPfp = ImageIO.read(fc.getSelectedFile().getAbsoluteFile());
-                this.currentPfpIcon = new ImageIcon(currentPfp.getScaledInstance(128, 128, Image.SCALE_SMOOTH));
+                this.pfpChanged = true;
+                this.currentPfpIcon = new ImageIcon(Thumbnails.scale(currentPfp, Thumbnails.LARGE));
                 profilePicture.setIcon(currentPfpIcon);
             } catch (IOException e2) {
                 System.out.println("SYSTEM: Failed to load new profile picture");
@@ -313,7 +315,8 @@ public class ProfileFrame extends DynamicGridbagFrame {
             client.offerEvent(new ClientStatusUpdateEvent(clientUsername, status));
         }
 
-        if (!client.getUser().pfpEquals(currentPfp)) {
+        if (pfpChanged) {
+            pfpChanged = false;
             client.offerEvent(new ClientPfpUpdateEvent(clientUsername, currentPfp, currentPfpFormat));
         }
 
@@ -9,7 +9,6 @@ import java.awt.Dimension;
 import java.awt.GridBagLayout;
 import java.awt.FlowLayout;
 import java.awt.Font;
-import java.awt.Image;
 import java.awt.GridBagConstraints;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
@@ -17,6 +16,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseAdapter;
 
+import duberchat.chatutil.Thumbnails;
 import duberchat.chatutil.User;
 import duberchat.client.ChatClient;
 import duberchat.events.ChannelCreateEvent;
@@ -113,7 +113,7 @@ public class FriendPanel extends JPanel {
         userLabel.setPreferredSize(new Dimension((frameWidth / 6) * 4, MainFrame.MESSAGE_PANEL_HEIGHT));
         userLabel.setMinimumSize(userLabel.getPreferredSize());
 
-        picture = ComponentFactory.createImageLabel(friend.getPfp().getScaledInstance(32, 32, Image.SCALE_SMOOTH));
+        picture = ComponentFactory.createImageLabel(client.getAvatar(friend, Thumbnails.SMALL));
         picture.setPreferredSize(new Dimension(32, 32));
         picture.setMinimumSize(picture.getPreferredSize());
         picture.setMaximumSize(picture.getPreferredSize());
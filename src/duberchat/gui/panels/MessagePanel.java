@@ -4,7 +4,6 @@ import java.awt.Dimension;
 import java.awt.GridBagLayout;
 import java.awt.FlowLayout;
 import java.awt.Font;
-import java.awt.Image;
 import java.awt.GridBagConstraints;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
@@ -23,8 +22,10 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 
 import duberchat.chatutil.Message;
+import duberchat.chatutil.Thumbnails;
 import duberchat.chatutil.User;
 import duberchat.client.ChatClient;
+import duberchat.client.PendingMessages.PendingMessage;
 import duberchat.events.MessageDeleteEvent;
 import duberchat.events.MessageEditEvent;
 import duberchat.gui.frames.DynamicGridbagFrame;
@@ -41,6 +42,10 @@ import duberchat.gui.filters.TextLengthFilter;
  * This panel is designed to be able to be constructed fast and simply. It
  * optimizes what it can.
  * <p>
+ * A message the server has not sent back yet is shown dimmed, without any
+ * buttons. If it failed to send, it is marked as not sent, with buttons to send
+ * it again or discard it.
+ * <p>
  * Created <b>2020-12-10</b>
  * 
  * @since 1.0.0
@@ -61,11 +66,17 @@ public class MessagePanel extends JPanel {
     protected ChatClient client;
     /** The sender of this message. */
     private User sender;
+    /** The pending message this panel represents, or null if the server has it. */
+    private PendingMessage pending;
 
     /** The edit button for editing a message. */
     private JButton editButton;
     /** The delete button for deleting a message. */
     private JButton deleteButton;
+    /** The retry button for sending a failed message again. */
+    private JButton retryButton;
+    /** The discard button for forgetting a failed message. */
+    private JButton discardButton;
 
     /** The message to be displayed. */
     private JLabel message;
@@ -102,6 +113,25 @@ public class MessagePanel extends JPanel {
      */
     public MessagePanel(ChatClient client, User sender, Message msg, boolean showHeader, boolean showAdmin,
             int frameWidth) {
+        this(client, sender, msg, showHeader, showAdmin, frameWidth, null);
+    }
+
+    /**
+     * Constructs a new {@code MessagePanel} for a message that may still be
+     * pending.
+     * 
+     * @param client     the associated client.
+     * @param sender     the sender user.
+     * @param msg        the message that this panel represents.
+     * @param showHeader whether this panel should show a header or not.
+     * @param showAdmin  whether this panel should show admin features or not (if
+     *                   the client is admin).
+     * @param frameWidth the width of this frame.
+     * @param pending    the pending message this panel represents, or null if
+     *                   the server has sent the message back.
+     */
+    public MessagePanel(ChatClient client, User sender, Message msg, boolean showHeader, boolean showAdmin,
+            int frameWidth, PendingMessage pending) {
         super();
 
         this.showHeader = showHeader;
@@ -109,6 +139,7 @@ public class MessagePanel extends JPanel {
         this.msg = msg;
         this.sender = sender;
         this.client = client;
+        this.pending = pending;
 
         this.initializeComponents(frameWidth);
         this.reload();
@@ -143,7 +174,7 @@ public class MessagePanel extends JPanel {
 
         // Create picture based on header
         if (this.isShowingHeader()) {
-            picture = ComponentFactory.createImageLabel(sender.getPfp().getScaledInstance(32, 32, Image.SCALE_SMOOTH));
+            picture = ComponentFactory.createImageLabel(client.getAvatar(sender, Thumbnails.SMALL));
         } else {
             picture = ComponentFactory.createLabel("");
         }
@@ -151,7 +182,13 @@ public class MessagePanel extends JPanel {
         picture.setMinimumSize(picture.getPreferredSize());
         picture.setMaximumSize(picture.getPreferredSize());
 
-        message = ComponentFactory.createLabel(msg.getMessage(), MainFrame.BRIGHT_TEXT_COLOR);
+        if (!this.isPending()) {
+            message = ComponentFactory.createLabel(msg.getMessage(), MainFrame.BRIGHT_TEXT_COLOR);
+        } else if (pending.isFailed()) {
+            message = ComponentFactory.createLabel(msg.getMessage() + "  (not sent)", MainFrame.FAILED_TEXT_COLOR);
+        } else {
+            message = ComponentFactory.createLabel(msg.getMessage(), MainFrame.TEXT_COLOR);
+        }
         message.setPreferredSize(new Dimension((frameWidth / 6) * 4, MainFrame.MESSAGE_PANEL_HEIGHT / 2));
         message.setMinimumSize(message.getPreferredSize());
         messagePanel.add(message);
@@ -204,8 +241,13 @@ public class MessagePanel extends JPanel {
         deleteButton.setVisible(false);
         deleteButton.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 
-        // Only let people edit and delete if they are the creator of the message
-        if (sender.equals(client.getUser())) {
+        // A pending message has no id to edit or delete it by until the server sends it back
+        if (this.isPending()) {
+            if (pending.isFailed()) {
+                this.initializeFailedButtons();
+            }
+        } else if (sender.equals(client.getUser())) {
+            // Only let people edit and delete if they are the creator of the message
             buttonPanel.add(editButton);
             buttonPanel.add(deleteButton);
         } else if (this.showAdmin) {
@@ -213,6 +255,33 @@ public class MessagePanel extends JPanel {
         }
     }
 
+    /**
+     * Initializes the buttons for sending a failed message again or discarding
+     * it, which are always shown.
+     */
+    private void initializeFailedButtons() {
+        retryButton = ComponentFactory.createButton("RETRY", MainFrame.TEXT_COLOR, MainFrame.MAIN_COLOR,
+                new ActionListener() {
+                    public void actionPerformed(ActionEvent e) {
+                        client.getPendingMessages().retry(pending.getNonce());
+                        client.getMainMenuFrame().reload(pending.getEvent());
+                    }
+                });
+        retryButton.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        discardButton = ComponentFactory.createButton("DISCARD", MainFrame.TEXT_COLOR, MainFrame.MAIN_COLOR,
+                new ActionListener() {
+                    public void actionPerformed(ActionEvent e) {
+                        client.getPendingMessages().discard(pending.getNonce());
+                        client.getMainMenuFrame().reload(pending.getEvent());
+                    }
+                });
+        discardButton.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        buttonPanel.add(retryButton);
+        buttonPanel.add(discardButton);
+    }
+
     /**
      * Does a reload on this frame, and readds components.
      */
@@ -268,7 +337,7 @@ public class MessagePanel extends JPanel {
 
         // If the client didn't have main menu or a channel, this panel wouldn't exist
         // It's okay to assume these two things exist
-        client.getCurrentChannel().getMessages().remove(msg);
+        client.getCurrentChannel().removeMessage(msg.getMessageId());
 
         // Ensure this message locally disappears so that no other action happens to it.
         client.getMainMenuFrame().reload(deleteEvent);
@@ -316,6 +385,15 @@ public class MessagePanel extends JPanel {
         this.reload();
     }
 
+    /**
+     * Checks if this panel represents a message the server has not sent back.
+     * 
+     * @return true if the message is pending.
+     */
+    public boolean isPending() {
+        return this.pending != null;
+    }
+
     /**
      * Checks if this message is currently showing a header.
      * 
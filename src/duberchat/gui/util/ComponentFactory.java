@@ -378,6 +378,23 @@ public class ComponentFactory {
         return newLabel;
     }
 
+    /**
+     * Constructs a new {@link javax.swing.JLabel JLabel} displaying an icon that
+     * has already been created, such as a cached profile picture.
+     *
+     * @param icon the icon to be displayed.
+     *
+     * @return a new {@code JLabel} with the icon displayed.
+     * @see javax.swing.JLabel
+     */
+    public static JLabel createImageLabel(ImageIcon icon) {
+        JLabel newLabel = ComponentFactory.createLabel("", UIManager.getColor("Label.foreground"),
+                UIManager.getColor("Label.background"));
+        newLabel.setIcon(icon);
+
+        return newLabel;
+    }
+
     /**
      * Constructs a new {@link javax.swing.JTextField JTextField} based on the
      * provided parameters.
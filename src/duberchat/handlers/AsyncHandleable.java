@@ -0,0 +1,55 @@
+package duberchat.handlers;
+
+import java.util.concurrent.CompletionStage;
+
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code AsyncHandleable} interface is an optional extension of
+ * {@link Handleable} for handlers whose work is slow enough that it should not
+ * hold up the thread that handed them the event, such as reading old messages
+ * from disk or rendering pictures.
+ * <p>
+ * Instead of doing its work right away, an {@code AsyncHandleable} handler
+ * starts it (usually on an executor of the client or server) and returns a
+ * stage that completes once it is done, or completes exceptionally if it
+ * failed. The server's event lanes and the client's event loop move on to the
+ * next event straight away, and keep many such handlers in flight at once. Both
+ * wait on the stage only to report errors, and give up on it after a timeout.
+ * <p>
+ * Asynchronous handlers are registered in the same handler maps as every other
+ * handler. Anything that only knows of {@code Handleable} can still call
+ * {@link #handleEvent(SerializableEvent)}, which waits for the work to finish.
+ * <p>
+ * Created <b>2026-10-18</b>
+ * 
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ * @see AsyncHandlers
+ */
+public interface AsyncHandleable extends Handleable {
+    /**
+     * Starts handling a specified event according to this handler's
+     * implementation.
+     * 
+     * @param event the specific event to handle.
+     * @return a stage that completes once the event has been handled, or
+     *         completes exceptionally if handling it failed.
+     */
+    public CompletionStage<Void> handleEventAsync(SerializableEvent event);
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Starts handling the event, then waits up to
+     * {@link AsyncHandlers#DEFAULT_TIMEOUT_MS} for it to be handled. Whatever the
+     * handling failed with is rethrown, wrapped in a
+     * {@code java.util.concurrent.CompletionException}.
+     * 
+     * @param event {@inheritDoc}
+     */
+    public default void handleEvent(SerializableEvent event) {
+        AsyncHandlers.await(AsyncHandlers.call(this, event), AsyncHandlers.DEFAULT_TIMEOUT_MS);
+    }
+}
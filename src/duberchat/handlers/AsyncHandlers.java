@@ -0,0 +1,153 @@
+package duberchat.handlers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code AsyncHandlers} class calls event handlers of either style, blocking
+ * {@link Handleable} or {@link AsyncHandleable}, the same way, so that the
+ * client and server can register and dispatch to both while handlers move from
+ * one style to the other.
+ * <p>
+ * Calling a handler always gives back a future of the caller's own: a blocking
+ * handler has already run by then, while an asynchronous one may still be
+ * running. Errors come back through the future either way, whether a handler
+ * threw them or its stage completed with them, and a future can be given a
+ * timeout after which it fails with a {@code TimeoutException}.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ */
+public class AsyncHandlers {
+    /** The time, in milliseconds, that a handler gets to handle an event. */
+    public static final long DEFAULT_TIMEOUT_MS = 10000;
+
+    /** Fails futures that run out of time. */
+    private static final ScheduledThreadPoolExecutor timeouts;
+
+    static {
+        timeouts = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread timeoutThread = new Thread(task, "handler-timeouts");
+                timeoutThread.setDaemon(true);
+                return timeoutThread;
+            }
+        });
+        // most handlers finish well before their timeout
+        timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    private AsyncHandlers() {
+    }
+
+    /**
+     * Calls a handler of either style with an event.
+     *
+     * @param handler the handler to call.
+     * @param event   the event to handle.
+     * @return a future that completes once the event has been handled, or
+     *         completes exceptionally with whatever handling it failed with.
+     */
+    public static CompletableFuture<Void> call(Handleable handler, SerializableEvent event) {
+        final CompletableFuture<Void> handled = new CompletableFuture<>();
+        try {
+            if (!(handler instanceof AsyncHandleable)) {
+                handler.handleEvent(event);
+                handled.complete(null);
+                return handled;
+            }
+
+            CompletionStage<Void> stage = ((AsyncHandleable) handler).handleEventAsync(event);
+            if (stage == null) {
+                handled.complete(null);
+                return handled;
+            }
+            stage.whenComplete(new BiConsumer<Void, Throwable>() {
+                public void accept(Void result, Throwable error) {
+                    if (error != null) {
+                        handled.completeExceptionally(AsyncHandlers.unwrap(error));
+                    } else {
+                        handled.complete(null);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            handled.completeExceptionally(e);
+        }
+        return handled;
+    }
+
+    /**
+     * Makes a future fail with a {@code TimeoutException} if it has not completed
+     * in time. Whatever work the future stands for is not stopped.
+     *
+     * @param future    the future.
+     * @param timeoutMs the time it gets to complete, in milliseconds.
+     * @return the same future.
+     */
+    public static CompletableFuture<Void> withTimeout(final CompletableFuture<Void> future, final long timeoutMs) {
+        if (future.isDone()) {
+            return future;
+        }
+        final ScheduledFuture<?> timeout = timeouts.schedule(new Runnable() {
+            public void run() {
+                future.completeExceptionally(new TimeoutException("not handled within " + timeoutMs + " ms"));
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        future.whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void result, Throwable error) {
+                timeout.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Waits for a handler's stage to complete.
+     *
+     * @param stage     the stage to wait for.
+     * @param timeoutMs the most time to wait, in milliseconds.
+     * @throws CompletionException if the stage completed exceptionally or did not
+     *                             complete in time, with the reason as its cause.
+     */
+    public static void await(CompletionStage<Void> stage, long timeoutMs) {
+        try {
+            stage.toCompletableFuture().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new CompletionException(AsyncHandlers.unwrap(e.getCause()));
+        } catch (TimeoutException e) {
+            throw new CompletionException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Finds the error a handler actually failed with, under the wrappers that
+     * completion stages add.
+     *
+     * @param error the error a stage completed with.
+     * @return the error underneath.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
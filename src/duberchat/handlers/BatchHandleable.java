@@ -0,0 +1,32 @@
+package duberchat.handlers;
+
+import java.util.List;
+
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code BatchHandleable} interface is an optional extension of
+ * {@link Handleable} for handlers that can handle many events of their kind
+ * at once more cheaply than one by one, such as by writing to a log or
+ * broadcasting to a channel once for the whole batch.
+ * <p>
+ * When events pile up, the server's event lanes take several at a time, and
+ * give every run of consecutive events of the same class to a
+ * {@code BatchHandleable} handler together. Handlers that only implement
+ * {@code Handleable} still get their events one by one.
+ * <p>
+ * Created <b>2026-10-18</b>
+ * 
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang, Paula Yuan
+ */
+public interface BatchHandleable extends Handleable {
+    /**
+     * Handles several events of the same class, in the order given, as if
+     * {@link #handleEvent(SerializableEvent)} had been called for each.
+     * 
+     * @param events the events to handle, oldest first.
+     */
+    public void handleEvents(List<SerializableEvent> events);
+}
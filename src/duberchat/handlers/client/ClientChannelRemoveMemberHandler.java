@@ -1,9 +1,6 @@
 package duberchat.handlers.client;
 
-import java.util.ArrayList;
-
 import duberchat.chatutil.Channel;
-import duberchat.chatutil.Message;
 import duberchat.client.ChatClient;
 import duberchat.events.SerializableEvent;
 import duberchat.events.ChannelRemoveMemberEvent;
@@ -65,12 +62,7 @@ public class ClientChannelRemoveMemberHandler implements Handleable {
             localChannel.removeUser(localChannel.getUsers().get(userToRemove));
 
             // Remove all messages by this user.
-            ArrayList<Message> localMessages = localChannel.getMessages();
-            for (int i = localMessages.size() - 1; i >= 0; i--) {
-                if (localMessages.get(i).getSenderUsername().equals(userToRemove)) {
-                    localMessages.remove(i);
-                }
-            }
+            localChannel.removeMessagesFrom(userToRemove);
 
             // We only need to reload if we are currently looking at the channel
             if (curChannel != null && curChannel.getChannelId() == modifiedChannelId) {
@@ -0,0 +1,60 @@
+package duberchat.handlers.client;
+
+import duberchat.chatutil.Channel;
+import duberchat.client.ChatClient;
+import duberchat.events.ChannelResyncEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.handlers.Handleable;
+
+/**
+ * the {@code ClientChannelResyncHandler} class provides the client-side
+ * implementation for handling the {@code ChannelResyncEvent} sent from the
+ * server.
+ * <p>
+ * The server only sends this event back when it no longer has the events this
+ * client missed; the missed events themselves are handled by their usual
+ * handlers.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ * @see duberchat.events.ChannelResyncEvent
+ */
+public class ClientChannelResyncHandler implements Handleable {
+    /** The associated client this handler is attached to. */
+    protected ChatClient client;
+
+    /**
+     * Constructs a new {@code ClientChannelResyncHandler}.
+     *
+     * @param client the client that this handler is attached to.
+     */
+    public ClientChannelResyncHandler(ChatClient client) {
+        this.client = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Replaces the client's copy of the channel with the fresh copy from the
+     * server.
+     *
+     * @param event {@inheritDoc}
+     */
+    public void handleEvent(SerializableEvent event) {
+        ChannelResyncEvent resyncEvent = (ChannelResyncEvent) event;
+        Channel freshChannel = resyncEvent.getNewChannel();
+        int channelId = resyncEvent.getChannelId();
+        if (freshChannel == null || !this.client.getChannels().containsKey(channelId)) {
+            return;
+        }
+
+        this.client.getChannels().put(channelId, freshChannel);
+        if (this.client.hasCurrentChannel() && this.client.getCurrentChannel().getChannelId() == channelId) {
+            this.client.setCurrentChannel(freshChannel);
+            this.client.getMainMenuFrame().reload(event);
+        }
+    }
+}
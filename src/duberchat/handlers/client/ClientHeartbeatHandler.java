@@ -0,0 +1,47 @@
+package duberchat.handlers.client;
+
+import duberchat.client.ChatClient;
+import duberchat.events.HeartbeatEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.handlers.Handleable;
+
+/**
+ * the {@code ClientHeartbeatHandler} class provides the client-side
+ * implementation for handling the {@code HeartbeatEvent} sent from the server.
+ * <p>
+ * The server sends a heartbeat when it has not heard from this client in a
+ * while, and disconnects clients that do not answer, so this handler answers
+ * straight away.
+ * <p>
+ * Created <b>2026-10-18</b>
+ * 
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ * @see duberchat.events.HeartbeatEvent
+ */
+public class ClientHeartbeatHandler implements Handleable {
+    /** The associated client this handler is attached to. */
+    protected ChatClient client;
+
+    /**
+     * Constructs a new {@code ClientHeartbeatHandler}.
+     * 
+     * @param client the client that this handler is attached to.
+     */
+    public ClientHeartbeatHandler(ChatClient client) {
+        this.client = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answers the server's heartbeat with one of this client's own.
+     * 
+     * @param event {@inheritDoc}
+     */
+    public void handleEvent(SerializableEvent event) {
+        Object source = (this.client.getUser() == null) ? null : this.client.getUser().getUsername();
+        this.client.offerEvent(new HeartbeatEvent(source));
+    }
+}
@@ -49,7 +49,7 @@ public class ClientMessageDeleteHandler implements Handleable {
         // Remove the message regardless of sender to ensure a proper synchronized
         // message list
         // We can assume that since we got this event, we have this channel
-        localChannel.getMessages().remove(message);
+        localChannel.removeMessage(message.getMessageId());
 
         if (client.hasCurrentChannel() && client.getCurrentChannel().equals(localChannel)) {
             client.getMainMenuFrame().reload(event);
@@ -1,7 +1,5 @@
 package duberchat.handlers.client;
 
-import java.util.ArrayList;
-
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.Message;
 import duberchat.client.ChatClient;
@@ -50,14 +48,9 @@ public class ClientMessageEditHandler implements Handleable {
         // We replace the message with the new one, even if we are the ones that created
         // it. This ensures that if we don't handle it locally, nothing will
         // break or work incorrectly.
-        ArrayList<Message> localMessages = localChannel.getMessages();
-
-        for (int i = 0; i < localMessages.size(); i++) {
-            if (localMessages.get(i).equals(message)) {
-                // replace method because pointers are annoying
-                localMessages.set(i, message);
-                break;
-            }
+        if (localChannel.getMessage(message.getMessageId()) != null) {
+            // replace method because pointers are annoying
+            localChannel.putMessage(message);
         }
 
         if (client.hasCurrentChannel() && client.getCurrentChannel().equals(localChannel)) {
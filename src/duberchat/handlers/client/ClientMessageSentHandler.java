@@ -37,6 +37,8 @@ public class ClientMessageSentHandler implements Handleable {
      * <p>
      * Ensures that the client creates and displays the new message sent by a user.
      * This method will be one of the most commonly called ones.
+     * <p>
+     * If this client sent the message, its pending copy is replaced by this one.
      * 
      * @param event {@inheritDoc}
      */
@@ -48,6 +50,7 @@ public class ClientMessageSentHandler implements Handleable {
 
         // If we got the MessageSentEvent, the client should have a copy of the channel
         localChannel.addMessage(message);
+        client.getPendingMessages().confirm(msgEvent);
 
         if (client.hasCurrentChannel() && client.getCurrentChannel().equals(localChannel)) {
             client.getMainMenuFrame().reload(event);
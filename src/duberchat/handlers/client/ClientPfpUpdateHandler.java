@@ -1,7 +1,5 @@
 package duberchat.handlers.client;
 
-import java.awt.image.BufferedImage;
-
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.User;
 import duberchat.client.ChatClient;
@@ -38,21 +36,25 @@ public class ClientPfpUpdateHandler implements Handleable {
      * {@inheritDoc}
      * <p>
      * Ensures that every instance of the specified user is changed to have that
-     * specific profile picture.
+     * specific profile picture. Only the picture's hash is changed; the picture
+     * itself is fetched the next time it is drawn, and the icons of the old one
+     * are dropped.
      * 
      * @param event {@inheritDoc}
      */
     public void handleEvent(SerializableEvent event) {
         ClientPfpUpdateEvent pfpEvent = (ClientPfpUpdateEvent) event;
         String username = (String) pfpEvent.getSource();
-        BufferedImage newPfp = pfpEvent.getNewPfp();
+        String newPfpHash = pfpEvent.getPfpHash();
         String newPfpFormat = pfpEvent.getPfpFormat();
+        String oldPfpHash = null;
 
         // If i initialized it, the source would be from me
         // ensure current user is edited
         // Make sure the profile frame is updated
         if (this.client.getUser().getUsername().equals(username)) {
-            this.client.getUser().setPfp(newPfp);
+            oldPfpHash = this.client.getUser().getPfpHash();
+            this.client.getUser().setPfpHash(newPfpHash);
             this.client.getUser().setPfpFormat(newPfpFormat);
 
             if (this.client.getMainMenuFrame().hasActiveProfileFrame()) {
@@ -64,18 +66,24 @@ public class ClientPfpUpdateHandler implements Handleable {
         // Even if we're the target user, do this to ensure a good sync
         for (Channel c : this.client.getChannels().values()) {
             if (c.getUsers().containsKey(username)) {
-                c.getUsers().get(username).setPfp(newPfp);
+                oldPfpHash = c.getUsers().get(username).getPfpHash();
+                c.getUsers().get(username).setPfpHash(newPfpHash);
                 c.getUsers().get(username).setPfpFormat(newPfpFormat);
             }
         }
 
         for (User u: this.client.getFriends().values()) {
             if (u.getUsername().equals(username)) {
-                u.setPfp(newPfp);
+                oldPfpHash = u.getPfpHash();
+                u.setPfpHash(newPfpHash);
                 u.setPfpFormat(newPfpFormat);
             }
         }
 
+        if (oldPfpHash != null && !oldPfpHash.equals(newPfpHash)) {
+            this.client.getAvatarCache().invalidate(oldPfpHash);
+        }
+
         if (this.client.hasMainMenuFrame()) {
             this.client.getMainMenuFrame().reload(event);
         }
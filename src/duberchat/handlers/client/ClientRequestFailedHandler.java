@@ -48,6 +48,25 @@ public class ClientRequestFailedHandler implements Handleable {
     public void handleEvent(SerializableEvent event) {
         RequestFailedEvent failedEvent = (RequestFailedEvent) event;
 
+        // A message this client is showing as pending was turned down.
+        if (failedEvent.getMessageNonce() != 0) {
+            if (failedEvent.getRetryAfterMillis() > 0) {
+                System.out.println("SYSTEM: Message not sent. Sending too quickly.");
+            }
+            if (this.client.getPendingMessages().fail(failedEvent.getMessageNonce())
+                    && this.client.hasMainMenuFrame()) {
+                this.client.getMainMenuFrame().reload();
+            }
+            return;
+        }
+
+        // Sent too quickly; nothing changed, so there is nothing to reload.
+        if (failedEvent.getRetryAfterMillis() > 0) {
+            System.out.println("SYSTEM: Sending too quickly. Try again in "
+                    + failedEvent.getRetryAfterMillis() + " ms.");
+            return;
+        }
+
         // Early return, this is a common fail reason and doesn't need a reload.
         if (failedEvent.getSource() instanceof ClientRequestMessageEvent) {
             return;
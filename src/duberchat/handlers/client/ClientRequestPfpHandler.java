@@ -0,0 +1,62 @@
+package duberchat.handlers.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import duberchat.client.ChatClient;
+import duberchat.events.ClientRequestPfpEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.handlers.AsyncHandleable;
+
+/**
+ * the {@code ClientRequestPfpHandler} class provides the client-side
+ * implementation for handling the {@code ClientRequestPfpEvent} sent back
+ * from the server.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ * @see duberchat.events.ClientRequestPfpEvent
+ */
+public class ClientRequestPfpHandler implements AsyncHandleable {
+    /** The associated client this handler is attached to. */
+    protected ChatClient client;
+
+    /**
+     * Constructs a new {@code ClientRequestPfpHandler}.
+     *
+     * @param client the client that this handler is attached to.
+     */
+    public ClientRequestPfpHandler(ChatClient client) {
+        this.client = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Stores the fetched profile picture and redraws everything that was showing
+     * a placeholder in its place. Since the picture has to be decoded and scaled,
+     * this is done on the client's asynchronous handler executor, so that the
+     * events after it are not held up.
+     *
+     * @param event {@inheritDoc}
+     */
+    public CompletionStage<Void> handleEventAsync(final SerializableEvent event) {
+        return CompletableFuture.runAsync(new Runnable() {
+            public void run() {
+                ClientRequestPfpEvent pfpEvent = (ClientRequestPfpEvent) event;
+
+                if (!client.getAvatarCache().put(pfpEvent.getPfpHash(), pfpEvent.getSize(), pfpEvent.getPfpBytes())) {
+                    System.out.println("SYSTEM: Server has no profile picture " + pfpEvent.getPfpHash() + ".");
+                    return;
+                }
+
+                if (client.hasMainMenuFrame()) {
+                    client.getMainMenuFrame().reload(event);
+                }
+            }
+        }, this.client.getHandlerExecutor());
+    }
+}
@@ -0,0 +1,68 @@
+package duberchat.handlers.client;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+import duberchat.client.ChatClient;
+import duberchat.events.SerializableEvent;
+import duberchat.events.SessionResumedEvent;
+import duberchat.handlers.Handleable;
+
+/**
+ * the {@code ClientSessionResumedHandler} class provides the client-side
+ * implementation for handling the {@code SessionResumedEvent} sent from the
+ * server.
+ * <p>
+ * The server only sends the messages this client missed while it was
+ * reconnecting, so they are added after the messages the client already has,
+ * rather than replacing them.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Joseph Wang
+ * @see duberchat.events.SessionResumedEvent
+ */
+public class ClientSessionResumedHandler implements Handleable {
+    /** The associated client this handler is attached to. */
+    protected ChatClient client;
+
+    /**
+     * Constructs a new {@code ClientSessionResumedHandler}.
+     *
+     * @param client the client that this handler is attached to.
+     */
+    public ClientSessionResumedHandler(ChatClient client) {
+        this.client = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Adds the messages missed in each channel, keeps the new session token, and
+     * reloads the main menu if it is showing.
+     *
+     * @param event {@inheritDoc}
+     */
+    public void handleEvent(SerializableEvent event) {
+        SessionResumedEvent resumedEvent = (SessionResumedEvent) event;
+
+        for (Map.Entry<Integer, ArrayList<Message>> missed : resumedEvent.getMissedMessages().entrySet()) {
+            Channel localChannel = client.getChannels().get(missed.getKey());
+            if (localChannel == null) {
+                continue;
+            }
+            for (Message message : missed.getValue()) {
+                localChannel.addMessage(message);
+            }
+        }
+        client.setSessionToken(resumedEvent.getSessionToken());
+
+        if (client.hasMainMenuFrame()) {
+            client.getMainMenuFrame().reload();
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package duberchat.handlers.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.User;
@@ -56,17 +55,18 @@ public class ServerChannelAddMemberHandler implements Handleable {
     try {
       // If the user doesn't exist, send back a request failed event
       if (toAdd == null) {
-        ObjectOutputStream output = server.getCurUsers().get(source).getOutputStream();
-        output.writeObject(new RequestFailedEvent(source.getUsername()));
-        output.flush();
-        output.reset();
+        server.getCurUsers().get(source).sendEvent(new RequestFailedEvent(source.getUsername()));
         server.getServerFrame().getTextArea()
             .append(source.getUsername() + " tried to add an nonexistent user to a channel\n");
         return;
       }
       
-      toAdd.getChannels().add(id);
-      toAddTo.addUser(toAdd);
+      synchronized (toAdd) {
+        toAdd.getChannels().add(id);
+      }
+      synchronized (toAddTo) {
+        toAddTo.addUser(toAdd);
+      }
 
       // Update this channel's file to include the new user.
       String channelFilePath = "data/channels/" + id;
@@ -77,19 +77,9 @@ public class ServerChannelAddMemberHandler implements Handleable {
       server.getFileWriteQueue().add(new FileWriteEvent(toAdd, userFilePath));
 
       // Send back a add member event to every online user in the channel
-      for (User u : toAddTo.getUsers().values()) {
-          if (!server.getCurUsers().containsKey(u)) {
-              continue;
-          }
-
-          ObjectOutputStream output = server.getCurUsers().get(u).getOutputStream();
-          event.setNewChannel(toAddTo);
-          event.setNewUser(toAdd);
-
-          output.writeObject(event);
-          output.flush();
-          output.reset();
-      }
+      event.setNewChannel(toAddTo);
+      event.setNewUser(toAdd);
+      server.getChannelSequencer().broadcast(toAddTo, event);
 
       server.getServerFrame().getTextArea().append(
           newUserUsername + " added to channel " + id + " by " + source.getUsername() + " and events sent to users\n");
@@ -1,7 +1,6 @@
 package duberchat.handlers.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -79,44 +78,48 @@ public class ServerChannelCreateHandler implements Handleable {
     // If this channel is an already existing dm, return that dm instead.
     // both parties in a dm are admins of the dm; otherwise, only the creator starts off as admin
     if (channelUsers.size() == 2) {
-      Iterator<Integer> channelsItr = creator.getChannels().iterator();
+      ArrayList<Integer> creatorChannels;
+      synchronized (creator) {
+        creatorChannels = new ArrayList<>(creator.getChannels());
+      }
+      Iterator<Integer> channelsItr = creatorChannels.iterator();
       while (channelsItr.hasNext()) {
         int channelId = channelsItr.next();
         Channel channel = server.getChannels().get(channelId);
-        // skip non-dms
-        if (channel.getUsers().size() != 2) continue;
-        Iterator<User> iterator = channel.getUsers().values().iterator();
-        String user1 = iterator.next().getUsername();
-        String user2 = iterator.next().getUsername();
-        if (channelUsers.containsKey(user1) && channelUsers.containsKey(user2)) {
-          ArrayList<Message> messageBlock = new ArrayList<>();
-          ArrayList<Message> fullMessages = channel.getMessages();
-          for (int i = 1; i < Math.min(30, fullMessages.size()); i++) {
-            messageBlock.add(fullMessages.get(fullMessages.size() - i));
-          }
-          try {
-            Channel newChannel = new Channel(channel);
-            newChannel.setMessages(messageBlock);
-            ObjectOutputStream output = server.getCurUsers().get(creator).getOutputStream();
-            output.writeObject(new ChannelCreateEvent(creatorName, channelId, channel.getChannelName(),
-                                                      usersFound, newChannel)); 
-            output.flush();
-            output.reset();
-            server.getServerFrame().getTextArea()
-                .append(user1 + " + " + user2 + ": DM found, thus new DM not created.\n");
-          } catch (IOException e) {
-            e.printStackTrace();
-          }
-          return;
+        if (channel == null) continue;
+
+        // the channel belongs to another event lane, so only read it under its lock
+        String user1;
+        String user2;
+        Channel newChannel;
+        synchronized (channel) {
+          // skip non-dms
+          if (channel.getUsers().size() != 2) continue;
+          Iterator<User> iterator = channel.getUsers().values().iterator();
+          user1 = iterator.next().getUsername();
+          user2 = iterator.next().getUsername();
+          if (!channelUsers.containsKey(user1) || !channelUsers.containsKey(user2)) continue;
+
+          ArrayList<Message> messageBlock = channel.getNewestMessages(Channel.MESSAGE_CLUSTER_AMT);
+          newChannel = new Channel(channel);
+          newChannel.setMessages(messageBlock);
         }
+        try {
+          server.getCurUsers().get(creator).sendEvent(new ChannelCreateEvent(creatorName, channelId, 
+                                                      channel.getChannelName(), usersFound, newChannel)); 
+          server.getServerFrame().getTextArea()
+              .append(user1 + " + " + user2 + ": DM found, thus new DM not created.\n");
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+        return;
       }
       for (User user : channelUsers.values()) {
         admins.add(user);
       }
     }
 
-    int id = server.getNumChannelsCreated() + 1;
-    server.setNumChannelsCreated(id);
+    int id = server.createChannelId();
     Channel newChannel = new Channel(channelName, id, channelUsers, admins, 0);
     server.getChannels().put(id, newChannel);
 
@@ -127,16 +130,16 @@ public class ServerChannelCreateHandler implements Handleable {
       // update all the users (and their files) with the new channel
       // Output a corresponding event to the user clients in the channel
       for (User user : channelUsers.values()) {
-        user.getChannels().add(id);
+        synchronized (user) {
+          user.getChannels().add(id);
+        }
         String filePath = "data/users/" + user.getUsername();
         server.getFileWriteQueue().add(new FileWriteEvent(user, filePath));
         if (!server.getCurUsers().containsKey(user)) {
           continue;
         }
-        ObjectOutputStream output = server.getCurUsers().get(user).getOutputStream();
-        output.writeObject(new ChannelCreateEvent(creatorName, id, channelName, usersFound, newChannel));
-        output.flush();
-        output.reset();
+        server.getCurUsers().get(user).sendEvent(new ChannelCreateEvent(creatorName, id, channelName, 
+                                                                        usersFound, newChannel));
       }
       server.getServerFrame().getTextArea()
           .append("New channel made by " + creator.getUsername() + " and events sent to users\n");
@@ -1,8 +1,6 @@
 package duberchat.handlers.server;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 
 import duberchat.events.ChannelDeleteEvent;
 import duberchat.events.FileWriteEvent;
@@ -53,23 +51,22 @@ public class ServerChannelDeleteHandler implements Handleable {
     try {
       // Remove the channel from all its users and their files
       for (User user : toDelete.getUsers().values()) {
-        user.getChannels().remove(toDeleteId);
+        synchronized (user) {
+          user.getChannels().remove(toDeleteId);
+        }
         String filePath = "data/users/" + user.getUsername();
         server.getFileWriteQueue().add(new FileWriteEvent(user, filePath));
 
         // Give back a channel deletion event to all currently online users in the channel
         if (!server.getCurUsers().containsKey(user)) continue;
-        ObjectOutputStream output = server.getCurUsers().get(user).getOutputStream();
-        output.writeObject(new ChannelDeleteEvent(event.getSource(), toDeleteId));
-        output.flush();
-        output.reset();
+        server.getCurUsers().get(user).sendEvent(new ChannelDeleteEvent(event.getSource(), toDeleteId));
       }
       server.getServerFrame().getTextArea()
           .append("Sent channel deletion events to all users in channel" + toDeleteId + "\n");
 
-      //Remove the channel file
-      File channelFile = new File("data/channels/" + toDeleteId);
-      channelFile.delete();
+      //Remove the channel file and its message log
+      server.getMessageLog().delete(toDeleteId);
+      server.getMessageHistory().delete(toDeleteId);
       server.getServerFrame().getTextArea().append("channel " + toDeleteId + "file was deleted\n");
     } catch (IOException e) {
       e.printStackTrace();
@@ -77,6 +74,7 @@ public class ServerChannelDeleteHandler implements Handleable {
     
     // remove the channel from the server's map of channels
     server.getChannels().remove(toDeleteId);
+    server.getChannelSequencer().forget(toDeleteId);
   }
   
 }
@@ -9,11 +9,9 @@ import duberchat.server.ChatServer;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 
 import duberchat.chatutil.Channel;
-import duberchat.chatutil.Message;
 import duberchat.chatutil.User;
 
 /**
@@ -60,41 +58,36 @@ public class ServerChannelRemoveMemberHandler implements Handleable {
     try {
       // If the user doesn't exist, send back a request failed event
       if (toDelete == null) {
-        ObjectOutputStream output = server.getCurUsers().get(source).getOutputStream();
-        output.writeObject(new RequestFailedEvent(source.getUsername()));
-        output.flush();
-        output.reset();
+        server.getCurUsers().get(source).sendEvent(new RequestFailedEvent(source.getUsername()));
         server.getServerFrame().getTextArea()
             .append(source.getUsername() + " tried to remove a nonexistent user. Sent request failed event\n");
         return;
       }
 
-      toDeleteFrom.removeUser(toDelete);
-      toDelete.getChannels().remove(id);
+      synchronized (toDeleteFrom) {
+        toDeleteFrom.removeUser(toDelete);
+      }
+      synchronized (toDelete) {
+        toDelete.getChannels().remove(id);
+      }
 
       // Send back a message sent event to every online user in the channel, as well
       // as the removed user.
-      ObjectOutputStream output = server.getCurUsers().get(toDelete).getOutputStream();
-      output.writeObject(new ChannelRemoveMemberEvent(source.getUsername(), id, username));
-      output.flush();
-      output.reset();
-      for (User member : toDeleteFrom.getUsers().values()) {
-        // skip offline users
-        if (!server.getCurUsers().containsKey(member)) continue;
-        output = server.getCurUsers().get(member).getOutputStream();
-        output.writeObject(new ChannelRemoveMemberEvent(source.getUsername(), id, username)); 
-        output.flush();
-        output.reset();
+      ArrayList<User> recipients;
+      synchronized (toDeleteFrom) {
+        recipients = new ArrayList<>(toDeleteFrom.getUsers().values());
       }
+      recipients.add(toDelete);
+      ArrayList<SerializableEvent> removal = new ArrayList<>(1);
+      removal.add(new ChannelRemoveMemberEvent(source.getUsername(), id, username));
+      server.getChannelSequencer().broadcast(toDeleteFrom, removal, recipients);
       server.getServerFrame().getTextArea().append(
           username + " removed from channel " + id + " by " + source.getUsername() + " and events sent to users\n");
 
       // Remove all the deleted user's messages
-      ArrayList<Message> allMessages = toDeleteFrom.getMessages();
-      for (int i = allMessages.size() - 1; i >= 0; i--) {
-          if (allMessages.get(i).getSenderUsername().equals(toDelete.getUsername())) {
-              allMessages.remove(i);
-          }
+      synchronized (toDeleteFrom) {
+        toDeleteFrom.removeMessagesFrom(toDelete.getUsername());
+        server.getMessageHistory().removeMessagesFrom(toDeleteFrom, toDelete.getUsername());
       }
 
       // If this channel has no more users, purge it from the server and delete its
@@ -102,8 +95,10 @@ public class ServerChannelRemoveMemberHandler implements Handleable {
       String channelFilePath = "data/channels/" + id;
       if (toDeleteFrom.getUsers().size() <= 0) {
         server.getChannels().remove(id);
+        server.getChannelSequencer().forget(id);
         File channelFile = new File(channelFilePath);
         channelFile.delete();
+        server.getMessageHistory().delete(id);
       } else {
         server.getFileWriteQueue().add(new FileWriteEvent(toDeleteFrom, channelFilePath));
       }
@@ -0,0 +1,97 @@
+package duberchat.handlers.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.User;
+import duberchat.events.ChannelResyncEvent;
+import duberchat.events.RequestFailedEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.handlers.Handleable;
+import duberchat.server.ChatServer;
+import duberchat.server.ChatServer.ConnectionHandler;
+
+/**
+ * the {@code ServerChannelResyncHandler} class provides the server-side
+ * implementation for handling any {@code ChannelResyncEvent}.
+ * <p>
+ * The events a client missed are sent again if the server still has them, so
+ * catching up costs about as much as the events did the first time. Only a
+ * client that fell further behind is sent a fresh copy of the channel.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ * @see duberchat.events.ChannelResyncEvent
+ */
+public class ServerChannelResyncHandler implements Handleable {
+  /** The associated server this handler is attached to. */
+  private ChatServer server;
+
+  /**
+   * Constructs a new {@code ServerChannelResyncHandler}.
+   *
+   * @param server the server that this handler is attached to.
+   */
+  public ServerChannelResyncHandler(ChatServer server) {
+    this.server = server;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Sends the missing events, or a fresh copy of the channel, to the requestor.
+   *
+   * @param newEvent {@inheritDoc}
+   */
+  public void handleEvent(SerializableEvent newEvent) {
+    ChannelResyncEvent event = (ChannelResyncEvent) newEvent;
+    String source = (String) event.getSource();
+    User user = server.getAllUsers().get(source);
+    ConnectionHandler output = server.getCurUsers().get(user);
+    Channel channel = server.getChannels().get(event.getChannelId());
+    if (output == null) {
+      return; // the requestor has already left
+    }
+
+    try {
+      if (channel == null) {
+        output.sendEvent(new RequestFailedEvent(source));
+        return;
+      }
+
+      int numResent = -1;
+      // sent under the lock, so nothing newer about the channel gets ahead of them
+      synchronized (channel) {
+        if (!channel.getUsers().containsKey(source)) {
+          output.sendEvent(new RequestFailedEvent(source));
+          return;
+        }
+        ArrayList<SerializableEvent> missed = server.getChannelSequencer().findRetained(channel,
+            event.getFromSequence(), event.getToSequence());
+        if (missed != null) {
+          for (SerializableEvent missedEvent : missed) {
+            output.sendEvent(missedEvent);
+          }
+          numResent = missed.size();
+        } else {
+          output.sendEvent(server.getChannelSequencer().snapshot(source, channel, event.getFromSequence(),
+              event.getToSequence()));
+        }
+      }
+
+      if (numResent >= 0) {
+        server.getServerFrame().getTextArea().append(source + " missed " + numResent + " events in channel "
+            + channel.getChannelId() + "; sent them again.\n");
+      } else {
+        server.getServerFrame().getTextArea().append(source + " fell too far behind in channel "
+            + channel.getChannelId() + "; sent a fresh copy.\n");
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
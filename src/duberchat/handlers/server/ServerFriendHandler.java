@@ -1,7 +1,6 @@
 package duberchat.handlers.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.HashSet;
 import java.util.Iterator;
 
@@ -15,6 +14,7 @@ import duberchat.events.RequestFailedEvent;
 import duberchat.events.SerializableEvent;
 import duberchat.handlers.Handleable;
 import duberchat.server.ChatServer;
+import duberchat.server.ChatServer.ConnectionHandler;
 
 /**
  * the {@code ServerFriendHandler} class provides the server-side
@@ -57,7 +57,7 @@ public class ServerFriendHandler implements Handleable {
     String userUsername = (String) event.getSource();
     User user = server.getAllUsers().get(userUsername);
     HashSet<String> userFriends = user.getFriends();
-    ObjectOutputStream userOutput = server.getCurUsers().get(user).getOutputStream();
+    ConnectionHandler userOutput = server.getCurUsers().get(user);
     boolean adding; // adding = true, removing = false
 
     User friend = server.getAllUsers().get(friendUsername);
@@ -66,9 +66,7 @@ public class ServerFriendHandler implements Handleable {
     // request failed event to the user who sent the event
     if (friend == null || friend.equals(user)) {
       try {
-        userOutput.writeObject(new RequestFailedEvent(userUsername));
-        userOutput.flush();
-        userOutput.reset();
+        userOutput.sendEvent(new RequestFailedEvent(userUsername));
         server.getServerFrame().getTextArea()
             .append(userUsername + " tried to add an invalid friend. Request failed event sent.\n");
       } catch (IOException e) {
@@ -78,14 +76,21 @@ public class ServerFriendHandler implements Handleable {
     }
 
     // update the friends sets depending on whether a friend is being added or removed
-    if (userFriends.contains(friendUsername)) {
-      adding = false;
-      userFriends.remove(friendUsername);
-      friend.getFriends().remove(userUsername);
-    } else {
-      adding = true;
-      userFriends.add(friendUsername);
-      friend.getFriends().add(userUsername);
+    // the friend's set is also used by the friend's own event lane, so lock both users
+    synchronized (user) {
+      adding = !userFriends.contains(friendUsername);
+      if (adding) {
+        userFriends.add(friendUsername);
+      } else {
+        userFriends.remove(friendUsername);
+      }
+    }
+    synchronized (friend) {
+      if (adding) {
+        friend.getFriends().add(userUsername);
+      } else {
+        friend.getFriends().remove(userUsername);
+      }
     }
 
     // update both parties' user files
@@ -94,12 +99,18 @@ public class ServerFriendHandler implements Handleable {
     server.getFileWriteQueue().add(new FileWriteEvent(user, userFilePath));
     String friendFilePath = "data/users/" + friendUsername; 
     server.getFileWriteQueue().add(new FileWriteEvent(friend, friendFilePath));
-    HashSet<Integer> unionChannels = new HashSet<Integer>(user.getChannels());
-    unionChannels.addAll(friend.getChannels());
+    HashSet<Integer> unionChannels;
+    synchronized (user) {
+      unionChannels = new HashSet<Integer>(user.getChannels());
+    }
+    synchronized (friend) {
+      unionChannels.addAll(friend.getChannels());
+    }
     Iterator<Integer> channelsItr = unionChannels.iterator();
     while (channelsItr.hasNext()) {
       int channelId = channelsItr.next();
       Channel channel = server.getChannels().get(channelId);
+      if (channel == null) continue;
       String channelFilePath = "data/channels/" + channelId; 
       server.getFileWriteQueue().add(new FileWriteEvent(channel, channelFilePath));
     }
@@ -107,22 +118,18 @@ public class ServerFriendHandler implements Handleable {
     // send the appropriate event back to the pair of friends, if they're both online
     try {
       if (server.getCurUsers().containsKey(friend)) {
-        ObjectOutputStream friendOutput = server.getCurUsers().get(friend).getOutputStream();
+        ConnectionHandler friendOutput = server.getCurUsers().get(friend);
         if (adding) {
-          friendOutput.writeObject(new FriendAddEvent(userUsername, userUsername, user));
+          friendOutput.sendEvent(new FriendAddEvent(userUsername, userUsername, user));
         } else {
-          friendOutput.writeObject(new FriendRemoveEvent(userUsername, userUsername));
+          friendOutput.sendEvent(new FriendRemoveEvent(userUsername, userUsername));
         }
-        friendOutput.flush();
-        friendOutput.reset();
       }
       if (adding) {
-        userOutput.writeObject(new FriendAddEvent(userUsername, friendUsername, friend));
+        userOutput.sendEvent(new FriendAddEvent(userUsername, friendUsername, friend));
       } else {
-        userOutput.writeObject(new FriendRemoveEvent(userUsername, friendUsername));
+        userOutput.sendEvent(new FriendRemoveEvent(userUsername, friendUsername));
       }
-      userOutput.flush();
-      userOutput.reset();
       server.getServerFrame().getTextArea()
           .append(userUsername + " and " + friendUsername + " became friends and events sent to users\n");
     } catch (IOException e) {
@@ -1,7 +1,6 @@
 package duberchat.handlers.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.User;
@@ -56,12 +55,14 @@ public class ServerHierarchyHandler implements Handleable {
 
     // promote/demote the user in the server-side version of the channel
     boolean promoting;
-    if (channel.getAdminUsers().contains(toChange)) {
-      promoting = false;
-      channel.removeAdminUser(toChange);
-    } else {
-      promoting = true;
-      channel.addAdminUser(toChange);
+    synchronized (channel) {
+      if (channel.getAdminUsers().contains(toChange)) {
+        promoting = false;
+        channel.removeAdminUser(toChange);
+      } else {
+        promoting = true;
+        channel.addAdminUser(toChange);
+      }
     }
 
     String filePath = "data/channels/" + channel.getChannelId();
@@ -73,16 +74,12 @@ public class ServerHierarchyHandler implements Handleable {
       String sourceUsername = source.getUsername();
       int channelId = channel.getChannelId();
       String toChangeUsername = toChange.getUsername();
-      for (User user : channel.getUsers().values()) {
-        if (!server.getCurUsers().containsKey(user)) continue;
-        ObjectOutputStream output = server.getCurUsers().get(user).getOutputStream();
-        if (promoting) {
-          output.writeObject(new ChannelPromoteMemberEvent(sourceUsername, channelId, toChangeUsername));
-        } else {
-          output.writeObject(new ChannelDemoteMemberEvent(sourceUsername, channelId, toChangeUsername));
-        }
-        output.flush();
-        output.reset();
+      if (promoting) {
+        server.getChannelSequencer().broadcast(channel,
+            new ChannelPromoteMemberEvent(sourceUsername, channelId, toChangeUsername));
+      } else {
+        server.getChannelSequencer().broadcast(channel,
+            new ChannelDemoteMemberEvent(sourceUsername, channelId, toChangeUsername));
       }
       server.getServerFrame().getTextArea().append(toChange.getUsername() + "'s rank in channel "
           + channel.getChannelId() + "was changed and events sent to users\n");
@@ -1,16 +1,20 @@
 package duberchat.handlers.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.Message;
 import duberchat.chatutil.User;
-import duberchat.events.FileWriteEvent;
 import duberchat.events.MessageDeleteEvent;
+import duberchat.events.RequestFailedEvent;
 import duberchat.events.SerializableEvent;
-import duberchat.handlers.Handleable;
+import duberchat.handlers.BatchHandleable;
 import duberchat.server.ChatServer;
+import duberchat.server.ChatServer.ConnectionHandler;
+import duberchat.server.MessageLog;
 
 /**
  * the {@code ServerMessageDeleteHandler} class provides the server-side
@@ -24,7 +28,7 @@ import duberchat.server.ChatServer;
  * @author Paula Yuan
  * @see duberchat.events.MessageDeleteEvent
  */
-public class ServerMessageDeleteHandler implements Handleable {
+public class ServerMessageDeleteHandler implements BatchHandleable {
   /** The associated server this handler is attached to. */
   private ChatServer server;
 
@@ -46,31 +50,96 @@ public class ServerMessageDeleteHandler implements Handleable {
    * @param newEvent {@inheritDoc}
    */
   public void handleEvent(SerializableEvent newEvent) {
-    MessageDeleteEvent event = (MessageDeleteEvent) newEvent;
-    Message toDelete = event.getMessage();
-    Channel toDeleteFrom = server.getChannels().get(toDelete.getChannelId());
-    int index = toDeleteFrom.getMessages().indexOf(toDelete);
-    Message serverToDelete = toDeleteFrom.getMessages().remove(index);
-    String source = (String) event.getSource();
+    ArrayList<SerializableEvent> events = new ArrayList<>(1);
+    events.add(newEvent);
+    this.handleEvents(events);
+  }
 
-    String filePath = "data/channels/" + toDeleteFrom.getChannelId();
-    try {
-      // delete the message from its channel file
-      server.getFileWriteQueue().add(new FileWriteEvent(toDeleteFrom, filePath));
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The deletions are applied channel by channel, with one log write and one
+   * broadcast per channel.
+   * 
+   * @param events {@inheritDoc}
+   */
+  public void handleEvents(List<SerializableEvent> events) {
+    // group the deletions by channel, keeping their order
+    LinkedHashMap<Channel, ArrayList<MessageDeleteEvent>> byChannel = new LinkedHashMap<>();
+    for (SerializableEvent newEvent : events) {
+      MessageDeleteEvent event = (MessageDeleteEvent) newEvent;
+      Channel channel = server.getChannels().get(event.getMessage().getChannelId());
+      if (channel == null) {
+        this.turnDown(event, "from channel " + event.getMessage().getChannelId() + ", which does not exist");
+        continue;
+      }
+      if (!byChannel.containsKey(channel)) {
+        byChannel.put(channel, new ArrayList<>());
+      }
+      byChannel.get(channel).add(event);
+    }
 
-      // give a message deletion event to all online users in the channel
-      for (User user : toDeleteFrom.getUsers().values()) {
-        if (!server.getCurUsers().containsKey(user)) continue;
-        ObjectOutputStream output = server.getCurUsers().get(user).getOutputStream();
-        output.writeObject(new MessageDeleteEvent(source, serverToDelete));
-        output.flush();
-        output.reset();
+    for (Channel toDeleteFrom : byChannel.keySet()) {
+      ArrayList<MessageDeleteEvent> deletions = byChannel.get(toDeleteFrom);
+      ArrayList<Message> deleted = new ArrayList<>(deletions.size());
+      ArrayList<SerializableEvent> toSend = new ArrayList<>(deletions.size());
+      try {
+        // delete the messages from their channel, and log the deletions
+        synchronized (toDeleteFrom) {
+          for (MessageDeleteEvent event : deletions) {
+            if (!toDeleteFrom.getUsers().containsKey((String) event.getSource())) {
+              this.turnDown(event, "from channel " + toDeleteFrom.getChannelId() + ", which they are not in");
+              continue;
+            }
+            int messageId = event.getMessage().getMessageId();
+            Message serverToDelete = toDeleteFrom.removeMessage(messageId);
+            if (serverToDelete == null) {
+              // older messages are only on disk
+              serverToDelete = server.getMessageHistory().removeMessage(toDeleteFrom, messageId);
+            }
+            if (serverToDelete != null) {
+              deleted.add(serverToDelete);
+              toSend.add(new MessageDeleteEvent(event.getSource(), serverToDelete));
+            }
+          }
+          if (deleted.isEmpty()) {
+            continue;
+          }
+          server.getMessageLog().appendAll(toDeleteFrom, MessageLog.DELETED, deleted);
+        }
+
+        // give a message deletion event to all online users in the channel
+        server.getChannelSequencer().broadcast(toDeleteFrom, toSend);
+        for (SerializableEvent event : toSend) {
+          server.getServerFrame().getTextArea().append("A message was removed from channel "
+              + toDeleteFrom.getChannelId() + " by " + event.getSource() + " and events sent to users\n");
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
       }
-      server.getServerFrame().getTextArea().append("A message was removed from channel " + toDeleteFrom.getChannelId()
-          + " by " + source + " and events sent to users\n");
+    }
+  }
+
+  /**
+   * Drops a deletion that can't be made, and tells its sender.
+   * 
+   * @param event the deletion.
+   * @param where where the deleted message was said to be, for the server log.
+   */
+  private void turnDown(MessageDeleteEvent event, String where) {
+    String source = (String) event.getSource();
+    server.getServerFrame().getTextArea().append(source + " tried to delete a message " + where
+        + ". Deletion dropped.\n");
+    User user = server.getAllUsers().get(source);
+    ConnectionHandler output = (user == null) ? null : server.getCurUsers().get(user);
+    if (output == null) {
+      return; // the sender has already left
+    }
+    try {
+      output.sendEvent(new RequestFailedEvent(source));
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
-  
+
 }
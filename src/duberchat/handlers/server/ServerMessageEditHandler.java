@@ -1,16 +1,20 @@
 package duberchat.handlers.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.Message;
 import duberchat.chatutil.User;
-import duberchat.events.FileWriteEvent;
 import duberchat.events.MessageEditEvent;
+import duberchat.events.RequestFailedEvent;
 import duberchat.events.SerializableEvent;
-import duberchat.handlers.Handleable;
+import duberchat.handlers.BatchHandleable;
 import duberchat.server.ChatServer;
+import duberchat.server.ChatServer.ConnectionHandler;
+import duberchat.server.MessageLog;
 
 /**
  * the {@code ServerMessageEditHandler} class provides the server-side
@@ -24,7 +28,7 @@ import duberchat.server.ChatServer;
  * @author Paula Yuan
  * @see duberchat.events.MessageEditEvent
  */
-public class ServerMessageEditHandler implements Handleable {
+public class ServerMessageEditHandler implements BatchHandleable {
   /** The associated server this handler is attached to. */
   private ChatServer server;
 
@@ -46,38 +50,148 @@ public class ServerMessageEditHandler implements Handleable {
    * @param newEvent {@inheritDoc}
    */
   public void handleEvent(SerializableEvent newEvent) {
-    MessageEditEvent event = (MessageEditEvent) newEvent;
-    Message edited = event.getMessage();
-    Channel channel = server.getChannels().get(edited.getChannelId());
-    String source = (String) event.getSource();
+    ArrayList<SerializableEvent> events = new ArrayList<>(1);
+    events.add(newEvent);
+    this.handleEvents(events);
+  }
 
-    // update the server-side channel's message
-    for (Message msg : channel.getMessages()) {
-      if (msg.equals(edited)) {
-        msg.setMessage(edited.getMessage());
-        break;
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The edits are applied channel by channel, with one log write and one
+   * broadcast per channel.
+   * 
+   * @param events {@inheritDoc}
+   */
+  public void handleEvents(List<SerializableEvent> events) {
+    // group the edits by channel, keeping their order
+    LinkedHashMap<Channel, ArrayList<MessageEditEvent>> byChannel = new LinkedHashMap<>();
+    for (SerializableEvent newEvent : events) {
+      MessageEditEvent event = (MessageEditEvent) newEvent;
+      Channel channel = server.getChannels().get(event.getMessage().getChannelId());
+      if (channel == null) {
+        this.turnDown(event, "in channel " + event.getMessage().getChannelId() + ", which does not exist");
+        continue;
       }
+      if (!byChannel.containsKey(channel)) {
+        byChannel.put(channel, new ArrayList<>());
+      }
+      byChannel.get(channel).add(event);
     }
 
-    // update the channnel file
-    int id = channel.getChannelId();
-    server.getFileWriteQueue().add(new FileWriteEvent(channel, "data/channels/" + id));
+    for (Channel channel : byChannel.keySet()) {
+      ArrayList<MessageEditEvent> edits = byChannel.get(channel);
+      ArrayList<MessageEditEvent> accepted = new ArrayList<>(edits.size());
+      ArrayList<Message> logged = new ArrayList<>(edits.size());
+      ArrayList<Message> originals = new ArrayList<>(edits.size());
+      ArrayList<SerializableEvent> toSend = new ArrayList<>(edits.size());
+      int id = channel.getChannelId();
+      // update the server-side channel's messages, and log the edits
+      synchronized (channel) {
+        try {
+          for (MessageEditEvent event : edits) {
+            if (!channel.getUsers().containsKey((String) event.getSource())) {
+              this.turnDown(event, "in channel " + id + ", which they are not in");
+              continue;
+            }
+            Message edited = event.getMessage();
+            String text = edited.getMessage();
+            // the log can't hold longer text, and nothing is changed before it is checked
+            if (text == null || text.length() > Message.MAX_LENGTH) {
+              this.turnDown(event, "in channel " + id + " with text over " + Message.MAX_LENGTH + " characters");
+              continue;
+            }
+            accepted.add(event);
 
-    // Send back a message edit event to every online user in the channel
-    for (User user : channel.getUsers().values()) {
-      if (!server.getCurUsers().containsKey(user)) {
-        continue;
+            Message msg = channel.getMessage(edited.getMessageId());
+            if (msg != null) {
+              originals.add(new Message(msg));
+              msg.setMessage(text);
+            } else {
+              // older messages are only on disk
+              Message original = server.getMessageHistory().getMessage(channel, edited.getMessageId());
+              msg = server.getMessageHistory().editMessage(channel, edited.getMessageId(), text);
+              if (msg != null) {
+                originals.add(original);
+              }
+            }
+            if (msg != null) {
+              logged.add(msg);
+            }
+            toSend.add(new MessageEditEvent(event.getSource(), edited));
+          }
+          if (!logged.isEmpty()) {
+            server.getMessageLog().appendAll(channel, MessageLog.EDITED, logged);
+          }
+        } catch (IOException e) {
+          e.printStackTrace();
+          // what isn't logged would be lost on a restart, so it is undone now
+          this.undo(channel, originals);
+          for (MessageEditEvent event : accepted) {
+            this.turnDown(event, "in channel " + id + ", but it could not be saved");
+          }
+          continue;
+        }
       }
-      ObjectOutputStream output = server.getCurUsers().get(user).getOutputStream();
+
+      // Send back a message edit event to every online user in the channel
       try {
-        output.writeObject(new MessageEditEvent(source, edited));
-        output.flush();
-        output.reset();
+        server.getChannelSequencer().broadcast(channel, toSend);
       } catch (IOException e) {
         e.printStackTrace();
       }
+      for (SerializableEvent event : toSend) {
+        server.getServerFrame().getTextArea().append(event.getSource() + " edited a message in channel " + id + ".\n");
+      }
     }
-    server.getServerFrame().getTextArea().append(source + " edited a message in channel " + id + ".\n");
   }
-  
+
+  /**
+   * Puts edited messages back the way they were, newest edit first, after their
+   * edits could not be logged. The caller must hold the channel's lock.
+   * 
+   * @param channel   the channel the messages are in.
+   * @param originals the messages as they were before each edit, in the order
+   *                  the edits were made.
+   */
+  private void undo(Channel channel, ArrayList<Message> originals) {
+    for (int i = originals.size() - 1; i >= 0; i--) {
+      Message original = originals.get(i);
+      Message msg = channel.getMessage(original.getMessageId());
+      try {
+        if (msg != null) {
+          msg.setMessage(original.getMessage());
+        } else {
+          server.getMessageHistory().editMessage(channel, original.getMessageId(), original.getMessage());
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+        server.getServerFrame().getTextArea().append("Failed to undo an edit to message " + original.getMessageId()
+            + " in channel " + channel.getChannelId() + ".\n");
+      }
+    }
+  }
+
+  /**
+   * Drops an edit that can't be made, and tells its sender.
+   * 
+   * @param event the edit.
+   * @param where where the edited message was said to be, for the server log.
+   */
+  private void turnDown(MessageEditEvent event, String where) {
+    String source = (String) event.getSource();
+    server.getServerFrame().getTextArea().append(source + " tried to edit a message " + where
+        + ". Edit dropped.\n");
+    User user = server.getAllUsers().get(source);
+    ConnectionHandler output = (user == null) ? null : server.getCurUsers().get(user);
+    if (output == null) {
+      return; // the sender has already left
+    }
+    try {
+      output.sendEvent(new RequestFailedEvent(source));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
 }
@@ -1,15 +1,10 @@
 package duberchat.handlers.server;
 
-import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.util.List;
 
-import duberchat.chatutil.Channel;
-import duberchat.chatutil.Message;
-import duberchat.chatutil.User;
-import duberchat.events.FileWriteEvent;
 import duberchat.events.MessageSentEvent;
 import duberchat.events.SerializableEvent;
-import duberchat.handlers.Handleable;
+import duberchat.handlers.BatchHandleable;
 import duberchat.server.ChatServer;
 
 /**
@@ -24,7 +19,7 @@ import duberchat.server.ChatServer;
  * @author Paula Yuan
  * @see duberchat.events.ChannelMessageSentEvent
  */
-public class ServerMessageSentHandler implements Handleable {
+public class ServerMessageSentHandler implements BatchHandleable {
     /** The associated server this handler is attached to. */
     private ChatServer server;
 
@@ -40,55 +35,27 @@ public class ServerMessageSentHandler implements Handleable {
   /**
    * {@inheritDoc}
    * <p>
-   * Ensures that the server has a properly channel, updates files, and sends the
-   * event to all relevant users.
+   * Sends the message into the server's message pipeline, which checks it,
+   * converts its text, adds it to its channel, logs it, and sends it to every
+   * online user in the channel.
    * 
    * @param newEvent {@inheritDoc}
    */
     public void handleEvent(SerializableEvent newEvent) {
-        MessageSentEvent event = (MessageSentEvent) newEvent;
-        Message toSend = event.getMessage();
-        String msgString = toSend.getMessage();
-        String senderUsername = toSend.getSenderUsername();
-        int destinationId = toSend.getChannelId();
-        Channel destination = server.getChannels().get(destinationId);
-        int msgId = destination.getTotalMessages();
-        String timeStamp = toSend.getTimestamp();
-
-        // Process text conversions and emoticon conversions
-        String[] words = msgString.split(" ");
-        String processedMsg = "";
-        for (String word : words) {
-            if (server.getTextConversions().containsKey(word)) {
-                word = server.getTextConversions().get(word);
-            }
-            processedMsg += word + " ";
-        }
-        processedMsg.trim();
-
-        // update the server-side channel with the new message
-        Message newMessage = new Message(processedMsg, senderUsername, msgId, timeStamp, destinationId);
-        destination.getMessages().add(newMessage);
-        destination.setTotalMessages(msgId + 1);
-
-        try {
-            // Send back a message sent event to every online user in the channel
-            for (User member : destination.getUsers().values()) {
-                // skip offline users
-                if (!server.getCurUsers().containsKey(member)) continue;
-                ObjectOutputStream output = server.getCurUsers().get(member).getOutputStream();
-                output.writeObject(new MessageSentEvent(event.getSource(), newMessage));
-                output.flush();
-                output.reset();
-            }
-            server.getServerFrame().getTextArea()
-                    .append("New message sent to channel " + destinationId + "and events sent to users\n");
+        server.getMessagePipeline().submit((MessageSentEvent) newEvent);
+    }
 
-            // Update the channel file.
-            String filePath = "data/channels/" + destination.getChannelId();
-            server.getFileWriteQueue().add(new FileWriteEvent(destination, filePath));
-        } catch (IOException e) {
-            e.printStackTrace();
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The messages go into the pipeline in order; the pipeline batches its own
+   * stages.
+   * 
+   * @param events {@inheritDoc}
+   */
+    public void handleEvents(List<SerializableEvent> events) {
+        for (SerializableEvent event : events) {
+            server.getMessagePipeline().submit((MessageSentEvent) event);
         }
     }
 }
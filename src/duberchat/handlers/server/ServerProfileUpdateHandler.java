@@ -3,7 +3,7 @@ package duberchat.handlers.server;
 import duberchat.chatutil.User;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 
@@ -15,6 +15,7 @@ import duberchat.events.FileWriteEvent;
 import duberchat.events.SerializableEvent;
 import duberchat.handlers.Handleable;
 import duberchat.server.ChatServer;
+import duberchat.server.ChatServer.ConnectionHandler;
 
 /**
  * the {@code ServerProfileUpdateHandler} class provides the server-side
@@ -64,11 +65,20 @@ public class ServerProfileUpdateHandler implements Handleable {
       }
     } else if (newEvent instanceof ClientPfpUpdateEvent) {
       ClientPfpUpdateEvent pfpEvent = (ClientPfpUpdateEvent) newEvent;
-      if (!user.pfpEquals(pfpEvent.getNewPfp())) {
-        user.setPfp(pfpEvent.getNewPfp());
+      if (pfpEvent.getNewPfp() == null) {
+        return; // nothing to store
+      }
+      // the store encodes the picture once and names it by its hash
+      String pfpHash;
+      try {
+        pfpHash = server.getPfpStore().put(pfpEvent.getNewPfp(), pfpEvent.getPfpFormat());
+      } catch (IOException e) {
+        e.printStackTrace();
+        return;
+      }
+      if (!pfpHash.equals(user.getPfpHash())) {
+        user.setPfpHash(pfpHash);
         user.setPfpFormat(pfpEvent.getPfpFormat());
-        String imagePath = "data/images/" + username + "." + pfpEvent.getPfpFormat();
-        server.getImageWriteQueue().add(new FileWriteEvent(user.getPfp(), imagePath));
       }
     } else {
       ClientPasswordUpdateEvent passwordEvent = (ClientPasswordUpdateEvent) newEvent;
@@ -77,83 +87,78 @@ public class ServerProfileUpdateHandler implements Handleable {
       }
     }
 
+    // Build the outgoing event; it is the same for every user that needs it.
+    SerializableEvent toSend;
+    if (newEvent instanceof ClientStatusUpdateEvent) {
+      toSend = new ClientStatusUpdateEvent(username, user.getStatus());
+    } else if (newEvent instanceof ClientPfpUpdateEvent) {
+      toSend = new ClientPfpUpdateEvent(username, user.getPfpHash(), user.getPfpFormat());
+    } else {
+      toSend = new ClientPasswordUpdateEvent(username, user.getHashedPassword());
+    }
+
+    // Everyone who needs the event, collected first so the event is only encoded once.
     HashSet<String> alreadyNotified = new HashSet<>();
+    ArrayList<User> recipients = new ArrayList<>();
     // close down the appropriate client thread if the user logs off
     // otherwise, send back the appropriate event to the client 
     if (user.getStatus() == 0) {
-      server.getCurUsers().get(user).setRunning(false);
-      server.getCurUsers().remove(user);
+      ConnectionHandler connection = server.getCurUsers().remove(user);
+      if (connection != null) {
+        connection.setRunning(false);
+      }
     } else {
       alreadyNotified.add(user.getUsername());
-      ObjectOutputStream output = server.getCurUsers().get(user).getOutputStream();
-      try {
-        if (newEvent instanceof ClientStatusUpdateEvent) {
-          output.writeObject(new ClientStatusUpdateEvent(username, user.getStatus()));
-        } else if (newEvent instanceof ClientPfpUpdateEvent) {
-          output.writeObject(new ClientPfpUpdateEvent(username, user.getPfp(), user.getPfpFormat()));
-        } else {
-          output.writeObject(new ClientPasswordUpdateEvent(username, user.getHashedPassword()));
-        }
-        output.flush();
-        output.reset();
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+      recipients.add(user);
+    }
+
+    // Friends and channels can be changed by other event lanes, so work off copies.
+    ArrayList<String> friends;
+    ArrayList<Integer> channelIds;
+    synchronized (user) {
+      friends = new ArrayList<>(user.getFriends());
+      channelIds = new ArrayList<>(user.getChannels());
     }
 
     // Send a status update event to every other user in every channel this user is in
     // as well as all of this user's friends.
     // Also, update every channel's file because the user information has changed.
-    Iterator<String> friendsItr = user.getFriends().iterator();
+    Iterator<String> friendsItr = friends.iterator();
     while (friendsItr.hasNext()) {
       String friendUsername = friendsItr.next();
       User friend = server.getAllUsers().get(friendUsername);
-      if (!server.getCurUsers().containsKey(friend) || alreadyNotified.contains(friendUsername)) {
+      if (friend == null || alreadyNotified.contains(friendUsername)) {
         continue;
       }
       alreadyNotified.add(friendUsername);
-      ObjectOutputStream output = server.getCurUsers().get(friend).getOutputStream();
-      try {
-        if (newEvent instanceof ClientStatusUpdateEvent) {
-          output.writeObject(new ClientStatusUpdateEvent(username, user.getStatus()));
-        } else if (newEvent instanceof ClientPfpUpdateEvent) {
-          output.writeObject(new ClientPfpUpdateEvent(username, user.getPfp(), user.getPfpFormat()));
-        } else {
-          output.writeObject(new ClientPasswordUpdateEvent(username, user.getHashedPassword()));
-        }
-        output.flush();
-        output.reset();
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+      recipients.add(friend);
     }
-    Iterator<Integer> channelsItr = user.getChannels().iterator();
+    Iterator<Integer> channelsItr = channelIds.iterator();
     while (channelsItr.hasNext()) {
       int channelId = channelsItr.next();
       Channel channel = server.getChannels().get(channelId);
-      for (User member : channel.getUsers().values()) {
-        if (!server.getCurUsers().containsKey(member) || alreadyNotified.contains(member.getUsername())) {
+      if (channel == null) {
+        continue;
+      }
+      ArrayList<User> members;
+      synchronized (channel) {
+        members = new ArrayList<>(channel.getUsers().values());
+      }
+      for (User member : members) {
+        if (alreadyNotified.contains(member.getUsername())) {
           continue;
         }
         alreadyNotified.add(member.getUsername());
-        ObjectOutputStream output = server.getCurUsers().get(member).getOutputStream();
-        try {
-          if (newEvent instanceof ClientStatusUpdateEvent) {
-            output.writeObject(new ClientStatusUpdateEvent(username, user.getStatus()));
-          } else if (newEvent instanceof ClientPfpUpdateEvent) {
-            output.writeObject(new ClientPfpUpdateEvent(username, user.getPfp(), user.getPfpFormat()));
-          } else {
-            output.writeObject(new ClientPasswordUpdateEvent(username, user.getHashedPassword()));
-          }
-          output.flush();
-          output.reset();
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
+        recipients.add(member);
       }
       String channelFilePath = "data/channels/" + channelId;
       server.getFileWriteQueue().add(new FileWriteEvent(channel, channelFilePath));
     }
+    try {
+      server.broadcastEvent(toSend, recipients);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
     server.getServerFrame().getTextArea().append(user.getUsername() + "'s profile updated and events sent to users.\n");
 
     // Update the user file
@@ -1,8 +1,10 @@
 package duberchat.handlers.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.Message;
@@ -10,8 +12,10 @@ import duberchat.chatutil.User;
 import duberchat.events.ClientRequestMessageEvent;
 import duberchat.events.RequestFailedEvent;
 import duberchat.events.SerializableEvent;
-import duberchat.handlers.Handleable;
+import duberchat.handlers.AsyncHandleable;
 import duberchat.server.ChatServer;
+import duberchat.server.ChatServer.ConnectionHandler;
+import duberchat.server.MessageHistory;
 
 /**
  * the {@code ServerRequestMessageHandler} class provides the server-side
@@ -25,7 +29,7 @@ import duberchat.server.ChatServer;
  * @author Paula Yuan
  * @see duberchat.events.ClientRequestMessageEvent
  */
-public class ServerRequestMessageHandler implements Handleable {
+public class ServerRequestMessageHandler implements AsyncHandleable {
   /** The associated server this handler is attached to. */
   private ChatServer server;
 
@@ -42,57 +46,67 @@ public class ServerRequestMessageHandler implements Handleable {
    * {@inheritDoc}
    * <p>
    * Ensures that the server sends the event with the requested messages to the
-   * requestor.
+   * requestor. Since older messages are read from disk, this is done on the
+   * server's asynchronous handler executor.
    * 
    * @param newEvent {@inheritDoc}
    */
-  public void handleEvent(SerializableEvent newEvent) {
-    ClientRequestMessageEvent event = (ClientRequestMessageEvent) newEvent;
+  public CompletionStage<Void> handleEventAsync(final SerializableEvent newEvent) {
+    return CompletableFuture.runAsync(new Runnable() {
+      public void run() {
+        try {
+          respond((ClientRequestMessageEvent) newEvent);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }, server.getAsyncHandlerExecutor());
+  }
+
+  /**
+   * Sends the requested messages, or a failure if they can't be found, to the
+   * requestor.
+   * 
+   * @param event the request.
+   * @throws IOException if the messages could not be read or sent.
+   */
+  private void respond(ClientRequestMessageEvent event) throws IOException {
     String source = (String) event.getSource();
     User user = server.getAllUsers().get(source);
-    ObjectOutputStream output = server.getCurUsers().get(user).getOutputStream();
+    ConnectionHandler output = server.getCurUsers().get(user);
+    if (output == null) {
+      return; // the requestor has already left
+    }
 
     int lastMessageId = event.getStartMsgId();
     Channel channel = server.getChannels().get(event.getChannelId());
-    ArrayList<Message> messages = channel.getMessages();
-    ArrayList<Message> messageBlock = new ArrayList<>();
-
-    // loop through messages to find the starting section.
-    for (int i = messages.size() - 1; i >= 0; i--) {
-      Message curMessage = messages.get(i);
-
-      // remember, new messages go at the end, so old messages go to the top
-      if (curMessage.getMessageId() == lastMessageId) {
-        int startMsgId = messages.get(Math.max(i - 1, 0)).getMessageId();
-        // Add the next thirty messages to the message block
-        for (int j = i - 1; j >= Math.max(i - 30, 0); j--) {
-          messageBlock.add(0, messages.get(j));
-        }
-
-        // Send back the event to the user who requested messages.
-        try {
-          output.writeObject(new ClientRequestMessageEvent(source, startMsgId, channel.getChannelId(), messageBlock));
-          output.flush();
-          output.reset();
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
-        server.getServerFrame().getTextArea()
-            .append(source + " requested messages. Messages found, event sent to user.\n");
-        return;
+    MessageHistory history = server.getMessageHistory();
+    ArrayList<Message> messageBlock = null;
+    synchronized (channel) {
+      // the thirty messages before the starting message, if the server has it,
+      // reading older messages from disk
+      if (history.getMessage(channel, lastMessageId) != null) {
+        messageBlock = history.getMessagesBefore(channel, lastMessageId, Channel.MESSAGE_CLUSTER_AMT);
       }
     }
 
-    // Send back a request failed if the message can't be found or the bounds are illegal.
-    try {
-      output.writeObject(new RequestFailedEvent(source));
-      output.flush();
-      output.reset();
+    if (messageBlock != null) {
+      int startMsgId = lastMessageId;
+      if (messageBlock.size() > 0) {
+        startMsgId = messageBlock.get(messageBlock.size() - 1).getMessageId();
+      }
+
+      // Send back the event to the user who requested messages.
+      output.sendEvent(new ClientRequestMessageEvent(source, startMsgId, channel.getChannelId(), messageBlock));
       server.getServerFrame().getTextArea()
-          .append(source + " requested messages. Request failed, sent event to users.\n");
-    } catch (IOException e) {
-      e.printStackTrace();
+          .append(source + " requested messages. Messages found, event sent to user.\n");
+      return;
     }
+
+    // Send back a request failed if the message can't be found or the bounds are illegal.
+    output.sendEvent(new RequestFailedEvent(source));
+    server.getServerFrame().getTextArea()
+        .append(source + " requested messages. Request failed, sent event to users.\n");
   }
   
 }
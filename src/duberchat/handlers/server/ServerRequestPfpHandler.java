@@ -0,0 +1,70 @@
+package duberchat.handlers.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import duberchat.chatutil.User;
+import duberchat.events.ClientRequestPfpEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.handlers.AsyncHandleable;
+import duberchat.server.ChatServer;
+import duberchat.server.ChatServer.ConnectionHandler;
+
+/**
+ * the {@code ServerRequestPfpHandler} class provides the server-side
+ * implementation for handling any {@code ClientRequestPfpEvent}.
+ * <p>
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ * @see duberchat.events.ClientRequestPfpEvent
+ */
+public class ServerRequestPfpHandler implements AsyncHandleable {
+  /** The associated server this handler is attached to. */
+  private ChatServer server;
+
+  /**
+   * Constructs a new {@code ServerRequestPfpHandler}.
+   *
+   * @param server the server that this handler is attached to.
+   */
+  public ServerRequestPfpHandler(ChatServer server) {
+    this.server = server;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Sends the requested profile picture, at the requested size, from the
+   * server's image store back to the requestor. Since the picture may have to be
+   * read or rendered first, this is done on the server's asynchronous handler
+   * executor.
+   *
+   * @param newEvent {@inheritDoc}
+   */
+  public CompletionStage<Void> handleEventAsync(final SerializableEvent newEvent) {
+    return CompletableFuture.runAsync(new Runnable() {
+      public void run() {
+        ClientRequestPfpEvent event = (ClientRequestPfpEvent) newEvent;
+        String source = (String) event.getSource();
+        User user = server.getAllUsers().get(source);
+        ConnectionHandler output = server.getCurUsers().get(user);
+        if (output == null) {
+          return; // the requestor has already left
+        }
+
+        byte[] pfpBytes = server.getPfpStore().get(event.getPfpHash(), event.getSize());
+        try {
+          output.sendEvent(new ClientRequestPfpEvent(source, event.getPfpHash(), event.getSize(), pfpBytes));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }, server.getAsyncHandlerExecutor());
+  }
+}
@@ -0,0 +1,974 @@
+package duberchat.net;
+
+import java.awt.image.BufferedImage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+import duberchat.chatutil.User;
+import duberchat.events.AuthFailedEvent;
+import duberchat.events.AuthSucceedEvent;
+import duberchat.events.ChannelAddMemberEvent;
+import duberchat.events.ChannelCreateEvent;
+import duberchat.events.ChannelDeleteEvent;
+import duberchat.events.ChannelDemoteMemberEvent;
+import duberchat.events.ChannelHierarchyChangeEvent;
+import duberchat.events.ChannelPromoteMemberEvent;
+import duberchat.events.ChannelRemoveMemberEvent;
+import duberchat.events.ChannelResyncEvent;
+import duberchat.events.ClientLoginEvent;
+import duberchat.events.ClientPasswordUpdateEvent;
+import duberchat.events.ClientPfpUpdateEvent;
+import duberchat.events.ClientRequestMessageEvent;
+import duberchat.events.ClientRequestPfpEvent;
+import duberchat.events.ClientResumeEvent;
+import duberchat.events.ClientStatusUpdateEvent;
+import duberchat.events.FriendAddEvent;
+import duberchat.events.FriendEvent;
+import duberchat.events.FriendRemoveEvent;
+import duberchat.events.HeartbeatEvent;
+import duberchat.events.MessageDeleteEvent;
+import duberchat.events.MessageEditEvent;
+import duberchat.events.MessageEvent;
+import duberchat.events.MessageSentEvent;
+import duberchat.events.RequestFailedEvent;
+import duberchat.events.SequencedEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.events.SessionResumedEvent;
+
+/**
+ * The {@code BinaryCodec} encodes events in a compact, versioned binary format.
+ * <p>
+ * A payload starts with the format {@link #VERSION version} and a one-byte type
+ * tag naming the event's class, followed by the event's source and its fields
+ * in a fixed order. Ints and longs are written as zigzag varints, so small ids
+ * take a single byte; strings are written as a varint length and UTF-8 bytes.
+ * Nothing about a class is ever sent besides its tag. Events about a channel
+ * end with their {@link SequencedEvent sequence number}.
+ * <p>
+ * Every event and {@code chatutil} class in the protocol has a tag. An event
+ * without one (or a source that is not a string) is still sent, but Java
+ * serialized, so new events work before this codec learns about them.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class BinaryCodec implements WireCodec {
+    /** The id of this codec during the handshake. */
+    public static final int ID = 1;
+    /** The version of the binary format written by this codec. */
+    public static final int VERSION = 7;
+
+    /** The tag for an event with no tag of its own, sent Java serialized. */
+    private static final int JAVA_SERIALIZED = 0;
+    private static final int AUTH_FAILED = 1;
+    private static final int AUTH_SUCCEED = 2;
+    private static final int CHANNEL_ADD_MEMBER = 3;
+    private static final int CHANNEL_CREATE = 4;
+    private static final int CHANNEL_DELETE = 5;
+    private static final int CHANNEL_DEMOTE_MEMBER = 6;
+    private static final int CHANNEL_PROMOTE_MEMBER = 7;
+    private static final int CHANNEL_HIERARCHY_CHANGE = 8;
+    private static final int CHANNEL_REMOVE_MEMBER = 9;
+    private static final int CLIENT_LOGIN = 10;
+    private static final int CLIENT_PASSWORD_UPDATE = 11;
+    private static final int CLIENT_PFP_UPDATE = 12;
+    private static final int CLIENT_REQUEST_MESSAGE = 13;
+    private static final int CLIENT_STATUS_UPDATE = 14;
+    private static final int FRIEND_ADD = 15;
+    private static final int FRIEND = 16;
+    private static final int FRIEND_REMOVE = 17;
+    private static final int MESSAGE_DELETE = 18;
+    private static final int MESSAGE_EDIT = 19;
+    private static final int MESSAGE_SENT = 20;
+    private static final int REQUEST_FAILED = 21;
+    private static final int SERIALIZABLE = 22;
+    private static final int CLIENT_REQUEST_PFP = 23;
+    private static final int HEARTBEAT = 24;
+    private static final int CLIENT_RESUME = 25;
+    private static final int SESSION_RESUMED = 26;
+    private static final int CHANNEL_RESYNC = 27;
+
+    /** The kind of source for an event with no source. */
+    private static final int NULL_SOURCE = 0;
+    /** The kind of source for an event whose source is a username. */
+    private static final int STRING_SOURCE = 1;
+
+    /** The type tag of every event class this codec knows about. */
+    private static final HashMap<Class<?>, Integer> TAGS = new HashMap<>();
+
+    static {
+        TAGS.put(AuthFailedEvent.class, AUTH_FAILED);
+        TAGS.put(AuthSucceedEvent.class, AUTH_SUCCEED);
+        TAGS.put(ChannelAddMemberEvent.class, CHANNEL_ADD_MEMBER);
+        TAGS.put(ChannelCreateEvent.class, CHANNEL_CREATE);
+        TAGS.put(ChannelDeleteEvent.class, CHANNEL_DELETE);
+        TAGS.put(ChannelDemoteMemberEvent.class, CHANNEL_DEMOTE_MEMBER);
+        TAGS.put(ChannelPromoteMemberEvent.class, CHANNEL_PROMOTE_MEMBER);
+        TAGS.put(ChannelHierarchyChangeEvent.class, CHANNEL_HIERARCHY_CHANGE);
+        TAGS.put(ChannelRemoveMemberEvent.class, CHANNEL_REMOVE_MEMBER);
+        TAGS.put(ChannelResyncEvent.class, CHANNEL_RESYNC);
+        TAGS.put(ClientLoginEvent.class, CLIENT_LOGIN);
+        TAGS.put(ClientPasswordUpdateEvent.class, CLIENT_PASSWORD_UPDATE);
+        TAGS.put(ClientPfpUpdateEvent.class, CLIENT_PFP_UPDATE);
+        TAGS.put(ClientRequestMessageEvent.class, CLIENT_REQUEST_MESSAGE);
+        TAGS.put(ClientRequestPfpEvent.class, CLIENT_REQUEST_PFP);
+        TAGS.put(ClientResumeEvent.class, CLIENT_RESUME);
+        TAGS.put(ClientStatusUpdateEvent.class, CLIENT_STATUS_UPDATE);
+        TAGS.put(FriendAddEvent.class, FRIEND_ADD);
+        TAGS.put(FriendEvent.class, FRIEND);
+        TAGS.put(FriendRemoveEvent.class, FRIEND_REMOVE);
+        TAGS.put(HeartbeatEvent.class, HEARTBEAT);
+        TAGS.put(MessageDeleteEvent.class, MESSAGE_DELETE);
+        TAGS.put(MessageEditEvent.class, MESSAGE_EDIT);
+        TAGS.put(MessageSentEvent.class, MESSAGE_SENT);
+        TAGS.put(RequestFailedEvent.class, REQUEST_FAILED);
+        TAGS.put(SerializableEvent.class, SERIALIZABLE);
+        TAGS.put(SessionResumedEvent.class, SESSION_RESUMED);
+    }
+
+    public int getId() {
+        return ID;
+    }
+
+    public int getVersion() {
+        return VERSION;
+    }
+
+    public String getName() {
+        return "binary-v" + VERSION;
+    }
+
+    public byte[] encode(SerializableEvent event) throws IOException {
+        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bufferStream);
+        out.writeByte(VERSION);
+
+        Integer tag = TAGS.get(event.getClass());
+        Object source = event.getSource();
+        if (tag == null || (source != null && !(source instanceof String))) {
+            out.writeByte(JAVA_SERIALIZED);
+            out.write(JavaSerializationCodec.serialize(event));
+            return bufferStream.toByteArray();
+        }
+
+        out.writeByte(tag);
+        if (source == null) {
+            out.writeByte(NULL_SOURCE);
+        } else {
+            out.writeByte(STRING_SOURCE);
+            writeString(out, (String) source);
+        }
+        this.writeFields(out, tag, event);
+        if (event instanceof SequencedEvent) {
+            writeLong(out, ((SequencedEvent) event).getSequence());
+        }
+        out.flush();
+        return bufferStream.toByteArray();
+    }
+
+    public SerializableEvent decode(byte[] payload) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported binary format version: " + version);
+        }
+
+        int tag = in.readUnsignedByte();
+        if (tag == JAVA_SERIALIZED) {
+            byte[] serialized = new byte[payload.length - 2];
+            in.readFully(serialized);
+            Object event = JavaSerializationCodec.deserialize(serialized);
+            if (!(event instanceof SerializableEvent)) {
+                throw new StreamCorruptedException("Frame did not hold an event");
+            }
+            return (SerializableEvent) event;
+        }
+
+        String source;
+        int sourceKind = in.readUnsignedByte();
+        if (sourceKind == NULL_SOURCE) {
+            source = null;
+        } else if (sourceKind == STRING_SOURCE) {
+            source = readString(in);
+        } else {
+            throw new StreamCorruptedException("Unknown source kind: " + sourceKind);
+        }
+        SerializableEvent event = this.readFields(in, tag, source);
+        if (event instanceof SequencedEvent) {
+            ((SequencedEvent) event).setSequence(readLong(in));
+        }
+        return event;
+    }
+
+    /**
+     * Writes the fields of an event, in the order its tag dictates.
+     *
+     * @param out   the stream to write to.
+     * @param tag   the event's type tag.
+     * @param event the event to write.
+     * @throws IOException if the event could not be written.
+     */
+    private void writeFields(DataOutputStream out, int tag, SerializableEvent event) throws IOException {
+        switch (tag) {
+            case AUTH_SUCCEED: {
+                AuthSucceedEvent auth = (AuthSucceedEvent) event;
+                writeUser(out, auth.getUser());
+                HashMap<Integer, Channel> channels = auth.getChannels();
+                writeCount(out, channels == null ? -1 : channels.size());
+                if (channels != null) {
+                    for (Channel channel : channels.values()) {
+                        writeChannel(out, channel);
+                    }
+                }
+                HashMap<String, User> friends = auth.getFriends();
+                writeCount(out, friends == null ? -1 : friends.size());
+                if (friends != null) {
+                    for (User friend : friends.values()) {
+                        writeUser(out, friend);
+                    }
+                }
+                writeString(out, auth.getSessionToken());
+                break;
+            }
+            case CHANNEL_ADD_MEMBER: {
+                ChannelAddMemberEvent add = (ChannelAddMemberEvent) event;
+                writeInt(out, add.getChannelId());
+                writeString(out, add.getNewUserUsername());
+                writeUser(out, add.getNewUser());
+                writeChannel(out, add.getNewChannel());
+                break;
+            }
+            case CHANNEL_CREATE: {
+                ChannelCreateEvent create = (ChannelCreateEvent) event;
+                writeInt(out, create.getChannelId());
+                writeString(out, create.getChannelName());
+                writeStrings(out, create.getUsernames());
+                writeChannel(out, create.getNewChannel());
+                break;
+            }
+            case CHANNEL_DELETE:
+                writeInt(out, ((ChannelDeleteEvent) event).getChannelId());
+                break;
+            case CHANNEL_DEMOTE_MEMBER:
+            case CHANNEL_PROMOTE_MEMBER:
+            case CHANNEL_HIERARCHY_CHANGE: {
+                ChannelHierarchyChangeEvent change = (ChannelHierarchyChangeEvent) event;
+                writeInt(out, change.getChannelId());
+                writeString(out, change.getUsername());
+                break;
+            }
+            case CHANNEL_REMOVE_MEMBER: {
+                ChannelRemoveMemberEvent remove = (ChannelRemoveMemberEvent) event;
+                writeInt(out, remove.getChannelId());
+                writeString(out, remove.getUsername());
+                break;
+            }
+            case CHANNEL_RESYNC: {
+                ChannelResyncEvent resync = (ChannelResyncEvent) event;
+                writeInt(out, resync.getChannelId());
+                writeLong(out, resync.getFromSequence());
+                writeLong(out, resync.getToSequence());
+                writeChannel(out, resync.getNewChannel());
+                break;
+            }
+            case CLIENT_LOGIN: {
+                ClientLoginEvent login = (ClientLoginEvent) event;
+                out.writeBoolean(login.getIsNewUser());
+                writeString(out, login.getUsername());
+                writeLong(out, login.getHashedPassword());
+                break;
+            }
+            case CLIENT_PASSWORD_UPDATE:
+                writeLong(out, ((ClientPasswordUpdateEvent) event).getHashedPassword());
+                break;
+            case CLIENT_PFP_UPDATE: {
+                ClientPfpUpdateEvent pfp = (ClientPfpUpdateEvent) event;
+                writeString(out, pfp.getPfpFormat());
+                writeString(out, pfp.getPfpHash());
+                writeImage(out, pfp.getNewPfp(), pfp.getPfpFormat());
+                break;
+            }
+            case CLIENT_REQUEST_PFP: {
+                ClientRequestPfpEvent request = (ClientRequestPfpEvent) event;
+                writeString(out, request.getPfpHash());
+                writeInt(out, request.getSize());
+                writeBytes(out, request.getPfpBytes());
+                break;
+            }
+            case CLIENT_RESUME: {
+                ClientResumeEvent resume = (ClientResumeEvent) event;
+                writeString(out, resume.getSessionToken());
+                HashMap<Integer, Integer> lastMessageIds = resume.getLastMessageIds();
+                writeCount(out, lastMessageIds == null ? -1 : lastMessageIds.size());
+                if (lastMessageIds != null) {
+                    for (Map.Entry<Integer, Integer> lastMessageId : lastMessageIds.entrySet()) {
+                        writeInt(out, lastMessageId.getKey());
+                        writeInt(out, lastMessageId.getValue());
+                    }
+                }
+                break;
+            }
+            case SESSION_RESUMED: {
+                SessionResumedEvent resumed = (SessionResumedEvent) event;
+                writeString(out, resumed.getSessionToken());
+                HashMap<Integer, ArrayList<Message>> missedMessages = resumed.getMissedMessages();
+                writeCount(out, missedMessages == null ? -1 : missedMessages.size());
+                if (missedMessages != null) {
+                    for (Map.Entry<Integer, ArrayList<Message>> missed : missedMessages.entrySet()) {
+                        writeInt(out, missed.getKey());
+                        writeMessages(out, missed.getValue());
+                    }
+                }
+                break;
+            }
+            case CLIENT_REQUEST_MESSAGE: {
+                ClientRequestMessageEvent request = (ClientRequestMessageEvent) event;
+                writeInt(out, request.getStartMsgId());
+                writeInt(out, request.getChannelId());
+                writeMessages(out, request.getNewMessageBlock());
+                break;
+            }
+            case CLIENT_STATUS_UPDATE:
+                writeInt(out, ((ClientStatusUpdateEvent) event).getStatus());
+                break;
+            case FRIEND_ADD:
+                writeString(out, ((FriendAddEvent) event).getFriendUsername());
+                writeUser(out, ((FriendAddEvent) event).getFriend());
+                break;
+            case FRIEND:
+            case FRIEND_REMOVE:
+                writeString(out, ((FriendEvent) event).getFriendUsername());
+                break;
+            case MESSAGE_DELETE:
+            case MESSAGE_EDIT:
+                writeMessage(out, ((MessageEvent) event).getMessage());
+                break;
+            case MESSAGE_SENT:
+                writeMessage(out, ((MessageSentEvent) event).getMessage());
+                writeLong(out, ((MessageSentEvent) event).getNonce());
+                break;
+            case REQUEST_FAILED:
+                writeLong(out, ((RequestFailedEvent) event).getRetryAfterMillis());
+                writeLong(out, ((RequestFailedEvent) event).getMessageNonce());
+                break;
+            default:
+                break; // the remaining events carry nothing but their source
+        }
+    }
+
+    /**
+     * Reads the fields of an event and builds the event.
+     *
+     * @param in     the stream to read from.
+     * @param tag    the event's type tag.
+     * @param source the event's source, already read.
+     * @return the decoded event.
+     * @throws IOException if the event could not be read.
+     */
+    private SerializableEvent readFields(DataInputStream in, int tag, String source) throws IOException {
+        switch (tag) {
+            case AUTH_FAILED:
+                return new AuthFailedEvent(source);
+            case AUTH_SUCCEED: {
+                User user = readUser(in);
+                HashMap<Integer, Channel> channels = null;
+                int numChannels = readCount(in);
+                if (numChannels >= 0) {
+                    channels = new HashMap<>();
+                    for (int i = 0; i < numChannels; i++) {
+                        Channel channel = readChannel(in);
+                        channels.put(channel.getChannelId(), channel);
+                    }
+                }
+                HashMap<String, User> friends = null;
+                int numFriends = readCount(in);
+                if (numFriends >= 0) {
+                    friends = new HashMap<>();
+                    for (int i = 0; i < numFriends; i++) {
+                        User friend = readUser(in);
+                        friends.put(friend.getUsername(), friend);
+                    }
+                }
+                AuthSucceedEvent auth = new AuthSucceedEvent(source, user, channels, friends);
+                auth.setSessionToken(readString(in));
+                return auth;
+            }
+            case CHANNEL_ADD_MEMBER: {
+                ChannelAddMemberEvent add = new ChannelAddMemberEvent(source, readInt(in), readString(in));
+                add.setNewUser(readUser(in));
+                add.setNewChannel(readChannel(in));
+                return add;
+            }
+            case CHANNEL_CREATE:
+                return new ChannelCreateEvent(source, readInt(in), readString(in), readStrings(in), readChannel(in));
+            case CHANNEL_DELETE:
+                return new ChannelDeleteEvent(source, readInt(in));
+            case CHANNEL_DEMOTE_MEMBER:
+                return new ChannelDemoteMemberEvent(source, readInt(in), readString(in));
+            case CHANNEL_PROMOTE_MEMBER:
+                return new ChannelPromoteMemberEvent(source, readInt(in), readString(in));
+            case CHANNEL_HIERARCHY_CHANGE:
+                return new ChannelHierarchyChangeEvent(source, readInt(in), readString(in));
+            case CHANNEL_REMOVE_MEMBER:
+                return new ChannelRemoveMemberEvent(source, readInt(in), readString(in));
+            case CHANNEL_RESYNC:
+                return new ChannelResyncEvent(source, readInt(in), readLong(in), readLong(in), readChannel(in));
+            case CLIENT_LOGIN:
+                return new ClientLoginEvent(source, in.readBoolean(), readString(in), readLong(in));
+            case CLIENT_PASSWORD_UPDATE:
+                return new ClientPasswordUpdateEvent(source, readLong(in));
+            case CLIENT_PFP_UPDATE: {
+                String format = readString(in);
+                String pfpHash = readString(in);
+                BufferedImage pfp = readImage(in);
+                if (pfp == null) {
+                    return new ClientPfpUpdateEvent(source, pfpHash, format);
+                }
+                return new ClientPfpUpdateEvent(source, pfp, format);
+            }
+            case CLIENT_REQUEST_PFP:
+                return new ClientRequestPfpEvent(source, readString(in), readInt(in), readBytes(in));
+            case CLIENT_RESUME: {
+                String sessionToken = readString(in);
+                HashMap<Integer, Integer> lastMessageIds = null;
+                int numChannels = readCount(in);
+                if (numChannels >= 0) {
+                    lastMessageIds = new HashMap<>();
+                    for (int i = 0; i < numChannels; i++) {
+                        lastMessageIds.put(readInt(in), readInt(in));
+                    }
+                }
+                return new ClientResumeEvent(source, sessionToken, lastMessageIds);
+            }
+            case SESSION_RESUMED: {
+                String sessionToken = readString(in);
+                HashMap<Integer, ArrayList<Message>> missedMessages = null;
+                int numChannels = readCount(in);
+                if (numChannels >= 0) {
+                    missedMessages = new HashMap<>();
+                    for (int i = 0; i < numChannels; i++) {
+                        missedMessages.put(readInt(in), readMessages(in));
+                    }
+                }
+                return new SessionResumedEvent(source, sessionToken, missedMessages);
+            }
+            case CLIENT_REQUEST_MESSAGE:
+                return new ClientRequestMessageEvent(source, readInt(in), readInt(in), readMessages(in));
+            case CLIENT_STATUS_UPDATE:
+                return new ClientStatusUpdateEvent(source, readInt(in));
+            case FRIEND_ADD:
+                return new FriendAddEvent(source, readString(in), readUser(in));
+            case FRIEND:
+                return new FriendEvent(source, readString(in));
+            case FRIEND_REMOVE:
+                return new FriendRemoveEvent(source, readString(in));
+            case HEARTBEAT:
+                return new HeartbeatEvent(source);
+            case MESSAGE_DELETE:
+                return new MessageDeleteEvent(source, readMessage(in));
+            case MESSAGE_EDIT:
+                return new MessageEditEvent(source, readMessage(in));
+            case MESSAGE_SENT:
+                return new MessageSentEvent(source, readMessage(in), readLong(in));
+            case REQUEST_FAILED:
+                return new RequestFailedEvent(source, readLong(in), readLong(in));
+            case SERIALIZABLE:
+                return new SerializableEvent(source);
+            default:
+                throw new StreamCorruptedException("Unknown event tag: " + tag);
+        }
+    }
+
+    /**
+     * Writes a user, which may be {@code null}.
+     *
+     * @param out  the stream to write to.
+     * @param user the user to write.
+     * @throws IOException if the user could not be written.
+     */
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeBoolean(user != null);
+        if (user == null) {
+            return;
+        }
+        writeString(out, user.getUsername());
+        writeLong(out, user.getHashedPassword());
+        writeInt(out, user.getStatus());
+        writeString(out, user.getPfpFormat());
+        writeString(out, user.getPfpHash());
+
+        HashSet<Integer> channels = user.getChannels();
+        writeCount(out, channels == null ? -1 : channels.size());
+        if (channels != null) {
+            for (int channelId : channels) {
+                writeInt(out, channelId);
+            }
+        }
+        writeStrings(out, user.getFriends());
+    }
+
+    /**
+     * Reads a user, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the user that was read.
+     * @throws IOException if the user could not be read.
+     */
+    private static User readUser(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String username = readString(in);
+        long hashedPassword = readLong(in);
+        int status = readInt(in);
+        String pfpFormat = readString(in);
+        String pfpHash = readString(in);
+
+        HashSet<Integer> channels = null;
+        int numChannels = readCount(in);
+        if (numChannels >= 0) {
+            channels = new HashSet<>();
+            for (int i = 0; i < numChannels; i++) {
+                channels.add(readInt(in));
+            }
+        }
+        return new User(username, hashedPassword, status, pfpHash, pfpFormat, channels, readStrings(in));
+    }
+
+    /**
+     * Writes a channel, which may be {@code null}.
+     * <p>
+     * Admins are almost always members too, so an admin who is a member is
+     * written as just a username and shares the member's user when read.
+     *
+     * @param out     the stream to write to.
+     * @param channel the channel to write.
+     * @throws IOException if the channel could not be written.
+     */
+    private static void writeChannel(DataOutputStream out, Channel channel) throws IOException {
+        out.writeBoolean(channel != null);
+        if (channel == null) {
+            return;
+        }
+        writeString(out, channel.getChannelName());
+        writeInt(out, channel.getChannelId());
+        writeInt(out, channel.getTotalMessages());
+        writeInt(out, channel.getMessageClusters());
+        writeLong(out, channel.getSequence());
+        writeMessages(out, channel.getMessages());
+
+        LinkedHashMap<String, User> users = channel.getUsers();
+        writeCount(out, users.size());
+        for (User user : users.values()) {
+            writeUser(out, user);
+        }
+
+        HashSet<User> admins = channel.getAdminUsers();
+        writeCount(out, admins.size());
+        for (User admin : admins) {
+            boolean isMember = users.containsKey(admin.getUsername());
+            out.writeBoolean(isMember);
+            if (isMember) {
+                writeString(out, admin.getUsername());
+            } else {
+                writeUser(out, admin);
+            }
+        }
+    }
+
+    /**
+     * Reads a channel, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the channel that was read.
+     * @throws IOException if the channel could not be read.
+     */
+    private static Channel readChannel(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String channelName = readString(in);
+        int channelId = readInt(in);
+        int totalMessages = readInt(in);
+        int messageClusters = readInt(in);
+        long sequence = readLong(in);
+        ArrayList<Message> messages = readMessages(in);
+
+        if (totalMessages < 0 || messageClusters < 0 || sequence < 0) {
+            throw new StreamCorruptedException("Negative channel counter in channel " + channelId);
+        }
+
+        LinkedHashMap<String, User> users = new LinkedHashMap<>();
+        int numUsers = readCount(in);
+        for (int i = 0; i < numUsers; i++) {
+            User user = readUser(in);
+            if (user == null || user.getUsername() == null) {
+                throw new StreamCorruptedException("Missing member in channel " + channelId);
+            }
+            users.put(user.getUsername(), user);
+        }
+
+        HashSet<User> admins = new HashSet<>();
+        int numAdmins = readCount(in);
+        for (int i = 0; i < numAdmins; i++) {
+            User admin = in.readBoolean() ? users.get(readString(in)) : readUser(in);
+            if (admin == null) {
+                throw new StreamCorruptedException("Missing admin in channel " + channelId);
+            }
+            admins.add(admin);
+        }
+
+        Channel channel = new Channel(channelName, channelId, users, admins, totalMessages);
+        channel.setMessages(messages == null ? new ArrayList<>() : messages);
+        channel.setMessageClusters(messageClusters);
+        channel.setSequence(sequence);
+        return channel;
+    }
+
+    /**
+     * Writes a message, which may be {@code null}.
+     *
+     * @param out     the stream to write to.
+     * @param message the message to write.
+     * @throws IOException if the message could not be written.
+     */
+    private static void writeMessage(DataOutputStream out, Message message) throws IOException {
+        out.writeBoolean(message != null);
+        if (message == null) {
+            return;
+        }
+        writeString(out, message.getMessage());
+        writeString(out, message.getSenderUsername());
+        writeInt(out, message.getMessageId());
+        writeString(out, message.getTimestamp());
+        writeInt(out, message.getChannelId());
+    }
+
+    /**
+     * Reads a message, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the message that was read.
+     * @throws IOException if the message could not be read.
+     */
+    private static Message readMessage(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new Message(readString(in), readString(in), readInt(in), readString(in), readInt(in));
+    }
+
+    /**
+     * Writes a list of messages, which may be {@code null}.
+     *
+     * @param out      the stream to write to.
+     * @param messages the messages to write.
+     * @throws IOException if the messages could not be written.
+     */
+    private static void writeMessages(DataOutputStream out, ArrayList<Message> messages) throws IOException {
+        writeCount(out, messages == null ? -1 : messages.size());
+        if (messages != null) {
+            for (Message message : messages) {
+                writeMessage(out, message);
+            }
+        }
+    }
+
+    /**
+     * Reads a list of messages, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the messages that were read.
+     * @throws IOException if the messages could not be read.
+     */
+    private static ArrayList<Message> readMessages(DataInputStream in) throws IOException {
+        int numMessages = readCount(in);
+        if (numMessages < 0) {
+            return null;
+        }
+        ArrayList<Message> messages = new ArrayList<>(numMessages);
+        for (int i = 0; i < numMessages; i++) {
+            Message message = readMessage(in);
+            if (message == null) {
+                throw new StreamCorruptedException("Missing message in a list of messages");
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Writes a set of strings, which may be {@code null}.
+     *
+     * @param out     the stream to write to.
+     * @param strings the strings to write.
+     * @throws IOException if the strings could not be written.
+     */
+    private static void writeStrings(DataOutputStream out, HashSet<String> strings) throws IOException {
+        writeCount(out, strings == null ? -1 : strings.size());
+        if (strings != null) {
+            for (String str : strings) {
+                writeString(out, str);
+            }
+        }
+    }
+
+    /**
+     * Reads a set of strings, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the strings that were read.
+     * @throws IOException if the strings could not be read.
+     */
+    private static HashSet<String> readStrings(DataInputStream in) throws IOException {
+        int numStrings = readCount(in);
+        if (numStrings < 0) {
+            return null;
+        }
+        HashSet<String> strings = new HashSet<>();
+        for (int i = 0; i < numStrings; i++) {
+            String str = readString(in);
+            if (str == null) {
+                throw new StreamCorruptedException("Missing string in a set of strings");
+            }
+            strings.add(str);
+        }
+        return strings;
+    }
+
+    /**
+     * Writes an image in the given format, which may be {@code null}.
+     *
+     * @param out    the stream to write to.
+     * @param image  the image to write.
+     * @param format the format to write the image in.
+     * @throws IOException if the image could not be written.
+     */
+    private static void writeImage(DataOutputStream out, BufferedImage image, String format) throws IOException {
+        if (image == null || format == null) {
+            writeBytes(out, null);
+            return;
+        }
+        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bufferStream);
+        writeBytes(out, bufferStream.toByteArray());
+    }
+
+    /**
+     * Reads an image, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the image that was read.
+     * @throws IOException if the image could not be read.
+     */
+    private static BufferedImage readImage(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        if (bytes == null) {
+            return null;
+        }
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Writes a string as UTF-8, which may be {@code null}.
+     *
+     * @param out the stream to write to.
+     * @param str the string to write.
+     * @throws IOException if the string could not be written.
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        writeBytes(out, str == null ? null : str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a UTF-8 string, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the string that was read.
+     * @throws IOException if the string could not be read.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        if (bytes == null) {
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a length-prefixed array of bytes, which may be {@code null}.
+     *
+     * @param out   the stream to write to.
+     * @param bytes the bytes to write.
+     * @throws IOException if the bytes could not be written.
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeCount(out, bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed array of bytes, which may be {@code null}.
+     *
+     * @param in the stream to read from.
+     * @return the bytes that were read.
+     * @throws IOException if the bytes could not be read.
+     */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = readCount(in);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the size of a collection, where -1 stands for {@code null}.
+     *
+     * @param out   the stream to write to.
+     * @param count the size to write, or -1.
+     * @throws IOException if the size could not be written.
+     */
+    private static void writeCount(DataOutputStream out, int count) throws IOException {
+        writeVarInt(out, count + 1);
+    }
+
+    /**
+     * Reads the size of a collection, where -1 stands for {@code null}.
+     * <p>
+     * Every byte and every element of a collection takes up at least one byte of
+     * the frame, so a size larger than what is left of the frame is turned down
+     * before anything is allocated for it.
+     *
+     * @param in the stream to read from.
+     * @return the size that was read, or -1.
+     * @throws IOException if the size could not be read, or is not valid.
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = readVarInt(in) - 1;
+        if (count < -1) {
+            throw new StreamCorruptedException("Invalid count: " + count);
+        }
+        if (count > in.available()) {
+            throw new StreamCorruptedException("Count runs past the end of the frame: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Writes a signed int as a zigzag varint.
+     *
+     * @param out   the stream to write to.
+     * @param value the int to write.
+     * @throws IOException if the int could not be written.
+     */
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a signed int written as a zigzag varint.
+     *
+     * @param in the stream to read from.
+     * @return the int that was read.
+     * @throws IOException if the int could not be read.
+     */
+    private static int readInt(DataInputStream in) throws IOException {
+        int zigzag = readVarInt(in);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Writes a signed long as a zigzag varint.
+     *
+     * @param out   the stream to write to.
+     * @param value the long to write.
+     * @throws IOException if the long could not be written.
+     */
+    private static void writeLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    /**
+     * Reads a signed long written as a zigzag varint.
+     *
+     * @param in the stream to read from.
+     * @return the long that was read.
+     * @throws IOException if the long could not be read.
+     */
+    private static long readLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new StreamCorruptedException("Varint is too long");
+    }
+
+    /**
+     * Writes an unsigned varint: seven bits per byte, low bits first, with the
+     * high bit set on every byte but the last.
+     *
+     * @param out   the stream to write to.
+     * @param value the value to write, treated as unsigned.
+     * @throws IOException if the value could not be written.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param in the stream to read from.
+     * @return the value that was read.
+     * @throws IOException if the value could not be read.
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Varint is too long");
+    }
+}
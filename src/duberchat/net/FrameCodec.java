@@ -0,0 +1,101 @@
+package duberchat.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code FrameCodec} class turns events into length-prefixed frames and
+ * back.
+ * <p>
+ * Every event sent over the Pyjama protocol is one frame: a 4-byte, big-endian
+ * payload length followed by the event, encoded with the {@link WireCodec} the
+ * client and server agreed on. Framing lets a reader know exactly when a whole
+ * event has arrived, which is what allows the server to read from many sockets
+ * without blocking on any of them.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class FrameCodec {
+    /** The number of bytes used by a frame's length prefix. */
+    public static final int HEADER_SIZE = 4;
+    /** The largest payload a frame may carry, in bytes. */
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Writes one frame, length prefix first, and flushes the stream.
+     *
+     * @param out     the stream to write to.
+     * @param payload the frame payload.
+     * @throws IOException if the frame could not be written.
+     */
+    public static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Reads one whole frame, blocking until it has arrived.
+     *
+     * @param in the stream to read from.
+     * @return the frame payload.
+     * @throws IOException if the stream ends or the frame length is invalid.
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        FrameCodec.checkLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Encodes an event and writes it as one frame.
+     *
+     * @param out   the stream to write to.
+     * @param event the event to write.
+     * @param codec the codec to encode the event with.
+     * @throws IOException if the event could not be written.
+     */
+    public static void writeEvent(DataOutputStream out, SerializableEvent event, WireCodec codec)
+            throws IOException {
+        FrameCodec.writeFrame(out, codec.encode(event));
+    }
+
+    /**
+     * Reads one frame and decodes the event inside it.
+     *
+     * @param in    the stream to read from.
+     * @param codec the codec to decode the event with.
+     * @return the event that was read.
+     * @throws IOException            if the frame could not be read.
+     * @throws ClassNotFoundException if the event's class cannot be found.
+     */
+    public static SerializableEvent readEvent(DataInputStream in, WireCodec codec)
+            throws IOException, ClassNotFoundException {
+        return codec.decode(FrameCodec.readFrame(in));
+    }
+
+    /**
+     * Ensures a frame length read off the wire is one we are willing to accept.
+     *
+     * @param length the frame length to check.
+     * @throws IOException if the length is negative or too large.
+     */
+    public static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Invalid frame length: " + length);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package duberchat.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * The {@code Handshake} class agrees on a {@link WireCodec} when a client
+ * connects.
+ * <p>
+ * The client's first frame is a hello: the {@link #MAGIC magic bytes}, followed
+ * by the ids of the codecs it can speak, most preferred first, and then the
+ * {@link WireCodec#getVersion() version} it speaks of each. The server picks the
+ * first one it also accepts in the same version and answers with a reply frame
+ * holding the magic bytes, the chosen id and its version. Every frame after
+ * that, in both directions, uses the chosen codec.
+ * <p>
+ * A client and server built with different versions of a codec's format pass
+ * over it, and end up on Java serialization if nothing else matches. A hello
+ * without versions comes from a client that predates them, whose versions are
+ * unknown, so only codecs without versions are chosen for it.
+ * <p>
+ * Clients that predate the handshake open with a Java serialized event instead,
+ * which can never start with the magic bytes; the server then simply keeps
+ * using Java serialization for that connection.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class Handshake {
+    /** The bytes every hello and reply frame starts with. */
+    public static final byte[] MAGIC = { 'P', 'Y', 'J', 'M' };
+
+    /** The Java serialization codec. */
+    public static final WireCodec JAVA_SERIALIZATION = new JavaSerializationCodec();
+    /** The binary codec. */
+    public static final WireCodec BINARY = new BinaryCodec();
+
+    /** Every codec, indexed by id. */
+    private static final WireCodec[] CODECS = { JAVA_SERIALIZATION, BINARY };
+
+    private Handshake() {
+    }
+
+    /**
+     * Retrieves a codec by its id.
+     *
+     * @param id the id of the codec.
+     * @return the codec with that id, or {@code null} if there is none.
+     */
+    public static WireCodec findCodec(int id) {
+        if (id < 0 || id >= CODECS.length) {
+            return null;
+        }
+        return CODECS[id];
+    }
+
+    /**
+     * Retrieves the number of codecs there are, one more than the largest id.
+     *
+     * @return the number of codecs.
+     */
+    public static int getNumCodecs() {
+        return CODECS.length;
+    }
+
+    /**
+     * Builds the hello frame payload a client opens a connection with.
+     *
+     * @param offered the codecs the client can speak, most preferred first.
+     * @return the hello payload.
+     */
+    public static byte[] hello(WireCodec[] offered) {
+        byte[] payload = new byte[MAGIC.length + 1 + 2 * offered.length];
+        System.arraycopy(MAGIC, 0, payload, 0, MAGIC.length);
+        payload[MAGIC.length] = (byte) offered.length;
+        for (int i = 0; i < offered.length; i++) {
+            payload[MAGIC.length + 1 + i] = (byte) offered[i].getId();
+            payload[MAGIC.length + 1 + offered.length + i] = (byte) offered[i].getVersion();
+        }
+        return payload;
+    }
+
+    /**
+     * Checks whether a frame payload starts with the magic bytes, ie. whether it
+     * is a hello or a reply rather than an event.
+     *
+     * @param payload the frame payload.
+     * @return true if the payload is part of the handshake.
+     */
+    public static boolean isHandshake(byte[] payload) {
+        if (payload.length <= MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (payload[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks the codec to use for a connection, given the client's hello.
+     *
+     * @param hello    the hello payload.
+     * @param accepted the codecs the server accepts.
+     * @return the first codec offered by the client that the server accepts in
+     *         the same version, or Java serialization if there is none.
+     * @throws IOException if the payload is not a valid hello.
+     */
+    public static WireCodec choose(byte[] hello, WireCodec[] accepted) throws IOException {
+        int numOffered = hello.length > MAGIC.length ? hello[MAGIC.length] : 0;
+        if (!Handshake.isHandshake(hello) || numOffered < 0 || hello.length < MAGIC.length + 1 + numOffered) {
+            throw new StreamCorruptedException("Invalid hello");
+        }
+        boolean hasVersions = hello.length >= MAGIC.length + 1 + 2 * numOffered;
+        for (int i = 0; i < numOffered; i++) {
+            int offeredId = hello[MAGIC.length + 1 + i];
+            int offeredVersion = hasVersions ? (hello[MAGIC.length + 1 + numOffered + i] & 0xFF) : -1;
+            for (WireCodec codec : accepted) {
+                if (codec.getId() == offeredId && (codec.getVersion() == 0 || codec.getVersion() == offeredVersion)) {
+                    return codec;
+                }
+            }
+        }
+        return JAVA_SERIALIZATION;
+    }
+
+    /**
+     * Builds the reply frame payload the server answers a hello with.
+     *
+     * @param chosen the codec the server chose.
+     * @return the reply payload.
+     */
+    public static byte[] reply(WireCodec chosen) {
+        byte[] payload = new byte[MAGIC.length + 2];
+        System.arraycopy(MAGIC, 0, payload, 0, MAGIC.length);
+        payload[MAGIC.length] = (byte) chosen.getId();
+        payload[MAGIC.length + 1] = (byte) chosen.getVersion();
+        return payload;
+    }
+
+    /**
+     * Performs the client's side of the handshake, blocking until the server
+     * has replied.
+     *
+     * @param in      the stream from the server.
+     * @param out     the stream to the server.
+     * @param offered the codecs the client can speak, most preferred first.
+     * @return the codec the server chose.
+     * @throws IOException if the handshake failed, or the server chose a codec in
+     *                     a version this client does not speak.
+     */
+    public static WireCodec negotiate(DataInputStream in, DataOutputStream out, WireCodec[] offered)
+            throws IOException {
+        FrameCodec.writeFrame(out, Handshake.hello(offered));
+        byte[] reply = FrameCodec.readFrame(in);
+        if (!Handshake.isHandshake(reply)) {
+            throw new StreamCorruptedException("Server did not reply to the handshake");
+        }
+        WireCodec chosen = Handshake.findCodec(reply[MAGIC.length]);
+        if (chosen == null) {
+            throw new StreamCorruptedException("Server chose an unknown codec: " + reply[MAGIC.length]);
+        }
+        // a server that predates versions sends none, and its version is unknown
+        int version = (reply.length > MAGIC.length + 1) ? (reply[MAGIC.length + 1] & 0xFF) : -1;
+        if (chosen.getVersion() != 0 && chosen.getVersion() != version) {
+            throw new StreamCorruptedException("Server chose " + chosen.getName() + " in another version: " + version);
+        }
+        return chosen;
+    }
+}
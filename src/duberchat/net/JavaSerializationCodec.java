@@ -0,0 +1,84 @@
+package duberchat.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code JavaSerializationCodec} encodes events with Java object
+ * serialization.
+ * <p>
+ * This is the original Pyjama encoding. It can encode any serializable event,
+ * but every payload carries full class descriptors, so it is much larger than
+ * the {@link BinaryCodec}. It is kept for clients that do not offer the binary
+ * codec, and as a fallback inside the binary codec itself.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class JavaSerializationCodec implements WireCodec {
+    /** The id of this codec during the handshake. */
+    public static final int ID = 0;
+
+    public int getId() {
+        return ID;
+    }
+
+    public int getVersion() {
+        return 0; // events carry their own serialVersionUIDs
+    }
+
+    public String getName() {
+        return "java-serialization";
+    }
+
+    public byte[] encode(SerializableEvent event) throws IOException {
+        return JavaSerializationCodec.serialize(event);
+    }
+
+    public SerializableEvent decode(byte[] payload) throws IOException, ClassNotFoundException {
+        Object event = JavaSerializationCodec.deserialize(payload);
+        if (!(event instanceof SerializableEvent)) {
+            throw new StreamCorruptedException("Frame did not hold an event");
+        }
+        return (SerializableEvent) event;
+    }
+
+    /**
+     * Serializes any object into bytes.
+     *
+     * @param obj the object to serialize.
+     * @return the serialized object.
+     * @throws IOException if the object could not be serialized.
+     */
+    static byte[] serialize(Object obj) throws IOException {
+        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bufferStream);
+        out.writeObject(obj);
+        out.close();
+        return bufferStream.toByteArray();
+    }
+
+    /**
+     * Deserializes an object from bytes.
+     *
+     * @param bytes the serialized object.
+     * @return the deserialized object.
+     * @throws IOException            if the bytes are not a valid object.
+     * @throws ClassNotFoundException if the object's class cannot be found.
+     */
+    static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        Object obj = in.readObject();
+        in.close();
+        return obj;
+    }
+}
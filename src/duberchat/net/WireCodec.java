@@ -0,0 +1,62 @@
+package duberchat.net;
+
+import java.io.IOException;
+
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code WireCodec} interface is implemented by classes that can turn an
+ * event into a frame payload and back.
+ * <p>
+ * The client and server agree on which codec to use when they first connect
+ * (see {@link Handshake}); every frame after that is encoded with it.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public interface WireCodec {
+    /**
+     * Retrieves the id this codec is known by during the handshake.
+     *
+     * @return the id of this codec.
+     */
+    public int getId();
+
+    /**
+     * Retrieves the version of the format this codec writes. Both ends of a
+     * connection must speak the same version of a codec to use it.
+     *
+     * @return the version of this codec's format, or 0 if every version of the
+     *         codec can read every other.
+     */
+    public int getVersion();
+
+    /**
+     * Retrieves a human-readable name for this codec.
+     *
+     * @return the name of this codec.
+     */
+    public String getName();
+
+    /**
+     * Encodes an event into a frame payload.
+     *
+     * @param event the event to encode.
+     * @return the encoded event, without a length prefix.
+     * @throws IOException if the event could not be encoded.
+     */
+    public byte[] encode(SerializableEvent event) throws IOException;
+
+    /**
+     * Decodes an event from a frame payload.
+     *
+     * @param payload the frame payload, without a length prefix.
+     * @return the decoded event.
+     * @throws IOException            if the payload is not a valid event.
+     * @throws ClassNotFoundException if the event's class cannot be found.
+     */
+    public SerializableEvent decode(byte[] payload) throws IOException, ClassNotFoundException;
+}
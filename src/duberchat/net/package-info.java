@@ -0,0 +1,5 @@
+/**
+ * Contains the wire-level pieces of the Pyjama protocol that both the client
+ * and the server use to turn events into bytes on a socket and back again.
+ */
+package duberchat.net;
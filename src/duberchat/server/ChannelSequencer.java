@@ -0,0 +1,173 @@
+package duberchat.server;
+
+import java.io.IOException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.User;
+import duberchat.events.ChannelResyncEvent;
+import duberchat.events.SequencedEvent;
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code ChannelSequencer} numbers the events the server sends about each
+ * channel, and keeps the newest of them so they can be sent again.
+ * <p>
+ * Every message, edit, deletion, membership and rank change is given the
+ * channel's next {@link SequencedEvent sequence number} and sent to the
+ * channel's members while holding the channel's lock, so every member's queue
+ * gets a channel's events in the order of their numbers. The last
+ * {@link #RETAINED_EVENTS} events of each channel are kept, so a client that
+ * finds a gap in the numbers can be sent just the events it missed, rather
+ * than the whole channel.
+ * <p>
+ * Sequence numbers are only kept in memory. A client gets its channels again,
+ * with their current sequence numbers, every time it logs in.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class ChannelSequencer {
+    /** The number of each channel's newest events kept to be sent again. */
+    public static final int RETAINED_EVENTS = 256;
+
+    /** The server this sequencer belongs to. */
+    private ChatServer server;
+    /** Each channel's newest events, oldest first, guarded by the channel's lock. */
+    private ConcurrentHashMap<Integer, ArrayDeque<SerializableEvent>> retained;
+
+    /**
+     * Constructs a new {@code ChannelSequencer}.
+     *
+     * @param server The server this sequencer belongs to.
+     */
+    public ChannelSequencer(ChatServer server) {
+        this.server = server;
+        this.retained = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Numbers events about a channel and sends them, in order, to every online
+     * member of the channel.
+     *
+     * @param channel The channel the events are about.
+     * @param events  The events, which must all be {@link SequencedEvent}s.
+     * @throws IOException if an event could not be encoded.
+     */
+    public void broadcast(Channel channel, List<SerializableEvent> events) throws IOException {
+        this.broadcast(channel, events, null);
+    }
+
+    /**
+     * Numbers events about a channel and sends them, in order, to some users.
+     *
+     * @param channel    The channel the events are about.
+     * @param events     The events, which must all be {@link SequencedEvent}s.
+     * @param recipients The users to send the events to, or {@code null} for the
+     *                   channel's members.
+     * @throws IOException if an event could not be encoded.
+     */
+    public void broadcast(Channel channel, List<SerializableEvent> events, Collection<User> recipients)
+            throws IOException {
+        if (events.isEmpty()) {
+            return;
+        }
+        synchronized (channel) {
+            ArrayDeque<SerializableEvent> channelEvents = this.retained.get(channel.getChannelId());
+            if (channelEvents == null) {
+                channelEvents = new ArrayDeque<>();
+                this.retained.put(channel.getChannelId(), channelEvents);
+            }
+            for (SerializableEvent event : events) {
+                long sequence = channel.getSequence() + 1;
+                channel.setSequence(sequence);
+                ((SequencedEvent) event).setSequence(sequence);
+                if (channelEvents.size() >= RETAINED_EVENTS) {
+                    channelEvents.pollFirst();
+                }
+                channelEvents.addLast(event);
+            }
+            this.server.broadcastEvents(events, (recipients == null) ? channel.getUsers().values() : recipients);
+        }
+    }
+
+    /**
+     * Numbers one event about a channel and sends it to every online member of
+     * the channel.
+     *
+     * @param channel The channel the event is about.
+     * @param event   The event, which must be a {@link SequencedEvent}.
+     * @throws IOException if the event could not be encoded.
+     */
+    public void broadcast(Channel channel, SerializableEvent event) throws IOException {
+        ArrayList<SerializableEvent> events = new ArrayList<>(1);
+        events.add(event);
+        this.broadcast(channel, events, null);
+    }
+
+    /**
+     * Finds a channel's events in a range of sequence numbers, if they are all
+     * still kept. The caller must hold the channel's lock.
+     *
+     * @param channel      The channel.
+     * @param fromSequence The first sequence number to find.
+     * @param toSequence   The last sequence number to find.
+     * @return the events, in order, or {@code null} if some are no longer kept.
+     */
+    public ArrayList<SerializableEvent> findRetained(Channel channel, long fromSequence, long toSequence) {
+        if (fromSequence < 1 || toSequence < fromSequence || toSequence > channel.getSequence()) {
+            return null;
+        }
+        ArrayDeque<SerializableEvent> channelEvents = this.retained.get(channel.getChannelId());
+        if (channelEvents == null || channelEvents.isEmpty()
+                || ((SequencedEvent) channelEvents.peekFirst()).getSequence() > fromSequence) {
+            return null;
+        }
+
+        ArrayList<SerializableEvent> found = new ArrayList<>((int) (toSequence - fromSequence + 1));
+        for (SerializableEvent event : channelEvents) {
+            long sequence = ((SequencedEvent) event).getSequence();
+            if (sequence > toSequence) {
+                break;
+            }
+            if (sequence >= fromSequence) {
+                found.add(event);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Builds the event that replaces a client's copy of a channel with a fresh
+     * one, holding the channel's newest messages. The caller must hold the
+     * channel's lock.
+     *
+     * @param username     The username of the client's user.
+     * @param channel      The channel.
+     * @param fromSequence The first sequence number the client is missing.
+     * @param toSequence   The last sequence number the client is missing.
+     * @return the event carrying the fresh copy.
+     */
+    public ChannelResyncEvent snapshot(String username, Channel channel, long fromSequence, long toSequence) {
+        Channel snapshot = new Channel(channel);
+        snapshot.setMessages(channel.getNewestMessages(Channel.MESSAGE_CLUSTER_AMT));
+        return new ChannelResyncEvent(username, channel.getChannelId(), fromSequence, toSequence, snapshot);
+    }
+
+    /**
+     * Forgets the events of a channel that no longer exists.
+     *
+     * @param channelId The id of the channel.
+     */
+    public void forget(int channelId) {
+        this.retained.remove(channelId);
+    }
+}
@@ -1,30 +1,50 @@
 package duberchat.server;
 
-import java.awt.image.BufferedImage;
-
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.security.SecureRandom;
+
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import duberchat.chatutil.Channel;
 import duberchat.chatutil.Message;
 import duberchat.chatutil.User;
+import duberchat.chatutil.WorkerThreads;
 
 import duberchat.events.AuthFailedEvent;
 import duberchat.events.AuthSucceedEvent;
@@ -34,18 +54,24 @@ import duberchat.events.ChannelDeleteEvent;
 import duberchat.events.ChannelDemoteMemberEvent;
 import duberchat.events.ChannelPromoteMemberEvent;
 import duberchat.events.ChannelRemoveMemberEvent;
+import duberchat.events.ChannelResyncEvent;
 import duberchat.events.ClientLoginEvent;
 import duberchat.events.ClientPasswordUpdateEvent;
 import duberchat.events.ClientPfpUpdateEvent;
 import duberchat.events.ClientRequestMessageEvent;
+import duberchat.events.ClientRequestPfpEvent;
+import duberchat.events.ClientResumeEvent;
 import duberchat.events.ClientStatusUpdateEvent;
 import duberchat.events.FileWriteEvent;
 import duberchat.events.FriendAddEvent;
 import duberchat.events.FriendRemoveEvent;
+import duberchat.events.HeartbeatEvent;
 import duberchat.events.MessageDeleteEvent;
 import duberchat.events.MessageEditEvent;
 import duberchat.events.MessageSentEvent;
+import duberchat.events.RequestFailedEvent;
 import duberchat.events.SerializableEvent;
+import duberchat.events.SessionResumedEvent;
 
 import duberchat.gui.frames.ServerFrame;
 
@@ -54,6 +80,7 @@ import duberchat.handlers.server.ServerChannelAddMemberHandler;
 import duberchat.handlers.server.ServerChannelCreateHandler;
 import duberchat.handlers.server.ServerChannelDeleteHandler;
 import duberchat.handlers.server.ServerChannelRemoveMemberHandler;
+import duberchat.handlers.server.ServerChannelResyncHandler;
 import duberchat.handlers.server.ServerFriendHandler;
 import duberchat.handlers.server.ServerHierarchyHandler;
 import duberchat.handlers.server.ServerMessageDeleteHandler;
@@ -61,6 +88,11 @@ import duberchat.handlers.server.ServerMessageEditHandler;
 import duberchat.handlers.server.ServerMessageSentHandler;
 import duberchat.handlers.server.ServerProfileUpdateHandler;
 import duberchat.handlers.server.ServerRequestMessageHandler;
+import duberchat.handlers.server.ServerRequestPfpHandler;
+
+import duberchat.net.FrameCodec;
+import duberchat.net.Handshake;
+import duberchat.net.WireCodec;
 
 /**
  * This is the ChatServer class, a server that manages Duber Chat.
@@ -76,40 +108,103 @@ import duberchat.handlers.server.ServerRequestMessageHandler;
  * @author Mr. Mangat, Paula Yuan
  */
 public class ChatServer {
+    /** The file text conversions are reloaded from whenever it changes. */
+    public static final String TEXT_CONVERSIONS_PATH = "data/textconversions.txt";
+    /** How often the text conversions file is checked for changes, in milliseconds. */
+    private static final long TEXT_CONVERSIONS_POLL_MS = 2000;
+
     /** The server socket for connction. */
     ServerSocket serverSock;
     /** Controls whether the server is accepting clients. */
     static boolean running = true; 
+    /** The port the server accepts clients on. */
+    public static final int PORT = 5000;
+    /** Whether clients are served by the non-blocking transport instead of a thread each. */
+    private boolean useNio;
+    /** The non-blocking transport, if it is in use. */
+    private NioTransport nioTransport;
+    /** What a client's outbound queue does when it fills up, as an {@code OutboundQueue} constant. */
+    private int backPressurePolicy;
+    /** The codecs clients may pick from during the handshake, most preferred first. */
+    private WireCodec[] acceptedCodecs;
     /** Maps channel ids, which identify channels, to the actual channls. */
-    private HashMap<Integer, Channel> channels; 
+    private ConcurrentHashMap<Integer, Channel> channels; 
     /** Represents the total number of channels created, used for channel id. */
-    private int numChannelsCreated;
+    private AtomicInteger numChannelsCreated;
     /** Keeps track of currently connected users. */
     private ConcurrentHashMap<User, ConnectionHandler> curUsers; 
+    /** Watches connections for going quiet, and closes the ones that stay quiet. */
+    private ConnectionLifecycle connectionLifecycle;
+    /** The connections of resumable sessions, by session token. */
+    private ConcurrentHashMap<String, ConnectionHandler> sessions;
+    /** Picks session tokens that can't be guessed. */
+    private SecureRandom sessionTokens;
     /** Keeps track of all users stored in the system. */
     private ConcurrentHashMap<String, User> allUsers; 
 
-    /** Queue to organize events that need to be processed. */
-    private LinkedBlockingQueue<SerializableEvent> eventQueue;
+    /** Limits how often each user can send costly events. */
+    private RateLimiter rateLimiter;
+    /** Spreads events that need to be processed over the event lanes. */
+    private EventDispatcher eventDispatcher;
+    /** Runs the work of asynchronous event handlers, off the event lanes. */
+    private ExecutorService asyncHandlerExecutor;
+    /** Takes sent messages through validation, conversion, sequencing, logging and sending. */
+    private MessagePipeline messagePipeline;
+    /** Numbers the events sent about each channel, and keeps the newest to send again. */
+    private ChannelSequencer channelSequencer;
     /** Queue to organize file writing events. */
     private LinkedBlockingQueue<FileWriteEvent> fileWriteQueue;
     /** Queue to organize file writing regarding images. */
     private LinkedBlockingQueue<FileWriteEvent> imageWriteQueue;
+    /** Stores every profile picture, by hash. */
+    private PfpStore pfpStore;
+    /** The append-only log of every channel's messages. */
+    private MessageLog messageLog;
+    /** The pages of every channel's old messages, kept on disk. */
+    private MessageHistory messageHistory;
+    /** Writes the files queued on the file write queue, coalescing repeated writes. */
+    private PersistenceWorker persistenceWorker;
     /** Keeps track of event handlers and the events they handle. */
     private HashMap<Class<? extends SerializableEvent>, Handleable> eventHandlers;
 
-    /** Keeps track of text commands and emojis and what commands map to what. */
-    private HashMap<String, String> textConversions; 
+    /** Converts text commands and emojis in messages, compiled from what maps to what. */
+    private volatile TextConverter textConverter;
     /** The GUI associated with the server. */
     private ServerFrame serverFrame;
 
+    /**
+     * Constructs a server that gives each client connection its own thread.
+     */
     public ChatServer() {
+        this(false);
+    }
+
+    /**
+     * Constructs a server.
+     * 
+     * @param useNio whether to serve clients with the non-blocking transport, where
+     *               a few I/O threads serve every client, instead of a thread per
+     *               client.
+     */
+    public ChatServer(boolean useNio) {
+        this.useNio = useNio;
+        this.backPressurePolicy = OutboundQueue.COALESCE;
+        this.acceptedCodecs = new WireCodec[] { Handshake.BINARY, Handshake.JAVA_SERIALIZATION };
         this.curUsers = new ConcurrentHashMap<>();
-        this.channels = new HashMap<>();
+        this.connectionLifecycle = new ConnectionLifecycle(this);
+        this.sessions = new ConcurrentHashMap<>();
+        this.sessionTokens = new SecureRandom();
+        this.channels = new ConcurrentHashMap<>();
+        this.numChannelsCreated = new AtomicInteger();
         this.allUsers = new ConcurrentHashMap<>();
-        this.eventQueue = new LinkedBlockingQueue<>();
         this.fileWriteQueue = new LinkedBlockingQueue<>();
         this.imageWriteQueue = new LinkedBlockingQueue<>();
+        this.pfpStore = new PfpStore("data/images/pfp", this.imageWriteQueue);
+        this.messageHistory = new MessageHistory("data/history");
+        this.messageLog = new MessageLog("data/channels", this.fileWriteQueue, this.messageHistory);
+        this.persistenceWorker = new PersistenceWorker(this, this.fileWriteQueue);
+        this.rateLimiter = new RateLimiter();
+        this.channelSequencer = new ChannelSequencer(this);
 
         // set up event handlers
         this.eventHandlers = new HashMap<>();
@@ -120,7 +215,9 @@ public class ChatServer {
         this.eventHandlers.put(ChannelAddMemberEvent.class, new ServerChannelAddMemberHandler(this));
         this.eventHandlers.put(ChannelRemoveMemberEvent.class, new ServerChannelRemoveMemberHandler(this));
         this.eventHandlers.put(ChannelDeleteEvent.class, new ServerChannelDeleteHandler(this));
+        this.eventHandlers.put(ChannelResyncEvent.class, new ServerChannelResyncHandler(this));
         this.eventHandlers.put(ClientRequestMessageEvent.class, new ServerRequestMessageHandler(this));
+        this.eventHandlers.put(ClientRequestPfpEvent.class, new ServerRequestPfpHandler(this));
         ServerProfileUpdateHandler profileHandler = new ServerProfileUpdateHandler(this);
         this.eventHandlers.put(ClientStatusUpdateEvent.class, profileHandler);
         this.eventHandlers.put(ClientPfpUpdateEvent.class, profileHandler);
@@ -132,18 +229,19 @@ public class ChatServer {
         this.eventHandlers.put(ChannelPromoteMemberEvent.class, hierarchyHandler);
         this.eventHandlers.put(ChannelDemoteMemberEvent.class, hierarchyHandler);
 
+        // one event lane per core; events for the same channel or user share a lane
+        int numLanes = Runtime.getRuntime().availableProcessors();
+        this.eventDispatcher = new EventDispatcher(this, this.eventHandlers, numLanes, EventIngress.DEFAULT_CAPACITY);
+        final AtomicInteger numAsyncHandlerThreads = new AtomicInteger();
+        this.asyncHandlerExecutor = Executors.newFixedThreadPool(numLanes * 2, new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                return new Thread(task, "async-handler-" + numAsyncHandlerThreads.getAndIncrement());
+            }
+        });
+        this.messagePipeline = new MessagePipeline(this);
+
         // set up text conversions / emojis
-        this.textConversions = new HashMap<>();
-        this.textConversions.put(":)", "\uD83D\uDE42");
-        this.textConversions.put(":D", "\uD83D\uDE04");
-        this.textConversions.put(":P", "\uD83D\uDE1B");
-        this.textConversions.put(":(", "\uD83D\uDE26");
-        this.textConversions.put(";)", "\uD83D\uDE09");
-        this.textConversions.put(":O", "\uD83D\uDE2E");
-        this.textConversions.put(":'(", "\uD83D\uDE22");
-        this.textConversions.put(">:(", "\uD83D\uDE20");
-        this.textConversions.put(":|", "\uD83D\uDE10");
-        this.textConversions.put("<3", "\u2764");
+        this.textConverter = new TextConverter(TextConverter.getDefaultConversions());
 
         this.serverFrame = new ServerFrame();
     }
@@ -156,20 +254,65 @@ public class ChatServer {
 
         // load up all users and channels
         try {
+            this.pfpStore.loadDefault(new File("data/images/default.png"));
+
+            int numMigrated = 0;
             for (File userFile : new File("data/users").listFiles()) {
+                if (userFile.getName().endsWith(".tmp")) {
+                    continue; // left behind by a write that never finished
+                }
                 FileInputStream fileIn = new FileInputStream(userFile);
                 ObjectInputStream in = new ObjectInputStream(fileIn);
                 User user = (User) in.readObject();
                 this.allUsers.put(user.getUsername(), user);
                 in.close();
+
+                // users saved before the image store carry their picture instead of its hash
+                if (user.getPfpHash() == null) {
+                    if (user.getPfp() == null) {
+                        user.setPfpHash(this.pfpStore.getDefaultHash());
+                    } else {
+                        user.setPfpHash(this.pfpStore.put(user.getPfp(), user.getPfpFormat()));
+                        user.setPfp(null);
+                    }
+                    this.fileWriteQueue.add(new FileWriteEvent(user, "data/users/" + user.getUsername()));
+                    numMigrated++;
+                }
+            }
+            if (numMigrated > 0) {
+                this.serverFrame.getTextArea().append("Moved " + numMigrated + " profile pictures into the image store.\n");
             }
 
+            int numReplayed = 0;
+            int numPaged = 0;
             for (File channelFile : new File("data/channels").listFiles()) {
+                if (!MessageLog.isSnapshot(channelFile)) {
+                    continue; // log segments are replayed onto their snapshot below
+                }
                 FileInputStream fileIn = new FileInputStream(channelFile);
                 ObjectInputStream in = new ObjectInputStream(fileIn);
                 Channel channel = (Channel) in.readObject();
-                this.channels.put(channel.getChannelId(), channel);
                 in.close();
+                boolean changed = this.migratePfps(channel);
+                this.messageHistory.load(channel);
+                numReplayed += this.messageLog.replay(channel);
+
+                // only the hot tail stays in memory; older messages are paged out
+                int pagesWritten = this.messageHistory.trim(channel);
+                if (pagesWritten > 0) {
+                    numPaged += pagesWritten;
+                    changed = true;
+                }
+                if (changed) {
+                    this.fileWriteQueue.add(new FileWriteEvent(channel, "data/channels/" + channel.getChannelId()));
+                }
+                this.channels.put(channel.getChannelId(), channel);
+            }
+            if (numReplayed > 0) {
+                this.serverFrame.getTextArea().append("Replayed " + numReplayed + " logged message changes.\n");
+            }
+            if (numPaged > 0) {
+                this.serverFrame.getTextArea().append("Paged " + numPaged + " pages of old messages out to disk.\n");
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -177,37 +320,37 @@ public class ChatServer {
             e1.printStackTrace();
         }
         this.serverFrame.getTextArea().append("User and channel preloading completed.\n");
+        if (WorkerThreads.isUsingVirtualThreads()) {
+            this.serverFrame.getTextArea().append("Running connection and file workers on virtual threads.\n");
+        }
 
         // start thread for normal file writing
-        Thread fileWriteThread = new Thread(new Runnable() {
+        this.persistenceWorker.start();
+        this.serverFrame.getTextArea().append("Started file writing thread.\n");
+
+        // start thread for reloading text conversions whenever their file changes
+        WorkerThreads.start("conversion-watcher", new Runnable() {
             public void run() {
+                long lastModified = 0;
                 while (true) {
-                    FileWriteEvent writeInfo = null;
-                    try {
-                        writeInfo = fileWriteQueue.take();
-                    } catch (InterruptedException e1) {
-                        continue; // keep reading from the queue
+                    File conversionsFile = new File(TEXT_CONVERSIONS_PATH);
+                    long modified = conversionsFile.lastModified();
+                    // a missing file reads as 0, and keeps the conversions in use
+                    if (modified != lastModified && modified != 0) {
+                        reloadTextConversions(conversionsFile);
                     }
+                    lastModified = modified;
                     try {
-                        String filePath = writeInfo.getFilePath();
-                        FileOutputStream fileOut = new FileOutputStream(filePath);
-                        ObjectOutputStream out = new ObjectOutputStream(fileOut);
-                        out.writeObject(writeInfo.getObjectToWrite());
-                        out.flush();
-                        out.reset();
-                        out.close();
-                        ChatServer.this.serverFrame.getTextArea().append("Wrote to file: " + filePath + "\n");
-                    } catch (IOException e) {
-                        e.printStackTrace();
+                        Thread.sleep(TEXT_CONVERSIONS_POLL_MS);
+                    } catch (InterruptedException e) {
+                        continue; // keep watching
                     }
                 }
             }
         });
-        this.serverFrame.getTextArea().append("Started file writing thread.\n");
-        fileWriteThread.start();
 
-        // start thread for image file writing 
-        Thread imageWriteThread = new Thread(new Runnable() {
+        // start thread for image file writing
+        WorkerThreads.start("image-writer", new Runnable() {
             public void run() {
                 while (true) {
                     FileWriteEvent writeInfo = null;
@@ -217,12 +360,14 @@ public class ChatServer {
                         continue; // keep reading from the queue
                     }
                     try {
+                        // images are already encoded; write them beside their file and move them into place
                         String filePath = writeInfo.getFilePath();
-                        FileOutputStream fileOut = new FileOutputStream(filePath);
-                        ObjectOutputStream out = new ObjectOutputStream(fileOut);
-
-                        String extension = filePath.substring(filePath.lastIndexOf("."), filePath.length());
-                        ImageIO.write((BufferedImage) (writeInfo.getObjectToWrite()), extension, out);
+                        File tempFile = new File(filePath + ".tmp");
+                        FileOutputStream fileOut = new FileOutputStream(tempFile);
+                        fileOut.write((byte[]) writeInfo.getObjectToWrite());
+                        fileOut.close();
+                        Files.move(tempFile.toPath(), new File(filePath).toPath(),
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
                         ChatServer.this.serverFrame.getTextArea().append("Wrote to image file: " + filePath + "\n");
                     } catch (IOException e) {
                         e.printStackTrace();
@@ -231,35 +376,32 @@ public class ChatServer {
             }
         });
         this.serverFrame.getTextArea().append("Started image writing thread.\n");
-        imageWriteThread.start();
 
-        // start new thread to handle events
-        Thread eventsThread = new Thread(new Runnable() {
-            public void run() {
-                while (true) {
-                    SerializableEvent event = null;
-                    try {
-                        event = eventQueue.take();
-                    } catch (InterruptedException e) {
-                        continue; // keep reading from the queue
-                    }
-                    eventHandlers.get(event.getClass()).handleEvent(event);
-                }
-            }
-        });
-        this.serverFrame.getTextArea().append("Started event handler thread." + "\n");
-        eventsThread.start();
+        // start the event lanes to handle events
+        this.eventDispatcher.start();
+        this.serverFrame.getTextArea()
+                .append("Started " + this.eventDispatcher.getNumLanes() + " event handler threads.\n");
+        this.messagePipeline.start();
+        this.serverFrame.getTextArea().append("Started message pipeline.\n");
+        this.connectionLifecycle.start();
+        this.serverFrame.getTextArea().append("Started connection heartbeat thread.\n");
+
+        if (this.useNio) {
+            this.acceptNonBlocking();
+            return;
+        }
 
         // start accepting client connections
         this.serverFrame.getTextArea().append("Waiting for a client connection..\n");
         Socket client = null; // hold the client connection
         try {
-            this.serverSock = new ServerSocket(5000); // assigns an port to the server
+            this.serverSock = new ServerSocket(PORT); // assigns an port to the server
             while (running) { // this loops to accept multiple clients
                 client = serverSock.accept(); // wait for connection
                 this.serverFrame.getTextArea().append("Client connected\n");
-                Thread t = new Thread(new ConnectionHandler(client));
-                t.start(); // start the new thread
+                ConnectionHandler connection = new ConnectionHandler(client);
+                this.connectionLifecycle.register(connection);
+                WorkerThreads.start("connection", connection); // start the new thread
                 this.serverFrame.getTextArea().append("Started new client connection thread.\n");
             }
         } catch (IOException e) {
@@ -275,12 +417,71 @@ public class ChatServer {
         }
     }
 
+    /**
+     * Accepts client connections and hands them to the non-blocking transport,
+     * which multiplexes every client over a few I/O threads.
+     */
+    private void acceptNonBlocking() {
+        int numIoThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        SocketChannel client = null;
+        try {
+            this.nioTransport = new NioTransport(this, numIoThreads);
+            this.nioTransport.start();
+            this.serverFrame.getTextArea().append("Started " + numIoThreads + " non-blocking I/O threads.\n");
+
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(PORT));
+            this.serverSock = serverChannel.socket();
+            this.serverFrame.getTextArea().append("Waiting for a client connection..\n");
+            while (running) {
+                client = serverChannel.accept(); // wait for connection
+                client.configureBlocking(false);
+                ConnectionHandler connection = new ConnectionHandler(client);
+                this.connectionLifecycle.register(connection);
+                this.nioTransport.register(connection);
+                this.serverFrame.getTextArea().append("Client connected\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            this.serverFrame.getTextArea().append("Error accepting connection\n");
+            try {
+                client.close();
+            } catch (Exception e1) {
+                this.serverFrame.getTextArea().append("Failed to close socket\n");
+            }
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Gives the members of a channel saved before the image store existed the
+     * hashes of their profile pictures, which the users themselves were given
+     * when they were loaded, and drops the pictures they carried.
+     * 
+     * @param channel The channel to migrate.
+     * @return true if any member was migrated, and the channel should be saved.
+     */
+    private boolean migratePfps(Channel channel) {
+        boolean migrated = false;
+        for (User member : channel.getUsers().values()) {
+            if (member.getPfpHash() != null) {
+                continue;
+            }
+            User user = this.allUsers.get(member.getUsername());
+            member.setPfpHash(user != null ? user.getPfpHash() : this.pfpStore.getDefaultHash());
+            member.setPfp(null);
+            migrated = true;
+        }
+        return migrated;
+    }
+
     /**
      * Retrieves this server's map of channel ids to channels.
      * 
-     * @return a {@code HashMap} mapping the channel ids to the server channels.
+     * @return a {@code ConcurrentHashMap} mapping the channel ids to the server
+     *         channels.
      */
-    public HashMap<Integer, Channel> getChannels() {
+    public ConcurrentHashMap<Integer, Channel> getChannels() {
         return this.channels;
     }
 
@@ -290,7 +491,7 @@ public class ChatServer {
      * @return an integer, the total number of channels that have been created.
      */
     public int getNumChannelsCreated() {
-        return this.numChannelsCreated;
+        return this.numChannelsCreated.get();
     }
 
     /**
@@ -299,7 +500,16 @@ public class ChatServer {
      * @param newNum The new total number of channels that have been created.
      */
     public void setNumChannelsCreated(int newNum) {
-        this.numChannelsCreated = newNum;
+        this.numChannelsCreated.set(newNum);
+    }
+
+    /**
+     * Reserves the id for a new channel. Safe to call from any event lane.
+     * 
+     * @return int, the new channel's id.
+     */
+    public int createChannelId() {
+        return this.numChannelsCreated.incrementAndGet();
     }
 
     /**
@@ -320,6 +530,118 @@ public class ChatServer {
         return this.curUsers;
     }
 
+    /**
+     * Retrieves the append-only log of every channel's messages.
+     * 
+     * @return the message log.
+     */
+    public MessageLog getMessageLog() {
+        return this.messageLog;
+    }
+
+    /**
+     * Retrieves the pages of every channel's old messages.
+     * 
+     * @return the message history.
+     */
+    public MessageHistory getMessageHistory() {
+        return this.messageHistory;
+    }
+
+    /**
+     * Sets how long a client can be quiet before it is sent a heartbeat, and how
+     * long before it is disconnected.
+     * 
+     * @param heartbeatMillis   The time before a heartbeat, in milliseconds.
+     * @param idleTimeoutMillis The time before disconnecting, in milliseconds.
+     */
+    public void setHeartbeat(long heartbeatMillis, long idleTimeoutMillis) {
+        this.connectionLifecycle.setTimeouts(heartbeatMillis, idleTimeoutMillis);
+    }
+
+    /**
+     * Sets how long the session of a client that lost its connection is kept for
+     * the client to resume.
+     * 
+     * @param graceMillis The time the session is kept, in milliseconds.
+     */
+    public void setSessionGrace(long graceMillis) {
+        this.connectionLifecycle.setSessionGrace(graceMillis);
+    }
+
+    /**
+     * Picks a new session token.
+     * 
+     * @return the token.
+     */
+    private String newSessionToken() {
+        byte[] token = new byte[16];
+        this.sessionTokens.nextBytes(token);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Retrieves what watches connections for going quiet, which also counts the
+     * open and reaped connections.
+     * 
+     * @return ConnectionLifecycle, the connection lifecycle.
+     */
+    public ConnectionLifecycle getConnectionLifecycle() {
+        return this.connectionLifecycle;
+    }
+
+    /**
+     * Sets the most events read from clients that can be waiting to be handled at
+     * once. Clients that send more than their share of this are paused until
+     * their events are handled.
+     * 
+     * @param capacity the number of events that can be waiting.
+     */
+    public void setIngressCapacity(int capacity) {
+        this.eventDispatcher.getIngress().setCapacity(capacity);
+    }
+
+    /**
+     * Sets how often each user can send events of some kind. Events sent faster
+     * than this are turned down with a {@code RequestFailedEvent} saying when to
+     * try again. Limits must be set before the server starts.
+     * 
+     * @param eventClass the kind of event to limit.
+     * @param perSecond  the number of events a second each user can keep sending.
+     * @param burst      the number of events each user can send at once.
+     */
+    public void setRateLimit(Class<? extends SerializableEvent> eventClass, double perSecond, int burst) {
+        this.rateLimiter.setLimit(eventClass, perSecond, burst);
+    }
+
+    /**
+     * Retrieves the limiter of how often each user can send costly events.
+     * 
+     * @return RateLimiter, the rate limiter.
+     */
+    public RateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * Sets the number of messages of each channel kept in memory. Older messages
+     * are paged out to disk, and read back when clients scroll up to them.
+     * 
+     * @param hotTailSize the number of messages kept in memory per channel.
+     */
+    public void setHotTailSize(int hotTailSize) {
+        this.messageHistory.setHotTailSize(hotTailSize);
+    }
+
+    /**
+     * Retrieves the worker that writes the files on the file write queue.
+     * 
+     * @return the persistence worker.
+     */
+    public PersistenceWorker getPersistenceWorker() {
+        return this.persistenceWorker;
+    }
+
     /**
      * Retrieves this user's profile picture.
      * 
@@ -339,12 +661,70 @@ public class ChatServer {
     }
 
     /**
-     * Retrieves this user's profile picture.
+     * Retrieves the store holding every profile picture.
      * 
-     * @return BufferedImage, the profile picture.
+     * @return the profile picture store.
+     */
+    public PfpStore getPfpStore() {
+        return this.pfpStore;
+    }
+
+    /**
+     * Retrieves the text conversions in use.
+     * 
+     * @return a copy of the text conversions, mapping text to what it converts to.
      */
     public HashMap<String, String> getTextConversions() {
-        return this.textConversions;
+        return this.textConverter.getConversions();
+    }
+
+    /**
+     * Retrieves the converter for the text conversions in use.
+     * 
+     * @return the text converter.
+     */
+    public TextConverter getTextConverter() {
+        return this.textConverter;
+    }
+
+    /**
+     * Replaces the text conversions in use. Messages being converted at the time
+     * finish with the old conversions.
+     * 
+     * @param conversions the new text conversions, mapping text to what it
+     *                    converts to.
+     */
+    public void setTextConversions(Map<String, String> conversions) {
+        this.textConverter = new TextConverter(conversions);
+    }
+
+    /**
+     * Reloads the text conversions from a file. Each line holds some text and what
+     * it converts to, separated by whitespace; blank lines and lines starting with
+     * {@code #} are skipped. If the file can't be read, the conversions in use are
+     * kept.
+     * 
+     * @param conversionsFile the file to load the text conversions from.
+     */
+    public void reloadTextConversions(File conversionsFile) {
+        HashMap<String, String> conversions = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(conversionsFile.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+", 2);
+                if (parts.length == 2) {
+                    conversions.put(parts[0], parts[1]);
+                }
+            }
+        } catch (IOException e) {
+            this.serverFrame.getTextArea().append("Couldn't read text conversions from " + conversionsFile + ".\n");
+            return;
+        }
+        this.setTextConversions(conversions);
+        this.serverFrame.getTextArea().append("Loaded " + conversions.size() + " text conversions.\n");
     }
 
     /**
@@ -356,14 +736,145 @@ public class ChatServer {
         return this.serverFrame;
     }
 
-    // ***** Inner class - thread for client connection
+    /**
+     * Sends the same event to every online user in a group of users.
+     * <p>
+     * The event is encoded once per codec in use, and the same encoded bytes are
+     * queued for every recipient using that codec, so a broadcast to a large
+     * channel costs one or two encodings instead of one per member. Offline users
+     * are skipped.
+     * 
+     * @param event      the event to send.
+     * @param recipients the users to send the event to.
+     * @throws IOException if the event could not be encoded.
+     */
+    public void broadcastEvent(SerializableEvent event, Collection<User> recipients) throws IOException {
+        ArrayList<SerializableEvent> events = new ArrayList<>(1);
+        events.add(event);
+        this.broadcastEvents(events, recipients);
+    }
+
+    /**
+     * Sends several events, in order, to every online user in a collection, in
+     * one pass over the users. Each event is still encoded only once per codec.
+     * 
+     * @param events     the events to send, in the order to send them.
+     * @param recipients the users to send the events to.
+     * @throws IOException if an event could not be encoded.
+     */
+    public void broadcastEvents(List<SerializableEvent> events, Collection<User> recipients) throws IOException {
+        OutboundFrame[][] frames = new OutboundFrame[Handshake.getNumCodecs()][];
+        for (User recipient : recipients) {
+            ConnectionHandler connection = this.curUsers.get(recipient);
+            if (connection != null) {
+                WireCodec codec = connection.getCodec();
+                if (frames[codec.getId()] == null) {
+                    frames[codec.getId()] = new OutboundFrame[events.size()];
+                    for (int i = 0; i < events.size(); i++) {
+                        frames[codec.getId()][i] = OutboundFrame.of(events.get(i), codec);
+                    }
+                }
+                for (OutboundFrame frame : frames[codec.getId()]) {
+                    connection.sendFrame(frame);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets whether clients may pick the binary codec during the handshake. When
+     * disabled, every client is spoken to with Java serialization. Only affects
+     * clients that connect afterwards.
+     * 
+     * @param enabled whether the binary codec is accepted.
+     */
+    public void setBinaryCodecEnabled(boolean enabled) {
+        if (enabled) {
+            this.acceptedCodecs = new WireCodec[] { Handshake.BINARY, Handshake.JAVA_SERIALIZATION };
+        } else {
+            this.acceptedCodecs = new WireCodec[] { Handshake.JAVA_SERIALIZATION };
+        }
+    }
+
+    /**
+     * Retrieves what a client's outbound queue does when it fills up.
+     * 
+     * @return int, the back-pressure policy as an {@code OutboundQueue} constant.
+     */
+    public int getBackPressurePolicy() {
+        return this.backPressurePolicy;
+    }
+
+    /**
+     * Sets what a client's outbound queue does when it fills up. Only affects
+     * clients that connect afterwards.
+     * 
+     * @param policy the back-pressure policy, as an {@code OutboundQueue} constant.
+     */
+    public void setBackPressurePolicy(int policy) {
+        this.backPressurePolicy = policy;
+    }
+
+    /**
+     * Retrieves the dispatcher that runs this server's event lanes.
+     * 
+     * @return EventDispatcher, the event dispatcher.
+     */
+    public EventDispatcher getEventDispatcher() {
+        return this.eventDispatcher;
+    }
+
+    /**
+     * Retrieves the executor that asynchronous event handlers run their work on.
+     * 
+     * @return ExecutorService, the asynchronous handler executor.
+     */
+    public ExecutorService getAsyncHandlerExecutor() {
+        return this.asyncHandlerExecutor;
+    }
+
+    /**
+     * Retrieves the pipeline that sent messages go through.
+     * 
+     * @return MessagePipeline, the message pipeline.
+     */
+    public MessagePipeline getMessagePipeline() {
+        return this.messagePipeline;
+    }
+
+    /**
+     * Retrieves what numbers the events sent about each channel.
+     * 
+     * @return ChannelSequencer, the channel sequencer.
+     */
+    public ChannelSequencer getChannelSequencer() {
+        return this.channelSequencer;
+    }
+
+    // ***** Inner class - state (and, in blocking mode, the thread) for a client connection
     public class ConnectionHandler implements Runnable, Serializable {
         private static final long serialVersionUID = 1L;
-        private transient ObjectOutputStream output; // assign printwriter to network stream
-        private transient ObjectInputStream input; // Stream for network input
+        private transient DataOutputStream output; // assign printwriter to network stream
+        private transient DataInputStream input; // Stream for network input
         private transient Socket client; // keeps track of the client socket
+        private transient SocketChannel socketChannel; // the client channel, in non-blocking mode
+        private transient SelectionKey selectionKey; // this channel's key with its selector
+        private transient ByteBuffer readBuffer; // holds partially read frames
+        private transient ByteBuffer[] currentWrite; // the frame being written, in non-blocking mode
+        private transient OutboundQueue outboundQueue; // frames waiting to be written
+        private transient volatile WireCodec codec; // the codec agreed on, or null before the first frame
+        private transient AtomicInteger numQueuedEvents; // events read from this client and not yet handled
+        private transient AtomicBoolean readPaused; // whether reading is paused until events are handled
+        private transient AtomicBoolean closed; // whether this connection has been closed for good
+        private transient AtomicBoolean detached; // whether the socket was lost and the session is kept
+        private transient volatile long detachedAtNanos; // when the socket was lost
+        private transient volatile ConnectionHandler resumedBy; // the connection that resumed this session
+        private transient volatile String sessionToken; // the token that resumes this session, once logged in
+        private transient Thread writerThread; // the writer, in blocking mode
+        private transient volatile long lastActivityNanos; // when a frame was last read from this client
+        private transient volatile long lastHeartbeatNanos; // when this client was last sent a heartbeat
         private User user;
-        private boolean running;
+        private volatile boolean running;
 
         /*
          * ConnectionHandler Constructor
@@ -373,51 +884,77 @@ public class ChatServer {
         ConnectionHandler(Socket s) {
             this.client = s; // constructor assigns client to this
             this.user = null;
+            this.outboundQueue = new OutboundQueue(OutboundQueue.DEFAULT_CAPACITY, backPressurePolicy);
+            this.numQueuedEvents = new AtomicInteger();
+            this.readPaused = new AtomicBoolean();
+            this.closed = new AtomicBoolean();
+            this.detached = new AtomicBoolean();
+            this.lastActivityNanos = System.nanoTime();
+            this.lastHeartbeatNanos = this.lastActivityNanos;
             try { // assign all connections to client
-                this.output = new ObjectOutputStream(client.getOutputStream());
-                this.input = new ObjectInputStream(client.getInputStream());
+                this.output = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+                this.input = new DataInputStream(new BufferedInputStream(client.getInputStream()));
             } catch (IOException e) {
                 e.printStackTrace();
             }
             running = true;
         }
 
+        /*
+         * ConnectionHandler Constructor for the non-blocking transport. No thread is
+         * started for this connection; an I/O thread of the transport reads and writes
+         * its frames instead.
+         * 
+         * @param the non-blocking channel belonging to this client connection
+         */
+        ConnectionHandler(SocketChannel channel) {
+            this.socketChannel = channel;
+            this.user = null;
+            this.readBuffer = ByteBuffer.allocate(NioTransport.INITIAL_READ_BUFFER_SIZE);
+            this.outboundQueue = new OutboundQueue(OutboundQueue.DEFAULT_CAPACITY, backPressurePolicy);
+            this.numQueuedEvents = new AtomicInteger();
+            this.readPaused = new AtomicBoolean();
+            this.closed = new AtomicBoolean();
+            this.detached = new AtomicBoolean();
+            this.lastActivityNanos = System.nanoTime();
+            this.lastHeartbeatNanos = this.lastActivityNanos;
+            running = true;
+        }
+
         /*
          * run executed on start of thread
          */
         public void run() {
-            // Get a message from the client
-            SerializableEvent event;
-
-            // Send a message to the client
+            // Events for this client are written by a writer of its own
+            this.writerThread = WorkerThreads.start("connection-writer", new Runnable() {
+                public void run() {
+                    writeOutbound();
+                }
+            });
 
             // Get a message from the client
+            EventIngress ingress = eventDispatcher.getIngress();
             while (running) { // loop until a message is received
+                // stop reading while this client has too many events waiting
+                if (!ingress.hasRoom(this) && ingress.pause(this)) {
+                    this.awaitResume();
+                    continue;
+                }
                 try {
-                    event = (SerializableEvent) input.readObject(); // get a message from the client
-                    ChatServer.this.serverFrame.getTextArea().append("Received a " + event.getClass() + " event\n");
-
-                    // ClientLoginEvents are handled separately because there may be no user-thread
-                    // mapping that can inform the handler of what client to output to.
-                    if (event instanceof ClientLoginEvent) {
-                        handleLogin((ClientLoginEvent) event);
-                        continue;
-                    }
-                    eventQueue.add(event);
+                    this.receiveFrame(FrameCodec.readFrame(input)); // get a message from the client
                 } catch (IOException e) {
-                    ChatServer.this.serverFrame.getTextArea().append("Failed to receive msg from the client\n");
-                    if (user != null) {
-                        user.setStatus(User.OFFLINE);
-                        eventHandlers.get(ClientStatusUpdateEvent.class)
-                                .handleEvent(new ClientStatusUpdateEvent(user.getUsername(), User.OFFLINE));
+                    // this stops the loop; a socket that failed once never recovers
+                    if (this.running) {
+                        ChatServer.this.serverFrame.getTextArea().append("Failed to receive msg from the client\n");
                     }
+                    this.connectionLost();
                 } catch (ClassNotFoundException e1) {
                     ChatServer.this.serverFrame.getTextArea().append("Class not found :(\n");
                     e1.printStackTrace();
                 }
             }
 
-            // close the socket
+            // close the streams, which the writer is done with once its queue is closed
             try {
                 output.close();
                 input.close();
@@ -427,6 +964,325 @@ public class ChatServer {
             }
         } // end of run()
 
+        /**
+         * Waits until this client's reader is resumed or this client stops. Used in
+         * blocking mode only.
+         */
+        private void awaitResume() {
+            synchronized (this.readPaused) {
+                while (this.readPaused.get() && this.running) {
+                    try {
+                        // wake up now and then to notice the client stopping
+                        this.readPaused.wait(1000);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes this client's outbound frames until its queue is closed. Used in
+         * blocking mode only.
+         * <p>
+         * The stream is only flushed once the queue runs dry, so a burst of events
+         * goes out in as few writes as possible.
+         */
+        private void writeOutbound() {
+            try {
+                OutboundFrame frame;
+                while ((frame = this.outboundQueue.take()) != null) {
+                    byte[] payload = frame.getPayload();
+                    this.output.writeInt(payload.length);
+                    this.output.write(payload);
+                    if (this.outboundQueue.isEmpty()) {
+                        this.output.flush();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // detaching a session stops the writer, leaving its frames queued
+                if (!this.detached.get()) {
+                    ChatServer.this.serverFrame.getTextArea().append("Client writer was interrupted\n");
+                }
+            } catch (IOException e) {
+                if (this.running) {
+                    ChatServer.this.serverFrame.getTextArea().append("Failed to send msg to the client\n");
+                }
+                this.connectionLost();
+            }
+        }
+
+        /**
+         * Processes one event read from this client, either by logging the client in
+         * or by handing the event to the event lanes. An event sent more often than
+         * its rate limit allows is turned down instead.
+         * 
+         * @param event The event read from the client.
+         * @throws IOException if the event was turned down and the reply could not
+         *                     be encoded.
+         */
+        void processEvent(SerializableEvent event) throws IOException {
+            ChatServer.this.serverFrame.getTextArea().append("Received a " + event.getClass() + " event\n");
+
+            // Reading the answer already counted as activity; there is nothing else to do.
+            if (event instanceof HeartbeatEvent) {
+                return;
+            }
+
+            // ClientLoginEvents are handled separately because there may be no user-thread
+            // mapping that can inform the handler of what client to output to.
+            if (event instanceof ClientLoginEvent) {
+                handleLogin((ClientLoginEvent) event);
+                return;
+            }
+            if (event instanceof ClientResumeEvent) {
+                this.handleResume((ClientResumeEvent) event);
+                return;
+            }
+
+            String username = (this.user == null) ? String.valueOf(event.getSource()) : this.user.getUsername();
+            // before login the source is whatever the client likes, so this connection is limited instead
+            long retryAfterMillis = rateLimiter.tryAcquire((this.user == null) ? this : username, event);
+            if (retryAfterMillis > 0) {
+                long nonce = (event instanceof MessageSentEvent) ? ((MessageSentEvent) event).getNonce() : 0;
+                this.sendEvent(new RequestFailedEvent(username, retryAfterMillis, nonce));
+                return;
+            }
+            eventDispatcher.dispatch(event, this);
+        }
+
+        /**
+         * Closes this connection for good, whether it failed, went quiet, fell
+         * behind or logged out.
+         * <p>
+         * The reader and writer stop, the socket is closed, and this connection
+         * stops counting as live. If its user is still online through this
+         * connection, the user is marked as offline and everyone who needs to know
+         * about it is told. Only the first call does anything, so it is safe to
+         * call from any thread, as often as needed.
+         */
+        public void close() {
+            if (!this.closed.compareAndSet(false, true)) {
+                return;
+            }
+            this.running = false;
+            this.outboundQueue.close();
+            this.closeSocket();
+            connectionLifecycle.unregister(this);
+            rateLimiter.forget(this);
+            if (this.sessionToken != null) {
+                ChatServer.this.sessions.remove(this.sessionToken, this);
+            }
+
+            if (this.user != null && ChatServer.this.curUsers.remove(this.user, this)) {
+                this.user.setStatus(User.OFFLINE);
+                eventDispatcher.dispatch(new ClientStatusUpdateEvent(this.user.getUsername(), User.OFFLINE));
+            }
+        }
+
+        /**
+         * Handles this connection's socket failing or going quiet.
+         * <p>
+         * A logged in user's session outlives the socket: the socket is closed, but
+         * the user stays online and events meant for them keep being queued, so a
+         * client that reconnects soon enough can {@link ClientResumeEvent resume}
+         * its session and only hear about what it missed. Anyone else's connection
+         * is simply {@link #close() closed}.
+         */
+        void connectionLost() {
+            if (this.sessionToken == null) {
+                this.close();
+                return;
+            }
+            if (this.closed.get() || !this.detached.compareAndSet(false, true)) {
+                return;
+            }
+            this.detachedAtNanos = System.nanoTime();
+            this.running = false;
+            this.closeSocket();
+            connectionLifecycle.detached(this);
+            ChatServer.this.serverFrame.getTextArea().append(this.getDisplayName()
+                    + " lost their connection; keeping their session for a while\n");
+        }
+
+        /**
+         * Closes this connection's socket, stopping its reader and writer, but
+         * leaves its session alone.
+         */
+        private void closeSocket() {
+            eventDispatcher.getIngress().forget(this);
+            if (this.socketChannel != null) {
+                nioTransport.close(this);
+                return;
+            }
+            try {
+                // fails the reader's read, if it is waiting on one
+                this.client.close();
+            } catch (IOException e) {
+                ChatServer.this.serverFrame.getTextArea().append("Failed to close the socket\n");
+            }
+            if (this.writerThread != null) {
+                this.writerThread.interrupt();
+            }
+            synchronized (this.readPaused) {
+                this.readPaused.notifyAll();
+            }
+        }
+
+        /**
+         * Resumes the session of a client that lost its connection, over this new
+         * connection.
+         * <p>
+         * The client is sent the messages it missed in each channel, followed by
+         * every event that was queued for it while it was away. A channel where it
+         * missed more messages than fit in a cluster is sent as a fresh copy
+         * instead, so the client is never left with a gap. Nobody else hears that
+         * it was ever gone. If the session is no longer kept, the client is
+         * told to log in again instead.
+         * 
+         * @param event The resume event to handle.
+         * @throws IOException if a reply could not be encoded.
+         */
+        private void handleResume(ClientResumeEvent event) throws IOException {
+            String token = event.getSessionToken();
+            ConnectionHandler old = (token == null) ? null : ChatServer.this.sessions.get(token);
+            // the old connection is claimed by closing it, so it can't be reaped or closed meanwhile
+            if (old == null || old.user == null || !old.user.getUsername().equals(event.getSource())
+                    || old.getCodec() != this.getCodec() || !old.closed.compareAndSet(false, true)) {
+                this.sendEvent(new AuthFailedEvent(event));
+                return;
+            }
+            ChatServer.this.sessions.remove(token, old);
+            old.running = false;
+            old.closeSocket(); // the server may not have noticed the old socket failing yet
+            connectionLifecycle.unregister(old);
+
+            this.user = old.user;
+            this.sessionToken = newSessionToken();
+            ChatServer.this.sessions.put(this.sessionToken, this);
+            ArrayList<ChannelResyncEvent> snapshots = new ArrayList<>();
+            HashMap<Integer, ArrayList<Message>> missedMessages = this.findMissedMessages(event.getLastMessageIds(),
+                    snapshots);
+            this.sendEvent(new SessionResumedEvent(null, this.sessionToken, missedMessages));
+            for (ChannelResyncEvent snapshot : snapshots) {
+                this.sendEvent(snapshot);
+            }
+
+            // everything queued for the old connection follows, and anything still sent to it is passed on
+            old.resumedBy = this;
+            int numQueued = old.outboundQueue.transferTo(this.outboundQueue);
+            ChatServer.this.curUsers.put(this.user, this);
+            if (this.socketChannel != null) {
+                nioTransport.requestWrite(this);
+            }
+
+            int numMissed = 0;
+            for (ArrayList<Message> missed : missedMessages.values()) {
+                numMissed += missed.size();
+            }
+            ChatServer.this.serverFrame.getTextArea().append(this.user.getUsername() + " resumed their session ("
+                    + numMissed + " missed messages, " + snapshots.size() + " channels sent again, " + numQueued
+                    + " queued events)\n");
+        }
+
+        /**
+         * Finds the messages a resuming client missed, in the channels it is still
+         * a member of: those newer than the newest message it has. A channel where
+         * it missed more than a cluster's worth gets a fresh copy of the channel
+         * instead.
+         * 
+         * @param lastMessageIds The id of the newest message the client has in each
+         *                       channel, by channel id.
+         * @param snapshots      The list to add the fresh copies of channels to.
+         * @return the missed messages, oldest first, by channel id.
+         */
+        private HashMap<Integer, ArrayList<Message>> findMissedMessages(HashMap<Integer, Integer> lastMessageIds,
+                ArrayList<ChannelResyncEvent> snapshots) {
+            HashMap<Integer, ArrayList<Message>> missedMessages = new HashMap<>();
+            if (lastMessageIds == null) {
+                return missedMessages;
+            }
+            for (Map.Entry<Integer, Integer> lastMessageId : lastMessageIds.entrySet()) {
+                Channel channel = channels.get(lastMessageId.getKey());
+                if (channel == null) {
+                    continue;
+                }
+                ArrayList<Message> newest;
+                synchronized (channel) {
+                    if (!channel.getUsers().containsKey(this.user.getUsername())) {
+                        continue;
+                    }
+                    // one more than fits tells whether the client missed more than fits
+                    newest = channel.getNewestMessages(Channel.MESSAGE_CLUSTER_AMT + 1);
+                    if (newest.size() > Channel.MESSAGE_CLUSTER_AMT
+                            && newest.get(0).getMessageId() > lastMessageId.getValue()) {
+                        snapshots.add(channelSequencer.snapshot(this.user.getUsername(), channel, 0,
+                                channel.getSequence()));
+                        continue;
+                    }
+                }
+                ArrayList<Message> missed = new ArrayList<>();
+                for (Message message : newest) {
+                    if (message.getMessageId() > lastMessageId.getValue()) {
+                        missed.add(message);
+                    }
+                }
+                if (!missed.isEmpty()) {
+                    missedMessages.put(lastMessageId.getKey(), missed);
+                }
+            }
+            return missedMessages;
+        }
+
+        /**
+         * Starts a resumable session for this client, once it has logged in.
+         * 
+         * @param auth The event telling the client it logged in, which is given the
+         *             session's token.
+         */
+        private void startSession(AuthSucceedEvent auth) {
+            this.sessionToken = newSessionToken();
+            ChatServer.this.sessions.put(this.sessionToken, this);
+            auth.setSessionToken(this.sessionToken);
+        }
+
+        /**
+         * Checks whether this connection's socket was lost, with its session kept
+         * for the client to resume.
+         * 
+         * @return true if the session is waiting to be resumed.
+         */
+        public boolean isDetached() {
+            return this.detached.get();
+        }
+
+        /**
+         * Retrieves when this connection's socket was lost.
+         * 
+         * @return long, the time, from {@link System#nanoTime()}.
+         */
+        long getDetachedAtNanos() {
+            return this.detachedAtNanos;
+        }
+
+        /**
+         * Checks whether this connection has been closed.
+         * 
+         * @return true if it has been closed.
+         */
+        public boolean isClosed() {
+            return this.closed.get();
+        }
+
+        /**
+         * Retrieves a name for this client fit for the server log.
+         * 
+         * @return the username, or a placeholder before the client logs in.
+         */
+        String getDisplayName() {
+            return (this.user == null) ? "A client" : this.user.getUsername();
+        }
+
         /**
          * Processs user login based on whether they are a new user or not, retrieves
          * all necessary information, ensures the server copy of the user is updated,
@@ -445,14 +1301,13 @@ public class ChatServer {
                     // If the username is already taken, send auth failed event
                     if (ChatServer.this.allUsers.containsKey(username)) {
                         ChatServer.this.serverFrame.getTextArea().append(username + "'s authentication failed\n");
-                        output.writeObject(new AuthFailedEvent(null));
-                        output.flush();
-                        output.reset();
+                        this.sendEvent(new AuthFailedEvent(null));
                         return;
                     }
 
                     ChatServer.this.serverFrame.getTextArea().append("New user created: " + username + "\n");
                     user = new User(username, password);
+                    user.setPfpHash(ChatServer.this.pfpStore.getDefaultHash());
 
                     // make new user file
                     fileWriteQueue.add(new FileWriteEvent(user, "data/users/" + username));
@@ -460,11 +1315,11 @@ public class ChatServer {
                     ChatServer.this.allUsers.put(username, user);
                     ChatServer.this.curUsers.put(user, this);
                     ChatServer.this.serverFrame.getTextArea().append(username + "'s authentication succeded\n");
-                    output.writeObject(new AuthSucceedEvent(null, user, 
-                                                            new HashMap<Integer, Channel>(), 
-                                                            new HashMap<String, User>()));
-                    output.flush();
-                    output.reset();
+                    AuthSucceedEvent auth = new AuthSucceedEvent(null, user, 
+                                                                 new HashMap<Integer, Channel>(), 
+                                                                 new HashMap<String, User>());
+                    this.startSession(auth);
+                    this.sendEvent(auth);
 
                     ChatServer.this.serverFrame.getTextArea().append("Sent " + username + "'s authentication event\n");
                 } catch (IOException e) {
@@ -478,9 +1333,7 @@ public class ChatServer {
                 // If user doesn't exist or password is wrong give back an auth failed event to the client.
                 user = allUsers.get(username);
                 if (user == null || password != user.getHashedPassword()) {
-                    output.writeObject(new AuthFailedEvent(event));
-                    output.flush();
-                    output.reset();
+                    this.sendEvent(new AuthFailedEvent(event));
                     return;
                 }
 
@@ -490,31 +1343,40 @@ public class ChatServer {
 
                 // update channel files and all the users in those channels regarding this user's login
                 HashMap<Integer, Channel> userChannels = new HashMap<>();
-                Iterator<Integer> itr = user.getChannels().iterator();
+                ArrayList<Integer> channelIds;
+                synchronized (user) {
+                    channelIds = new ArrayList<>(user.getChannels());
+                }
+                Iterator<Integer> itr = channelIds.iterator();
                 HashSet<User> notifiedAlready = new HashSet<>();
                 notifiedAlready.add(user);
                 while (itr.hasNext()) {
                     int id = itr.next();
                     Channel curChannel = channels.get(id);
+                    if (curChannel == null) {
+                        continue;
+                    }
+
+                    // the channel belongs to another thread's lane, so copy it under its lock
+                    ArrayList<User> members;
+                    ArrayList<Message> messageBlock;
+                    Channel correctedChannel;
+                    synchronized (curChannel) {
+                        members = new ArrayList<>(curChannel.getUsers().values());
+                        messageBlock = curChannel.getNewestMessages(Channel.MESSAGE_CLUSTER_AMT);
+                        correctedChannel = new Channel(curChannel);
+                    }
 
-                    for (User member : curChannel.getUsers().values()) {
-                        if (!ChatServer.this.curUsers.containsKey(member) || notifiedAlready.contains(member)) {
+                    for (User member : members) {
+                        ConnectionHandler memberConnection = ChatServer.this.curUsers.get(member);
+                        if (memberConnection == null || notifiedAlready.contains(member)) {
                             continue;
                         } 
-                        ObjectOutputStream userOut = ChatServer.this.curUsers.get(member).getOutputStream();
-                        userOut.writeObject(new ClientStatusUpdateEvent(username, User.ONLINE));
-                        userOut.flush();
-                        userOut.reset();
+                        memberConnection.sendEvent(new ClientStatusUpdateEvent(username, User.ONLINE));
                         notifiedAlready.add(member);
                     }
 
                     fileWriteQueue.add(new FileWriteEvent(curChannel, "data/channels/" + id));
-                    ArrayList<Message> messages = curChannel.getMessages();
-                    ArrayList<Message> messageBlock = new ArrayList<>();
-                    for (int i = Math.max(messages.size() - Channel.MESSAGE_CLUSTER_AMT, 0); i < messages.size(); i++) {
-                        messageBlock.add(messages.get(i));
-                    }
-                    Channel correctedChannel = new Channel(curChannel);
 
                     // Set the user as online in every channel
                     correctedChannel.setMessages(messageBlock);
@@ -523,23 +1385,27 @@ public class ChatServer {
 
                 // retrieve the friends list and update all friends regarding this user's login.
                 HashMap<String, User> friendsMap = new HashMap<>();
-                Iterator<String> friendsItr = user.getFriends().iterator();
+                ArrayList<String> friendUsernames;
+                synchronized (user) {
+                    friendUsernames = new ArrayList<>(user.getFriends());
+                }
+                Iterator<String> friendsItr = friendUsernames.iterator();
                 while (friendsItr.hasNext()) {
                     String friendUsername = friendsItr.next();
                     User friend = ChatServer.this.allUsers.get(friendUsername);
                     // Theoretically, the friend should never be null, but better safe than sorry.
                     if (friend != null) {
                         friendsMap.put(friendUsername, friend);
-                        if (ChatServer.this.curUsers.containsKey(friend)) {
-                            ObjectOutputStream friendOut = ChatServer.this.curUsers.get(friend).getOutputStream();
-                            friendOut.writeObject(new ClientStatusUpdateEvent(username, User.ONLINE));
+                        ConnectionHandler friendConnection = ChatServer.this.curUsers.get(friend);
+                        if (friendConnection != null) {
+                            friendConnection.sendEvent(new ClientStatusUpdateEvent(username, User.ONLINE));
                         }
                     }
                 }
                 ChatServer.this.serverFrame.getTextArea().append(username + "'s authentication succeded\n");
-                output.writeObject(new AuthSucceedEvent(null, user, userChannels, friendsMap));
-                output.flush();
-                output.reset();
+                AuthSucceedEvent auth = new AuthSucceedEvent(null, user, userChannels, friendsMap);
+                this.startSession(auth);
+                this.sendEvent(auth);
                 ChatServer.this.serverFrame.getTextArea().append("Sent " + username + "'s authentication event\n");
             } catch (IOException e1) {
                 e1.printStackTrace();
@@ -547,22 +1413,270 @@ public class ChatServer {
         }
 
         /**
-         * Retrieves the outputstream associated with this client.
+         * Sends an event to this client.
          * 
-         * @return ObjectOutputStream, the associated outputstream.
+         * @param event The event to send.
+         * @throws IOException if the event could not be encoded.
          */
-        public ObjectOutputStream getOutputStream() {
-            return this.output;
+        public void sendEvent(SerializableEvent event) throws IOException {
+            this.sendFrame(OutboundFrame.of(event, this.getCodec()));
+        }
+
+        /**
+         * Handles one whole frame received from this client.
+         * <p>
+         * The first frame decides which codec this connection uses: a handshake
+         * hello is answered with the codec chosen from the ones offered, and any
+         * other first frame comes from a client that only speaks Java
+         * serialization.
+         * 
+         * @param payload The frame payload.
+         * @throws IOException            if the frame is not valid.
+         * @throws ClassNotFoundException if the event's class cannot be found.
+         */
+        void receiveFrame(byte[] payload) throws IOException, ClassNotFoundException {
+            this.lastActivityNanos = System.nanoTime();
+            if (this.codec == null) {
+                if (Handshake.isHandshake(payload)) {
+                    this.codec = Handshake.choose(payload, acceptedCodecs);
+                    ChatServer.this.serverFrame.getTextArea()
+                            .append("Client connected speaking " + this.codec.getName() + "\n");
+                    this.sendFrame(new OutboundFrame(Handshake.reply(this.codec), null, false));
+                    return;
+                }
+                this.codec = Handshake.JAVA_SERIALIZATION;
+            }
+            this.processEvent(this.codec.decode(payload));
+        }
+
+        /**
+         * Retrieves the codec events to this client are encoded with.
+         * 
+         * @return the codec this connection uses.
+         */
+        public WireCodec getCodec() {
+            WireCodec agreed = this.codec;
+            return (agreed == null) ? Handshake.JAVA_SERIALIZATION : agreed;
+        }
+
+        /**
+         * Queues an already encoded event to be sent to this client.
+         * <p>
+         * This never waits on the client's socket. If this client's outbound queue
+         * is full and its back-pressure policy can't make room, the client is too
+         * slow to keep up and is disconnected.
+         * 
+         * @param frame The encoded event.
+         */
+        public void sendFrame(OutboundFrame frame) {
+            boolean queued = this.outboundQueue.offer(frame);
+            // once this session is resumed, the frame went to the connection that resumed it
+            ConnectionHandler target = this;
+            while (target.resumedBy != null) {
+                target = target.resumedBy;
+            }
+            if (!queued) {
+                target.disconnectSlowConsumer();
+                return;
+            }
+            if (target.socketChannel != null) {
+                nioTransport.requestWrite(target);
+            }
+        }
+
+        /**
+         * Disconnects this client because it stopped reading the events sent to it.
+         */
+        private void disconnectSlowConsumer() {
+            ChatServer.this.serverFrame.getTextArea()
+                    .append(this.getDisplayName() + " fell too far behind and was disconnected\n");
+            this.close();
+        }
+
+        /**
+         * Retrieves when a frame was last read from this client.
+         * 
+         * @return long, the time, from {@link System#nanoTime()}.
+         */
+        long getLastActivityNanos() {
+            return this.lastActivityNanos;
+        }
+
+        /**
+         * Retrieves when this client was last sent a heartbeat.
+         * 
+         * @return long, the time, from {@link System#nanoTime()}.
+         */
+        long getLastHeartbeatNanos() {
+            return this.lastHeartbeatNanos;
+        }
+
+        /**
+         * Notes when this client was last sent a heartbeat.
+         * 
+         * @param lastHeartbeatNanos the time, from {@link System#nanoTime()}.
+         */
+        void setLastHeartbeatNanos(long lastHeartbeatNanos) {
+            this.lastHeartbeatNanos = lastHeartbeatNanos;
+        }
+
+        /**
+         * Retrieves the number of events read from this client that are waiting to
+         * be handled.
+         * 
+         * @return int, the number of waiting events.
+         */
+        public int getNumQueuedEvents() {
+            return this.numQueuedEvents.get();
+        }
+
+        /**
+         * Counts one more event from this client as waiting.
+         * 
+         * @return int, the new number of waiting events.
+         */
+        int addQueuedEvent() {
+            return this.numQueuedEvents.incrementAndGet();
+        }
+
+        /**
+         * Counts one fewer event from this client as waiting.
+         * 
+         * @return int, the new number of waiting events.
+         */
+        int removeQueuedEvent() {
+            return this.numQueuedEvents.decrementAndGet();
+        }
+
+        /**
+         * Checks whether reading from this client is paused.
+         * 
+         * @return true if reading is paused.
+         */
+        public boolean isReadPaused() {
+            return this.readPaused.get();
+        }
+
+        /**
+         * Marks reading from this client as paused.
+         * 
+         * @return true if it was not paused already.
+         */
+        boolean markReadPaused() {
+            return this.readPaused.compareAndSet(false, true);
+        }
+
+        /**
+         * Marks reading from this client as no longer paused.
+         * 
+         * @return true if it was paused.
+         */
+        boolean clearReadPaused() {
+            return this.readPaused.compareAndSet(true, false);
+        }
+
+        /**
+         * Starts reading from this client again, once it is no longer marked as
+         * paused.
+         */
+        void resumeReading() {
+            if (this.socketChannel != null) {
+                nioTransport.resumeReading(this);
+                return;
+            }
+            synchronized (this.readPaused) {
+                this.readPaused.notifyAll();
+            }
+        }
+
+        /**
+         * Retrieves the queue of frames waiting to be written to this client, which
+         * also keeps this client's queue depth and drop counts.
+         * 
+         * @return OutboundQueue, this client's outbound queue.
+         */
+        public OutboundQueue getOutboundQueue() {
+            return this.outboundQueue;
         }
 
         /**
          * Sets whether this client is running or not, and as such, whether the server
          * should continue listening for events or close down the thread.
+         * <p>
+         * Stopping a client {@link #close() closes} its connection right away.
          * 
-         * @return BufferedImage, the profile picture.
+         * @param newState whether this client should keep running.
          */
         public void setRunning(boolean newState) {
-            this.running = newState;
+            if (!newState) {
+                this.close();
+                return;
+            }
+            this.running = true;
+        }
+
+        /**
+         * Retrieves this connection's non-blocking channel.
+         * 
+         * @return SocketChannel, the channel, or {@code null} in blocking mode.
+         */
+        SocketChannel getSocketChannel() {
+            return this.socketChannel;
+        }
+
+        /**
+         * Retrieves the key this connection's channel is registered with.
+         * 
+         * @return SelectionKey, the key, or {@code null} if not yet registered.
+         */
+        SelectionKey getSelectionKey() {
+            return this.selectionKey;
+        }
+
+        /**
+         * Assigns the key this connection's channel is registered with.
+         * 
+         * @param key the selection key.
+         */
+        void setSelectionKey(SelectionKey key) {
+            this.selectionKey = key;
+        }
+
+        /**
+         * Retrieves the buffer holding frames that have only partially arrived.
+         * 
+         * @return ByteBuffer, the read buffer.
+         */
+        ByteBuffer getReadBuffer() {
+            return this.readBuffer;
+        }
+
+        /**
+         * Assigns the buffer holding frames that have only partially arrived.
+         * 
+         * @param readBuffer the new read buffer.
+         */
+        void setReadBuffer(ByteBuffer readBuffer) {
+            this.readBuffer = readBuffer;
+        }
+
+        /**
+         * Retrieves the frame currently being written, in non-blocking mode.
+         * 
+         * @return the frame's header and payload buffers, or {@code null} if none.
+         */
+        ByteBuffer[] getCurrentWrite() {
+            return this.currentWrite;
+        }
+
+        /**
+         * Assigns the frame currently being written, in non-blocking mode.
+         * 
+         * @param currentWrite the frame's header and payload buffers, or {@code null}
+         *                     if none.
+         */
+        void setCurrentWrite(ByteBuffer[] currentWrite) {
+            this.currentWrite = currentWrite;
         }
 
     } // end of inner class
@@ -0,0 +1,330 @@
+package duberchat.server;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.HeartbeatEvent;
+import duberchat.server.ChatServer.ConnectionHandler;
+
+/**
+ * The {@code ConnectionLifecycle} watches every client connection for going
+ * quiet, and closes the ones that have gone away without saying so.
+ * <p>
+ * A connection that the server has not heard from for the heartbeat interval
+ * is sent a {@link HeartbeatEvent}, which a live client answers. A connection
+ * that stays quiet for the idle timeout is closed, which releases its thread,
+ * its streams and its spot in the server's online users.
+ * <p>
+ * A logged in user's session outlives a lost connection for a grace period,
+ * during which the client can reconnect and resume it. Sessions nobody resumes
+ * in time are closed for good.
+ * <p>
+ * Connections are kept on a timer wheel: a ring of slots, one per tick, with
+ * each connection waiting in the slot for the tick it next needs looking at.
+ * A single thread turns the wheel, so each tick only looks at the connections
+ * that are due, however many connections there are. Reading from a connection
+ * never touches the wheel; it only notes the time, and a connection that turns
+ * out to have been active when its slot comes up is simply moved further on.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class ConnectionLifecycle {
+    /** How long a connection can be quiet before it is sent a heartbeat, by default. */
+    public static final long DEFAULT_HEARTBEAT_MS = 15000;
+    /** How long a connection can be quiet before it is closed, by default. */
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 45000;
+    /** How long the session of a lost connection is kept, by default. */
+    public static final long DEFAULT_SESSION_GRACE_MS = 60000;
+    /** The time between turns of the wheel, in milliseconds. */
+    private static final long TICK_MS = 500;
+    /** The number of slots on the wheel. */
+    private static final int NUM_SLOTS = 128;
+
+    /** The server this lifecycle belongs to. */
+    private ChatServer server;
+    /** How long a connection can be quiet before it is sent a heartbeat, in nanoseconds. */
+    private volatile long heartbeatNanos;
+    /** How long a connection can be quiet before it is closed, in nanoseconds. */
+    private volatile long idleTimeoutNanos;
+    /** How long the session of a lost connection is kept, in nanoseconds. */
+    private volatile long sessionGraceNanos;
+    /** The slots of the wheel, which only the wheel's thread touches. */
+    private ArrayList<ArrayList<ConnectionHandler>> slots;
+    /** The number of ticks the wheel has turned. */
+    private long numTicks;
+    /** Connections waiting to be put on the wheel. */
+    private ConcurrentLinkedQueue<ConnectionHandler> pendingRegistrations;
+    /** The number of connections that are open, counting lost ones with kept sessions. */
+    private AtomicInteger numLive;
+    /** The number of lost connections with kept sessions. */
+    private AtomicInteger numDetached;
+    /** The number of connections closed for being quiet too long. */
+    private AtomicLong numReaped;
+    /** The number of heartbeats sent. */
+    private AtomicLong numHeartbeats;
+
+    /**
+     * Constructs a new {@code ConnectionLifecycle}.
+     *
+     * @param server The server this lifecycle belongs to.
+     */
+    public ConnectionLifecycle(ChatServer server) {
+        this.server = server;
+        this.setTimeouts(DEFAULT_HEARTBEAT_MS, DEFAULT_IDLE_TIMEOUT_MS);
+        this.setSessionGrace(DEFAULT_SESSION_GRACE_MS);
+        this.slots = new ArrayList<>(NUM_SLOTS);
+        for (int i = 0; i < NUM_SLOTS; i++) {
+            this.slots.add(new ArrayList<ConnectionHandler>());
+        }
+        this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+        this.numLive = new AtomicInteger();
+        this.numDetached = new AtomicInteger();
+        this.numReaped = new AtomicLong();
+        this.numHeartbeats = new AtomicLong();
+    }
+
+    /**
+     * Starts the thread that turns the wheel.
+     */
+    public void start() {
+        WorkerThreads.start("connection-lifecycle", new Runnable() {
+            public void run() {
+                long nextTick = System.nanoTime();
+                while (true) {
+                    nextTick += TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+                    long wait = nextTick - System.nanoTime();
+                    if (wait > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        } catch (InterruptedException e) {
+                            continue; // keep turning
+                        }
+                    }
+                    tick();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets how long connections can be quiet. The new times apply to each
+     * connection the next time it is looked at.
+     *
+     * @param heartbeatMillis   How long a connection can be quiet before it is
+     *                          sent a heartbeat, in milliseconds.
+     * @param idleTimeoutMillis How long a connection can be quiet before it is
+     *                          closed, in milliseconds; at least twice the
+     *                          heartbeat interval is best, so a heartbeat has
+     *                          time to be answered.
+     */
+    public void setTimeouts(long heartbeatMillis, long idleTimeoutMillis) {
+        long heartbeat = Math.max(heartbeatMillis, TICK_MS);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeat);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(idleTimeoutMillis, heartbeat + TICK_MS));
+    }
+
+    /**
+     * Sets how long the session of a lost connection is kept for the client to
+     * resume.
+     *
+     * @param graceMillis The time the session is kept, in milliseconds.
+     */
+    public void setSessionGrace(long graceMillis) {
+        this.sessionGraceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(graceMillis, 0));
+    }
+
+    /**
+     * Starts watching a newly accepted connection.
+     *
+     * @param connection The connection.
+     */
+    public void register(ConnectionHandler connection) {
+        this.numLive.incrementAndGet();
+        this.pendingRegistrations.add(connection);
+    }
+
+    /**
+     * Stops counting a connection as open. Called once, when the connection is
+     * closed; the wheel drops the connection the next time it comes up.
+     *
+     * @param connection The closed connection.
+     */
+    void unregister(ConnectionHandler connection) {
+        this.numLive.decrementAndGet();
+        if (connection.isDetached()) {
+            this.numDetached.decrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a connection as lost, with its session kept. Called once, when the
+     * socket is lost; the wheel closes the connection once its grace period is
+     * over, unless it is resumed first.
+     *
+     * @param connection The lost connection.
+     */
+    void detached(ConnectionHandler connection) {
+        this.numDetached.incrementAndGet();
+    }
+
+    /**
+     * Turns the wheel by one tick, looking at every connection that is due.
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        int slot = (int) (this.numTicks % NUM_SLOTS);
+        this.numTicks++;
+        ArrayList<ConnectionHandler> due = this.slots.get(slot);
+        this.slots.set(slot, new ArrayList<ConnectionHandler>());
+
+        ConnectionHandler connection;
+        while ((connection = this.pendingRegistrations.poll()) != null) {
+            this.schedule(connection, connection.getLastActivityNanos() + this.heartbeatNanos, now);
+        }
+        for (ConnectionHandler dueConnection : due) {
+            this.check(dueConnection, now);
+        }
+    }
+
+    /**
+     * Looks at a connection that is due: closes it if it has been quiet too
+     * long, sends it a heartbeat if it has just gone quiet, and puts it back on
+     * the wheel for when it is next due.
+     *
+     * @param connection The connection.
+     * @param now        The current time, from {@link System#nanoTime()}.
+     */
+    private void check(ConnectionHandler connection, long now) {
+        if (connection.isClosed()) {
+            return;
+        }
+        if (connection.isDetached()) {
+            this.checkDetached(connection, now);
+            return;
+        }
+
+        long lastActivity = connection.getLastActivityNanos();
+        long quiet = now - lastActivity;
+        if (quiet >= this.idleTimeoutNanos) {
+            this.numReaped.incrementAndGet();
+            this.server.getServerFrame().getTextArea().append(connection.getDisplayName() + " was quiet for "
+                    + TimeUnit.NANOSECONDS.toSeconds(quiet) + " s and was disconnected\n");
+            connection.connectionLost();
+            if (connection.isDetached()) {
+                this.checkDetached(connection, now);
+            }
+            return;
+        }
+
+        if (quiet < this.heartbeatNanos) {
+            this.schedule(connection, lastActivity + this.heartbeatNanos, now);
+            return;
+        }
+
+        // one heartbeat per quiet spell; a client that misses it is reaped
+        if (connection.getLastHeartbeatNanos() - lastActivity <= 0) {
+            try {
+                connection.sendEvent(new HeartbeatEvent(null));
+                connection.setLastHeartbeatNanos(now);
+                this.numHeartbeats.incrementAndGet();
+            } catch (IOException e) {
+                this.server.getServerFrame().getTextArea().append("Failed to send a heartbeat\n");
+            }
+        }
+        this.schedule(connection, lastActivity + this.idleTimeoutNanos, now);
+    }
+
+    /**
+     * Looks at a lost connection: closes it for good once its session has been
+     * kept long enough, or puts it back on the wheel for when that is.
+     *
+     * @param connection The lost connection.
+     * @param now        The current time, from {@link System#nanoTime()}.
+     */
+    private void checkDetached(ConnectionHandler connection, long now) {
+        long expiry = connection.getDetachedAtNanos() + this.sessionGraceNanos;
+        if (now - expiry < 0) {
+            this.schedule(connection, expiry, now);
+            return;
+        }
+        this.server.getServerFrame().getTextArea()
+                .append(connection.getDisplayName() + "'s session was not resumed in time\n");
+        connection.close();
+    }
+
+    /**
+     * Puts a connection on the wheel, in the slot for the first tick at or after
+     * a time. A time further away than the wheel goes around is put in the last
+     * slot, and rescheduled from there.
+     *
+     * @param connection The connection.
+     * @param due        The time the connection is next due.
+     * @param now        The current time, from {@link System#nanoTime()}.
+     */
+    private void schedule(ConnectionHandler connection, long due, long now) {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+        long ticksAway = (due - now + tickNanos - 1) / tickNanos;
+        ticksAway = Math.min(Math.max(ticksAway, 1), NUM_SLOTS - 1);
+        // numTicks is already one past the current tick
+        int slot = (int) ((this.numTicks + ticksAway - 1) % NUM_SLOTS);
+        this.slots.get(slot).add(connection);
+    }
+
+    /**
+     * Retrieves the number of connections that are open.
+     *
+     * @return int, the number of open connections.
+     */
+    public int getNumLive() {
+        return this.numLive.get();
+    }
+
+    /**
+     * Retrieves the number of lost connections whose sessions are kept for the
+     * clients to resume.
+     *
+     * @return int, the number of kept sessions.
+     */
+    public int getNumDetached() {
+        return this.numDetached.get();
+    }
+
+    /**
+     * Retrieves the number of connections closed for being quiet too long.
+     *
+     * @return long, the number of reaped connections.
+     */
+    public long getNumReaped() {
+        return this.numReaped.get();
+    }
+
+    /**
+     * Retrieves the number of heartbeats sent.
+     *
+     * @return long, the number of heartbeats.
+     */
+    public long getNumHeartbeats() {
+        return this.numHeartbeats.get();
+    }
+
+    /**
+     * Summarizes the connections being watched.
+     *
+     * @return a one-line summary.
+     */
+    public String describe() {
+        return String.format("%d connections open (%d lost, waiting to be resumed), %d reaped for going quiet, "
+                + "%d heartbeats sent", this.getNumLive(), this.getNumDetached(), this.getNumReaped(),
+                this.getNumHeartbeats());
+    }
+}
@@ -0,0 +1,549 @@
+package duberchat.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.ChannelEvent;
+import duberchat.events.ClientProfileUpdateEvent;
+import duberchat.events.ClientRequestMessageEvent;
+import duberchat.events.ClientRequestPfpEvent;
+import duberchat.events.MessageEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.handlers.AsyncHandleable;
+import duberchat.handlers.AsyncHandlers;
+import duberchat.handlers.BatchHandleable;
+import duberchat.handlers.Handleable;
+import duberchat.server.ChatServer.ConnectionHandler;
+
+/**
+ * The {@code EventDispatcher} spreads server events over a fixed pool of
+ * worker lanes, each with its own queues and thread.
+ * <p>
+ * Every event is given an ordering key: the channel id for channel and message
+ * events, or the source username for profile, friend, and other user events.
+ * Events with the same key always land on the same lane, so events for
+ * unrelated channels run in parallel on the other lanes.
+ * <p>
+ * Every event also has a priority class: {@link #INTERACTIVE} for messages,
+ * {@link #MEMBERSHIP} for channel and friend changes, {@link #PRESENCE} for
+ * status and profile updates, and {@link #BULK} for requests for older messages
+ * and profile pictures. Each lane keeps a queue per class and takes from them
+ * in weighted round robin, up to {@link #WEIGHTS} events from a class per turn,
+ * so a flood of presence updates only delays messages by a small share, while
+ * every class still gets its turn. Events of the same class and key are handled
+ * one at a time in the order they arrived, so every member of a channel still
+ * sees its messages in the same order. How long events of each class waited on
+ * their lane is kept in a {@link LatencyHistogram}.
+ * <p>
+ * When events pile up on a lane, its worker takes up to
+ * {@link #MAX_BATCH_SIZE} at once. Each run of consecutive events of the same
+ * class goes to a {@link BatchHandleable} handler together, and every other
+ * event is handled on its own, in the order they were taken.
+ * <p>
+ * An {@link AsyncHandleable} handler only starts its work on the lane; the
+ * lane moves on to its next event while the work finishes elsewhere. Up to
+ * {@link #MAX_IN_FLIGHT} such events can be in flight across all lanes, after
+ * which a lane waits for one to finish before starting another. Work that fails
+ * or takes longer than {@link AsyncHandlers#DEFAULT_TIMEOUT_MS} is logged, but
+ * work that takes too long stays in flight until it does finish.
+ * <p>
+ * Events read from clients are counted by an {@link EventIngress} until their
+ * handlers are done with them, which pauses the readers of clients that send
+ * more than the lanes can keep up with.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class EventDispatcher {
+    /** The most events a lane worker takes off its queue at once. */
+    public static final int MAX_BATCH_SIZE = 64;
+    /** The most events that asynchronous handlers can be handling at once. */
+    public static final int MAX_IN_FLIGHT = 256;
+    /** How often the dispatcher's statistics are logged while events are flowing, in milliseconds. */
+    public static final long STATS_INTERVAL_MS = 30000;
+
+    /** The priority class of chat messages, and their edits and deletions. */
+    public static final int INTERACTIVE = 0;
+    /** The priority class of channel membership and friend changes. */
+    public static final int MEMBERSHIP = 1;
+    /** The priority class of status and profile updates. */
+    public static final int PRESENCE = 2;
+    /** The priority class of requests for older messages and profile pictures. */
+    public static final int BULK = 3;
+    /** The names of the priority classes, by class. */
+    public static final String[] PRIORITY_NAMES = { "interactive", "membership", "presence", "bulk" };
+    /** The most events of each priority class a lane handles per turn, by class. */
+    public static final int[] WEIGHTS = { 8, 4, 2, 1 };
+
+    /** The server this dispatcher belongs to, used for logging. */
+    private ChatServer server;
+    /** Maps event classes to the handlers that process them. */
+    private HashMap<Class<? extends SerializableEvent>, Handleable> eventHandlers;
+    /** The lanes, each with its queues of pending events. */
+    private Lane[] lanes;
+    /** How long events waited on their lanes, by priority class. */
+    private LatencyHistogram[] queueTimes;
+    /** Bounds the events from clients that can be waiting, per client and overall. */
+    private EventIngress ingress;
+    /** The permits for events in flight with asynchronous handlers. */
+    private Semaphore inFlight;
+    /** The number of events that asynchronous handlers failed or timed out on. */
+    private AtomicLong numAsyncFailures;
+
+    /**
+     * Constructs a new {@code EventDispatcher}.
+     *
+     * @param server        The server this dispatcher belongs to.
+     * @param eventHandlers The map of event classes to their handlers.
+     * @param numLanes      The number of worker lanes to run.
+     * @param capacity      The most events from clients that can be waiting.
+     */
+    public EventDispatcher(ChatServer server, HashMap<Class<? extends SerializableEvent>, Handleable> eventHandlers,
+                           int numLanes, int capacity) {
+        this.server = server;
+        this.eventHandlers = eventHandlers;
+        this.lanes = new Lane[Math.max(numLanes, 1)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane();
+        }
+        this.queueTimes = new LatencyHistogram[WEIGHTS.length];
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            this.queueTimes[i] = new LatencyHistogram();
+        }
+        this.ingress = new EventIngress(capacity);
+        this.inFlight = new Semaphore(MAX_IN_FLIGHT);
+        this.numAsyncFailures = new AtomicLong();
+    }
+
+    /**
+     * Starts one worker thread per lane, and the thread that logs how long events
+     * waited and, while clients are being paused, the ingress summary.
+     */
+    public void start() {
+        for (int i = 0; i < this.lanes.length; i++) {
+            Thread laneThread = new Thread(new LaneWorker(this.lanes[i]), "event-lane-" + i);
+            laneThread.start();
+        }
+
+        WorkerThreads.start("dispatcher-stats", new Runnable() {
+            public void run() {
+                long lastNumPauses = 0;
+                long lastNumHandled = 0;
+                while (true) {
+                    try {
+                        Thread.sleep(STATS_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        continue; // keep reporting
+                    }
+                    long numHandled = 0;
+                    for (LatencyHistogram queueTime : queueTimes) {
+                        numHandled += queueTime.getCount();
+                    }
+                    if (numHandled != lastNumHandled) {
+                        lastNumHandled = numHandled;
+                        for (String line : describeQueueTimes()) {
+                            server.getServerFrame().getTextArea().append("Queue time " + line + "\n");
+                        }
+                    }
+
+                    long numPauses = ingress.getNumPauses();
+                    if (numPauses != lastNumPauses || ingress.getNumPaused() > 0) {
+                        lastNumPauses = numPauses;
+                        server.getServerFrame().getTextArea().append("Ingress: " + ingress.describe() + "\n");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues an event raised by the server itself on the lane that owns its
+     * ordering key. Such events do not count against the ingress.
+     *
+     * @param event The event to dispatch.
+     */
+    public void dispatch(SerializableEvent event) {
+        this.dispatch(event, null);
+    }
+
+    /**
+     * Queues an event read from a client on the lane that owns its ordering key,
+     * counting it against the client's share of the ingress.
+     * <p>
+     * The event is always queued; the client's reader is expected to check
+     * {@link EventIngress#hasRoom(ConnectionHandler)} before reading another.
+     *
+     * @param event The event to dispatch.
+     * @param from  The connection the event was read from, or {@code null} if the
+     *              server raised it itself.
+     */
+    public void dispatch(SerializableEvent event, ConnectionHandler from) {
+        if (from != null) {
+            this.ingress.acquire(from);
+        }
+        this.lanes[this.findLane(event)].add(new QueuedEvent(event, from, EventDispatcher.findPriority(event)));
+    }
+
+    /**
+     * Finds the lane that an event belongs to.
+     *
+     * @param event The event to find the lane for.
+     * @return int, the index of the lane.
+     */
+    public int findLane(SerializableEvent event) {
+        Object key = EventDispatcher.findOrderingKey(event);
+        if (key == null) {
+            return 0;
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % this.lanes.length;
+    }
+
+    /**
+     * Finds the key that an event must stay ordered with.
+     * <p>
+     * Message and channel events are keyed by their channel id. A channel event
+     * with no channel yet (eg. a {@code ChannelCreateEvent} from a client) and
+     * every other event is keyed by its source, which is the sender's username.
+     *
+     * @param event The event to find the key for.
+     * @return the ordering key of the event.
+     */
+    public static Object findOrderingKey(SerializableEvent event) {
+        if (event instanceof MessageEvent) {
+            return ((MessageEvent) event).getMessage().getChannelId();
+        }
+        if (event instanceof ChannelEvent && ((ChannelEvent) event).getChannelId() >= 0) {
+            return ((ChannelEvent) event).getChannelId();
+        }
+        if (event instanceof ClientRequestMessageEvent) {
+            return ((ClientRequestMessageEvent) event).getChannelId();
+        }
+        return event.getSource();
+    }
+
+    /**
+     * Finds the priority class of an event.
+     *
+     * @param event The event to find the class of.
+     * @return int, the priority class of the event.
+     */
+    public static int findPriority(SerializableEvent event) {
+        if (event instanceof MessageEvent) {
+            return INTERACTIVE;
+        }
+        if (event instanceof ClientProfileUpdateEvent) {
+            return PRESENCE;
+        }
+        if (event instanceof ClientRequestMessageEvent || event instanceof ClientRequestPfpEvent) {
+            return BULK;
+        }
+        return MEMBERSHIP;
+    }
+
+    /**
+     * Summarizes how long events of each priority class waited on their lanes,
+     * one line per class, most urgent first.
+     *
+     * @return the summary of every class.
+     */
+    public String[] describeQueueTimes() {
+        String[] lines = new String[WEIGHTS.length];
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            lines[i] = PRIORITY_NAMES[i] + ": " + this.queueTimes[i].describe();
+        }
+        return lines;
+    }
+
+    /**
+     * Retrieves how long events of a priority class waited on their lanes.
+     *
+     * @param priority The priority class.
+     * @return LatencyHistogram, the queue times of the class.
+     */
+    public LatencyHistogram getQueueTimes(int priority) {
+        return this.queueTimes[priority];
+    }
+
+    /**
+     * Retrieves the number of lanes this dispatcher runs.
+     *
+     * @return int, the number of lanes.
+     */
+    public int getNumLanes() {
+        return this.lanes.length;
+    }
+
+    /**
+     * Retrieves how many events are waiting on each lane.
+     *
+     * @return an array with the queue depth of every lane, by lane index.
+     */
+    public int[] getQueueDepths() {
+        int[] depths = new int[this.lanes.length];
+        for (int i = 0; i < this.lanes.length; i++) {
+            depths[i] = this.lanes[i].available.availablePermits();
+        }
+        return depths;
+    }
+
+    /**
+     * Retrieves the ingress that bounds the events waiting from clients.
+     *
+     * @return EventIngress, the ingress.
+     */
+    public EventIngress getIngress() {
+        return this.ingress;
+    }
+
+    /**
+     * Retrieves how many events asynchronous handlers are handling right now.
+     *
+     * @return int, the number of events in flight.
+     */
+    public int getNumInFlight() {
+        return MAX_IN_FLIGHT - this.inFlight.availablePermits();
+    }
+
+    /**
+     * Retrieves how many events asynchronous handlers have failed or timed out on.
+     *
+     * @return long, the number of failed events.
+     */
+    public long getNumAsyncFailures() {
+        return this.numAsyncFailures.get();
+    }
+
+    /**
+     * Starts an asynchronous handler on an event, once there is room for another
+     * event in flight, and logs it if it fails or times out.
+     * <p>
+     * A timeout is logged when it fires, but the event stays in flight, and
+     * counted against the ingress, until the handler's work really finishes, so
+     * slow handlers can't pile up more work than {@link #MAX_IN_FLIGHT}.
+     *
+     * @param handler The handler.
+     * @param queued  The event, and the connection it was read from.
+     * @throws InterruptedException if interrupted while waiting for room.
+     */
+    private void startAsync(Handleable handler, final QueuedEvent queued) throws InterruptedException {
+        final SerializableEvent event = queued.event;
+        this.inFlight.acquire();
+        CompletableFuture<Void> handled = AsyncHandlers.call(handler, event);
+        handled.whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void result, Throwable error) {
+                inFlight.release();
+                release(queued);
+                if (error == null) {
+                    return;
+                }
+                numAsyncFailures.incrementAndGet();
+                error.printStackTrace();
+                server.getServerFrame().getTextArea()
+                        .append("Failed to handle a " + event.getClass() + " event: " + error.getMessage() + "\n");
+            }
+        });
+
+        // a copy is timed out, since timing out the handler's own future would end its turn early
+        CompletableFuture<Void> timed = AsyncHandlers.withTimeout(handled.copy(), AsyncHandlers.DEFAULT_TIMEOUT_MS);
+        timed.whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void result, Throwable error) {
+                if (!(error instanceof TimeoutException)) {
+                    return; // handled in time, or failed, which is logged above
+                }
+                numAsyncFailures.incrementAndGet();
+                server.getServerFrame().getTextArea().append("A " + event.getClass() + " event was "
+                        + error.getMessage() + "; it stays in flight until its handler finishes\n");
+            }
+        });
+    }
+
+    /**
+     * Stops counting an event against the ingress, once its handler is done with
+     * it.
+     *
+     * @param queued The event, and the connection it was read from.
+     */
+    private void release(QueuedEvent queued) {
+        if (queued.from != null) {
+            this.ingress.release(queued.from);
+        }
+    }
+
+    /**
+     * An event waiting on a lane, and the connection it was read from.
+     */
+    private static class QueuedEvent {
+        /** The event. */
+        private SerializableEvent event;
+        /** The connection the event was read from, or {@code null} if the server raised it. */
+        private ConnectionHandler from;
+        /** The priority class of the event. */
+        private int priority;
+        /** When the event was queued, from {@code System.nanoTime()}. */
+        private long queuedAt;
+
+        /**
+         * Constructs a new {@code QueuedEvent}.
+         *
+         * @param event    The event.
+         * @param from     The connection the event was read from, or {@code null}.
+         * @param priority The priority class of the event.
+         */
+        QueuedEvent(SerializableEvent event, ConnectionHandler from, int priority) {
+            this.event = event;
+            this.from = from;
+            this.priority = priority;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * One lane's queues of pending events, one per priority class.
+     * <p>
+     * Any thread can add events, but only the lane's worker takes them.
+     */
+    private static class Lane {
+        /** The pending events, by priority class. */
+        private ConcurrentLinkedQueue<QueuedEvent>[] queues;
+        /** One permit per pending event, across every class. */
+        private Semaphore available;
+        /** The class the worker is taking events from. */
+        private int current;
+        /** The events the worker can still take from the current class this turn. */
+        private int credit;
+
+        /**
+         * Constructs a new, empty {@code Lane}.
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Lane() {
+            this.queues = new ConcurrentLinkedQueue[WEIGHTS.length];
+            for (int i = 0; i < WEIGHTS.length; i++) {
+                this.queues[i] = new ConcurrentLinkedQueue<>();
+            }
+            this.available = new Semaphore(0);
+            this.credit = WEIGHTS[0];
+        }
+
+        /**
+         * Adds an event to the queue of its class.
+         *
+         * @param queued The event.
+         */
+        void add(QueuedEvent queued) {
+            this.queues[queued.priority].add(queued);
+            this.available.release();
+        }
+
+        /**
+         * Waits for at least one event, then takes up to a number of events, in
+         * weighted round robin over the classes. Called by the lane's worker only.
+         *
+         * @param maxEvents The most events to take.
+         * @return the events, in the order to handle them.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        ArrayList<QueuedEvent> take(int maxEvents) throws InterruptedException {
+            this.available.acquire();
+            int numEvents = 1 + Math.min(maxEvents - 1, this.available.availablePermits());
+            // the worker is the only one taking permits, so these are all there
+            this.available.acquireUninterruptibly(numEvents - 1);
+
+            ArrayList<QueuedEvent> taken = new ArrayList<>(numEvents);
+            while (taken.size() < numEvents) {
+                QueuedEvent queued = (this.credit > 0) ? this.queues[this.current].poll() : null;
+                if (queued == null) {
+                    // this class has had its turn, or has nothing left; move on
+                    this.current = (this.current + 1) % WEIGHTS.length;
+                    this.credit = WEIGHTS[this.current];
+                    continue;
+                }
+                this.credit--;
+                taken.add(queued);
+            }
+            return taken;
+        }
+    }
+
+    /**
+     * A worker that handles the events of one lane, in order.
+     */
+    private class LaneWorker implements Runnable {
+        /** The lane this worker drains. */
+        private Lane lane;
+
+        /**
+         * Constructs a new {@code LaneWorker}.
+         *
+         * @param lane The lane this worker drains.
+         */
+        LaneWorker(Lane lane) {
+            this.lane = lane;
+        }
+
+        public void run() {
+            while (true) {
+                ArrayList<QueuedEvent> batch;
+                try {
+                    batch = this.lane.take(MAX_BATCH_SIZE);
+                } catch (InterruptedException e) {
+                    continue; // keep reading from the queue
+                }
+                long takenAt = System.nanoTime();
+                for (QueuedEvent queued : batch) {
+                    queueTimes[queued.priority].record(takenAt - queued.queuedAt);
+                }
+
+                int start = 0;
+                while (start < batch.size()) {
+                    QueuedEvent queued = batch.get(start);
+                    SerializableEvent event = queued.event;
+                    Handleable handler = eventHandlers.get(event.getClass());
+                    int end = start + 1;
+                    if (handler instanceof BatchHandleable) {
+                        while (end < batch.size() && batch.get(end).event.getClass() == event.getClass()) {
+                            end++;
+                        }
+                    }
+
+                    // One bad event should not take the rest of the lane down with it
+                    try {
+                        if (end - start > 1) {
+                            ArrayList<SerializableEvent> events = new ArrayList<>(end - start);
+                            for (int i = start; i < end; i++) {
+                                events.add(batch.get(i).event);
+                            }
+                            ((BatchHandleable) handler).handleEvents(events);
+                        } else if (handler instanceof AsyncHandleable) {
+                            startAsync(handler, queued);
+                            start = end;
+                            continue; // released once the handler is done
+                        } else {
+                            handler.handleEvent(event);
+                        }
+                    } catch (InterruptedException e) {
+                        continue; // try the same event again
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        server.getServerFrame().getTextArea()
+                                .append("Failed to handle a " + event.getClass() + " event\n");
+                    }
+                    for (int i = start; i < end; i++) {
+                        release(batch.get(i));
+                    }
+                    start = end;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package duberchat.server;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import duberchat.server.ChatServer.ConnectionHandler;
+
+/**
+ * The {@code EventIngress} bounds how many events read from clients can be
+ * waiting on the server at once, and shares that room fairly between clients.
+ * <p>
+ * An event counts against the bound from when a connection's reader hands it
+ * to the event lanes until its handler is done with it. Each client that has
+ * events waiting gets an equal share of {@link #getCapacity()}, though never
+ * less than {@link #MIN_SHARE}. Readers check for room before reading each
+ * event, so the total only goes past the capacity by the events that several
+ * readers were already reading at once. A connection that uses up its share,
+ * or finds the server full, is paused: its reader stops reading from its socket, so the
+ * client's own socket fills up and TCP slows it down, without any other client
+ * noticing. The connection is resumed as soon as its events are handled.
+ * <p>
+ * A paused connection with events of its own waiting is checked again each time
+ * one of them is handled. One with none waiting can only be short of room on the
+ * server, so it waits in line, and each handled event resumes the connections at
+ * the front of the line that have room. Handling an event therefore never looks
+ * through every paused connection.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class EventIngress {
+    /** The number of events that can be waiting by default. */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /** The fewest events any one connection may have waiting. */
+    public static final int MIN_SHARE = 16;
+
+    /** The most events that can be waiting across all connections. */
+    private volatile int capacity;
+    /** The number of events waiting across all connections. */
+    private AtomicInteger numQueued;
+    /** The number of connections with at least one event waiting. */
+    private AtomicInteger numConnectionsQueued;
+    /** The number of times a connection has been paused. */
+    private AtomicLong numPauses;
+    /** The number of connections whose readers are paused. */
+    private AtomicInteger numPaused;
+    /** The paused connections waiting for room on the server, oldest first. */
+    private ConcurrentLinkedDeque<ConnectionHandler> waiting;
+
+    /**
+     * Constructs a new {@code EventIngress}.
+     *
+     * @param capacity The most events that can be waiting across all connections.
+     */
+    public EventIngress(int capacity) {
+        this.capacity = Math.max(capacity, MIN_SHARE);
+        this.numQueued = new AtomicInteger();
+        this.numConnectionsQueued = new AtomicInteger();
+        this.numPauses = new AtomicLong();
+        this.numPaused = new AtomicInteger();
+        this.waiting = new ConcurrentLinkedDeque<>();
+    }
+
+    /**
+     * Checks whether a connection may have another event waiting.
+     *
+     * @param connection The connection.
+     * @return true if the server has room and the connection is within its share.
+     */
+    public boolean hasRoom(ConnectionHandler connection) {
+        return this.numQueued.get() < this.capacity && connection.getNumQueuedEvents() < this.getShare();
+    }
+
+    /**
+     * Counts an event from a connection as waiting.
+     *
+     * @param connection The connection the event was read from.
+     */
+    void acquire(ConnectionHandler connection) {
+        if (connection.addQueuedEvent() == 1) {
+            this.numConnectionsQueued.incrementAndGet();
+        }
+        this.numQueued.incrementAndGet();
+    }
+
+    /**
+     * Stops counting an event from a connection as waiting, once its handler is
+     * done with it, and resumes the paused connections that now have room.
+     *
+     * @param connection The connection the event was read from.
+     */
+    void release(ConnectionHandler connection) {
+        if (connection.removeQueuedEvent() == 0) {
+            this.numConnectionsQueued.decrementAndGet();
+        }
+        this.numQueued.decrementAndGet();
+
+        if (this.numPaused.get() == 0) {
+            return;
+        }
+        if (connection.isReadPaused() && !this.tryResume(connection) && connection.getNumQueuedEvents() == 0) {
+            this.waiting.add(connection); // that was its last event, so it waits on the server now
+        }
+        while (this.numQueued.get() < this.capacity) {
+            ConnectionHandler next = this.waiting.poll();
+            if (next == null) {
+                return;
+            }
+            // one still over its share is checked again as its own events are handled
+            if (next.isReadPaused() && !this.tryResume(next) && next.getNumQueuedEvents() == 0) {
+                this.waiting.addFirst(next); // the server is full again
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pauses a connection's reader, unless room was made for it in the meantime.
+     * The connection's {@link ConnectionHandler#resumeReading()} is called once
+     * it has room again.
+     *
+     * @param connection The connection to pause.
+     * @return true if the connection is paused, false if it may keep reading.
+     */
+    boolean pause(ConnectionHandler connection) {
+        if (!connection.markReadPaused()) {
+            return true; // already paused
+        }
+        this.numPauses.incrementAndGet();
+        this.numPaused.incrementAndGet();
+
+        // events may have been handled since the connection last checked
+        if (this.tryResume(connection)) {
+            return false;
+        }
+        if (connection.getNumQueuedEvents() == 0) {
+            this.waiting.add(connection);
+        }
+        return true;
+    }
+
+    /**
+     * Stops counting a connection as paused once it closes, so that it is never
+     * resumed and is not held on to.
+     *
+     * @param connection The connection that closed.
+     */
+    void forget(ConnectionHandler connection) {
+        if (connection.clearReadPaused()) {
+            this.numPaused.decrementAndGet();
+            this.waiting.remove(connection);
+        }
+    }
+
+    /**
+     * Resumes a paused connection if it has room.
+     *
+     * @param connection The paused connection.
+     * @return true if the connection was resumed.
+     */
+    private boolean tryResume(ConnectionHandler connection) {
+        if (!this.hasRoom(connection)) {
+            return false;
+        }
+        if (!connection.clearReadPaused()) {
+            return false; // resumed or closed by another thread
+        }
+        this.numPaused.decrementAndGet();
+        connection.resumeReading();
+        return true;
+    }
+
+    /**
+     * Retrieves the most events that can be waiting across all connections.
+     *
+     * @return int, the capacity.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Sets the most events that can be waiting across all connections.
+     *
+     * @param capacity the new capacity.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(capacity, MIN_SHARE);
+    }
+
+    /**
+     * Retrieves the number of events each connection may have waiting right now.
+     *
+     * @return int, the share of each connection.
+     */
+    public int getShare() {
+        return Math.max(MIN_SHARE, this.capacity / Math.max(this.numConnectionsQueued.get(), 1));
+    }
+
+    /**
+     * Retrieves the number of events waiting across all connections.
+     *
+     * @return int, the number of waiting events.
+     */
+    public int getNumQueued() {
+        return this.numQueued.get();
+    }
+
+    /**
+     * Retrieves the number of connections with at least one event waiting.
+     *
+     * @return int, the number of connections.
+     */
+    public int getNumConnectionsQueued() {
+        return this.numConnectionsQueued.get();
+    }
+
+    /**
+     * Retrieves the number of connections whose readers are paused right now.
+     *
+     * @return int, the number of paused connections.
+     */
+    public int getNumPaused() {
+        return this.numPaused.get();
+    }
+
+    /**
+     * Retrieves the number of times a connection has been paused.
+     *
+     * @return long, the number of pauses.
+     */
+    public long getNumPauses() {
+        return this.numPauses.get();
+    }
+
+    /**
+     * Summarizes how full the ingress is.
+     *
+     * @return a one-line summary.
+     */
+    public String describe() {
+        return String.format("%d of %d events waiting from %d clients (share %d each), %d clients paused, %d pauses",
+                this.getNumQueued(), this.capacity, this.getNumConnectionsQueued(), this.getShare(),
+                this.getNumPaused(), this.getNumPauses());
+    }
+}
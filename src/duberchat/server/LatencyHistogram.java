@@ -0,0 +1,110 @@
+package duberchat.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@code LatencyHistogram} counts how long things took, in buckets that
+ * double in width: under 1 microsecond, under 2, under 4, and so on up to
+ * about 35 minutes.
+ * <p>
+ * Recording is a couple of atomic increments, so any number of threads can
+ * record at once without locking. Percentiles are read off the buckets, so they
+ * are only ever reported as "at most" the top of a bucket, which is within a
+ * factor of two of the truth.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class LatencyHistogram {
+    /** The number of buckets. */
+    private static final int NUM_BUCKETS = 32;
+
+    /** The counts in each bucket; bucket {@code i} counts times under 2^i microseconds. */
+    private AtomicLongArray buckets;
+    /** The number of times recorded. */
+    private AtomicLong count;
+    /** The sum of every time recorded, in nanoseconds. */
+    private AtomicLong totalNanos;
+    /** The longest time recorded, in nanoseconds. */
+    private AtomicLong maxNanos;
+
+    /**
+     * Constructs a new, empty {@code LatencyHistogram}.
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(NUM_BUCKETS);
+        this.count = new AtomicLong();
+        this.totalNanos = new AtomicLong();
+        this.maxNanos = new AtomicLong();
+    }
+
+    /**
+     * Records one time.
+     *
+     * @param nanos the time, in nanoseconds.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        long micros = nanos / 1000;
+        int bucket = (micros == 0) ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        this.buckets.incrementAndGet(Math.min(bucket, NUM_BUCKETS - 1));
+        this.count.incrementAndGet();
+        this.totalNanos.addAndGet(nanos);
+
+        long max = this.maxNanos.get();
+        while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+            max = this.maxNanos.get();
+        }
+    }
+
+    /**
+     * Retrieves the number of times recorded.
+     *
+     * @return long, the number of times.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Finds a time that at least some fraction of the recorded times were under.
+     *
+     * @param fraction the fraction, between 0 and 1 (eg. 0.99 for the 99th
+     *                 percentile).
+     * @return the time, in microseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(double fraction) {
+        long total = this.count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long needed = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= needed) {
+                return 1L << i;
+            }
+        }
+        return 1L << (NUM_BUCKETS - 1);
+    }
+
+    /**
+     * Summarizes the times recorded.
+     *
+     * @return a one-line summary.
+     */
+    public String describe() {
+        long total = this.count.get();
+        if (total == 0) {
+            return "nothing recorded yet";
+        }
+        return String.format("%d recorded, mean %.3f ms, p50 <= %.3f ms, p99 <= %.3f ms, max %.3f ms", total,
+                this.totalNanos.get() / 1e6 / total, this.getPercentileMicros(0.5) / 1e3,
+                this.getPercentileMicros(0.99) / 1e3, this.maxNanos.get() / 1e6);
+    }
+}
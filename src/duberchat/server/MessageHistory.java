@@ -0,0 +1,647 @@
+package duberchat.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+
+/**
+ * The {@code MessageHistory} keeps the old messages of every channel on disk,
+ * so that the server only holds a channel's newest messages (its hot tail) in
+ * memory.
+ * <p>
+ * A channel's cold messages are split into pages of {@link #PAGE_SIZE}
+ * consecutive message ids, each written to its own file,
+ * {@code data/history/<id>/<page>}. Once a channel's newest id is a whole page
+ * past its hot tail, the oldest page of the tail is written out and dropped from
+ * the channel.
+ * <p>
+ * Pages have a fixed layout, so they are read without deserializing anything:
+ * a header, then one slot per message id of the page holding the offset and
+ * length of the message's record (or zeroes for an id with no message), then
+ * the records. A page is memory mapped when clients scroll back to it, and the
+ * most recently used mappings are kept in an LRU cache, so fetching a message
+ * cluster is a slot lookup followed by a sequential read of the records, from
+ * the operating system's page cache once the page has been read once. Edits
+ * and deletes change a page in place, through its slots, rather than rewriting
+ * it.
+ * <p>
+ * Pages are written straight away, like log records, rather than through the
+ * file write queue: the channel snapshot written next no longer holds the
+ * paged messages, so the page must be on disk before it is. Every method that
+ * takes a channel must be called with that channel's lock held.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class MessageHistory {
+    /** The number of message ids in one page. */
+    public static final int PAGE_SIZE = 256;
+    /** The number of messages kept in memory per channel, by default. */
+    public static final int DEFAULT_HOT_TAIL = 1000;
+    /** The number of page mappings kept in the page cache. */
+    public static final int CACHED_PAGES = 64;
+
+    /** The first int of every page file, {@code PJHP}. */
+    private static final int PAGE_MAGIC = 0x504A4850;
+    /** The size of a page's header: its magic number and first message id. */
+    private static final int HEADER_SIZE = 8;
+    /** The size of one slot: the offset and length of a record. */
+    private static final int SLOT_SIZE = 8;
+
+    /** The directory every channel's pages are kept in. */
+    private String directory;
+    /** The number of messages kept in memory per channel. */
+    private volatile int hotTailSize;
+    /** The number of pages written for every channel, by channel id. */
+    private ConcurrentHashMap<Integer, Integer> numPages;
+    /** The most recently used page mappings, keyed by {@code <channel id>-<page>}. */
+    private LinkedHashMap<String, ByteBuffer> pageCache;
+
+    /**
+     * Constructs a new {@code MessageHistory}.
+     *
+     * @param directory The directory every channel's pages are kept in.
+     */
+    public MessageHistory(String directory) {
+        this.directory = directory;
+        this.hotTailSize = DEFAULT_HOT_TAIL;
+        this.numPages = new ConcurrentHashMap<>();
+        this.pageCache = new LinkedHashMap<String, ByteBuffer>(CACHED_PAGES, 0.75f, true) {
+            static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, ByteBuffer> eldest) {
+                return this.size() > CACHED_PAGES;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the number of messages kept in memory per channel.
+     *
+     * @return the size of the hot tail.
+     */
+    public int getHotTailSize() {
+        return this.hotTailSize;
+    }
+
+    /**
+     * Sets the number of messages kept in memory per channel. The hot tail always
+     * holds at least a message cluster, so logins never read from disk.
+     *
+     * @param hotTailSize the new size of the hot tail.
+     */
+    public void setHotTailSize(int hotTailSize) {
+        this.hotTailSize = Math.max(hotTailSize, Channel.MESSAGE_CLUSTER_AMT);
+    }
+
+    /**
+     * Retrieves the oldest message id that is kept in memory for a channel. Every
+     * older message is on disk.
+     *
+     * @param channelId The id of the channel.
+     * @return the first hot message id.
+     */
+    public int getFirstHotId(int channelId) {
+        Integer pages = this.numPages.get(channelId);
+        if (pages == null) {
+            return 0;
+        }
+        return pages * PAGE_SIZE;
+    }
+
+    /**
+     * Prepares a channel that was just loaded from its snapshot: finds the pages
+     * already written for it, and drops the messages they hold from the channel.
+     * This must be done before its log is replayed.
+     *
+     * @param channel The channel, as loaded from its snapshot.
+     */
+    public void load(Channel channel) {
+        int channelId = channel.getChannelId();
+        int pages = 0;
+        File[] pageFiles = this.findChannelDirectory(channelId).listFiles();
+        if (pageFiles != null) {
+            for (File pageFile : pageFiles) {
+                if (pageFile.getName().matches("\\d+")) {
+                    pages = Math.max(pages, Integer.parseInt(pageFile.getName()) + 1);
+                }
+            }
+        }
+        this.numPages.put(channelId, pages);
+
+        // an older snapshot may still hold messages that were paged out after it
+        Message oldest = channel.getOldestMessage();
+        while (oldest != null && oldest.getMessageId() < pages * PAGE_SIZE) {
+            channel.removeMessage(oldest.getMessageId());
+            oldest = channel.getOldestMessage();
+        }
+    }
+
+    /**
+     * Writes out and drops a channel's oldest messages, one page at a time, until
+     * its hot tail is no more than a page over its size.
+     *
+     * @param channel The channel to trim.
+     * @return the number of pages written.
+     * @throws IOException if a page could not be written.
+     */
+    public int trim(Channel channel) throws IOException {
+        int channelId = channel.getChannelId();
+        int written = 0;
+        int firstHotId = this.getFirstHotId(channelId);
+        while (channel.getTotalMessages() - firstHotId >= this.hotTailSize + PAGE_SIZE) {
+            ArrayList<Message> page = new ArrayList<>(PAGE_SIZE);
+            for (int id = firstHotId; id < firstHotId + PAGE_SIZE; id++) {
+                Message message = channel.getMessage(id);
+                if (message != null) {
+                    page.add(message);
+                }
+            }
+
+            int pageNum = firstHotId / PAGE_SIZE;
+            this.writePage(channelId, pageNum, page);
+            this.numPages.put(channelId, pageNum + 1);
+            for (Message message : page) {
+                channel.removeMessage(message.getMessageId());
+            }
+            firstHotId += PAGE_SIZE;
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Retrieves a message by id, from memory or from disk.
+     *
+     * @param channel   The channel the message is in.
+     * @param messageId The id of the message.
+     * @return the message, or {@code null} if the channel has no message with that
+     *         id.
+     * @throws IOException if the message's page could not be read.
+     */
+    public Message getMessage(Channel channel, int messageId) throws IOException {
+        if (messageId < 0) {
+            return null;
+        }
+        int channelId = channel.getChannelId();
+        if (messageId >= this.getFirstHotId(channelId)) {
+            return channel.getMessage(messageId);
+        }
+        ByteBuffer page = this.mapPage(channelId, messageId / PAGE_SIZE);
+        if (page == null) {
+            return null;
+        }
+        return MessageHistory.readSlot(page, channelId, messageId);
+    }
+
+    /**
+     * Retrieves up to a number of the messages sent before some message, reading
+     * pages from disk once the channel's hot tail runs out.
+     *
+     * @param channel   The channel to retrieve messages from.
+     * @param messageId The id of the message to start before.
+     * @param count     The most messages to retrieve.
+     * @return the messages, oldest first.
+     * @throws IOException if a page could not be read.
+     */
+    public ArrayList<Message> getMessagesBefore(Channel channel, int messageId, int count) throws IOException {
+        int channelId = channel.getChannelId();
+        int firstHotId = this.getFirstHotId(channelId);
+        ArrayList<Message> messages = channel.getMessagesBefore(messageId, count);
+        if (messages.size() >= count) {
+            return messages;
+        }
+
+        // walk back through the pages, newest first
+        ArrayList<Message> older = new ArrayList<>();
+        int beforeId = Math.min(messageId, firstHotId);
+        for (int id = beforeId - 1; id >= 0 && messages.size() + older.size() < count;) {
+            int pageStart = id - (id % PAGE_SIZE);
+            ByteBuffer page = this.mapPage(channelId, id / PAGE_SIZE);
+            for (; id >= pageStart && messages.size() + older.size() < count; id--) {
+                Message message = (page == null) ? null : MessageHistory.readSlot(page, channelId, id);
+                if (message != null) {
+                    older.add(message);
+                }
+            }
+        }
+
+        Collections.reverse(older);
+        older.addAll(messages);
+        return older;
+    }
+
+    /**
+     * Edits a message that is on disk.
+     *
+     * @param channel   The channel the message is in.
+     * @param messageId The id of the message.
+     * @param text      The message's new text.
+     * @return the edited message, or {@code null} if there was no message with
+     *         that id on disk.
+     * @throws IOException if the message's page could not be read or written.
+     */
+    public Message editMessage(Channel channel, int messageId, String text) throws IOException {
+        int channelId = channel.getChannelId();
+        if (messageId < 0 || messageId >= this.getFirstHotId(channelId)) {
+            return null;
+        }
+        int pageNum = messageId / PAGE_SIZE;
+        ByteBuffer page = this.mapPage(channelId, pageNum);
+        Message edited = (page == null) ? null : MessageHistory.readSlot(page, channelId, messageId);
+        if (edited == null) {
+            return null;
+        }
+
+        edited.setMessage(text);
+        this.writeSlot(channelId, pageNum, edited);
+        return edited;
+    }
+
+    /**
+     * Removes a message that is on disk.
+     *
+     * @param channel   The channel the message is in.
+     * @param messageId The id of the message.
+     * @return the removed message, or {@code null} if there was no message with
+     *         that id on disk.
+     * @throws IOException if the message's page could not be read or written.
+     */
+    public Message removeMessage(Channel channel, int messageId) throws IOException {
+        int channelId = channel.getChannelId();
+        if (messageId < 0 || messageId >= this.getFirstHotId(channelId)) {
+            return null;
+        }
+        int pageNum = messageId / PAGE_SIZE;
+        ByteBuffer page = this.mapPage(channelId, pageNum);
+        Message removed = (page == null) ? null : MessageHistory.readSlot(page, channelId, messageId);
+        if (removed == null) {
+            return null;
+        }
+
+        this.clearSlot(channelId, pageNum, messageId);
+        return removed;
+    }
+
+    /**
+     * Removes every message a user sent to a channel that is on disk.
+     *
+     * @param channel  The channel to remove messages from.
+     * @param username The username of the user.
+     * @throws IOException if a page could not be read or written.
+     */
+    public void removeMessagesFrom(Channel channel, String username) throws IOException {
+        int channelId = channel.getChannelId();
+        int pages = this.getFirstHotId(channelId) / PAGE_SIZE;
+        for (int pageNum = 0; pageNum < pages; pageNum++) {
+            ByteBuffer page = this.mapPage(channelId, pageNum);
+            if (page == null) {
+                continue;
+            }
+            int firstId = pageNum * PAGE_SIZE;
+            for (int id = firstId; id < firstId + PAGE_SIZE; id++) {
+                Message message = MessageHistory.readSlot(page, channelId, id);
+                if (message != null && message.getSenderUsername().equals(username)) {
+                    this.clearSlot(channelId, pageNum, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes every page of a channel, for a channel that was deleted.
+     *
+     * @param channelId The id of the deleted channel.
+     */
+    public void delete(int channelId) {
+        Integer pages = this.numPages.remove(channelId);
+        if (pages != null) {
+            synchronized (this.pageCache) {
+                for (int pageNum = 0; pageNum < pages; pageNum++) {
+                    this.pageCache.remove(channelId + "-" + pageNum);
+                }
+            }
+        }
+        File channelDirectory = this.findChannelDirectory(channelId);
+        File[] pageFiles = channelDirectory.listFiles();
+        if (pageFiles != null) {
+            for (File pageFile : pageFiles) {
+                pageFile.delete();
+            }
+        }
+        channelDirectory.delete();
+    }
+
+    /**
+     * Maps a page into memory, or retrieves its mapping from the page cache.
+     *
+     * @param channelId The id of the channel.
+     * @param pageNum   The number of the page.
+     * @return the page, or {@code null} if it was never written.
+     * @throws IOException if the page could not be mapped.
+     */
+    private ByteBuffer mapPage(int channelId, int pageNum) throws IOException {
+        String key = channelId + "-" + pageNum;
+        synchronized (this.pageCache) {
+            ByteBuffer page = this.pageCache.get(key);
+            if (page != null) {
+                return page;
+            }
+        }
+
+        File pageFile = new File(this.findChannelDirectory(channelId), Integer.toString(pageNum));
+        if (!pageFile.exists()) {
+            return null;
+        }
+        ByteBuffer page;
+        FileChannel channel = FileChannel.open(pageFile.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            channel.read(magic, 0);
+            if (channel.size() < HEADER_SIZE + (PAGE_SIZE * SLOT_SIZE) || magic.getInt(0) != PAGE_MAGIC) {
+                page = null;
+            } else {
+                // the mapping stays valid once the file is closed
+                page = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } finally {
+            channel.close();
+        }
+        if (page == null) {
+            MessageHistory.convertLegacyPage(pageFile, channelId, pageNum);
+            return this.mapPage(channelId, pageNum);
+        }
+
+        synchronized (this.pageCache) {
+            this.pageCache.put(key, page);
+        }
+        return page;
+    }
+
+    /**
+     * Writes a page beside its file, moves it into place, and drops its old
+     * mapping from the page cache.
+     *
+     * @param channelId The id of the channel.
+     * @param pageNum   The number of the page.
+     * @param page      The page's messages, oldest first.
+     * @throws IOException if the page could not be written.
+     */
+    private void writePage(int channelId, int pageNum, ArrayList<Message> page) throws IOException {
+        File channelDirectory = this.findChannelDirectory(channelId);
+        channelDirectory.mkdirs();
+        File pageFile = new File(channelDirectory, Integer.toString(pageNum));
+        File tempFile = new File(channelDirectory, pageNum + ".tmp");
+
+        FileOutputStream fileOut = new FileOutputStream(tempFile);
+        try {
+            fileOut.write(MessageHistory.encodePage(pageNum * PAGE_SIZE, page));
+        } finally {
+            fileOut.close();
+        }
+        Files.move(tempFile.toPath(), pageFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this.pageCache) {
+            this.pageCache.remove(channelId + "-" + pageNum);
+        }
+    }
+
+    /**
+     * Changes a message in a page in place: its new record is appended to the
+     * page, and then its slot is pointed at it. Pages are never replaced once
+     * written, since a mapped file can't be replaced on every platform.
+     *
+     * @param channelId The id of the channel.
+     * @param pageNum   The number of the page.
+     * @param message   The message, as it is after the change.
+     * @throws IOException if the page could not be written.
+     */
+    private void writeSlot(int channelId, int pageNum, Message message) throws IOException {
+        ByteArrayOutputStream recordStream = new ByteArrayOutputStream(64);
+        DataOutputStream record = new DataOutputStream(recordStream);
+        MessageHistory.writeString(record, message.getSenderUsername());
+        MessageHistory.writeString(record, message.getMessage());
+        MessageHistory.writeString(record, message.getTimestamp());
+        record.close();
+
+        File pageFile = new File(this.findChannelDirectory(channelId), Integer.toString(pageNum));
+        FileChannel channel = FileChannel.open(pageFile.toPath(), StandardOpenOption.WRITE);
+        try {
+            int offset = (int) channel.size();
+            MessageHistory.writeFully(channel, ByteBuffer.wrap(recordStream.toByteArray()), offset);
+            ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+            slot.putInt(offset).putInt(recordStream.size()).flip();
+            MessageHistory.writeFully(channel, slot, MessageHistory.findSlotPosition(pageNum, message.getMessageId()));
+        } finally {
+            channel.close();
+        }
+
+        // the mapping ends before the new record, so the page is mapped again
+        synchronized (this.pageCache) {
+            this.pageCache.remove(channelId + "-" + pageNum);
+        }
+    }
+
+    /**
+     * Removes a message from a page in place, by emptying its slot.
+     *
+     * @param channelId The id of the channel.
+     * @param pageNum   The number of the page.
+     * @param messageId The id of the message.
+     * @throws IOException if the page could not be written.
+     */
+    private void clearSlot(int channelId, int pageNum, int messageId) throws IOException {
+        File pageFile = new File(this.findChannelDirectory(channelId), Integer.toString(pageNum));
+        FileChannel channel = FileChannel.open(pageFile.toPath(), StandardOpenOption.WRITE);
+        try {
+            MessageHistory.writeFully(channel, ByteBuffer.allocate(SLOT_SIZE),
+                    MessageHistory.findSlotPosition(pageNum, messageId));
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a buffer to a file at a position.
+     *
+     * @param channel  The file.
+     * @param buffer   The bytes to write.
+     * @param position The position to write them at.
+     * @throws IOException if the bytes could not be written.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Finds the position of a message's slot in its page.
+     *
+     * @param pageNum   The number of the page.
+     * @param messageId The id of the message, which must be in the page.
+     * @return the position of the slot.
+     */
+    private static int findSlotPosition(int pageNum, int messageId) {
+        return HEADER_SIZE + ((messageId - (pageNum * PAGE_SIZE)) * SLOT_SIZE);
+    }
+
+    /**
+     * Encodes a page: its header, a slot for every message id of the page, and a
+     * record for every message.
+     *
+     * @param firstId The first message id of the page.
+     * @param page    The page's messages, oldest first.
+     * @return the encoded page.
+     * @throws IOException if the page could not be encoded.
+     */
+    private static byte[] encodePage(int firstId, ArrayList<Message> page) throws IOException {
+        ByteArrayOutputStream recordStream = new ByteArrayOutputStream(page.size() * 64);
+        DataOutputStream records = new DataOutputStream(recordStream);
+        int[] offsets = new int[PAGE_SIZE];
+        int[] lengths = new int[PAGE_SIZE];
+        int recordsStart = HEADER_SIZE + (PAGE_SIZE * SLOT_SIZE);
+        for (Message message : page) {
+            int slot = message.getMessageId() - firstId;
+            offsets[slot] = recordsStart + records.size();
+            MessageHistory.writeString(records, message.getSenderUsername());
+            MessageHistory.writeString(records, message.getMessage());
+            MessageHistory.writeString(records, message.getTimestamp());
+            lengths[slot] = recordsStart + records.size() - offsets[slot];
+        }
+        records.close();
+
+        ByteArrayOutputStream pageStream = new ByteArrayOutputStream(recordsStart + recordStream.size());
+        DataOutputStream out = new DataOutputStream(pageStream);
+        out.writeInt(PAGE_MAGIC);
+        out.writeInt(firstId);
+        for (int slot = 0; slot < PAGE_SIZE; slot++) {
+            out.writeInt(offsets[slot]);
+            out.writeInt(lengths[slot]);
+        }
+        recordStream.writeTo(out);
+        out.close();
+        return pageStream.toByteArray();
+    }
+
+    /**
+     * Reads the message in one slot of a page.
+     *
+     * @param page      The page.
+     * @param channelId The id of the channel.
+     * @param messageId The id of the message, which must be in the page.
+     * @return the message, or {@code null} if the slot is empty.
+     */
+    private static Message readSlot(ByteBuffer page, int channelId, int messageId) {
+        int slotPosition = MessageHistory.findSlotPosition(page.getInt(4) / PAGE_SIZE, messageId);
+        int offset = page.getInt(slotPosition);
+        if (offset == 0) {
+            return null;
+        }
+
+        // read through a view, as the mapping is shared between threads
+        ByteBuffer record = page.duplicate();
+        record.position(offset);
+        String senderUsername = MessageHistory.readString(record);
+        String text = MessageHistory.readString(record);
+        String timestamp = MessageHistory.readString(record);
+        return new Message(text, senderUsername, messageId, timestamp, channelId);
+    }
+
+    /**
+     * Writes a string to a record as its UTF-8 length and bytes.
+     *
+     * @param out The record being written.
+     * @param str The string to write.
+     * @throws IOException if the string could not be written.
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param record The record being read, positioned at the string.
+     * @return the string.
+     */
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a page written before pages had a fixed layout, as a list of
+     * messages, and rewrites it in the fixed layout.
+     *
+     * @param pageFile  The page file.
+     * @param channelId The id of the channel.
+     * @param pageNum   The number of the page.
+     * @throws IOException if the page could not be read or rewritten.
+     */
+    private static void convertLegacyPage(File pageFile, int channelId, int pageNum) throws IOException {
+        ArrayList<Message> messages = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(pageFile)));
+        try {
+            int numMessages = in.readInt();
+            for (int i = 0; i < numMessages; i++) {
+                int messageId = in.readInt();
+                String senderUsername = in.readUTF();
+                String text = in.readUTF();
+                String timestamp = in.readUTF();
+                messages.add(new Message(text, senderUsername, messageId, timestamp, channelId));
+            }
+        } finally {
+            in.close();
+        }
+
+        byte[] encoded = MessageHistory.encodePage(pageNum * PAGE_SIZE, messages);
+        File tempFile = new File(pageFile.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tempFile);
+        try {
+            fileOut.write(encoded);
+        } finally {
+            fileOut.close();
+        }
+        Files.move(tempFile.toPath(), pageFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Retrieves the directory a channel's pages are kept in.
+     *
+     * @param channelId The id of the channel.
+     * @return the channel's page directory.
+     */
+    private File findChannelDirectory(int channelId) {
+        return new File(this.directory, Integer.toString(channelId));
+    }
+}
@@ -0,0 +1,463 @@
+package duberchat.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+import duberchat.events.FileWriteEvent;
+
+/**
+ * The {@code MessageLog} persists the messages of every channel as an
+ * append-only log, instead of rewriting the whole channel file for every
+ * message sent, edited or deleted.
+ * <p>
+ * A channel's state on disk is its snapshot, {@code data/channels/<id>}, plus
+ * its log segments. The current segment, {@code data/channels/<id>.log}, gets
+ * one small record per message change. Once it holds
+ * {@link #COMPACTION_THRESHOLD} records it is sealed (renamed to
+ * {@code <id>.log.<n>}) and a fresh one started. A copy of the channel taken at
+ * that moment is queued to be written as the new snapshot, and the sealed
+ * segments it covers are deleted once it has been. Snapshots go through the
+ * server's file write queue like every other channel file, so they can never be
+ * overwritten by an older write of the same channel.
+ * <p>
+ * At startup, each channel's snapshot is loaded and its sealed and current
+ * segments are replayed on top of it, oldest first. Replaying is idempotent (a
+ * message that is already there is not added twice, and deleting a message that
+ * is gone does nothing), so it does not matter whether a snapshot was written
+ * before or after a record it may already include. Records of messages that
+ * have since been paged out to the channel's {@link MessageHistory} are applied
+ * to its pages instead.
+ * <p>
+ * Each record is an int length, an int CRC32 of the payload and the payload.
+ * A torn record at the end of a segment, left by a crash mid-write, is cut off
+ * during replay.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class MessageLog {
+    /** A record type for a message that was sent. */
+    public static final int SENT = 0;
+    /** A record type for a message that was edited. */
+    public static final int EDITED = 1;
+    /** A record type for a message that was deleted. */
+    public static final int DELETED = 2;
+
+    /** The number of records a segment holds before the channel is compacted. */
+    public static final int COMPACTION_THRESHOLD = 1000;
+
+    /** The directory channel snapshots and logs are kept in. */
+    private String directory;
+    /** The open current segment of every channel that has been written to. */
+    private HashMap<Integer, Segment> segments;
+    /** The queue snapshots are written through. */
+    private LinkedBlockingQueue<FileWriteEvent> fileWriteQueue;
+    /** The history that old messages are paged out to. */
+    private MessageHistory history;
+
+    /**
+     * Constructs a new {@code MessageLog}.
+     *
+     * @param directory      The directory channel snapshots and logs are kept in.
+     * @param fileWriteQueue The queue snapshots are written through.
+     * @param history        The history that old messages are paged out to.
+     */
+    public MessageLog(String directory, LinkedBlockingQueue<FileWriteEvent> fileWriteQueue,
+                      MessageHistory history) {
+        this.directory = directory;
+        this.segments = new HashMap<>();
+        this.fileWriteQueue = fileWriteQueue;
+        this.history = history;
+    }
+
+    /**
+     * Checks whether a file in the channel directory is a channel snapshot, as
+     * opposed to a log segment.
+     *
+     * @param file The file to check.
+     * @return true if the file is a snapshot.
+     */
+    public static boolean isSnapshot(File file) {
+        return file.getName().matches("\\d+");
+    }
+
+    /**
+     * Appends a record of a message change to its channel's log.
+     * <p>
+     * The caller must hold the channel's lock, and must already have applied the
+     * change to the channel, so that a compaction triggered by this record
+     * snapshots the channel with the change included.
+     *
+     * @param channel The channel the message is in.
+     * @param type    The type of change, as an int constant.
+     * @param message The message, as it is after the change.
+     * @throws IOException if the record could not be written.
+     */
+    public void append(Channel channel, int type, Message message) throws IOException {
+        ArrayList<Message> messages = new ArrayList<>(1);
+        messages.add(message);
+        this.appendAll(channel, type, messages);
+    }
+
+    /**
+     * Appends records of the same change to many messages of a channel to its
+     * log, with a single flush.
+     * <p>
+     * As with {@link #append(Channel, int, Message)}, the caller must hold the
+     * channel's lock and must already have applied the changes.
+     *
+     * @param channel  The channel the messages are in.
+     * @param type     The type of change, as an int constant.
+     * @param messages The messages, as they are after the change, oldest first.
+     * @throws IOException if the records could not be written.
+     */
+    public void appendAll(Channel channel, int type, List<Message> messages) throws IOException {
+        Segment segment = this.findSegment(channel.getChannelId());
+        synchronized (segment) {
+            for (Message message : messages) {
+                byte[] payload = MessageLog.encode(type, message);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                segment.out.writeInt(payload.length);
+                segment.out.writeInt((int) crc.getValue());
+                segment.out.write(payload);
+                segment.numRecords++;
+            }
+            segment.out.flush();
+
+            if (segment.numRecords >= COMPACTION_THRESHOLD) {
+                this.seal(channel, segment);
+            }
+        }
+    }
+
+    /**
+     * Replays a channel's log segments on top of its freshly loaded snapshot,
+     * then schedules the channel to be compacted if any records were found.
+     *
+     * @param channel The channel, as loaded from its snapshot.
+     * @return the number of records replayed.
+     * @throws IOException if a segment could not be read.
+     */
+    public int replay(Channel channel) throws IOException {
+        int replayed = 0;
+        for (File segmentFile : this.findSegmentFiles(channel.getChannelId())) {
+            replayed += this.replaySegment(channel, segmentFile);
+        }
+        if (replayed > 0) {
+            Segment segment = this.findSegment(channel.getChannelId());
+            synchronized (segment) {
+                this.seal(channel, segment);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Deletes a channel's snapshot and log segments, for a channel that was
+     * deleted. The files are deleted by the file writing thread, after any
+     * writes of the channel still queued.
+     *
+     * @param channelId The id of the deleted channel.
+     */
+    public void delete(final int channelId) {
+        Segment segment;
+        synchronized (this.segments) {
+            segment = this.segments.remove(channelId);
+        }
+        if (segment != null) {
+            synchronized (segment) {
+                try {
+                    segment.out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        String snapshotPath = new File(this.directory, Integer.toString(channelId)).getPath();
+        this.fileWriteQueue.add(new FileWriteEvent(null, snapshotPath, new Runnable() {
+            public void run() {
+                for (File segmentFile : findSegmentFiles(channelId)) {
+                    segmentFile.delete();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Seals a channel's current segment and schedules a snapshot that covers it.
+     * The caller must hold the channel's and the segment's locks.
+     *
+     * @param channel The channel to compact.
+     * @param segment The channel's current segment.
+     * @throws IOException if the segment could not be sealed.
+     */
+    private void seal(Channel channel, Segment segment) throws IOException {
+        segment.out.close();
+        final int sealedNum = this.findNextSealedNum(channel.getChannelId());
+        File sealed = new File(this.directory, channel.getChannelId() + ".log." + sealedNum);
+        Files.move(segment.file.toPath(), sealed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        segment.open();
+
+        // the snapshot is copied now, so it holds every record in the sealed segments
+        final int channelId = channel.getChannelId();
+        String snapshotPath = new File(this.directory, Integer.toString(channelId)).getPath();
+        this.fileWriteQueue.add(new FileWriteEvent(new Channel(channel), snapshotPath, new Runnable() {
+            public void run() {
+                for (File segmentFile : findSegmentFiles(channelId)) {
+                    int num = MessageLog.findSealedNum(segmentFile);
+                    if (num >= 0 && num <= sealedNum) {
+                        segmentFile.delete();
+                    }
+                }
+            }
+        }));
+    }
+
+    /**
+     * Retrieves a channel's current segment, opening it if needed.
+     *
+     * @param channelId The id of the channel.
+     * @return the channel's current segment.
+     * @throws IOException if the segment could not be opened.
+     */
+    private Segment findSegment(int channelId) throws IOException {
+        synchronized (this.segments) {
+            Segment segment = this.segments.get(channelId);
+            if (segment == null) {
+                segment = new Segment(new File(this.directory, channelId + ".log"));
+                segment.open();
+                this.segments.put(channelId, segment);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Retrieves a channel's segment files in the order they must be replayed:
+     * sealed segments oldest first, then the current segment.
+     *
+     * @param channelId The id of the channel.
+     * @return the channel's segment files.
+     */
+    private File[] findSegmentFiles(int channelId) {
+        final String prefix = channelId + ".log";
+        File[] files = new File(this.directory).listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        ArrayList<File> found = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals(prefix) || (name.startsWith(prefix + ".") && MessageLog.findSealedNum(file) >= 0)) {
+                found.add(file);
+            }
+        }
+        File[] sorted = found.toArray(new File[0]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            public int compare(File a, File b) {
+                int aNum = MessageLog.findSealedNum(a);
+                int bNum = MessageLog.findSealedNum(b);
+                // the current segment has no number and always comes last
+                return Integer.compare(aNum < 0 ? Integer.MAX_VALUE : aNum, bNum < 0 ? Integer.MAX_VALUE : bNum);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Finds the number to give the next sealed segment of a channel.
+     *
+     * @param channelId The id of the channel.
+     * @return one more than the number of the newest sealed segment.
+     */
+    private int findNextSealedNum(int channelId) {
+        int next = 0;
+        for (File segmentFile : this.findSegmentFiles(channelId)) {
+            next = Math.max(next, MessageLog.findSealedNum(segmentFile) + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Finds the number of a sealed segment from its file name.
+     *
+     * @param segmentFile The segment file.
+     * @return the sealed segment's number, or -1 if it is a current segment.
+     */
+    private static int findSealedNum(File segmentFile) {
+        String name = segmentFile.getName();
+        int dot = name.lastIndexOf('.');
+        String suffix = name.substring(dot + 1);
+        if (!suffix.matches("\\d+")) {
+            return -1;
+        }
+        return Integer.parseInt(suffix);
+    }
+
+    /**
+     * Replays one segment onto a channel, cutting off a torn record at its end.
+     *
+     * @param channel     The channel to replay onto.
+     * @param segmentFile The segment to replay.
+     * @return the number of records replayed.
+     * @throws IOException if the segment could not be read.
+     */
+    private int replaySegment(Channel channel, File segmentFile) throws IOException {
+        int replayed = 0;
+        long goodLength = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile)));
+        try {
+            while (true) {
+                int length = in.readInt();
+                int expectedCrc = in.readInt();
+                if (length < 0 || length > segmentFile.length()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                this.apply(channel, payload);
+                replayed++;
+                goodLength += 8 + length;
+            }
+        } catch (EOFException e) {
+            // the end of the segment, or a torn record
+        } finally {
+            in.close();
+        }
+
+        if (goodLength < segmentFile.length()) {
+            RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+            file.setLength(goodLength);
+            file.close();
+        }
+        return replayed;
+    }
+
+    /**
+     * Encodes a record payload.
+     *
+     * @param type    The type of change, as an int constant.
+     * @param message The message, as it is after the change.
+     * @return the record payload.
+     * @throws IOException if the record could not be encoded.
+     */
+    private static byte[] encode(int type, Message message) throws IOException {
+        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bufferStream);
+        out.writeByte(type);
+        out.writeInt(message.getMessageId());
+        if (type != DELETED) {
+            out.writeUTF(message.getSenderUsername());
+            out.writeUTF(message.getMessage());
+            out.writeUTF(message.getTimestamp());
+        }
+        out.close();
+        return bufferStream.toByteArray();
+    }
+
+    /**
+     * Applies one record to a channel.
+     *
+     * @param channel The channel to apply the record to.
+     * @param payload The record payload.
+     * @throws IOException if the record is not valid.
+     */
+    private void apply(Channel channel, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int type = in.readUnsignedByte();
+        int messageId = in.readInt();
+        // a paged out message was sent long ago, but may have changed since
+        boolean paged = messageId < this.history.getFirstHotId(channel.getChannelId());
+
+        if (type == DELETED) {
+            if (paged) {
+                this.history.removeMessage(channel, messageId);
+            } else {
+                channel.removeMessage(messageId);
+            }
+            return;
+        }
+
+        String senderUsername = in.readUTF();
+        String text = in.readUTF();
+        String timestamp = in.readUTF();
+        if (paged) {
+            if (type == EDITED) {
+                this.history.editMessage(channel, messageId, text);
+            }
+            return;
+        }
+        Message message = channel.getMessage(messageId);
+        if (type == EDITED) {
+            if (message != null) {
+                message.setMessage(text);
+            }
+        } else if (message == null) {
+            channel.putMessage(new Message(text, senderUsername, messageId, timestamp, channel.getChannelId()));
+            channel.setTotalMessages(Math.max(channel.getTotalMessages(), messageId + 1));
+        }
+    }
+
+    /**
+     * A channel's current segment, open for appending.
+     */
+    private static class Segment {
+        /** The segment file. */
+        private File file;
+        /** The stream records are appended with. */
+        private DataOutputStream out;
+        /** The number of records appended since the segment was opened. */
+        private int numRecords;
+
+        /**
+         * Constructs a new {@code Segment}.
+         *
+         * @param file The segment file.
+         */
+        Segment(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Opens the segment file for appending, creating it if needed.
+         *
+         * @throws IOException if the file could not be opened.
+         */
+        void open() throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true)));
+            this.numRecords = 0;
+        }
+    }
+}
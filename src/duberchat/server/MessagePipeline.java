@@ -0,0 +1,612 @@
+package duberchat.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import duberchat.chatutil.Channel;
+import duberchat.chatutil.Message;
+import duberchat.chatutil.User;
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.MessageSentEvent;
+import duberchat.events.RequestFailedEvent;
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code MessagePipeline} takes sent messages from the
+ * {@code ServerMessageSentHandler} through five stages, each with its own
+ * queues and threads:
+ * <ol>
+ * <li>ingest, which checks that the channel exists, the sender is in it and
+ * the message is not too long, and tells the sender about any message it turns
+ * down;
+ * <li>transform, which applies text conversions;
+ * <li>sequence, which gives each message its id and adds it to its channel;
+ * <li>persist, which appends the messages to the message log, and takes back
+ * out of their channel and turns down any that could not be logged;
+ * <li>fan-out, which numbers the messages with the channel's other events and
+ * sends them to everyone in the channel.
+ * </ol>
+ * <p>
+ * Each thread of a stage drains everything waiting on its queue at once, so
+ * when messages pile up, one log flush and one pass over a channel's members
+ * cover many messages. Every stage gives a channel's messages to the same
+ * thread, so they leave the pipeline in the order they were sent, as they did
+ * when one event lane handled them.
+ * <p>
+ * Each queue holds at most {@link #QUEUE_CAPACITY} messages. A stage that falls
+ * behind makes the stage before it wait, and so on back to the event lanes, so
+ * that clients sending faster than the pipeline can keep up are slowed down by
+ * the server's {@link EventIngress} rather than piling messages up in memory.
+ * <p>
+ * A client that sends a message again with the same nonce, after a reconnect or
+ * a retry, does not get it stored twice. The last {@link #RECENT_NONCES} nonces
+ * of each sender are kept with the message each was stored as. A repeat is
+ * answered with the stored message, and dropped while the first copy is still
+ * in the pipeline, since that copy's echo will answer it.
+ * <p>
+ * Every stage counts the messages and batches it handles, and how long they
+ * waited and took; {@link #describeStages()} summarizes them, and the server
+ * log shows the summary every {@link #STATS_INTERVAL_MS} milliseconds while
+ * messages are flowing.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class MessagePipeline {
+    /** The most messages a stage thread takes off its queue at once. */
+    public static final int MAX_BATCH_SIZE = 64;
+    /** The most messages that can wait on one stage thread's queue. */
+    public static final int QUEUE_CAPACITY = 4096;
+    /** How often the stage statistics are logged, in milliseconds. */
+    public static final long STATS_INTERVAL_MS = 30000;
+    /** The number of each sender's newest nonces kept to catch repeats. */
+    public static final int RECENT_NONCES = 256;
+
+    /** The server this pipeline belongs to. */
+    private ChatServer server;
+    /** The stages, in the order messages go through them. */
+    private Stage[] stages;
+    /**
+     * Each sender's newest nonces, oldest first, with the message each was stored
+     * as, or {@code null} while it is still in the pipeline. Guarded by itself.
+     */
+    private HashMap<String, LinkedHashMap<Long, Message>> recentNonces;
+
+    /**
+     * Constructs a new {@code MessagePipeline}.
+     *
+     * @param server The server this pipeline belongs to.
+     */
+    public MessagePipeline(ChatServer server) {
+        this.server = server;
+        this.recentNonces = new HashMap<>();
+        int numCores = Runtime.getRuntime().availableProcessors();
+        int numWideThreads = Math.max(numCores / 2, 1);
+
+        Stage fanOut = new Stage("fan-out", numWideThreads, null) {
+            ArrayList<Job> process(ArrayList<Job> batch) {
+                return fanOut(batch);
+            }
+        };
+        Stage persist = new Stage("persist", 1, fanOut) {
+            ArrayList<Job> process(ArrayList<Job> batch) {
+                return persist(batch);
+            }
+        };
+        Stage sequence = new Stage("sequence", 1, persist) {
+            ArrayList<Job> process(ArrayList<Job> batch) {
+                return sequence(batch);
+            }
+        };
+        Stage transform = new Stage("transform", numWideThreads, sequence) {
+            ArrayList<Job> process(ArrayList<Job> batch) {
+                return transform(batch);
+            }
+        };
+        Stage ingest = new Stage("ingest", 1, transform) {
+            ArrayList<Job> process(ArrayList<Job> batch) {
+                return ingest(batch);
+            }
+        };
+        this.stages = new Stage[] { ingest, transform, sequence, persist, fanOut };
+    }
+
+    /**
+     * Starts every stage's threads, and the thread that logs their statistics.
+     */
+    public void start() {
+        for (Stage stage : this.stages) {
+            stage.start();
+        }
+
+        WorkerThreads.start("pipeline-stats", new Runnable() {
+            public void run() {
+                long lastNumSent = 0;
+                while (true) {
+                    try {
+                        Thread.sleep(STATS_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        continue; // keep reporting
+                    }
+                    long numSent = stages[stages.length - 1].numProcessed.get();
+                    if (numSent == lastNumSent) {
+                        continue;
+                    }
+                    lastNumSent = numSent;
+                    for (String line : describeStages()) {
+                        server.getServerFrame().getTextArea().append("Pipeline " + line + "\n");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends a message into the pipeline.
+     *
+     * @param event The event the message was sent with.
+     */
+    public void submit(MessageSentEvent event) {
+        this.stages[0].submit(new Job((String) event.getSource(), event.getMessage(), event.getNonce()));
+    }
+
+    /**
+     * Summarizes each stage's statistics, one line per stage, in pipeline order.
+     *
+     * @return the summary of every stage.
+     */
+    public String[] describeStages() {
+        String[] lines = new String[this.stages.length];
+        for (int i = 0; i < this.stages.length; i++) {
+            lines[i] = this.stages[i].describe();
+        }
+        return lines;
+    }
+
+    /**
+     * Checks that each message's channel exists, that its sender is in it, and
+     * that it is no longer than {@link Message#MAX_LENGTH}. Senders are told
+     * about the messages that fail, so their clients stop showing them as
+     * pending. Messages sent again with a nonce that was already seen go no
+     * further.
+     *
+     * @param batch The messages to check.
+     * @return the messages that passed.
+     */
+    private ArrayList<Job> ingest(ArrayList<Job> batch) {
+        ArrayList<Job> passed = new ArrayList<>(batch.size());
+        for (Job job : batch) {
+            String text = job.message.getMessage();
+            if (text == null || text.length() > Message.MAX_LENGTH) {
+                this.server.getServerFrame().getTextArea().append(job.source + " sent a message to channel "
+                        + job.message.getChannelId() + " that is too long. Message dropped.\n");
+                this.turnDown(job);
+                continue;
+            }
+
+            Channel channel = this.server.getChannels().get(job.message.getChannelId());
+            boolean isMember = false;
+            if (channel != null) {
+                synchronized (channel) {
+                    isMember = channel.getUsers().containsKey(job.message.getSenderUsername());
+                }
+            }
+            if (!isMember) {
+                this.server.getServerFrame().getTextArea().append(job.source + " sent a message to channel "
+                        + job.message.getChannelId() + ", which they are not in. Message dropped.\n");
+                this.turnDown(job);
+                continue;
+            }
+            if (this.isRepeat(job)) {
+                continue;
+            }
+            job.channel = channel;
+            passed.add(job);
+        }
+        return passed;
+    }
+
+    /**
+     * Checks whether a message was already sent with the same nonce, and if not,
+     * remembers its nonce. A repeat of a stored message is answered with the
+     * stored message.
+     *
+     * @param job The message.
+     * @return true if the message is a repeat.
+     */
+    private boolean isRepeat(Job job) {
+        if (job.nonce == 0) {
+            return false;
+        }
+        Message stored;
+        synchronized (this.recentNonces) {
+            LinkedHashMap<Long, Message> senderNonces = this.recentNonces.get(job.source);
+            if (senderNonces == null) {
+                senderNonces = new LinkedHashMap<>();
+                this.recentNonces.put(job.source, senderNonces);
+            }
+            if (!senderNonces.containsKey(job.nonce)) {
+                senderNonces.put(job.nonce, null);
+                if (senderNonces.size() > RECENT_NONCES) {
+                    senderNonces.remove(senderNonces.keySet().iterator().next());
+                }
+                return false;
+            }
+            stored = senderNonces.get(job.nonce);
+        }
+
+        if (stored == null) {
+            this.server.getServerFrame().getTextArea().append(job.source
+                    + " sent a message again while it was still being handled. Repeat dropped.\n");
+        } else {
+            this.server.getServerFrame().getTextArea().append(job.source + " sent message " + stored.getMessageId()
+                    + " to channel " + stored.getChannelId() + " again. Sent back the stored message.\n");
+            this.sendToSender(job, new MessageSentEvent(job.source, stored, job.nonce));
+        }
+        return true;
+    }
+
+    /**
+     * Remembers the message a nonce was stored as, or forgets the nonce.
+     *
+     * @param job    The message.
+     * @param stored The message as stored, or {@code null} to forget the nonce so
+     *               the message can be sent again.
+     */
+    private void rememberNonce(Job job, Message stored) {
+        if (job.nonce == 0) {
+            return;
+        }
+        synchronized (this.recentNonces) {
+            LinkedHashMap<Long, Message> senderNonces = this.recentNonces.get(job.source);
+            if (senderNonces == null || !senderNonces.containsKey(job.nonce)) {
+                return; // already pushed out by newer nonces
+            }
+            if (stored == null) {
+                senderNonces.remove(job.nonce);
+            } else {
+                senderNonces.put(job.nonce, stored);
+            }
+        }
+    }
+
+    /**
+     * Tells the sender of a message that it was turned down, and forgets its
+     * nonce, so it can be sent again.
+     *
+     * @param job The message.
+     */
+    private void turnDown(Job job) {
+        this.rememberNonce(job, null);
+        this.sendToSender(job, new RequestFailedEvent(job.source, 0, job.nonce));
+    }
+
+    /**
+     * Sends an event to the sender of a message, if they are still online.
+     *
+     * @param job   The message.
+     * @param event The event.
+     */
+    private void sendToSender(Job job, SerializableEvent event) {
+        User sender = this.server.getAllUsers().get(job.source);
+        ChatServer.ConnectionHandler output = (sender == null) ? null : this.server.getCurUsers().get(sender);
+        if (output == null) {
+            return; // the sender has already left
+        }
+        try {
+            output.sendEvent(event);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Applies text conversions to each message.
+     *
+     * @param batch The messages to convert.
+     * @return the converted messages.
+     */
+    private ArrayList<Job> transform(ArrayList<Job> batch) {
+        TextConverter converter = this.server.getTextConverter();
+        for (Job job : batch) {
+            job.text = converter.convert(job.message.getMessage());
+        }
+        return batch;
+    }
+
+    /**
+     * Gives each message the next id of its channel and adds it to the channel.
+     *
+     * @param batch The messages to add.
+     * @return the added messages.
+     */
+    private ArrayList<Job> sequence(ArrayList<Job> batch) {
+        for (ArrayList<Job> channelJobs : MessagePipeline.groupByChannel(batch).values()) {
+            Channel channel = channelJobs.get(0).channel;
+            synchronized (channel) {
+                for (Job job : channelJobs) {
+                    int msgId = channel.getTotalMessages();
+                    job.message = new Message(job.text, job.message.getSenderUsername(), msgId,
+                            job.message.getTimestamp(), channel.getChannelId());
+                    channel.putMessage(job.message);
+                    channel.setTotalMessages(msgId + 1);
+                    this.rememberNonce(job, job.message);
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Appends each channel's messages to the message log with one flush, then
+     * pages out the channel's oldest messages once its hot tail is full.
+     * <p>
+     * Messages that could not be logged are taken back out of their channel, so
+     * the channel only ever holds what the log does, and their senders are told.
+     * Their ids are not given out again.
+     *
+     * @param batch The messages to log.
+     * @return the messages that were logged.
+     */
+    private ArrayList<Job> persist(ArrayList<Job> batch) {
+        ArrayList<Job> logged = new ArrayList<>(batch.size());
+        for (ArrayList<Job> channelJobs : MessagePipeline.groupByChannel(batch).values()) {
+            Channel channel = channelJobs.get(0).channel;
+            ArrayList<Message> messages = new ArrayList<>(channelJobs.size());
+            for (Job job : channelJobs) {
+                messages.add(job.message);
+            }
+            try {
+                synchronized (channel) {
+                    this.server.getMessageLog().appendAll(channel, MessageLog.SENT, messages);
+                    this.server.getMessageHistory().trim(channel);
+                }
+                logged.addAll(channelJobs);
+            } catch (IOException e) {
+                e.printStackTrace();
+                synchronized (channel) {
+                    for (Job job : channelJobs) {
+                        channel.removeMessage(job.message.getMessageId());
+                    }
+                }
+                this.server.getServerFrame().getTextArea().append("Failed to log " + channelJobs.size()
+                        + " messages to channel " + channel.getChannelId() + ". Messages dropped.\n");
+                for (Job job : channelJobs) {
+                    this.turnDown(job);
+                }
+            }
+        }
+        return logged;
+    }
+
+    /**
+     * Sends each channel's messages to every online user in the channel, in one
+     * pass over its members, through the {@link ChannelSequencer}.
+     *
+     * @param batch The messages to send.
+     * @return the sent messages.
+     */
+    private ArrayList<Job> fanOut(ArrayList<Job> batch) {
+        for (ArrayList<Job> channelJobs : MessagePipeline.groupByChannel(batch).values()) {
+            Channel channel = channelJobs.get(0).channel;
+            ArrayList<SerializableEvent> events = new ArrayList<>(channelJobs.size());
+            for (Job job : channelJobs) {
+                events.add(new MessageSentEvent(job.source, job.message, job.nonce));
+            }
+            try {
+                this.server.getChannelSequencer().broadcast(channel, events);
+                this.server.getServerFrame().getTextArea().append(events.size() + " new messages sent to channel "
+                        + channel.getChannelId() + " and events sent to users\n");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Groups a batch of messages by channel, keeping their order.
+     *
+     * @param batch The messages to group.
+     * @return the messages of each channel, by channel id.
+     */
+    private static LinkedHashMap<Integer, ArrayList<Job>> groupByChannel(ArrayList<Job> batch) {
+        LinkedHashMap<Integer, ArrayList<Job>> groups = new LinkedHashMap<>();
+        for (Job job : batch) {
+            ArrayList<Job> group = groups.get(job.message.getChannelId());
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(job.message.getChannelId(), group);
+            }
+            group.add(job);
+        }
+        return groups;
+    }
+
+    /**
+     * A message on its way through the pipeline.
+     */
+    private static class Job {
+        /** The username of the user that sent the message. */
+        private String source;
+        /** The message, as sent, and once sequenced, as stored. */
+        private Message message;
+        /** The sending client's nonce for the message, or 0. */
+        private long nonce;
+        /** The channel the message was sent to, once ingested. */
+        private Channel channel;
+        /** The message's text, once converted. */
+        private String text;
+        /** When the message was put on the queue of the stage it is in, in nanoseconds. */
+        private long queuedAt;
+
+        /**
+         * Constructs a new {@code Job}.
+         *
+         * @param source  The username of the user that sent the message.
+         * @param message The message, as sent.
+         * @param nonce   The sending client's nonce for the message, or 0.
+         */
+        Job(String source, Message message, long nonce) {
+            this.source = source;
+            this.message = message;
+            this.nonce = nonce;
+        }
+    }
+
+    /**
+     * One stage of the pipeline, with a queue and thread per slice of the
+     * channels.
+     */
+    private abstract class Stage {
+        /** The name of this stage. */
+        private String name;
+        /** One queue per thread. */
+        private LinkedBlockingQueue<Job>[] queues;
+        /** The stage messages go to next, or {@code null} for the last stage. */
+        private Stage next;
+
+        /** The number of messages this stage has handled. */
+        private AtomicLong numProcessed;
+        /** The number of batches this stage has handled. */
+        private AtomicLong numBatches;
+        /** The total time messages waited on this stage's queues, in nanoseconds. */
+        private AtomicLong totalWaitNanos;
+        /** The total time this stage spent handling batches, in nanoseconds. */
+        private AtomicLong totalBusyNanos;
+
+        /**
+         * Constructs a new {@code Stage}.
+         *
+         * @param name       The name of this stage.
+         * @param numThreads The number of threads this stage runs.
+         * @param next       The stage messages go to next, or {@code null}.
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Stage(String name, int numThreads, Stage next) {
+            this.name = name;
+            this.next = next;
+            this.queues = new LinkedBlockingQueue[numThreads];
+            for (int i = 0; i < numThreads; i++) {
+                this.queues[i] = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+            }
+            this.numProcessed = new AtomicLong();
+            this.numBatches = new AtomicLong();
+            this.totalWaitNanos = new AtomicLong();
+            this.totalBusyNanos = new AtomicLong();
+        }
+
+        /**
+         * Handles a batch of messages.
+         *
+         * @param batch The messages, oldest first.
+         * @return the messages to pass on to the next stage, in the same order.
+         */
+        abstract ArrayList<Job> process(ArrayList<Job> batch);
+
+        /**
+         * Queues a message on the thread that owns its channel, waiting for room if
+         * that thread has fallen behind.
+         *
+         * @param job The message.
+         */
+        void submit(Job job) {
+            job.queuedAt = System.nanoTime();
+            int channelId = job.message.getChannelId();
+            LinkedBlockingQueue<Job> queue = this.queues[(channelId & Integer.MAX_VALUE) % this.queues.length];
+            while (true) {
+                try {
+                    queue.put(job);
+                    return;
+                } catch (InterruptedException e) {
+                    continue; // the message must not be lost
+                }
+            }
+        }
+
+        /**
+         * Starts one thread per queue.
+         */
+        void start() {
+            for (int i = 0; i < this.queues.length; i++) {
+                final LinkedBlockingQueue<Job> queue = this.queues[i];
+                WorkerThreads.start("pipeline-" + this.name + "-" + i, new Runnable() {
+                    public void run() {
+                        while (true) {
+                            ArrayList<Job> batch = new ArrayList<>();
+                            try {
+                                batch.add(queue.take());
+                            } catch (InterruptedException e) {
+                                continue; // keep reading from the queue
+                            }
+                            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                            runBatch(batch);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * Handles a batch, records its statistics, and passes it on.
+         *
+         * @param batch The messages, oldest first.
+         */
+        void runBatch(ArrayList<Job> batch) {
+            long start = System.nanoTime();
+            long waitNanos = 0;
+            for (Job job : batch) {
+                waitNanos += start - job.queuedAt;
+            }
+
+            ArrayList<Job> passed;
+            try {
+                passed = this.process(batch);
+            } catch (RuntimeException e) {
+                // one bad batch should not take the rest of the stage down with it
+                e.printStackTrace();
+                server.getServerFrame().getTextArea()
+                        .append("Pipeline stage " + this.name + " failed on " + batch.size() + " messages\n");
+                passed = new ArrayList<>();
+            }
+
+            this.numProcessed.addAndGet(batch.size());
+            this.numBatches.incrementAndGet();
+            this.totalWaitNanos.addAndGet(waitNanos);
+            this.totalBusyNanos.addAndGet(System.nanoTime() - start);
+
+            if (this.next != null) {
+                for (Job job : passed) {
+                    this.next.submit(job);
+                }
+            }
+        }
+
+        /**
+         * Summarizes this stage's statistics.
+         *
+         * @return a one-line summary.
+         */
+        String describe() {
+            long processed = this.numProcessed.get();
+            long batches = this.numBatches.get();
+            int queued = 0;
+            for (LinkedBlockingQueue<Job> queue : this.queues) {
+                queued += queue.size();
+            }
+            if (processed == 0) {
+                return String.format("%s: nothing handled yet, %d queued", this.name, queued);
+            }
+            return String.format("%s: %d messages in %d batches (%.1f per batch), waited %.3f ms and took %.3f ms "
+                    + "per message, %d queued", this.name, processed, batches, (double) processed / batches,
+                    this.totalWaitNanos.get() / 1e6 / processed, this.totalBusyNanos.get() / 1e6 / processed, queued);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package duberchat.server;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import duberchat.net.FrameCodec;
+import duberchat.server.ChatServer.ConnectionHandler;
+
+/**
+ * The {@code NioTransport} serves every client connection of a server from a
+ * small, fixed number of I/O threads, instead of giving each client a thread of
+ * its own.
+ * <p>
+ * Each I/O thread owns a {@code Selector}, and each new connection is assigned
+ * to one of them, round robin. An I/O thread reads whatever bytes have arrived,
+ * cuts them into whole frames, and hands the events inside to the connection.
+ * Frames sent to a client wait in its {@link OutboundQueue} and are written by
+ * the I/O thread once the socket can take them, so a slow client never blocks
+ * the thread that sent it an event.
+ * <p>
+ * When a client has more events waiting than the server's {@link EventIngress}
+ * allows, its I/O thread stops reading from it, keeping any frames it has
+ * already read, until the client's events have been handled.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class NioTransport {
+    /** The size a connection's read buffer starts at, in bytes. */
+    public static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
+    /** The server this transport belongs to. */
+    private ChatServer server;
+    /** The I/O loops, one per I/O thread. */
+    private IoLoop[] ioLoops;
+    /** The index of the I/O loop the next connection is assigned to. */
+    private int nextLoop;
+
+    /**
+     * Constructs a new {@code NioTransport}.
+     *
+     * @param server       The server this transport belongs to.
+     * @param numIoThreads The number of I/O threads to serve clients with.
+     * @throws IOException if a selector could not be opened.
+     */
+    public NioTransport(ChatServer server, int numIoThreads) throws IOException {
+        this.server = server;
+        this.ioLoops = new IoLoop[Math.max(numIoThreads, 1)];
+        for (int i = 0; i < this.ioLoops.length; i++) {
+            this.ioLoops[i] = new IoLoop(Selector.open());
+        }
+    }
+
+    /**
+     * Starts every I/O thread.
+     */
+    public void start() {
+        for (int i = 0; i < this.ioLoops.length; i++) {
+            new Thread(this.ioLoops[i], "nio-io-" + i).start();
+        }
+    }
+
+    /**
+     * Assigns a newly accepted, non-blocking connection to one of the I/O threads.
+     *
+     * @param connection The connection to serve.
+     */
+    public void register(ConnectionHandler connection) {
+        IoLoop loop = this.ioLoops[this.nextLoop];
+        this.nextLoop = (this.nextLoop + 1) % this.ioLoops.length;
+        loop.pendingRegistrations.add(connection);
+        loop.selector.wakeup();
+    }
+
+    /**
+     * Asks the I/O thread serving a connection to write its pending frames.
+     *
+     * @param connection The connection with frames to write.
+     */
+    void requestWrite(ConnectionHandler connection) {
+        SelectionKey key = connection.getSelectionKey();
+        if (key == null || !key.isValid()) {
+            return; // frames are picked up once the connection is registered
+        }
+        key.interestOpsOr(SelectionKey.OP_WRITE);
+        key.selector().wakeup();
+    }
+
+    /**
+     * Asks the I/O thread serving a paused connection to process the frames it
+     * has already read and start reading from it again.
+     *
+     * @param connection The connection to resume.
+     */
+    void resumeReading(ConnectionHandler connection) {
+        SelectionKey key = connection.getSelectionKey();
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        for (IoLoop loop : this.ioLoops) {
+            if (loop.selector == key.selector()) {
+                loop.pendingResumes.add(connection);
+                loop.selector.wakeup();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes a connection's channel. Used by {@link ConnectionHandler}, which
+     * decides what becomes of the frames not yet written and of the connection's
+     * user.
+     *
+     * @param connection The connection to close.
+     */
+    void close(ConnectionHandler connection) {
+        SelectionKey key = connection.getSelectionKey();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            connection.getSocketChannel().close();
+        } catch (IOException e) {
+            this.server.getServerFrame().getTextArea().append("Failed to close the socket\n");
+        }
+    }
+
+    /**
+     * One I/O thread and the selector it serves its connections with.
+     */
+    private class IoLoop implements Runnable {
+        /** The selector for every connection served by this loop. */
+        private Selector selector;
+        /** Connections waiting to be registered with the selector. */
+        private ConcurrentLinkedQueue<ConnectionHandler> pendingRegistrations;
+        /** Paused connections waiting to be read from again. */
+        private ConcurrentLinkedQueue<ConnectionHandler> pendingResumes;
+
+        /**
+         * Constructs a new {@code IoLoop}.
+         *
+         * @param selector The selector this loop serves its connections with.
+         */
+        IoLoop(Selector selector) {
+            this.selector = selector;
+            this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+            this.pendingResumes = new ConcurrentLinkedQueue<>();
+        }
+
+        public void run() {
+            while (true) {
+                try {
+                    this.selector.select();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    continue;
+                }
+                this.registerPending();
+                this.resumePending();
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ConnectionHandler connection = (ConnectionHandler) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            this.read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            this.write(connection);
+                        }
+                    } catch (IOException e) {
+                        server.getServerFrame().getTextArea().append("Failed to receive msg from the client\n");
+                        connection.connectionLost();
+                    } catch (RuntimeException e) {
+                        this.failed(connection, e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Drops a connection whose events could not be handled, so that one bad
+         * client does not take the rest of this loop's connections down with it.
+         *
+         * @param connection The connection.
+         * @param error      What went wrong.
+         */
+        private void failed(ConnectionHandler connection, RuntimeException error) {
+            error.printStackTrace();
+            server.getServerFrame().getTextArea().append("Failed to handle an event from the client: " + error + "\n");
+            connection.connectionLost();
+        }
+
+        /**
+         * Registers every connection that has been assigned to this loop since it
+         * last woke up.
+         */
+        private void registerPending() {
+            ConnectionHandler connection;
+            while ((connection = this.pendingRegistrations.poll()) != null) {
+                try {
+                    int ops = SelectionKey.OP_READ;
+                    if (!connection.getOutboundQueue().isEmpty()) {
+                        ops |= SelectionKey.OP_WRITE;
+                    }
+                    connection.setSelectionKey(connection.getSocketChannel().register(this.selector, ops, connection));
+                } catch (ClosedChannelException e) {
+                    server.getServerFrame().getTextArea().append("Client disconnected before registering\n");
+                }
+            }
+        }
+
+        /**
+         * Processes the frames that resumed connections read before they were
+         * paused, and starts reading from them again.
+         */
+        private void resumePending() {
+            ConnectionHandler connection;
+            while ((connection = this.pendingResumes.poll()) != null) {
+                SelectionKey key = connection.getSelectionKey();
+                if (!key.isValid()) {
+                    continue; // closed while paused
+                }
+                try {
+                    this.processFrames(connection);
+                } catch (IOException e) {
+                    server.getServerFrame().getTextArea().append("Failed to receive msg from the client\n");
+                    connection.connectionLost();
+                    continue;
+                } catch (RuntimeException e) {
+                    this.failed(connection, e);
+                    continue;
+                }
+                if (!connection.isReadPaused()) {
+                    key.interestOpsOr(SelectionKey.OP_READ);
+                }
+            }
+        }
+
+        /**
+         * Reads whatever has arrived on a connection, and processes every whole
+         * frame received so far.
+         *
+         * @param connection The connection to read from.
+         * @throws IOException if the connection failed or was closed.
+         */
+        private void read(ConnectionHandler connection) throws IOException {
+            if (connection.isReadPaused()) {
+                return; // selected before it was paused
+            }
+            ByteBuffer buffer = connection.getReadBuffer();
+            if (connection.getSocketChannel().read(buffer) < 0) {
+                throw new IOException("End of stream");
+            }
+            this.processFrames(connection);
+        }
+
+        /**
+         * Processes every whole frame in a connection's read buffer, unless the
+         * connection runs out of room for events first, in which case it is paused
+         * and the rest of its frames are kept for when it resumes.
+         *
+         * @param connection The connection whose frames to process.
+         * @throws IOException if a frame is not valid.
+         */
+        private void processFrames(ConnectionHandler connection) throws IOException {
+            EventIngress ingress = server.getEventDispatcher().getIngress();
+            ByteBuffer buffer = connection.getReadBuffer();
+            buffer.flip();
+            while (buffer.remaining() >= FrameCodec.HEADER_SIZE) {
+                if (!ingress.hasRoom(connection) && ingress.pause(connection)) {
+                    SelectionKey key = connection.getSelectionKey();
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    break;
+                }
+
+                int length = buffer.getInt(buffer.position());
+                FrameCodec.checkLength(length);
+                if (buffer.remaining() < FrameCodec.HEADER_SIZE + length) {
+                    break; // the rest of this frame has not arrived yet
+                }
+                buffer.position(buffer.position() + FrameCodec.HEADER_SIZE);
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+
+                try {
+                    connection.receiveFrame(payload);
+                } catch (ClassNotFoundException e) {
+                    server.getServerFrame().getTextArea().append("Class not found :(\n");
+                    e.printStackTrace();
+                }
+            }
+
+            // Keep any partial frame, growing the buffer if the frame would not fit
+            if (buffer.remaining() >= FrameCodec.HEADER_SIZE) {
+                int needed = FrameCodec.HEADER_SIZE + buffer.getInt(buffer.position());
+                if (needed > buffer.capacity()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(needed);
+                    bigger.put(buffer);
+                    connection.setReadBuffer(bigger);
+                    return;
+                }
+            }
+            buffer.compact();
+        }
+
+        /**
+         * Writes as many pending frames to a connection as its socket will take.
+         *
+         * @param connection The connection to write to.
+         * @throws IOException if the connection failed.
+         */
+        private void write(ConnectionHandler connection) throws IOException {
+            OutboundQueue outboundQueue = connection.getOutboundQueue();
+            while (true) {
+                ByteBuffer[] frame = connection.getCurrentWrite();
+                if (frame == null) {
+                    OutboundFrame next = outboundQueue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    // the payload may be shared with other clients, so wrap it rather than copy it
+                    byte[] payload = next.getPayload();
+                    ByteBuffer header = ByteBuffer.allocate(FrameCodec.HEADER_SIZE);
+                    header.putInt(payload.length).flip();
+                    frame = new ByteBuffer[] { header, ByteBuffer.wrap(payload) };
+                    connection.setCurrentWrite(frame);
+                }
+
+                connection.getSocketChannel().write(frame);
+                if (frame[1].hasRemaining()) {
+                    return; // the socket is full; keep waiting for it to drain
+                }
+                connection.setCurrentWrite(null);
+            }
+
+            // Everything is written. Stop waiting for writes, unless a frame was
+            // queued while we were doing so, and keep reading unless paused.
+            SelectionKey key = connection.getSelectionKey();
+            key.interestOps(connection.isReadPaused() ? 0 : SelectionKey.OP_READ);
+            if (!outboundQueue.isEmpty()) {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+            }
+        }
+    }
+}
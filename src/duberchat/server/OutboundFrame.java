@@ -0,0 +1,97 @@
+package duberchat.server;
+
+import java.io.IOException;
+
+import duberchat.events.ClientPfpUpdateEvent;
+import duberchat.events.ClientStatusUpdateEvent;
+import duberchat.events.SerializableEvent;
+import duberchat.net.WireCodec;
+
+/**
+ * An {@code OutboundFrame} is an encoded event waiting in a client's
+ * {@link OutboundQueue outbound queue}.
+ * <p>
+ * Events are encoded as soon as they are sent, on the thread that sent them,
+ * so the frame never depends on server state that may change before it is
+ * written. The frame also remembers what kind of event it holds, so that the
+ * outbound queue can decide which frames may be dropped or replaced when a
+ * client falls behind.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class OutboundFrame {
+    /** The encoded event. */
+    private byte[] payload;
+    /** Frames with the same key replace each other, or {@code null} if this one can't be replaced. */
+    private String coalesceKey;
+    /** Whether this frame is a presence update, which may be dropped under load. */
+    private boolean presence;
+
+    /**
+     * Constructs a new {@code OutboundFrame}.
+     *
+     * @param payload     The encoded event.
+     * @param coalesceKey The key that newer frames replacing this one share, or
+     *                    {@code null} if this frame can never be replaced.
+     * @param presence    Whether this frame is a presence update.
+     */
+    public OutboundFrame(byte[] payload, String coalesceKey, boolean presence) {
+        this.payload = payload;
+        this.coalesceKey = coalesceKey;
+        this.presence = presence;
+    }
+
+    /**
+     * Encodes an event into a new frame.
+     * <p>
+     * Status updates are presence updates, and a newer one for the same user
+     * replaces an older one. A newer profile picture for the same user also
+     * replaces an older one, but is never dropped outright.
+     *
+     * @param event The event to encode.
+     * @param codec The codec the recipient speaks.
+     * @return a new frame holding the encoded event.
+     * @throws IOException if the event could not be encoded.
+     */
+    public static OutboundFrame of(SerializableEvent event, WireCodec codec) throws IOException {
+        byte[] payload = codec.encode(event);
+        if (event instanceof ClientStatusUpdateEvent) {
+            return new OutboundFrame(payload, "status:" + event.getSource(), true);
+        }
+        if (event instanceof ClientPfpUpdateEvent) {
+            return new OutboundFrame(payload, "pfp:" + event.getSource(), false);
+        }
+        return new OutboundFrame(payload, null, false);
+    }
+
+    /**
+     * Retrieves the encoded event.
+     *
+     * @return the encoded event.
+     */
+    public byte[] getPayload() {
+        return this.payload;
+    }
+
+    /**
+     * Retrieves the key that newer frames replacing this one share.
+     *
+     * @return the coalesce key, or {@code null} if this frame can't be replaced.
+     */
+    public String getCoalesceKey() {
+        return this.coalesceKey;
+    }
+
+    /**
+     * Checks whether this frame is a presence update, which may be dropped.
+     *
+     * @return true if this frame is a presence update.
+     */
+    public boolean isPresence() {
+        return this.presence;
+    }
+}
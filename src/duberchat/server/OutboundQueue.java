@@ -0,0 +1,268 @@
+package duberchat.server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * An {@code OutboundQueue} is the bounded queue of frames waiting to be written
+ * to one client.
+ * <p>
+ * Event handlers only ever add to a client's queue; a writer dedicated to the
+ * client (or, in non-blocking mode, an I/O thread) takes frames off and writes
+ * them. A client that stops reading can therefore only fill up its own queue,
+ * never hold up the handler or anyone else's delivery.
+ * <p>
+ * What happens when a queue is full depends on its back-pressure policy:
+ * <ul>
+ * <li>{@link #DROP_OLDEST_PRESENCE}: the oldest queued presence update is
+ * dropped to make room.</li>
+ * <li>{@link #DISCONNECT}: the client is too slow and is disconnected.</li>
+ * <li>{@link #COALESCE}: a newer update for the same thing (eg. one user's
+ * status) always replaces a queued older one, in place, so that a burst of
+ * updates only takes one slot.</li>
+ * </ul>
+ * If no room can be made under the policy, the client is disconnected.
+ * <p>
+ * When a client resumes its session over a new connection, the old queue's
+ * frames are {@link #transferTo(OutboundQueue) moved} to the new connection's
+ * queue, and anything offered to the old queue from then on goes there too.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class OutboundQueue {
+    /** An int constant for the policy that drops the oldest presence update when full. */
+    public static final int DROP_OLDEST_PRESENCE = 0;
+    /** An int constant for the policy that disconnects the client when full. */
+    public static final int DISCONNECT = 1;
+    /** An int constant for the policy that replaces older updates with newer ones. */
+    public static final int COALESCE = 2;
+
+    /** The default number of frames a queue can hold. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** The frames waiting to be written, oldest first. */
+    private LinkedList<OutboundFrame> frames;
+    /** How many queued frames have each coalesce key. */
+    private HashMap<String, Integer> queuedKeys;
+    /** The most frames this queue can hold. */
+    private int capacity;
+    /** The back-pressure policy, as an int constant. */
+    private int policy;
+    /** Whether this queue has been closed. */
+    private boolean closed;
+    /** The queue frames go to once they were transferred, or {@code null}. */
+    private OutboundQueue successor;
+
+    /** The total number of frames dropped from this queue. */
+    private long dropped;
+    /** The total number of frames replaced by a newer frame. */
+    private long coalesced;
+
+    /**
+     * Constructs a new {@code OutboundQueue}.
+     *
+     * @param capacity The most frames this queue can hold.
+     * @param policy   The back-pressure policy, as an int constant.
+     */
+    public OutboundQueue(int capacity, int policy) {
+        this.frames = new LinkedList<>();
+        this.queuedKeys = new HashMap<>();
+        this.capacity = capacity;
+        this.policy = policy;
+        this.closed = false;
+    }
+
+    /**
+     * Adds a frame to the end of this queue, making room for it according to
+     * this queue's policy if the queue is full.
+     *
+     * @param frame The frame to add.
+     * @return true if the frame was queued (or merged into a queued frame), false
+     *         if the queue is full and its client should be disconnected.
+     */
+    public synchronized boolean offer(OutboundFrame frame) {
+        if (this.closed) {
+            if (this.successor != null) {
+                return this.successor.offer(frame);
+            }
+            return true; // the client is gone; nothing left to do
+        }
+
+        if (this.policy == COALESCE && this.replaceQueued(frame)) {
+            this.coalesced++;
+            return true;
+        }
+
+        if (this.frames.size() >= this.capacity) {
+            if (this.policy == DISCONNECT || !this.dropOldestPresence()) {
+                this.dropped++;
+                return false;
+            }
+        }
+
+        this.frames.add(frame);
+        this.countKey(frame.getCoalesceKey(), 1);
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * Removes and returns the oldest frame, waiting for one if needed.
+     *
+     * @return the oldest frame, or {@code null} if this queue was closed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized OutboundFrame take() throws InterruptedException {
+        while (this.frames.isEmpty() && !this.closed) {
+            this.wait();
+        }
+        return this.poll();
+    }
+
+    /**
+     * Removes and returns the oldest frame, if there is one.
+     *
+     * @return the oldest frame, or {@code null} if this queue is empty or closed.
+     */
+    public synchronized OutboundFrame poll() {
+        if (this.closed || this.frames.isEmpty()) {
+            return null;
+        }
+        OutboundFrame frame = this.frames.poll();
+        this.countKey(frame.getCoalesceKey(), -1);
+        return frame;
+    }
+
+    /**
+     * Closes this queue, dropping any frames still in it and waking up any writer
+     * waiting on it.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.frames.clear();
+        this.queuedKeys.clear();
+        this.notifyAll();
+    }
+
+    /**
+     * Moves every frame in this queue, in order, to the end of another queue,
+     * and closes this queue. Frames offered to this queue afterwards are offered
+     * to the other queue instead.
+     *
+     * @param successor The queue to move the frames to.
+     * @return int, the number of frames moved.
+     */
+    public synchronized int transferTo(OutboundQueue successor) {
+        int numMoved = 0;
+        for (OutboundFrame frame : this.frames) {
+            if (successor.offer(frame)) {
+                numMoved++;
+            }
+        }
+        this.close();
+        this.successor = successor;
+        return numMoved;
+    }
+
+    /**
+     * Retrieves the number of frames waiting in this queue.
+     *
+     * @return int, the queue depth.
+     */
+    public synchronized int size() {
+        return this.frames.size();
+    }
+
+    /**
+     * Checks whether this queue has no frames waiting.
+     *
+     * @return true if this queue is empty.
+     */
+    public synchronized boolean isEmpty() {
+        return this.frames.isEmpty();
+    }
+
+    /**
+     * Retrieves the total number of frames dropped from this queue, including
+     * the frame that overflowed it, if any.
+     *
+     * @return long, the number of dropped frames.
+     */
+    public synchronized long getDroppedCount() {
+        return this.dropped;
+    }
+
+    /**
+     * Retrieves the total number of frames replaced by a newer frame.
+     *
+     * @return long, the number of coalesced frames.
+     */
+    public synchronized long getCoalescedCount() {
+        return this.coalesced;
+    }
+
+    /**
+     * Replaces the queued frame with the same coalesce key as a new frame, if
+     * there is one.
+     *
+     * @param frame The new frame.
+     * @return true if a queued frame was replaced.
+     */
+    private boolean replaceQueued(OutboundFrame frame) {
+        String key = frame.getCoalesceKey();
+        if (key == null || !this.queuedKeys.containsKey(key)) {
+            return false;
+        }
+        ListIterator<OutboundFrame> itr = this.frames.listIterator();
+        while (itr.hasNext()) {
+            if (key.equals(itr.next().getCoalesceKey())) {
+                itr.set(frame);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the oldest queued presence update, if there is one.
+     *
+     * @return true if a frame was dropped.
+     */
+    private boolean dropOldestPresence() {
+        Iterator<OutboundFrame> itr = this.frames.iterator();
+        while (itr.hasNext()) {
+            OutboundFrame queued = itr.next();
+            if (queued.isPresence()) {
+                itr.remove();
+                this.countKey(queued.getCoalesceKey(), -1);
+                this.dropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adjusts the number of queued frames that have a coalesce key.
+     *
+     * @param key    The coalesce key, which may be {@code null}.
+     * @param change The amount to adjust the count by.
+     */
+    private void countKey(String key, int change) {
+        if (key == null) {
+            return;
+        }
+        int count = this.queuedKeys.getOrDefault(key, 0) + change;
+        if (count <= 0) {
+            this.queuedKeys.remove(key);
+        } else {
+            this.queuedKeys.put(key, count);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package duberchat.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import duberchat.chatutil.WorkerThreads;
+import duberchat.events.FileWriteEvent;
+
+/**
+ * The {@code PersistenceWorker} writes the users and channels queued on the
+ * server's file write queue to disk.
+ * <p>
+ * Handlers queue a write every time they change something, so a busy channel
+ * or a user in many channels can have the same file queued many times over.
+ * Since every write stores the whole object, only the newest one for each file
+ * matters. The worker therefore gathers queued writes into a batch, for up to
+ * {@link #FLUSH_INTERVAL_MS} after the first one arrives or until
+ * {@link #MAX_BATCH_SIZE} different files are waiting, and writes each file in
+ * the batch once, with its newest contents. Writes that were replaced this way
+ * are counted as {@link #getSavedWriteCount() saved}.
+ * <p>
+ * Each file is written beside its destination and moved into place, so a crash
+ * never leaves half a file. A queued write with nothing to write deletes its
+ * file instead.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class PersistenceWorker {
+    /** The longest a queued write waits for others to batch with, in milliseconds. */
+    public static final long FLUSH_INTERVAL_MS = 50;
+    /** The most different files written in one batch. */
+    public static final int MAX_BATCH_SIZE = 256;
+    /** How many times serializing an object is retried if it changes underneath us. */
+    private static final int MAX_SERIALIZE_ATTEMPTS = 3;
+
+    /** The server this worker belongs to. */
+    private ChatServer server;
+    /** The queue of writes to perform. */
+    private LinkedBlockingQueue<FileWriteEvent> queue;
+
+    /** The total number of files written. */
+    private AtomicLong numWrites;
+    /** The total number of queued writes skipped because a newer one replaced them. */
+    private AtomicLong numSavedWrites;
+
+    /**
+     * Constructs a new {@code PersistenceWorker}.
+     *
+     * @param server The server this worker belongs to.
+     * @param queue  The queue of writes to perform.
+     */
+    public PersistenceWorker(ChatServer server, LinkedBlockingQueue<FileWriteEvent> queue) {
+        this.server = server;
+        this.queue = queue;
+        this.numWrites = new AtomicLong();
+        this.numSavedWrites = new AtomicLong();
+    }
+
+    /**
+     * Starts the thread that performs queued writes.
+     */
+    public void start() {
+        WorkerThreads.start("file-writer", new Runnable() {
+            public void run() {
+                while (true) {
+                    try {
+                        writeBatch(collectBatch());
+                    } catch (InterruptedException e) {
+                        continue; // keep reading from the queue
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Retrieves the total number of files written.
+     *
+     * @return long, the number of files written.
+     */
+    public long getWriteCount() {
+        return this.numWrites.get();
+    }
+
+    /**
+     * Retrieves the total number of queued writes that were skipped because a
+     * newer write of the same file replaced them.
+     *
+     * @return long, the number of writes saved by coalescing.
+     */
+    public long getSavedWriteCount() {
+        return this.numSavedWrites.get();
+    }
+
+    /**
+     * Waits for a write to be queued, then gathers writes into a batch until the
+     * flush interval passes or the batch is full.
+     * <p>
+     * A write replaces any write of the same file already in the batch, and
+     * moves to the end of the batch, so files are still written in the order
+     * they were last queued. The replaced write's completion action is kept, to
+     * run after the newer write.
+     *
+     * @return the newest queued write of each file, in the order they were queued.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private LinkedHashMap<String, PendingWrite> collectBatch() throws InterruptedException {
+        LinkedHashMap<String, PendingWrite> batch = new LinkedHashMap<>();
+        FileWriteEvent next = this.queue.take();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+
+        while (next != null) {
+            PendingWrite replaced = batch.remove(next.getFilePath());
+            PendingWrite pending = new PendingWrite(next);
+            if (replaced != null) {
+                pending.onWritten.addAll(0, replaced.onWritten);
+                this.numSavedWrites.incrementAndGet();
+            }
+            batch.put(next.getFilePath(), pending);
+
+            if (batch.size() >= MAX_BATCH_SIZE) {
+                break;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                next = this.queue.poll();
+            } else {
+                next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Writes every file in a batch, then runs their completion actions.
+     * <p>
+     * A write or completion action that fails is logged and skipped, so that one
+     * bad file does not stop every later file from being written.
+     *
+     * @param batch The batch to write.
+     */
+    private void writeBatch(LinkedHashMap<String, PendingWrite> batch) {
+        for (PendingWrite pending : batch.values()) {
+            try {
+                this.write(pending.event);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                this.server.getServerFrame().getTextArea().append("Failed to write " + pending.event.getFilePath()
+                        + "\n");
+                continue;
+            }
+            for (Runnable action : pending.onWritten) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    this.server.getServerFrame().getTextArea().append("Failed to finish writing "
+                            + pending.event.getFilePath() + "\n");
+                }
+            }
+        }
+        this.numWrites.addAndGet(batch.size());
+        this.server.getServerFrame().getTextArea().append("Wrote " + batch.size() + " files ("
+                + this.numSavedWrites.get() + " writes saved by coalescing so far)\n");
+    }
+
+    /**
+     * Performs a single write.
+     *
+     * @param event The write to perform.
+     * @throws IOException if the file could not be written.
+     */
+    private void write(FileWriteEvent event) throws IOException {
+        File file = new File(event.getFilePath());
+        if (event.getObjectToWrite() == null) {
+            file.delete();
+            return;
+        }
+
+        byte[] bytes = PersistenceWorker.serialize(event.getObjectToWrite());
+        File tempFile = new File(event.getFilePath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tempFile);
+        fileOut.write(bytes);
+        fileOut.close();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Serializes an object while holding its lock, so that handlers, which
+     * change users and channels under their locks, can't change it halfway
+     * through. A channel's members are locked separately, so if one of them
+     * changes mid-way the object is simply serialized again.
+     *
+     * @param toWrite The object to serialize.
+     * @return the serialized object.
+     * @throws IOException if the object could not be serialized.
+     */
+    private static byte[] serialize(Object toWrite) throws IOException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bufferStream);
+                synchronized (toWrite) {
+                    out.writeObject(toWrite);
+                }
+                out.close();
+                return bufferStream.toByteArray();
+            } catch (ConcurrentModificationException e) {
+                if (attempt >= MAX_SERIALIZE_ATTEMPTS) {
+                    throw new IOException("Object kept changing while being written", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A write in a batch, along with the completion actions of every write it
+     * replaced.
+     */
+    private static class PendingWrite {
+        /** The newest write of the file. */
+        private FileWriteEvent event;
+        /** The actions to run once the file is written. */
+        private ArrayList<Runnable> onWritten;
+
+        /**
+         * Constructs a new {@code PendingWrite}.
+         *
+         * @param event The newest write of the file.
+         */
+        PendingWrite(FileWriteEvent event) {
+            this.event = event;
+            this.onWritten = new ArrayList<>();
+            if (event.getOnWritten() != null) {
+                this.onWritten.add(event.getOnWritten());
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package duberchat.server;
+
+import java.awt.image.BufferedImage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.imageio.ImageIO;
+
+import duberchat.chatutil.Thumbnails;
+import duberchat.events.FileWriteEvent;
+
+/**
+ * The {@code PfpStore} keeps every profile picture the server knows of, each
+ * stored once under the SHA-256 hash of its encoded bytes.
+ * <p>
+ * Users only carry the hash of their picture, so serializing a user, whether to
+ * send it or to save it, never has to encode an image. A picture is encoded once,
+ * when it is uploaded, and written to {@code <directory>/<hash>} through the
+ * server's image write queue. Any number of users can share a picture, such as
+ * the default one, and since a hash always names the same bytes, clients can
+ * cache pictures by hash forever.
+ * <p>
+ * Each picture is also rendered once at every {@link Thumbnails#SIZES standard
+ * size} and stored beside it as {@code <hash>-<size>}, so clients can fetch a
+ * thumbnail of a few kilobytes instead of the full picture, and never scale it
+ * themselves. Thumbnails of pictures stored before thumbnails existed are
+ * rendered the first time they are asked for.
+ * <p>
+ * Pictures are kept in memory once they have been stored or read.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class PfpStore {
+    /** The format that pictures without one are stored in. */
+    public static final String DEFAULT_FORMAT = "png";
+    /** The format that thumbnails are stored in. */
+    public static final String THUMBNAIL_FORMAT = "png";
+
+    /** The hex digits used to write hashes. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The directory the pictures are stored in. */
+    private String directory;
+    /** The queue to write pictures with. */
+    private LinkedBlockingQueue<FileWriteEvent> imageWriteQueue;
+    /** The encoded pictures and thumbnails that have been stored or read, by file name. */
+    private ConcurrentHashMap<String, byte[]> pictures;
+    /** The hash of the default picture. */
+    private String defaultHash;
+
+    /**
+     * Constructs a new {@code PfpStore}.
+     *
+     * @param directory       The directory the pictures are stored in.
+     * @param imageWriteQueue The queue to write pictures with.
+     */
+    public PfpStore(String directory, LinkedBlockingQueue<FileWriteEvent> imageWriteQueue) {
+        this.directory = directory;
+        this.imageWriteQueue = imageWriteQueue;
+        this.pictures = new ConcurrentHashMap<>();
+        new File(directory).mkdirs();
+    }
+
+    /**
+     * Stores the default picture, which new users are given.
+     *
+     * @param defaultPfp The file holding the default picture.
+     * @throws IOException if the file could not be read.
+     */
+    public void loadDefault(File defaultPfp) throws IOException {
+        this.defaultHash = this.put(Files.readAllBytes(defaultPfp.toPath()));
+    }
+
+    /**
+     * Retrieves the hash of the default picture.
+     *
+     * @return String, the hash of the default picture.
+     */
+    public String getDefaultHash() {
+        return this.defaultHash;
+    }
+
+    /**
+     * Stores an encoded picture, unless it is already stored. Its thumbnails are
+     * rendered when they are first asked for.
+     *
+     * @param bytes The encoded picture.
+     * @return String, the hash the picture is stored under.
+     */
+    public String put(byte[] bytes) {
+        String hash = PfpStore.hash(bytes);
+        this.store(hash, bytes);
+        return hash;
+    }
+
+    /**
+     * Encodes and stores a picture along with its thumbnails, unless it is
+     * already stored.
+     *
+     * @param image  The picture.
+     * @param format The format to encode the picture in.
+     * @return String, the hash the picture is stored under.
+     * @throws IOException if the picture could not be encoded.
+     */
+    public String put(BufferedImage image, String format) throws IOException {
+        if (format == null) {
+            format = DEFAULT_FORMAT;
+        }
+        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, bufferStream)) {
+            throw new IOException("No writer for image format " + format);
+        }
+        String hash = this.put(bufferStream.toByteArray());
+        this.putThumbnails(hash, image);
+        return hash;
+    }
+
+    /**
+     * Renders and stores every standard size of a picture that is not stored yet.
+     *
+     * @param hash  The hash of the picture.
+     * @param image The picture.
+     * @throws IOException if a thumbnail could not be encoded.
+     */
+    private void putThumbnails(String hash, BufferedImage image) throws IOException {
+        for (int size : Thumbnails.SIZES) {
+            String name = PfpStore.findThumbnailName(hash, size);
+            if (!this.pictures.containsKey(name) && !this.findFile(name).exists()) {
+                this.store(name, PfpStore.renderThumbnail(image, size));
+            }
+        }
+    }
+
+    /**
+     * Keeps an encoded picture or thumbnail in memory, and writes it to disk if it
+     * is not there already.
+     *
+     * @param name  The name of the picture's file.
+     * @param bytes The encoded picture.
+     */
+    private void store(String name, byte[] bytes) {
+        if (this.pictures.putIfAbsent(name, bytes) == null && !this.findFile(name).exists()) {
+            this.imageWriteQueue.add(new FileWriteEvent(bytes, this.findFile(name).getPath()));
+        }
+    }
+
+    /**
+     * Retrieves an encoded picture.
+     *
+     * @param hash The hash of the picture.
+     * @return the encoded picture, or {@code null} if there is no picture with
+     *         that hash.
+     */
+    public byte[] get(String hash) {
+        return this.get(hash, 0);
+    }
+
+    /**
+     * Retrieves an encoded picture at one of the standard sizes, rendering it if
+     * it was never rendered.
+     *
+     * @param hash The hash of the picture.
+     * @param size The width and height of the picture, or {@code 0} for the full
+     *             picture.
+     * @return the encoded picture, or {@code null} if there is no picture with
+     *         that hash or the size is not a standard size.
+     */
+    public byte[] get(String hash, int size) {
+        if (!PfpStore.isHash(hash) || (size != 0 && !Thumbnails.isStandardSize(size))) {
+            return null; // never let a request name a file outside the store
+        }
+        String name = (size == 0) ? hash : PfpStore.findThumbnailName(hash, size);
+        byte[] bytes = this.read(name);
+        if (bytes != null || size == 0) {
+            return bytes;
+        }
+
+        byte[] full = this.read(hash);
+        if (full == null) {
+            return null;
+        }
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(full));
+            if (image == null) {
+                return null;
+            }
+            this.putThumbnails(hash, image);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return this.pictures.get(name);
+    }
+
+    /**
+     * Retrieves an encoded picture or thumbnail from memory, or from disk if it
+     * has not been read yet.
+     *
+     * @param name The name of the picture's file.
+     * @return the encoded picture, or {@code null} if it does not exist.
+     */
+    private byte[] read(String name) {
+        byte[] bytes = this.pictures.get(name);
+        if (bytes != null) {
+            return bytes;
+        }
+
+        File file = this.findFile(name);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        this.pictures.putIfAbsent(name, bytes);
+        return bytes;
+    }
+
+    /**
+     * Finds the file a picture or thumbnail is stored in.
+     *
+     * @param name The name of the picture's file.
+     * @return the file the picture is stored in.
+     */
+    private File findFile(String name) {
+        return new File(this.directory, name);
+    }
+
+    /**
+     * Finds the name of the file a thumbnail is stored in.
+     *
+     * @param hash The hash of the full picture.
+     * @param size The size of the thumbnail.
+     * @return the name of the thumbnail's file.
+     */
+    private static String findThumbnailName(String hash, int size) {
+        return hash + "-" + size;
+    }
+
+    /**
+     * Renders and encodes a thumbnail.
+     *
+     * @param image The full picture.
+     * @param size  The width and height of the thumbnail.
+     * @return the encoded thumbnail.
+     * @throws IOException if the thumbnail could not be encoded.
+     */
+    private static byte[] renderThumbnail(BufferedImage image, int size) throws IOException {
+        ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
+        ImageIO.write(Thumbnails.scale(image, size), THUMBNAIL_FORMAT, bufferStream);
+        return bufferStream.toByteArray();
+    }
+
+    /**
+     * Checks whether a string is a well formed hash.
+     *
+     * @param hash The string to check.
+     * @return true if the string is 64 lowercase hex digits.
+     */
+    private static boolean isHash(String hash) {
+        if (hash == null || hash.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes an encoded picture.
+     *
+     * @param bytes The encoded picture.
+     * @return String, the SHA-256 hash of the picture, in hex.
+     */
+    public static String hash(byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // every JVM must have it
+        }
+
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,168 @@
+package duberchat.server;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import duberchat.events.ChannelCreateEvent;
+import duberchat.events.ClientPfpUpdateEvent;
+import duberchat.events.MessageSentEvent;
+import duberchat.events.SerializableEvent;
+
+/**
+ * The {@code RateLimiter} limits how often each user can send events of the
+ * costly kinds, such as messages, profile picture uploads, and new channels.
+ * <p>
+ * Each kind of event has a token bucket per user: the bucket holds up to a
+ * burst of tokens, refills at a steady rate, and every event takes a token. An
+ * event that finds its bucket empty is rejected, along with how long until a
+ * token is back.
+ * <p>
+ * A bucket is kept as a single number: the time at which it would be full
+ * again, which moves forward by one refill interval per event. Checking and
+ * taking a token is one compare-and-set on that number, so the limiter never
+ * locks, and a user costs one small array of longs, with one slot per limited
+ * kind of event.
+ * <p>
+ * Before a client logs in, the source it puts on its events is whatever it
+ * likes, so its buckets are kept for its connection instead of a username, and
+ * are {@link #forget(Object) forgotten} once the connection closes.
+ * <p>
+ * Limits must be set before the server starts.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class RateLimiter {
+    /** The time that bucket times are measured from, so they are never negative. */
+    private static final long START_NANOS = System.nanoTime();
+
+    /** The slot of each limited kind of event in a user's buckets. */
+    private HashMap<Class<? extends SerializableEvent>, Integer> slots;
+    /** The time it takes to refill one token, in nanoseconds, by slot. */
+    private long[] refillNanos;
+    /** The time it takes to refill a whole burst, in nanoseconds, by slot. */
+    private long[] burstNanos;
+    /**
+     * Each sender's buckets, by username or, before login, by connection: the
+     * time each one is full again.
+     */
+    private ConcurrentHashMap<Object, AtomicLongArray> buckets;
+    /** The number of events rejected. */
+    private AtomicLong numRejected;
+
+    /**
+     * Constructs a new {@code RateLimiter} with the default limits.
+     */
+    public RateLimiter() {
+        this.slots = new HashMap<>();
+        this.refillNanos = new long[0];
+        this.burstNanos = new long[0];
+        this.buckets = new ConcurrentHashMap<>();
+        this.numRejected = new AtomicLong();
+
+        this.setLimit(MessageSentEvent.class, 10, 20);
+        this.setLimit(ClientPfpUpdateEvent.class, 0.1, 3);
+        this.setLimit(ChannelCreateEvent.class, 0.5, 5);
+    }
+
+    /**
+     * Sets the limit for a kind of event, replacing any limit it had.
+     *
+     * @param eventClass the kind of event.
+     * @param perSecond  the number of events a second each user can keep sending.
+     * @param burst      the number of events each user can send at once.
+     * @throws IllegalArgumentException if the rate or burst is not positive.
+     */
+    public void setLimit(Class<? extends SerializableEvent> eventClass, double perSecond, int burst) {
+        if (perSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate limits must be positive");
+        }
+        Integer slot = this.slots.get(eventClass);
+        if (slot == null) {
+            slot = this.slots.size();
+            this.slots.put(eventClass, slot);
+            long[] refillNanos = new long[slot + 1];
+            long[] burstNanos = new long[slot + 1];
+            System.arraycopy(this.refillNanos, 0, refillNanos, 0, slot);
+            System.arraycopy(this.burstNanos, 0, burstNanos, 0, slot);
+            this.refillNanos = refillNanos;
+            this.burstNanos = burstNanos;
+        }
+        this.refillNanos[slot] = (long) (1e9 / perSecond);
+        this.burstNanos[slot] = this.refillNanos[slot] * burst;
+    }
+
+    /**
+     * Takes a token for an event from a user's bucket, if the event's kind is
+     * limited.
+     *
+     * @param sender the username of the user sending the event, or the
+     *               connection it came on if nobody has logged in on it yet.
+     * @param event  the event.
+     * @return 0 if the event may go ahead, or else the time until it would be
+     *         allowed, in milliseconds.
+     */
+    public long tryAcquire(Object sender, SerializableEvent event) {
+        Integer slot = this.slots.get(event.getClass());
+        if (slot == null || sender == null) {
+            return 0;
+        }
+
+        AtomicLongArray userBuckets = this.buckets.get(sender);
+        if (userBuckets == null) {
+            AtomicLongArray newBuckets = new AtomicLongArray(this.refillNanos.length);
+            userBuckets = this.buckets.putIfAbsent(sender, newBuckets);
+            if (userBuckets == null) {
+                userBuckets = newBuckets;
+            }
+        }
+
+        long now = System.nanoTime() - START_NANOS;
+        while (true) {
+            long fullAt = userBuckets.get(slot);
+            long newFullAt = Math.max(fullAt, now) + this.refillNanos[slot];
+            long overBy = newFullAt - now - this.burstNanos[slot];
+            if (overBy > 0) {
+                this.numRejected.incrementAndGet();
+                return (overBy + 999999) / 1000000;
+            }
+            if (userBuckets.compareAndSet(slot, fullAt, newFullAt)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of events rejected for going over their limit.
+     *
+     * @return long, the number of rejected events.
+     */
+    public long getNumRejected() {
+        return this.numRejected.get();
+    }
+
+    /**
+     * Forgets a sender's buckets, once its connection has closed.
+     *
+     * @param sender the connection, as passed to
+     *               {@link #tryAcquire(Object, SerializableEvent)}.
+     */
+    public void forget(Object sender) {
+        this.buckets.remove(sender);
+    }
+
+    /**
+     * Retrieves the number of users (and connections not logged in) with
+     * buckets.
+     *
+     * @return int, the number of users.
+     */
+    public int getNumUsers() {
+        return this.buckets.size();
+    }
+}
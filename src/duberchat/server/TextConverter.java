@@ -0,0 +1,197 @@
+package duberchat.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code TextConverter} replaces text conversions (such as emoticons) in
+ * messages with what they convert to.
+ * <p>
+ * The conversions are compiled once into a trie, so converting a message is a
+ * single pass over it: at each character, the trie is walked for the longest
+ * conversion starting there. Conversions match inside words as well as between
+ * them ({@code hi:)} works), except when they are glued to letters or digits on
+ * both sides, so that text like {@code C:Program} is left alone. A message with
+ * nothing to convert is returned as is, without copying it.
+ * <p>
+ * A converter never changes once built; the server swaps in a new one when its
+ * conversions are reloaded.
+ * <p>
+ * Created <b>2026-10-18</b>
+ *
+ * @since 1.0.0
+ * @version 1.0.0
+ * @author Paula Yuan
+ */
+public class TextConverter {
+    /** The root of the trie. */
+    private Node root;
+    /** The conversions this converter was compiled from. */
+    private HashMap<String, String> conversions;
+
+    /**
+     * Constructs a new {@code TextConverter}, compiling the given conversions.
+     *
+     * @param conversions The text to convert, mapped to what it converts to.
+     */
+    public TextConverter(Map<String, String> conversions) {
+        this.root = new Node();
+        this.conversions = new HashMap<>(conversions);
+        for (Map.Entry<String, String> conversion : this.conversions.entrySet()) {
+            String text = conversion.getKey();
+            if (text.isEmpty()) {
+                continue;
+            }
+            Node node = this.root;
+            for (int i = 0; i < text.length(); i++) {
+                node = node.findOrAddChild(text.charAt(i));
+            }
+            node.replacement = conversion.getValue();
+            node.length = text.length();
+        }
+    }
+
+    /**
+     * Retrieves the conversions the server starts with, before any are loaded
+     * from a file.
+     *
+     * @return the default conversions, mapping text to what it converts to.
+     */
+    public static HashMap<String, String> getDefaultConversions() {
+        HashMap<String, String> conversions = new HashMap<>();
+        conversions.put(":)", "\uD83D\uDE42");
+        conversions.put(":D", "\uD83D\uDE04");
+        conversions.put(":P", "\uD83D\uDE1B");
+        conversions.put(":(", "\uD83D\uDE26");
+        conversions.put(";)", "\uD83D\uDE09");
+        conversions.put(":O", "\uD83D\uDE2E");
+        conversions.put(":'(", "\uD83D\uDE22");
+        conversions.put(">:(", "\uD83D\uDE20");
+        conversions.put(":|", "\uD83D\uDE10");
+        conversions.put("<3", "\u2764");
+        return conversions;
+    }
+
+    /**
+     * Retrieves the conversions this converter was compiled from.
+     *
+     * @return a copy of the conversions.
+     */
+    public HashMap<String, String> getConversions() {
+        return new HashMap<>(this.conversions);
+    }
+
+    /**
+     * Converts a message.
+     *
+     * @param message The message to convert.
+     * @return the converted message, which is {@code message} itself if there was
+     *         nothing to convert.
+     */
+    public String convert(String message) {
+        StringBuilder converted = null;
+        int copiedUpTo = 0;
+        int i = 0;
+        while (i < message.length()) {
+            Node match = this.findLongestMatch(message, i);
+            if (match == null) {
+                i++;
+                continue;
+            }
+
+            if (converted == null) {
+                converted = new StringBuilder(message.length() + 8);
+            }
+            converted.append(message, copiedUpTo, i).append(match.replacement);
+            i += match.length;
+            copiedUpTo = i;
+        }
+
+        if (converted == null) {
+            return message;
+        }
+        return converted.append(message, copiedUpTo, message.length()).toString();
+    }
+
+    /**
+     * Walks the trie from a position in a message, for the longest conversion
+     * that starts there and is not glued to letters or digits on both sides.
+     *
+     * @param message The message.
+     * @param start   The position to start at.
+     * @return the node of the longest conversion, or {@code null} if there is none.
+     */
+    private Node findLongestMatch(String message, int start) {
+        // most characters start no conversion at all
+        Node node = this.root.findChild(message.charAt(start));
+        if (node == null) {
+            return null;
+        }
+        boolean gluedBefore = start > 0 && Character.isLetterOrDigit(message.charAt(start - 1));
+        Node longest = null;
+        int i = start;
+        while (node != null) {
+            if (node.replacement != null) {
+                boolean gluedAfter = i + 1 < message.length() && Character.isLetterOrDigit(message.charAt(i + 1));
+                if (!gluedBefore || !gluedAfter) {
+                    longest = node;
+                }
+            }
+            i++;
+            node = (i < message.length()) ? node.findChild(message.charAt(i)) : null;
+        }
+        return longest;
+    }
+
+    /**
+     * One node of the trie, for the text leading to it.
+     */
+    private static class Node {
+        /** The next characters out of this node, in the same order as {@code children}. */
+        private char[] keys = new char[0];
+        /** The nodes for the next characters. */
+        private Node[] children = new Node[0];
+        /** What the text leading here converts to, or {@code null} if it isn't a conversion. */
+        private String replacement;
+        /** The length of the text leading here. */
+        private int length;
+
+        /**
+         * Finds the child for a character.
+         *
+         * @param c The character.
+         * @return the child, or {@code null} if there is none.
+         */
+        Node findChild(char c) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] == c) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Finds the child for a character, adding it if there is none.
+         *
+         * @param c The character.
+         * @return the child.
+         */
+        Node findOrAddChild(char c) {
+            Node child = this.findChild(c);
+            if (child == null) {
+                child = new Node();
+                int numChildren = this.keys.length;
+                char[] keys = new char[numChildren + 1];
+                Node[] children = new Node[numChildren + 1];
+                System.arraycopy(this.keys, 0, keys, 0, numChildren);
+                System.arraycopy(this.children, 0, children, 0, numChildren);
+                keys[numChildren] = c;
+                children[numChildren] = child;
+                this.keys = keys;
+                this.children = children;
+            }
+            return child;
+        }
+    }
+}